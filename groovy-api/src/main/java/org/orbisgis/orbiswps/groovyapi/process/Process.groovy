@@ -85,6 +85,27 @@ import org.orbisgis.orbiswps.groovyapi.attributes.ProcessAttribute
  *      This attribute is composed of an array of two coma separated string : the first one is the property name and
  *      the second is the property value.
  *
+ *  - concurrencyGroup : String
+ *      Name of the concurrency group of the process. The processes of a same group share the same limit of running
+ *      instances. If not defined, the process is its own group.
+ *
+ *  - maxParallel : int
+ *      Maximum number of instances of the process concurrency group running at the same time. If not defined or lower
+ *      than 1, only the server limit is applied.
+ *      If the processes of a group declare different values, the lowest one is applied to the whole group.
+ *
+ *  - cacheable : boolean
+ *      True if the outputs of the process can be cached by the server and returned to a later execution with the
+ *      same inputs, without running the process again. False by default.
+ *
+ *  - deterministic : boolean
+ *      False if the process may give different outputs for the same inputs (random values, current date ...). The
+ *      outputs of a non-deterministic process are never cached. True by default.
+ *
+ *  - transactional : boolean
+ *      True if the database queries of the process should be run in a single transaction, committed when the process
+ *      succeeds and rolled back if it fails. False by default.
+ *
  * Usage example can be found at https://github.com/orbisgis/orbisgis/wiki/
  *
  * @author Sylvain PALOMINOS
@@ -0,0 +1,358 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.scripts.scripts.Export
+
+import org.orbisgis.orbiswps.groovyapi.input.*
+import org.orbisgis.orbiswps.groovyapi.output.*
+import org.orbisgis.orbiswps.groovyapi.process.*
+
+import java.nio.charset.StandardCharsets
+import java.sql.Connection
+import java.sql.ResultSet
+import java.sql.ResultSetMetaData
+import java.sql.Statement
+import java.util.concurrent.CancellationException
+import java.util.zip.GZIPOutputStream
+
+/**
+ * This process exports a table, or the rows of a table matching a filter, to a CSV, TSV or GeoJSON file, compressed
+ * with gzip or not.
+ * The rows are read with a forward-only cursor fetching a bounded number of rows at a time and are written to the file
+ * as soon as they are read, so the memory used doesn't depend on the size of the table. The geometries are converted
+ * in the database, in WKT for the CSV and TSV files and in GeoJSON for the GeoJSON files.
+ *
+ * @author Sylvain PALOMINOS
+ */
+@Process(title = "Export a table to a compressed file",
+    description = "Export a table, or the rows of a table matching a filter, to a CSV, TSV or GeoJSON file " +
+            "compressed with gzip. The rows are streamed from the database to the file.",
+    keywords = ["OrbisGIS","Export","File","CSV","TSV","GeoJSON","gzip"],
+    properties = ["DBMS_TYPE", "H2GIS","DBMS_TYPE", "POSTGIS"],
+    version = "1.0",
+    identifier = "orbisgis:wps:official:exportCompressedFile")
+def processing() {
+    String fileFormat = format[0]
+    boolean gzip = compression == null || compression[0].equals("gzip")
+    File outputFile = new File(fileDataInput[0])
+    if(gzip && !outputFile.getName().endsWith(".gz")) {
+        outputFile = new File(outputFile.getPath() + ".gz")
+    }
+    int rowFetchSize = fetchSize != null && fetchSize > 0 ? fetchSize : 1000
+    //The filter comes from the client, so it can't contain another statement
+    if(filter != null && (filter.contains(";") || filter.contains("--") || filter.contains("/*"))) {
+        throw new IllegalArgumentException(i18n.tr("The filter can't contain ';' or SQL comments."))
+    }
+    String where = filter != null && !filter.trim().isEmpty() ? " WHERE (" + filter + ")" : ""
+
+    boolean fromDataSource = sql.getDataSource() != null
+    Connection connection = fromDataSource ? sql.getDataSource().getConnection() : sql.getConnection()
+    //The cursor of PostgreSQL is only used outside of the auto commit mode
+    boolean autoCommit = connection.getAutoCommit()
+    try {
+        if(autoCommit) {
+            connection.setAutoCommit(false)
+        }
+        //Read the columns and convert the geometries in the database
+        List<String> columns = []
+        Set<Integer> geometryColumns = new HashSet<>()
+        String select = ""
+        Statement metaStatement = connection.createStatement()
+        try {
+            ResultSet rs = metaStatement.executeQuery("SELECT * FROM " + inputJDBCTable + " WHERE 1=0")
+            ResultSetMetaData metaData = rs.getMetaData()
+            for(int i = 1; i <= metaData.getColumnCount(); i++) {
+                String column = metaData.getColumnName(i)
+                String quoted = "\"" + column.replace("\"", "\"\"") + "\""
+                boolean geometry = metaData.getColumnTypeName(i).toUpperCase().contains("GEOMETRY")
+                columns.add(column)
+                if(geometry) {
+                    geometryColumns.add(i)
+                }
+                select += (i > 1 ? ", " : "") + (!geometry ? quoted :
+                        (fileFormat.equals("GeoJSON") ? "ST_AsGeoJSON(" : "ST_AsText(") + quoted + ") AS " + quoted)
+            }
+            rs.close()
+        }
+        finally {
+            metaStatement.close()
+        }
+
+        //Count the rows to report a progression step for each fetched batch
+        long totalCount = 0
+        Statement countStatement = connection.createStatement()
+        try {
+            ResultSet rs = countStatement.executeQuery("SELECT COUNT(*) FROM " + inputJDBCTable + where)
+            if(rs.next()) {
+                totalCount = rs.getLong(1)
+            }
+            rs.close()
+        }
+        finally {
+            countStatement.close()
+        }
+        def progress = progressMonitor.subProcess((int) Math.max(1L, (totalCount + rowFetchSize - 1).intdiv(rowFetchSize)))
+
+        Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)
+        Writer writer = null
+        long rowCount = 0
+        boolean complete = false
+        try {
+            statement.setFetchSize(rowFetchSize)
+            ResultSet rs = statement.executeQuery("SELECT " + select + " FROM " + inputJDBCTable + where)
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFile), 65536)
+            writer = new BufferedWriter(new OutputStreamWriter(gzip ? new GZIPOutputStream(out, 65536) : out,
+                    StandardCharsets.UTF_8), 65536)
+            writeHeader(writer, fileFormat, columns)
+            while(rs.next()) {
+                writeRow(writer, fileFormat, columns, geometryColumns, rs, rowCount)
+                rowCount++
+                if(rowCount % rowFetchSize == 0) {
+                    if(progressMonitor.isCanceled()) {
+                        throw new CancellationException(i18n.tr("The export has been cancelled."))
+                    }
+                    progress.endStep()
+                }
+            }
+            writeFooter(writer, fileFormat)
+            rs.close()
+            writer.close()
+            complete = true
+        }
+        finally {
+            try {
+                if(writer != null && !complete) {
+                    writer.close()
+                }
+                statement.close()
+            }
+            finally {
+                //A cancelled or failed export doesn't leave a truncated file
+                if(!complete) {
+                    outputFile.delete()
+                }
+            }
+        }
+        progressMonitor.endOfProgress()
+        literalDataOutput = i18n.tr("The file has been created : {0} rows.", Long.toString(rowCount))
+    }
+    finally {
+        if(autoCommit) {
+            connection.rollback()
+            connection.setAutoCommit(true)
+        }
+        if(fromDataSource) {
+            connection.close()
+        }
+    }
+
+    if(dropInputTable){
+        sql.execute "drop table if exists " + inputJDBCTable
+    }
+}
+
+/**
+ * Writes the beginning of the file.
+ */
+static void writeHeader(Writer writer, String fileFormat, List<String> columns) {
+    switch(fileFormat) {
+        case "GeoJSON":
+            writer.write("{\"type\":\"FeatureCollection\",\"features\":[")
+            break
+        case "TSV":
+            writer.write(columns.collect { toTsv(it) }.join("\t"))
+            writer.write("\n")
+            break
+        default:
+            writer.write(columns.collect { toCsv(it) }.join(","))
+            writer.write("\n")
+    }
+}
+
+/**
+ * Writes the current row of the ResultSet. In a GeoJSON file, the first geometry column is the feature geometry and
+ * the other columns are its properties.
+ */
+static void writeRow(Writer writer, String fileFormat, List<String> columns, Set<Integer> geometryColumns,
+                     ResultSet rs, long rowIndex) {
+    switch(fileFormat) {
+        case "GeoJSON":
+            String geometry = null
+            String properties = ""
+            for(int i = 1; i <= columns.size(); i++) {
+                Object value = rs.getObject(i)
+                if(geometry == null && geometryColumns.contains(i)) {
+                    geometry = value != null ? value.toString() : "null"
+                }
+                else {
+                    properties += (properties.isEmpty() ? "" : ",") + toJson(columns.get(i - 1).toLowerCase()) +
+                            ":" + (value instanceof Number || value instanceof Boolean ? value.toString() :
+                            toJson(value))
+                }
+            }
+            writer.write((rowIndex > 0 ? "," : "") + "{\"type\":\"Feature\",\"geometry\":" +
+                    (geometry != null ? geometry : "null") + ",\"properties\":{" + properties + "}}")
+            break
+        case "TSV":
+            for(int i = 1; i <= columns.size(); i++) {
+                writer.write((i > 1 ? "\t" : "") + toTsv(rs.getString(i)))
+            }
+            writer.write("\n")
+            break
+        default:
+            for(int i = 1; i <= columns.size(); i++) {
+                String value = rs.getString(i)
+                writer.write((i > 1 ? "," : "") + (value != null ? toCsv(value) : ""))
+            }
+            writer.write("\n")
+    }
+}
+
+/**
+ * Writes the end of the file.
+ */
+static void writeFooter(Writer writer, String fileFormat) {
+    if(fileFormat.equals("GeoJSON")) {
+        writer.write("]}")
+    }
+}
+
+/** Returns the value quoted for a CSV file. */
+static String toCsv(String value) {
+    return "\"" + value.replace("\"", "\"\"") + "\""
+}
+
+/** Returns the value without the tabulations and the line breaks for a TSV file. */
+static String toTsv(String value) {
+    return value == null ? "" : value.replaceAll("[\t\r\n]", " ")
+}
+
+/** Returns the value as a JSON string. */
+static String toJson(Object value) {
+    if(value == null) {
+        return "null"
+    }
+    StringBuilder sb = new StringBuilder("\"")
+    for(char c : value.toString().toCharArray()) {
+        switch(c) {
+            case '"': sb.append("\\\""); break
+            case '\\': sb.append("\\\\"); break
+            case '\n': sb.append("\\n"); break
+            case '\r': sb.append("\\r"); break
+            case '\t': sb.append("\\t"); break
+            default:
+                if(c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c))
+                }
+                else {
+                    sb.append(c)
+                }
+        }
+    }
+    return sb.append("\"").toString()
+}
+
+
+/***********/
+/** INPUT **/
+/***********/
+
+@JDBCTableInput(
+    title = "Table to export",
+    description = "The table that will be exported.")
+String inputJDBCTable
+
+
+/** Optional filter. */
+@LiteralDataInput(
+    title = "Filter",
+    description = "SQL condition selecting the rows to export, for example 'ID > 10'. It can't contain ';' or SQL " +
+            "comments. If it is not defined all the rows are exported.",
+    minOccurs = 0)
+String filter
+
+
+@EnumerationInput(
+    title = "File format",
+    description = "The format of the file.",
+    values = ["CSV", "TSV", "GeoJSON"],
+    names = ["CSV", "TSV", "GeoJSON"],
+    isEditable = false)
+String[] format = ["CSV"]
+
+
+@EnumerationInput(
+    title = "Compression",
+    description = "The compression of the file. The '.gz' extension is added to the file name with gzip.",
+    values = ["gzip", "none"],
+    names = ["gzip", "None"],
+    isEditable = false)
+String[] compression = ["gzip"]
+
+
+/** Optional fetch size. */
+@LiteralDataInput(
+    title = "Fetch size",
+    description = "Number of rows read from the database at a time. If it is not defined 1000 rows are read at a time.",
+    minOccurs = 0)
+Integer fetchSize
+
+
+@LiteralDataInput(
+    title = "Drop the input table",
+    description = "Drop the input table when the export is finished.")
+Boolean dropInputTable
+
+
+@RawDataInput(
+    title = "Output file",
+    description = "The output file to be exported.",
+    fileTypes = ["csv", "tsv", "geojson", "gz"],
+    isDirectory = false)
+String[] fileDataInput
+
+
+/************/
+/** OUTPUT **/
+/************/
+
+@LiteralDataOutput(
+    title = "Output message",
+    description = "Output message.")
+String literalDataOutput
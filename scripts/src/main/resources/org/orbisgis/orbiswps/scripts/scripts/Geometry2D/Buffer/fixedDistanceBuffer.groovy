@@ -58,6 +58,7 @@ import org.orbisgis.orbiswps.groovyapi.process.*
  *  - The endcap style (Enumeration)
  *  - The join style (Enumeration)
  *  - The mitre ratio limit (only affects mitered join style) (LiteralData)
+ *  - The numeric key column used to run the process by partitions (JDBCColumn)
  *
  * @return A datadase table.
  * @author Sylvain PALOMINOS
@@ -72,7 +73,7 @@ import org.orbisgis.orbiswps.groovyapi.process.*
 def processing() {
 
     //Build the start of the query
-    String query = "CREATE TABLE "+outputTableName+" AS SELECT ST_Buffer("+geometricField[0]+","+bufferSize
+    String query = "SELECT ST_Buffer("+geometricField[0]+","+bufferSize
     //Build the third optional parameter
     String optionalParameter = "";
     //If quadSegs is defined
@@ -103,14 +104,24 @@ def processing() {
         }
     }
 
-    query+=" FROM "+inputJDBCTable+";"
+    query+=" FROM "+inputJDBCTable
+    //The partitioned execution replaces the filter by the key range of each partition
+    boolean partitioned = keyField != null && sql.metaClass.respondsTo(sql, "executePartitioned")
+    if(partitioned){
+        query += " WHERE " + sql.PARTITION_FILTER
+    }
 
     if(dropOutputTable){
 	sql.execute "drop table if exists " + outputTableName
     }
     
     //Execute the query
-    sql.execute(query)
+    if(partitioned){
+        sql.executePartitioned(outputTableName, query, inputJDBCTable, keyField[0])
+    }
+    else {
+        sql.execute("CREATE TABLE " + outputTableName + " AS " + query)
+    }
     
     if(dropInputTable){
         sql.execute "drop table if exists " + inputJDBCTable
@@ -189,6 +200,15 @@ String[] joinStyle = ["round"]
         jdbcTableReference = "inputJDBCTable")
 String[] fieldList
 
+/** Numeric key column used to run the process by partitions of the input table. */
+@JDBCColumnInput(
+        title = "Key column",
+        description = "The numeric key column used to process the input table by partitions on several connections.",
+        excludedTypes=["GEOMETRY"],
+        minOccurs = 0,
+        jdbcTableReference = "inputJDBCTable")
+String[] keyField
+
 @LiteralDataInput(
     title = "Drop the output table if exists",
     description = "Drop the output table if exists.")
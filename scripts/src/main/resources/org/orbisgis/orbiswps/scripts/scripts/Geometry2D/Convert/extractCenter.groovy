@@ -63,7 +63,7 @@ import org.orbisgis.orbiswps.groovyapi.process.*
                 version = "1.0")
 def processing() {
     //Build the start of the query
-    String query = "CREATE TABLE "+outputTableName+" AS SELECT "
+    String query = "SELECT "
     
     
     if(operation[0].equalsIgnoreCase("centroid")){
@@ -82,14 +82,24 @@ def processing() {
         }
     }
     
-    query+=" FROM "+inputJDBCTable+";"
+    query+=" FROM "+inputJDBCTable
+    //The partitioned execution replaces the filter by the key range of each partition
+    boolean partitioned = keyField != null && sql.metaClass.respondsTo(sql, "executePartitioned")
+    if(partitioned){
+        query += " WHERE " + sql.PARTITION_FILTER
+    }
     
     if(dropTable){
 	sql.execute "drop table if exists " + outputTableName
     }
     
     //Execute the query
-    sql.execute(query)
+    if(partitioned){
+        sql.executePartitioned(outputTableName, query, inputJDBCTable, keyField[0])
+    }
+    else {
+        sql.execute("CREATE TABLE " + outputTableName + " AS " + query)
+    }
     if(dropInputTable){
         sql.execute "drop table if exists " + inputJDBCTable
     }
@@ -130,6 +140,15 @@ String[] geometricField
         jdbcTableReference = "inputJDBCTable")
 String[] fieldList
 
+/** Numeric key column used to run the process by partitions of the input table. */
+@JDBCColumnInput(
+        title = "Key column",
+        description = "The numeric key column used to process the input table by partitions on several connections.",
+        excludedTypes=["GEOMETRY"],
+        minOccurs = 0,
+        jdbcTableReference = "inputJDBCTable")
+String[] keyField
+
 @EnumerationInput(
 		title = "Operation",
 		description = "Operation to extract the points.",
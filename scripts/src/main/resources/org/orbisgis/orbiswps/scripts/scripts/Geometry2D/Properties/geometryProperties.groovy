@@ -72,7 +72,7 @@ import org.orbisgis.orbiswps.groovyapi.process.*
 )
 def processing() {
 //Build the start of the query
-    String query = "CREATE TABLE "+outputTableName+" AS SELECT "
+    String query = "SELECT "
 
     for (String operation : operations) {
         if(operation.equals("geomtype")){
@@ -115,14 +115,24 @@ def processing() {
 
 
     //Add the field id
-    query += idField[0] + " FROM "+inputJDBCTable+";"
+    query += idField[0] + " FROM "+inputJDBCTable
+    //The partitioned execution replaces the filter by the identifier range of each partition
+    boolean partitioned = sql.metaClass.respondsTo(sql, "executePartitioned")
+    if(partitioned){
+        query += " WHERE " + sql.PARTITION_FILTER
+    }
 
     if(dropTable){
 	sql.execute "drop table if exists " + outputTableName
     }
     
     //Execute the query
-    sql.execute(query)
+    if(partitioned){
+        sql.executePartitioned(outputTableName, query, inputJDBCTable, idField[0])
+    }
+    else {
+        sql.execute("CREATE TABLE " + outputTableName + " AS " + query)
+    }
     if(dropInputTable){
         sql.execute "drop table if exists " + inputJDBCTable
     }
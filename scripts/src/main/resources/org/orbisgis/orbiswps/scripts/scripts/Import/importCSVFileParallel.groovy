@@ -0,0 +1,436 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.scripts.scripts.Import
+
+import org.orbisgis.orbiswps.groovyapi.input.*
+import org.orbisgis.orbiswps.groovyapi.output.*
+import org.orbisgis.orbiswps.groovyapi.process.*
+
+import java.nio.MappedByteBuffer
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.charset.StandardCharsets
+import java.nio.file.StandardOpenOption
+import java.sql.Connection
+import java.sql.PreparedStatement
+import java.sql.SQLException
+import java.util.concurrent.Callable
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * This process imports a large CSV or TSV file in parallel.
+ * The file is split into chunks cut on line boundaries. The chunks are memory-mapped and parsed by several threads,
+ * each one inserting its rows with JDBC batches on its own connection. The number of workers is limited to the
+ * connections which can be obtained without waiting, so a job never waits for the busy connections of a pool. If no
+ * independent connection can be obtained, the rows are inserted on the job connection, one batch at a time.
+ * If a worker fails or if the process is cancelled, the other workers stop at their next batch and the table is
+ * dropped, so no partially filled table is left.
+ * The first line of the file contains the column names. As with CSVRead, all the columns are created as VARCHAR.
+ * The values containing a line break are not supported.
+ *
+ * @author Sylvain PALOMINOS
+ */
+@Process(title = "Import a large CSV file in parallel",
+    description = "Import in the database a large CSV or TSV file as a new table. The file is split into chunks " +
+            "which are parsed and inserted in parallel. The values of the file can't contain line breaks.",
+    keywords = ["OrbisGIS","Import","File","CSV","TSV"],
+    properties = ["DBMS_TYPE","H2GIS","DBMS_TYPE","POSTGIS"],
+    version = "1.0",
+    identifier = "orbisgis:wps:official:importCSVFileParallel")
+def processing() {
+    //Size in bytes of a chunk of the file
+    long chunkBytes = (chunkSize != null && chunkSize > 0 ? chunkSize : 8) * 1024L * 1024L
+    //Number of rows inserted in one round-trip
+    int batchSize = 1000
+
+    File csvFile = new File(csvDataInput[0])
+    String name = csvFile.getName()
+    tableName = name.substring(0, name.lastIndexOf(".")).toUpperCase()
+    if(jdbcTableOutputName != null){
+        tableName = jdbcTableOutputName
+    }
+    if(dropTable){
+        sql.execute "drop table if exists " + tableName
+    }
+    char fieldSeparator = separator[0].charAt(0)
+    int threads = threadCount != null && threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors()
+
+    FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)
+    try {
+        long fileSize = channel.size()
+        //Read the column names from the first line
+        long headerEnd = findLineEnd(channel, 0)
+        ByteBuffer headerBuffer = ByteBuffer.allocate((int) (headerEnd - 0))
+        channel.read(headerBuffer, 0)
+        List<String> columns = parseLine(decodeLine(headerBuffer.array(), 0, (int) headerEnd), fieldSeparator)
+        String create = "CREATE TABLE " + tableName + " ("
+        String insert = "INSERT INTO " + tableName + " VALUES ("
+        for(int i = 0; i < columns.size(); i++){
+            if(i > 0){
+                create += ", "
+                insert += ", "
+            }
+            create += "\"" + (columns.get(i) ?: "COLUMN" + (i + 1)).toUpperCase().replace("\"", "\"\"") + "\" VARCHAR"
+            insert += "?"
+        }
+        sql.execute(create + ")")
+        insert += ")"
+
+        //Split the rest of the file into chunks ending on a line boundary
+        ConcurrentLinkedQueue<long[]> chunkQueue = new ConcurrentLinkedQueue<>()
+        long start = Math.min(headerEnd + 1, fileSize)
+        while(start < fileSize){
+            long end = start + chunkBytes >= fileSize ? fileSize : Math.min(findLineEnd(channel, start + chunkBytes) + 1, fileSize)
+            chunkQueue.add([start, end] as long[])
+            start = end
+        }
+        def progress = progressMonitor.subProcess(chunkQueue.size())
+
+        //Each worker takes its own connection if possible, otherwise the job connection is shared
+        int workerCount = Math.max(1, Math.min(threads, chunkQueue.size()))
+        List<Connection> connections = openWorkerConnections(workerCount)
+        Connection sharedConnection = connections.isEmpty() ? sql.getConnection() : null
+        if(!connections.isEmpty()) {
+            workerCount = connections.size()
+        }
+        AtomicLong rowCount = new AtomicLong()
+        AtomicBoolean failed = new AtomicBoolean(false)
+        Throwable error = null
+        ExecutorService executor = Executors.newFixedThreadPool(workerCount)
+        try {
+            List<Future> futures = []
+            for(int i = 0; i < workerCount; i++) {
+                Connection connection = connections.isEmpty() ? null : connections.get(i)
+                futures.add(executor.submit({
+                    importChunks(channel, chunkQueue, connection, sharedConnection, insert, columns.size(),
+                            fieldSeparator, batchSize, progress, rowCount, failed)
+                } as Callable))
+            }
+            //Waits for all the workers, keeping the error which has stopped the others
+            for(Future future : futures){
+                try {
+                    future.get()
+                }
+                catch (ExecutionException e){
+                    failed.set(true)
+                    if(error == null || (error instanceof CancellationException &&
+                            !(e.getCause() instanceof CancellationException))) {
+                        error = e.getCause()
+                    }
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow()
+            for(Connection connection : connections) {
+                try {
+                    connection.close()
+                }
+                catch (SQLException ignored) {
+                }
+            }
+        }
+        if(error != null) {
+            sql.execute "drop table if exists " + tableName
+            throw error
+        }
+        literalDataOutput = i18n.tr("The CSV file has been imported : {0} rows.", String.valueOf(rowCount.get()))
+    }
+    finally {
+        channel.close()
+    }
+}
+
+/**
+ * Opens up to the given number of connections independent from the job connection, without waiting for the busy
+ * connections of a pool. Returns an empty list if the Sql object can't give independent connections or if the job runs
+ * in a single transaction, as the other connections can't see the table before its commit.
+ */
+def openWorkerConnections(int count) {
+    if(sql.metaClass.respondsTo(sql, "openParallelConnections")) {
+        return sql.getConnection().getAutoCommit() ? sql.openParallelConnections(count) : []
+    }
+    List<Connection> connections = []
+    if(sql.getConnection() == null && sql.getDataSource() != null) {
+        for(int i = 0; i < count; i++) {
+            connections.add(sql.getDataSource().getConnection())
+        }
+    }
+    return connections
+}
+
+/**
+ * Parses and inserts the chunks of the queue until it is empty, on the given connection if any, otherwise on the shared
+ * connection. The worker stops at its next batch once the failed flag is set by another worker or once the process is
+ * cancelled. The given connection is not closed.
+ */
+def importChunks(FileChannel channel, Queue<long[]> chunkQueue, Connection ownedConnection, Connection sharedConnection,
+                 String insert, int columnCount, char fieldSeparator, int batchSize, def progress,
+                 AtomicLong rowCount, AtomicBoolean failed) {
+    Connection connection = sharedConnection != null ? sharedConnection : ownedConnection
+    boolean ownConnection = sharedConnection == null
+    boolean autoCommit = connection.getAutoCommit()
+    PreparedStatement ps = connection.prepareStatement(insert)
+    try {
+        if(ownConnection && autoCommit) {
+            connection.setAutoCommit(false)
+        }
+        long[] chunk
+        while((chunk = chunkQueue.poll()) != null) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0])
+            byte[] line = new byte[1024]
+            int lineLength = 0
+            int batchCount = 0
+            while(buffer.hasRemaining()) {
+                byte b = buffer.get()
+                if(b != (byte) '\n') {
+                    if(lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2)
+                    }
+                    line[lineLength++] = b
+                    if(buffer.hasRemaining()) {
+                        continue
+                    }
+                }
+                String text = decodeLine(line, 0, lineLength)
+                lineLength = 0
+                if(text.isEmpty()) {
+                    continue
+                }
+                List<String> values = parseLine(text, fieldSeparator)
+                for(int i = 0; i < columnCount; i++) {
+                    ps.setString(i + 1, i < values.size() ? values.get(i) : null)
+                }
+                ps.addBatch()
+                if(++batchCount == batchSize) {
+                    checkStopped(failed)
+                    executeBatch(ps, sharedConnection)
+                    rowCount.addAndGet(batchCount)
+                    batchCount = 0
+                }
+            }
+            if(batchCount > 0) {
+                checkStopped(failed)
+                executeBatch(ps, sharedConnection)
+                rowCount.addAndGet(batchCount)
+            }
+            if(ownConnection) {
+                connection.commit()
+            }
+            progress.endStep()
+        }
+    }
+    catch (Exception e) {
+        failed.set(true)
+        if(ownConnection) {
+            connection.rollback()
+        }
+        throw e
+    }
+    finally {
+        ps.close()
+        if(ownConnection) {
+            connection.setAutoCommit(autoCommit)
+        }
+    }
+}
+
+/**
+ * Throws a CancellationException if another worker has failed or if the process has been cancelled.
+ */
+def checkStopped(AtomicBoolean failed) {
+    if(failed.get() || progressMonitor.isCanceled()) {
+        throw new CancellationException(i18n.tr("The import has been cancelled."))
+    }
+}
+
+/**
+ * Executes the batch of the given statement. The batches sent on the shared connection are sent one at a time.
+ */
+def executeBatch(PreparedStatement ps, Connection sharedConnection) {
+    if(sharedConnection != null) {
+        synchronized (sharedConnection) {
+            ps.executeBatch()
+        }
+    }
+    else {
+        ps.executeBatch()
+    }
+}
+
+/**
+ * Returns the position of the first line feed at or after the given position, or the size of the file if there is
+ * no more line feed.
+ */
+static long findLineEnd(FileChannel channel, long position) {
+    ByteBuffer buffer = ByteBuffer.allocate(8192)
+    long pos = position
+    int read
+    while((read = channel.read(buffer, pos)) > 0) {
+        for(int i = 0; i < read; i++) {
+            if(buffer.get(i) == (byte) '\n') {
+                return pos + i
+            }
+        }
+        pos += read
+        buffer.clear()
+    }
+    return channel.size()
+}
+
+/**
+ * Decodes the given UTF-8 bytes of a line, without its ending carriage return.
+ */
+static String decodeLine(byte[] bytes, int offset, int length) {
+    if(length > 0 && bytes[offset + length - 1] == (byte) '\r') {
+        length--
+    }
+    return new String(bytes, offset, length, StandardCharsets.UTF_8)
+}
+
+/**
+ * Splits a CSV line into its values. The values can be quoted with '"', a quote inside a quoted value being doubled.
+ * An empty value which is not quoted is null.
+ */
+static List<String> parseLine(String line, char fieldSeparator) {
+    char quote = '"' as char
+    List<String> values = new ArrayList<>()
+    StringBuilder sb = new StringBuilder()
+    boolean inQuotes = false
+    boolean quoted = false
+    int i = 0
+    while(i < line.length()) {
+        char c = line.charAt(i)
+        if(inQuotes) {
+            if(c == quote) {
+                if(i + 1 < line.length() && line.charAt(i + 1) == quote) {
+                    sb.append(quote)
+                    i++
+                }
+                else {
+                    inQuotes = false
+                }
+            }
+            else {
+                sb.append(c)
+            }
+        }
+        else if(c == quote) {
+            inQuotes = true
+            quoted = true
+        }
+        else if(c == fieldSeparator) {
+            values.add(sb.length() == 0 && !quoted ? null : sb.toString())
+            sb.setLength(0)
+            quoted = false
+        }
+        else {
+            sb.append(c)
+        }
+        i++
+    }
+    values.add(sb.length() == 0 && !quoted ? null : sb.toString())
+    return values
+}
+
+
+@RawDataInput(
+    title = "Input CSV",
+    description = "The input CSV or TSV file to be imported.",
+    fileTypes = ["csv", "tsv"],
+    isDirectory = false)
+String[] csvDataInput
+
+
+@EnumerationInput(
+    title = "CSV separator",
+    description = "The CSV separator.",
+    values = [",", "\t", " ", ";"],
+    names = ["Coma","Tabulation","Space","Semicolon"],
+    isEditable = true)
+String[] separator = [";"]
+
+
+@LiteralDataInput(
+    title = "Drop the existing table",
+    description = "Drop the existing table.")
+Boolean dropTable
+
+
+/** Optional table name. */
+@LiteralDataInput(
+    title = "Output table name",
+    description = "Table name to store the CSV file. If it is not defined the name of the file will be used.",
+    minOccurs = 0)
+String jdbcTableOutputName
+
+
+/** Optional number of threads. */
+@LiteralDataInput(
+    title = "Number of threads",
+    description = "Number of threads parsing and inserting the file. If it is not defined the number of available " +
+            "processors is used.",
+    minOccurs = 0)
+Integer threadCount
+
+
+/** Optional size of the chunks. */
+@LiteralDataInput(
+    title = "Chunk size",
+    description = "Size in megabytes of the chunks of the file parsed by each thread. If it is not defined, chunks of " +
+            "8 megabytes are used.",
+    minOccurs = 0)
+Integer chunkSize
+
+
+/************/
+/** OUTPUT **/
+/************/
+@LiteralDataOutput(
+    title = "Output message",
+    description = "Output message.")
+String literalDataOutput
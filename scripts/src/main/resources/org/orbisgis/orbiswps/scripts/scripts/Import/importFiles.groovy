@@ -0,0 +1,315 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.scripts.scripts.Import
+
+import org.h2gis.api.DriverFunction
+import org.h2gis.api.EmptyProgressVisitor
+import org.h2gis.functions.io.geojson.GeoJsonDriverFunction
+import org.h2gis.functions.io.shp.SHPDriverFunction
+import org.orbisgis.orbiswps.groovyapi.input.*
+import org.orbisgis.orbiswps.groovyapi.output.*
+import org.orbisgis.orbiswps.groovyapi.process.*
+
+import java.sql.Connection
+import java.sql.SQLException
+import java.util.concurrent.BlockingQueue
+import java.util.concurrent.Callable
+import java.util.concurrent.CancellationException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.LinkedBlockingQueue
+
+/**
+ * This process imports a set of shapeFiles and GeoJSON files, each one in its own table.
+ * The input can be a selection of files and directories, the directories being replaced by the supported files they
+ * contain. When the Sql object gives independent connections, the files are imported concurrently by a bounded number
+ * of threads, each one on its own connection. The number of threads is limited to the connections which can be
+ * obtained without waiting, so a job never waits for the busy connections of a pool. Otherwise the files are imported
+ * one after the other on the job connection.
+ * The table names are made of the file names, their characters which are not letters, digits or '_' being replaced by
+ * '_'.
+ *
+ * @author Sylvain PALOMINOS
+ */
+@Process(title = "Import a set of files",
+    description = "Import in the database a set of shapeFiles and GeoJSON files, or the content of a directory, each " +
+            "file as a new table. The files are imported concurrently.",
+    keywords = ["OrbisGIS","Import","File","SHP","GeoJSON"],
+    properties = ["DBMS_TYPE","H2GIS"],
+    version = "1.0",
+    identifier = "orbisgis:wps:official:importFiles")
+def processing() {
+    //List the files to import with their table name
+    Map<File, String> fileTableMap = new LinkedHashMap<>()
+    Set<String> tableNames = new HashSet<>()
+    List<String> unreadableDirectories = []
+    for(String path : fileDataInput) {
+        File input = new File(path)
+        File[] files = input.isDirectory() ? input.listFiles() : [input] as File[]
+        //listFiles() returns null if the directory cannot be read
+        if(files == null) {
+            unreadableDirectories.add(path)
+            continue
+        }
+        for(File file : files.sort { it.getName() }) {
+            String name = file.getName()
+            int dotIndex = name.lastIndexOf(".")
+            if(file.isFile() && dotIndex > 0 && getDriverFunction(name.substring(dotIndex + 1)) != null) {
+                String tableName = getTableName((tablePrefix != null ? tablePrefix : "") + name.substring(0, dotIndex))
+                String uniqueName = tableName
+                int i = 2
+                while(!tableNames.add(uniqueName)) {
+                    uniqueName = tableName + "_" + i++
+                }
+                fileTableMap.put(file, uniqueName)
+            }
+        }
+    }
+    if(fileTableMap.isEmpty()) {
+        literalDataOutput = i18n.tr("No file to import.") + getUnreadableMessage(unreadableDirectories)
+        return
+    }
+
+    //Each thread imports the files on its own connection if possible, otherwise on the job connection
+    int threads = maxThreads != null && maxThreads > 0 ? maxThreads : Runtime.getRuntime().availableProcessors()
+    List<Connection> connections = openWorkerConnections(Math.min(threads, fileTableMap.size()))
+    BlockingQueue<Connection> connectionQueue = new LinkedBlockingQueue<>(connections)
+    if(connections.isEmpty()) {
+        connectionQueue.add(sql.getConnection())
+    }
+    threads = connectionQueue.size()
+    def progress = progressMonitor.subProcess(fileTableMap.size())
+
+    List<String> errors = Collections.synchronizedList(new ArrayList<String>())
+    List<String> indexErrors = Collections.synchronizedList(new ArrayList<String>())
+    ExecutorService executor = Executors.newFixedThreadPool(threads)
+    try {
+        List<Future> futures = []
+        for(Map.Entry<File, String> entry : fileTableMap.entrySet()) {
+            File file = entry.getKey()
+            String tableName = entry.getValue()
+            futures.add(executor.submit({
+                if(progressMonitor.isCanceled()) {
+                    return
+                }
+                //There are as many connections as threads, so a connection is always available
+                Connection connection = connectionQueue.take()
+                try {
+                    importFile(connection, file, tableName)
+                    //A failing index does not cancel the import of the table
+                    if(createIndex) {
+                        try {
+                            createSpatialIndex(connection, tableName)
+                        }
+                        catch (Exception e) {
+                            indexErrors.add(tableName + " : " + e.getMessage())
+                        }
+                    }
+                }
+                catch (Exception e) {
+                    errors.add(file.getName() + " : " + e.getMessage())
+                }
+                finally {
+                    connectionQueue.put(connection)
+                }
+                progress.endStep()
+            } as Callable))
+        }
+        for(Future future : futures) {
+            future.get()
+        }
+    }
+    finally {
+        executor.shutdownNow()
+        for(Connection connection : connections) {
+            try {
+                connection.close()
+            }
+            catch (SQLException ignored) {
+            }
+        }
+    }
+    if(progressMonitor.isCanceled()) {
+        throw new CancellationException(i18n.tr("The import has been cancelled."))
+    }
+    String message
+    if(errors.isEmpty()) {
+        message = i18n.tr("{0} files have been imported.", fileTableMap.size())
+    }
+    else {
+        message = i18n.tr("{0} files have been imported, {1} have failed :\n{2}",
+                fileTableMap.size() - errors.size(), errors.size(), errors.join("\n"))
+    }
+    if(!indexErrors.isEmpty()) {
+        message += "\n" + i18n.tr("The spatial index creation has failed for {0} tables :\n{1}",
+                indexErrors.size(), indexErrors.join("\n"))
+    }
+    literalDataOutput = message + getUnreadableMessage(unreadableDirectories)
+}
+
+/**
+ * Returns the message listing the directories which cannot be read, or an empty String if there is none.
+ */
+def getUnreadableMessage(List<String> unreadableDirectories) {
+    if(unreadableDirectories.isEmpty()) {
+        return ""
+    }
+    return "\n" + i18n.tr("The following directories cannot be read :\n{0}", unreadableDirectories.join("\n"))
+}
+
+/**
+ * Opens up to the given number of connections independent from the job connection, without waiting for the busy
+ * connections of a pool. Returns an empty list if the Sql object can't give independent connections or if the job runs
+ * in a single transaction, as the other connections can't see the tables dropped by the job before its commit.
+ */
+def openWorkerConnections(int count) {
+    if(sql.metaClass.respondsTo(sql, "openParallelConnections")) {
+        return sql.getConnection().getAutoCommit() ? sql.openParallelConnections(count) : []
+    }
+    List<Connection> connections = []
+    if(sql.getConnection() == null && sql.getDataSource() != null) {
+        for(int i = 0; i < count; i++) {
+            connections.add(sql.getDataSource().getConnection())
+        }
+    }
+    return connections
+}
+
+/**
+ * Returns the table name made of the given name in upper case, its characters which are not letters, digits or '_'
+ * being replaced by '_'. A name starting with a digit is prefixed with '_'.
+ */
+static String getTableName(String name) {
+    String tableName = name.toUpperCase().replaceAll("[^\\p{L}\\p{Nd}_]", "_")
+    return !tableName.isEmpty() && Character.isDigit(tableName.charAt(0)) ? "_" + tableName : tableName
+}
+
+/**
+ * Imports the given file in a new table, using the given connection.
+ */
+def importFile(Connection connection, File file, String tableName) {
+    String name = file.getName()
+    DriverFunction driverFunction = getDriverFunction(name.substring(name.lastIndexOf(".") + 1))
+    def statement = connection.createStatement()
+    try {
+        if(dropTable) {
+            statement.execute "drop table if exists " + tableName
+        }
+        driverFunction.importFile(connection, tableName, file, new EmptyProgressVisitor())
+    }
+    finally {
+        statement.close()
+    }
+}
+
+/**
+ * Creates a spatial index on the geometry column of the given table, using the given connection.
+ */
+def createSpatialIndex(Connection connection, String tableName) {
+    def statement = connection.createStatement()
+    try {
+        statement.execute "create spatial index on " + tableName + " (the_geom)"
+    }
+    finally {
+        statement.close()
+    }
+}
+
+/**
+ * Returns the DriverFunction importing the files with the given extension, or null if the extension is not supported.
+ */
+static DriverFunction getDriverFunction(String extension) {
+    switch(extension.toLowerCase()) {
+        case "shp":
+            return new SHPDriverFunction()
+        case "geojson":
+            return new GeoJsonDriverFunction()
+        default:
+            return null
+    }
+}
+
+
+@RawDataInput(
+    title = "Input files",
+    description = "The shapeFiles, GeoJSON files or directories containing them to be imported.",
+    fileTypes = ["shp", "geojson"],
+    isDirectory = true,
+    multiSelection = true)
+String[] fileDataInput
+
+
+@LiteralDataInput(
+    title = "Add a spatial index",
+    description = "Add a spatial index on the geometry column of each table.")
+Boolean createIndex
+
+
+@LiteralDataInput(
+    title = "Drop the existing tables",
+    description = "Drop the existing tables.")
+Boolean dropTable
+
+
+/** Optional table name prefix. */
+@LiteralDataInput(
+    title = "Table name prefix",
+    description = "Prefix of the table names. The table names are made of the prefix and of the file names.",
+    minOccurs = 0)
+String tablePrefix
+
+
+/** Optional maximum number of threads. */
+@LiteralDataInput(
+    title = "Maximum number of threads",
+    description = "Maximum number of files imported at the same time. If it is not defined the number of " +
+            "available processors is used.",
+    minOccurs = 0)
+Integer maxThreads
+
+
+/************/
+/** OUTPUT **/
+/************/
+@LiteralDataOutput(
+    title = "Output message",
+    description = "Output message.")
+String literalDataOutput
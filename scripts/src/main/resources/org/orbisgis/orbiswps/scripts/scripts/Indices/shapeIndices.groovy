@@ -0,0 +1,228 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2018 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.scripts.scripts.Indices
+
+import org.orbisgis.orbiswps.groovyapi.input.*
+import org.orbisgis.orbiswps.groovyapi.output.*
+import org.orbisgis.orbiswps.groovyapi.process.*
+
+
+/**
+ * This process computes a set of shape indices in a single scan of the input table.
+ * The geometric measures shared by the indices (area, perimeter, convex hull area, minimum diameter and longest line)
+ * are computed once per geometry in a sub query, and only the ones needed by the selected indices.
+ * When the Sql object supports it, the table is split by identifier range and the partitions are computed
+ * concurrently on several connections.
+ *
+ * @author Sylvain PALOMINOS
+ */
+@Process(
+    title = "Shape indices",
+    description = "Compute a set of shape indices in a single scan of the table. The available indices are the " +
+            "Gravélius, Miller and Morton compactness indices, the concavity index, the form factor index, the shape " +
+            "index, the perimeter area ratio, the fractal dimension, the main direction of the smallest minimum " +
+            "bounding rectangle and the radius of the equal area circle, whose geometry is added in the 'circle' " +
+            "column.",
+    keywords = ["Vector","Geometry","Index"],
+    properties = ["DBMS_TYPE", "H2GIS", "DBMS_TYPE", "POSTGIS"],
+    version = "1.0",
+    identifier = "orbisgis:wps:official:shapeIndices"
+)
+def processing() {
+
+    //Build the start of the query
+    String  outputTable = inputTable+"_shapeindices"
+
+    if(outputTableName != null){
+        outputTable  = outputTableName
+    }
+
+    String geom = geometryColumn[0]
+    Set<String> measures = new LinkedHashSet<>()
+    String indices = ""
+    for (String operation : operations) {
+        switch(operation) {
+            case "gravelius":
+                indices += ", perimeter/(2 * SQRT(PI() * area)) as gravelius"
+                break
+            case "miller":
+                indices += ", 4 * PI() * area/POWER(perimeter, 2) as miller"
+                break
+            case "morton":
+                measures.add("ST_MAXDISTANCE(" + geom + ", " + geom + ") as maxdistance")
+                indices += ", area/(PI() * POWER(0.5 * maxdistance, 2)) as morton"
+                break
+            case "concavity":
+                measures.add("ST_AREA(ST_CONVEXHULL(" + geom + ")) as hullarea")
+                indices += ", area/hullarea as concavityindice"
+                break
+            case "formfactor":
+                indices += ", area/POWER(perimeter, 2) as formfactorindex"
+                break
+            case "shapeindex":
+                indices += ", (0.25 * perimeter)/SQRT(area) as shapeindex"
+                break
+            case "perimeterarearatio":
+                indices += ", perimeter/area as perimeterarearatio"
+                break
+            case "fractaldim":
+                indices += ", (2 * LOG(perimeter))/LOG(area) as fractaldim"
+                break
+            case "maindirection":
+                measures.add("ST_MINIMUMDIAMETER(" + geom + ") as mindiameter")
+                indices += ", mod(CASE WHEN ST_LENGTH(mindiameter) < 0.1 THEN DEGREES(ST_AZIMUTH(ST_STARTPOINT(" +
+                        geom + "), ST_ENDPOINT(" + geom + "))) ELSE DEGREES(ST_AZIMUTH(ST_STARTPOINT(ST_ROTATE(" +
+                        "mindiameter, pi()/2)), ST_ENDPOINT(ST_ROTATE(mindiameter, pi()/2)))) END, 180) as " +
+                        "maindirectionsmbr"
+                break
+            case "equalarearadius":
+                indices += ", sqrt(area/PI()) as radius, ST_BUFFER(ST_CENTROID(" + geom + "), sqrt(area/PI())) " +
+                        "as circle"
+                break
+        }
+    }
+
+    //The measures are computed once in the sub query and shared by the indices
+    String subQuery = "SELECT " + idField[0] + ", " + geom + ", ST_AREA(" + geom + ") as area, ST_PERIMETER(" + geom +
+            ") as perimeter"
+    for (String measure : measures) {
+        subQuery += ", " + measure
+    }
+    subQuery += " FROM " + inputTable
+    //The partitioned execution replaces the filter by the identifier range of each partition
+    boolean partitioned = sql.metaClass.respondsTo(sql, "executePartitioned")
+    if(partitioned){
+        subQuery += " WHERE " + sql.PARTITION_FILTER
+    }
+    //Prevents PostgreSQL from inlining the sub query, which would compute the measures once per index
+    if(binding.hasVariable("isH2") && !isH2){
+        subQuery += " OFFSET 0"
+    }
+
+    String query = "SELECT "
+    if(keepgeom==true){
+        query += geom + ","
+    }
+    query += idField[0] + indices + " FROM (" + subQuery + ") AS measures"
+
+    if(dropTable){
+        sql.execute "drop table if exists " + outputTable
+    }
+    //Execute the query
+    if(partitioned){
+        sql.executePartitioned(outputTable, query, inputTable, idField[0])
+    }
+    else {
+        sql.execute("CREATE TABLE " + outputTable + " AS " + query)
+    }
+
+    literalOutput = i18n.tr("Process done")
+}
+
+/****************/
+/** INPUT Data **/
+/****************/
+
+@JDBCTableInput(
+    title = "Input table",
+    description = "The spatial model source that contains the polygons.",
+    dataTypes = ["POLYGON", "MULTIPOLYGON"]
+)
+String inputTable
+
+
+@JDBCColumnInput(
+    title = "Geometric column",
+    description = "The geometric column of input table.",
+    jdbcTableReference = "inputTable",
+    dataTypes = ["POLYGON", "MULTIPOLYGON"]
+)
+String[] geometryColumn
+
+/** Name of the identifier field of the JDBCTable inputJDBCTable. */
+@JDBCColumnInput(
+    title = "Column identifier",
+    description = "A column used as an identifier.",
+    excludedTypes=["GEOMETRY"],
+    multiSelection = false,
+    jdbcTableReference = "inputTable")
+String[] idField
+
+@LiteralDataInput(
+    title = "Keep the geometry",
+    description = "Keep the input geometry in the result table.",
+    minOccurs = 0)
+Boolean keepgeom;
+
+@EnumerationInput(
+    title = "Indices",
+    description = "The indices to compute.",
+    values=["gravelius", "miller", "morton", "concavity", "formfactor", "shapeindex", "perimeterarearatio",
+            "fractaldim", "maindirection", "equalarearadius"],
+    names = ["Gravélius", "Miller", "Morton", "Concavity index", "Form factor index", "Shape index",
+             "Perimeter area ratio", "Fractal dimension", "Main direction SMBR", "Equal area circle radius"],
+    multiSelection = true)
+String[] operations = ["gravelius"]
+
+
+@LiteralDataInput(
+    title = "Drop the output table if exists",
+    description = "Drop the output table if exists.",
+    minOccurs = 0)
+Boolean dropTable
+
+@LiteralDataInput(
+    title = "Output table name",
+    description = "Name of the table containing the result of the process. By default, the name of the input table " +
+            "followed by '_shapeindices'.",
+    minOccurs = 0,
+    identifier = "outputTableName"
+)
+String outputTableName
+
+
+
+/** String output of the process. */
+@LiteralDataOutput(
+    title = "Output message",
+    description = "The output message.",
+    identifier = "literalOutput"
+)
+String literalOutput
@@ -53,7 +53,9 @@ import org.orbisgis.orbiswps.groovyapi.process.*
         description = "Create a graph stored in two tables nodes and edges from an input table that contains Multi or LineString.<br>If the input table has name 'input', then the output tables are named 'input_nodes' and 'input_edges'.",
         keywords = ["Network","Geometry"],
         properties = ["DBMS_TYPE", "H2GIS"],
-        version = "1.0")
+        version = "1.0",
+        concurrencyGroup = "ST_GRAPH",
+        maxParallel = 1)
 def processing() {    
     if(slope==null){
         slope=false;
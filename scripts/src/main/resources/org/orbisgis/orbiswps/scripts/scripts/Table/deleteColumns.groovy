@@ -61,14 +61,15 @@ import org.orbisgis.orbiswps.groovyapi.process.*
         keywords = ["Table","Delete"],
         properties = ["DBMS_TYPE", "H2GIS", "DBMS_TYPE", "POSTGIS"],
         version = "1.0",
-        identifier = "orbisgis:wps:official:deleteColumns"
+        identifier = "orbisgis:wps:official:deleteColumns",
+        transactional = true
 )
 def processing() {
-    //Build the start of the query
-    for (String columnName : columnNames) {
-        String query = String.format("ALTER TABLE %s DROP COLUMN `%s`", tableName, columnName)
-        //Execute the query
-        sql.execute(query)
+    //Execute the query for each column, in a single batch
+    sql.withBatch { stmt ->
+        for (String columnName : columnNames) {
+            stmt.addBatch(String.format("ALTER TABLE %s DROP COLUMN `%s`", tableName, columnName))
+        }
     }
     literalOutput = i18n.tr("Delete done.")
 }
@@ -63,14 +63,17 @@ import org.orbisgis.orbiswps.groovyapi.process.*
         keywords = ["Table","Delete"],
         properties = ["DBMS_TYPE", "H2GIS", "DBMS_TYPE", "POSTGIS"],
         version = "1.0",
-        identifier = "orbisgis:wps:official:deleteRows"
+        identifier = "orbisgis:wps:official:deleteRows",
+        transactional = true
 )
 def processing() {
-    //Build the start of the query
-    for (String s : pkToRemove) {
-        String query = "DELETE FROM " + tableName + " WHERE " + pkField[0] + " = " + Long.parseLong(s)
-        //Execute the query
-        sql.execute(query)
+    //Build the query
+    String query = "DELETE FROM " + tableName + " WHERE " + pkField[0] + " = ?"
+    //Execute the query for each primary key, in batches
+    sql.withBatch(1000, query) { ps ->
+        for (String s : pkToRemove) {
+            ps.addBatch([Long.parseLong(s)])
+        }
     }
     literalOutput = i18n.tr("Delete done.")
 }
@@ -64,7 +64,8 @@ import org.orbisgis.orbiswps.groovyapi.process.*
         keywords = ["Table","Insert","Values"],
         properties = ["DBMS_TYPE", "H2GIS", "DBMS_TYPE", "POSTGIS"],
         version = "1.0",
-        identifier = "orbisgis:wps:official:insertValues")
+        identifier = "orbisgis:wps:official:insertValues",
+        transactional = true)
 def processing() {
     //Build the query
     String queryBase = "INSERT INTO " + tableName;
@@ -82,27 +83,29 @@ def processing() {
         queryBase += fieldsStr+") ";
 }
     queryBase += " VALUES (";
-    //execute the query for each row
+    //execute the query for each row, in batches
     String[] rowArray = values.split(":")
-    for(String row : rowArray){
-        String query = queryBase
-        String[] valueArray = row.split(";", -1)
-        //Retrieve the values to insert
-        String formatedValues = ""
-        for(String value : valueArray){
-            if(!formatedValues.isEmpty()){
-                formatedValues += ",";
-            }
-            if(value.isEmpty()){
-                formatedValues += "NULL"
-            }
-            else{
-                formatedValues += "'" + value + "'";
+    sql.withBatch(1000) { stmt ->
+        for(String row : rowArray){
+            String query = queryBase
+            String[] valueArray = row.split(";", -1)
+            //Retrieve the values to insert
+            String formatedValues = ""
+            for(String value : valueArray){
+                if(!formatedValues.isEmpty()){
+                    formatedValues += ",";
+                }
+                if(value.isEmpty()){
+                    formatedValues += "NULL"
+                }
+                else{
+                    formatedValues += "'" + value + "'";
+                }
             }
+            query += formatedValues + ")"
+            //add the query to the batch
+            stmt.addBatch(query)
         }
-        query += formatedValues + ");"
-        //execute the query
-        sql.execute(query)
     }
     literalOutput = i18n.tr("Insert done.")
 }
@@ -46,15 +46,19 @@ import org.h2.tools.RunScript;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.junit.*;
 import org.orbisgis.orbiswps.service.process.ProgressMonitor;
+import org.xnap.commons.i18n.I18nFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.InputStreamReader;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Class to test the the export script.
@@ -291,4 +295,115 @@ public class ExportScriptTests {
         Assert.assertEquals("\t5\t\t\tPOINT (15 15)\t", reader.readLine());
         Assert.assertEquals("\t80\t\t\tPOINT (5680 5680)\t", reader.readLine());
     }
+
+    @Test
+    public void testExportCompressedFileScript() throws Exception {
+        String fileName = "target/test-classes/compressedfile.csv";
+        String tableName = "COMPRESSEDEXPORT";
+        //Prepare database
+        st.execute("DROP TABLE IF EXISTS "+tableName+";");
+        st.execute("CREATE TABLE "+tableName+" (ID INT, THE_GEOM POINT);");
+        st.execute("INSERT INTO "+tableName+" VALUES (0, ST_GeomFromText('POINT (0 0)'))");
+        st.execute("INSERT INTO "+tableName+" VALUES (5, ST_GeomFromText('POINT (15 15)'))");
+        st.execute("INSERT INTO "+tableName+" VALUES (80, ST_GeomFromText('POINT (5680 5680)'))");
+        //Prepare script execution
+        String scriptPath = WPSScriptExecute.class.getResource("scripts/Export/exportCompressedFile.groovy").getPath();
+        Map<String, Object> inputMap = new HashMap<>();
+        inputMap.put("inputJDBCTable", tableName);
+        inputMap.put("filter", "ID > 0");
+        inputMap.put("format", new String[]{"CSV"});
+        inputMap.put("compression", new String[]{"gzip"});
+        inputMap.put("fetchSize", 1);
+        inputMap.put("dropInputTable", false);
+        inputMap.put("fileDataInput", new String[]{fileName});
+        Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("sql", sql);
+        propertyMap.put("progressMonitor", new ProgressMonitor("root"));
+        propertyMap.put("i18n", I18nFactory.getI18n(ExportScriptTests.class));
+        //Execute script
+        Map<String, Object> outputMap = WPSScriptExecute.run(groovyClassLoader, scriptPath, propertyMap, inputMap);
+        //Test the outputs
+        Assert.assertEquals("The file has been created : 2 rows.",outputMap.get("literalDataOutput"));
+        File file = new File(fileName+".gz");
+        Assert.assertTrue(file.exists());
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(file))));
+        Assert.assertEquals("\"ID\",\"THE_GEOM\"", reader.readLine());
+        Assert.assertEquals("\"5\",\"POINT (15 15)\"", reader.readLine());
+        Assert.assertEquals("\"80\",\"POINT (5680 5680)\"", reader.readLine());
+        Assert.assertNull(reader.readLine());
+        reader.close();
+    }
+
+    @Test
+    public void testExportCompressedFileCancellation() throws Exception {
+        String fileName = "target/test-classes/cancelledfile.csv";
+        String tableName = "CANCELLEDEXPORT";
+        //Prepare database
+        st.execute("DROP TABLE IF EXISTS "+tableName+";");
+        st.execute("CREATE TABLE "+tableName+" (ID INT, THE_GEOM POINT);");
+        st.execute("INSERT INTO "+tableName+" VALUES (0, ST_GeomFromText('POINT (0 0)'))");
+        st.execute("INSERT INTO "+tableName+" VALUES (5, ST_GeomFromText('POINT (15 15)'))");
+        //Prepare script execution
+        String scriptPath = WPSScriptExecute.class.getResource("scripts/Export/exportCompressedFile.groovy").getPath();
+        Map<String, Object> inputMap = new HashMap<>();
+        inputMap.put("inputJDBCTable", tableName);
+        inputMap.put("format", new String[]{"CSV"});
+        inputMap.put("compression", new String[]{"none"});
+        inputMap.put("fetchSize", 1);
+        inputMap.put("dropInputTable", false);
+        inputMap.put("fileDataInput", new String[]{fileName});
+        ProgressMonitor progressMonitor = new ProgressMonitor("root");
+        progressMonitor.cancel();
+        Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("sql", sql);
+        propertyMap.put("progressMonitor", progressMonitor);
+        propertyMap.put("i18n", I18nFactory.getI18n(ExportScriptTests.class));
+        //Execute script
+        try {
+            WPSScriptExecute.run(groovyClassLoader, scriptPath, propertyMap, inputMap);
+            Assert.fail("The cancelled export should fail.");
+        }
+        catch (Exception ignored) {
+        }
+        //The partial file is removed
+        Assert.assertFalse(new File(fileName).exists());
+    }
+
+    @Test
+    public void testExportCompressedFileFilterInjection() throws Exception {
+        String fileName = "target/test-classes/injectedfile.csv";
+        String tableName = "INJECTEDEXPORT";
+        //Prepare database
+        st.execute("DROP TABLE IF EXISTS "+tableName+";");
+        st.execute("CREATE TABLE "+tableName+" (ID INT, THE_GEOM POINT);");
+        st.execute("INSERT INTO "+tableName+" VALUES (0, ST_GeomFromText('POINT (0 0)'))");
+        //Prepare script execution
+        String scriptPath = WPSScriptExecute.class.getResource("scripts/Export/exportCompressedFile.groovy").getPath();
+        Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("sql", sql);
+        propertyMap.put("progressMonitor", new ProgressMonitor("root"));
+        propertyMap.put("i18n", I18nFactory.getI18n(ExportScriptTests.class));
+        for(String filter : new String[]{"ID > 0; DROP TABLE " + tableName, "ID > 0 -- comment", "ID > 0 /* comment */"}) {
+            Map<String, Object> inputMap = new HashMap<>();
+            inputMap.put("inputJDBCTable", tableName);
+            inputMap.put("filter", filter);
+            inputMap.put("format", new String[]{"CSV"});
+            inputMap.put("compression", new String[]{"none"});
+            inputMap.put("dropInputTable", false);
+            inputMap.put("fileDataInput", new String[]{fileName});
+            //Execute script
+            try {
+                WPSScriptExecute.run(groovyClassLoader, scriptPath, propertyMap, inputMap);
+                Assert.fail("The filter '" + filter + "' should be rejected.");
+            }
+            catch (Exception ignored) {
+            }
+        }
+        //The table is still there
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + tableName);
+        Assert.assertTrue(rs.next());
+        Assert.assertEquals(1, rs.getInt(1));
+        rs.close();
+        Assert.assertFalse(new File(fileName).exists());
+    }
 }
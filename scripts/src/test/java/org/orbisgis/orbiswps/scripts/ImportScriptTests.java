@@ -0,0 +1,432 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.scripts;
+
+import groovy.lang.GroovyClassLoader;
+import groovy.sql.Sql;
+import junit.framework.Assert;
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.junit.*;
+import org.orbisgis.orbiswps.service.process.ProgressMonitor;
+import org.orbisgis.orbiswps.service.utils.WpsConnectionPool;
+import org.orbisgis.orbiswps.service.utils.WpsSql;
+import org.xnap.commons.i18n.I18nFactory;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class to test the import scripts.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class ImportScriptTests {
+
+    /** Sql {@link Connection} to an embedded H2GIS database. */
+    private static Connection connection;
+    /** {@link Sql} object get from the connection. */
+    private static Sql sql;
+    /** {@link GroovyClassLoader} object used to parse and execute scripts. */
+    private GroovyClassLoader groovyClassLoader = new GroovyClassLoader(this.getClass().getClassLoader());
+    /** {@link Statement} object used to execute Sql queries. */
+    private Statement st;
+
+    @BeforeClass
+    public static void tearUp() throws Exception {
+        // Keep a connection alive to not close the DataBase on each unit test
+        connection = H2GISDBFactory.createSpatialDataBase(ImportScriptTests.class.getSimpleName());
+        sql = new Sql(connection);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Before
+    public void setUpStatement() throws Exception {
+        st = connection.createStatement();
+    }
+
+    @After
+    public void tearDownStatement() throws Exception {
+        st.close();
+    }
+
+    @Test
+    public void testImportCSVFileParallelScript() throws Exception {
+        String fileName = "target/test-classes/csvparallel.csv";
+        String tableName = "CSVPARALLEL";
+        int rowCount = 5000;
+        //Prepare the file
+        File file = new File(fileName);
+        file.getParentFile().mkdirs();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("id;name;comment\r\n");
+            for (int i = 0; i < rowCount; i++) {
+                writer.write(i + ";\"name " + i + "\";" + (i % 2 == 0 ? "\"a;b \"\"c\"\"\"" : "") + "\r\n");
+            }
+        }
+        //Prepare script execution
+        String scriptPath = WPSScriptExecute.class.getResource("scripts/Import/importCSVFileParallel.groovy").getPath();
+        Map<String, Object> inputMap = new HashMap<>();
+        inputMap.put("csvDataInput", new String[]{fileName});
+        inputMap.put("separator", new String[]{";"});
+        inputMap.put("dropTable", true);
+        inputMap.put("jdbcTableOutputName", tableName);
+        inputMap.put("threadCount", 2);
+        Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("sql", sql);
+        propertyMap.put("progressMonitor", new ProgressMonitor("root"));
+        propertyMap.put("i18n", I18nFactory.getI18n(ImportScriptTests.class));
+        //Execute script
+        Map<String, Object> outputMap = WPSScriptExecute.run(groovyClassLoader, scriptPath, propertyMap, inputMap);
+        //Test the outputs
+        Assert.assertEquals("The CSV file has been imported : 5000 rows.", outputMap.get("literalDataOutput"));
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + tableName);
+        Assert.assertTrue(rs.next());
+        Assert.assertEquals(rowCount, rs.getInt(1));
+        rs.close();
+        rs = st.executeQuery("SELECT \"NAME\", \"COMMENT\" FROM " + tableName + " WHERE \"ID\" = '42'");
+        Assert.assertTrue(rs.next());
+        Assert.assertEquals("name 42", rs.getString(1));
+        Assert.assertEquals("a;b \"c\"", rs.getString(2));
+        rs.close();
+        rs = st.executeQuery("SELECT \"COMMENT\" FROM " + tableName + " WHERE \"ID\" = '43'");
+        Assert.assertTrue(rs.next());
+        Assert.assertNull(rs.getString(1));
+        rs.close();
+    }
+
+    @Test
+    public void testImportCSVFileParallelOnPool() throws Exception {
+        String fileName = "target/test-classes/csvparallelpool.csv";
+        String tableName = "CSVPARALLELPOOL";
+        int rowCount = 100000;
+        writeCSVFile(new File(fileName), rowCount);
+        DataSource dataSource = H2GISDBFactory.createDataSource(ImportScriptTests.class.getSimpleName() + "Pool", false);
+        //The job connection takes one of the three connections of the pool, so two workers can run
+        WpsConnectionPool pool = new WpsConnectionPool(dataSource, 3, WpsConnectionPool.DEFAULT_TIMEOUT);
+        WpsSql jobSql = WpsSql.createJobSql(pool);
+        long start = System.currentTimeMillis();
+        try {
+            Map<String, Object> outputMap = runCSVFileParallel(jobSql, fileName, tableName, 4);
+            Assert.assertEquals("The CSV file has been imported : 100000 rows.", outputMap.get("literalDataOutput"));
+        }
+        finally {
+            jobSql.close();
+        }
+        Assert.assertTrue("The workers should not wait for the busy connections of the pool.",
+                System.currentTimeMillis() - start < WpsConnectionPool.DEFAULT_TIMEOUT);
+        Assert.assertEquals("The connections should be given back to the pool.", 3, pool.getIdleCount());
+        try (Connection poolConnection = pool.getConnection();
+             Statement poolStatement = poolConnection.createStatement()) {
+            ResultSet rs = poolStatement.executeQuery("SELECT COUNT(*), COUNT(DISTINCT \"ID\") FROM " + tableName);
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(rowCount, rs.getInt(1));
+            Assert.assertEquals(rowCount, rs.getInt(2));
+            rs.close();
+        }
+        finally {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testImportCSVFileParallelFailure() throws Exception {
+        String fileName = "target/test-classes/csvparallelfailure.csv";
+        String tableName = "CSVPARALLELFAILURE";
+        writeCSVFile(new File(fileName), 100000);
+        DataSource dataSource = H2GISDBFactory.createDataSource(ImportScriptTests.class.getSimpleName() + "Failure",
+                false);
+        //The third batch sent by the workers fails
+        WpsSql jobSql = WpsSql.createJobSql(getFailingDataSource(dataSource, 3));
+        try {
+            runCSVFileParallel(jobSql, fileName, tableName, 2);
+            Assert.fail("The failure of a chunk should fail the import.");
+        }
+        catch (Exception ignored) {
+        }
+        finally {
+            jobSql.close();
+        }
+        try (Connection checkConnection = dataSource.getConnection();
+             Statement checkStatement = checkConnection.createStatement()) {
+            ResultSet rs = checkStatement.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES " +
+                    "WHERE TABLE_NAME = '" + tableName + "'");
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals("The partially filled table should be dropped.", 0, rs.getInt(1));
+            rs.close();
+        }
+    }
+
+    /**
+     * Writes a CSV file with the columns id, name and comment.
+     * @param file File to write.
+     * @param rowCount Number of rows of the file.
+     */
+    private static void writeCSVFile(File file, int rowCount) throws IOException {
+        file.getParentFile().mkdirs();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("id;name;comment\r\n");
+            for (int i = 0; i < rowCount; i++) {
+                writer.write(i + ";\"name " + i + "\";" + (i % 2 == 0 ? "\"a;b \"\"c\"\"\"" : "") + "\r\n");
+            }
+        }
+    }
+
+    /**
+     * Runs the importCSVFileParallel script on the given Sql object, with chunks of one megabyte.
+     * @param jobSql Sql object of the job.
+     * @param fileName Name of the CSV file.
+     * @param tableName Name of the table to create.
+     * @param threadCount Number of threads of the import.
+     * @return The outputs of the script.
+     */
+    private Map<String, Object> runCSVFileParallel(Sql jobSql, String fileName, String tableName, int threadCount)
+            throws Exception {
+        String scriptPath = WPSScriptExecute.class.getResource("scripts/Import/importCSVFileParallel.groovy").getPath();
+        Map<String, Object> inputMap = new HashMap<>();
+        inputMap.put("csvDataInput", new String[]{fileName});
+        inputMap.put("separator", new String[]{";"});
+        inputMap.put("dropTable", true);
+        inputMap.put("jdbcTableOutputName", tableName);
+        inputMap.put("threadCount", threadCount);
+        inputMap.put("chunkSize", 1);
+        Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("sql", jobSql);
+        propertyMap.put("progressMonitor", new ProgressMonitor("root"));
+        propertyMap.put("i18n", I18nFactory.getI18n(ImportScriptTests.class));
+        return WPSScriptExecute.run(groovyClassLoader, scriptPath, propertyMap, inputMap);
+    }
+
+    /**
+     * Returns a DataSource whose connections fail on the given execution of a batch, counted over all the connections.
+     * @param dataSource Wrapped DataSource.
+     * @param failingBatch Number of the failing batch execution.
+     * @return The failing DataSource.
+     */
+    private static DataSource getFailingDataSource(DataSource dataSource, final int failingBatch) {
+        final AtomicInteger batchCount = new AtomicInteger();
+        return (DataSource) new Delegate(dataSource) {
+            @Override
+            Object wrap(Method method, Object result) {
+                if(!(result instanceof Connection)) {
+                    return result;
+                }
+                return new Delegate(result) {
+                    @Override
+                    Object wrap(Method method, Object result) {
+                        if(!method.getName().equals("prepareStatement")) {
+                            return result;
+                        }
+                        return new Delegate(result) {
+                            @Override
+                            void before(Method method) throws SQLException {
+                                if(method.getName().equals("executeBatch") &&
+                                        batchCount.incrementAndGet() == failingBatch) {
+                                    throw new SQLException("Failing batch");
+                                }
+                            }
+                        }.createProxy(PreparedStatement.class);
+                    }
+                }.createProxy(Connection.class);
+            }
+        }.createProxy(DataSource.class);
+    }
+
+    /**
+     * InvocationHandler delegating the calls to an object, used to inject failures in the JDBC objects.
+     */
+    private static class Delegate implements InvocationHandler {
+        /** Object receiving the calls. */
+        private final Object delegate;
+
+        Delegate(Object delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Creates the proxy of the delegate object.
+         * @param iface Interface of the proxy.
+         * @return The proxy.
+         */
+        Object createProxy(Class iface) {
+            return Proxy.newProxyInstance(ImportScriptTests.class.getClassLoader(), new Class[]{iface}, this);
+        }
+
+        /**
+         * Called before the delegation of the given method.
+         * @param method Called method.
+         */
+        void before(Method method) throws SQLException {
+        }
+
+        /**
+         * Returns the object returned to the caller from the one returned by the delegate object.
+         * @param method Called method.
+         * @param result Object returned by the delegate object.
+         * @return The object returned to the caller.
+         */
+        Object wrap(Method method, Object result) {
+            return result;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            before(method);
+            try {
+                return wrap(method, method.invoke(delegate, args));
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    @Test
+    public void testImportFilesScript() throws Exception {
+        File directory = new File("target/test-classes/importfiles");
+        directory.mkdirs();
+        //Prepare the files
+        st.execute("DROP TABLE IF EXISTS FILESSOURCE;");
+        st.execute("CREATE TABLE FILESSOURCE (ID INT, THE_GEOM POINT);");
+        st.execute("INSERT INTO FILESSOURCE VALUES (0, ST_GeomFromText('POINT (0 0)'))");
+        st.execute("INSERT INTO FILESSOURCE VALUES (5, ST_GeomFromText('POINT (15 15)'))");
+        st.execute("CALL SHPWrite('" + new File(directory, "shpfile.shp").getAbsolutePath() + "', 'FILESSOURCE')");
+        st.execute("CALL GeoJsonWrite('" + new File(directory, "geojsonfile.geojson").getAbsolutePath() +
+                "', 'FILESSOURCE')");
+        //Prepare script execution
+        String scriptPath = WPSScriptExecute.class.getResource("scripts/Import/importFiles.groovy").getPath();
+        Map<String, Object> inputMap = new HashMap<>();
+        inputMap.put("fileDataInput", new String[]{directory.getAbsolutePath()});
+        inputMap.put("dropTable", true);
+        inputMap.put("createIndex", true);
+        inputMap.put("tablePrefix", "IMPORTED_");
+        inputMap.put("maxThreads", 2);
+        Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("sql", sql);
+        propertyMap.put("progressMonitor", new ProgressMonitor("root"));
+        propertyMap.put("i18n", I18nFactory.getI18n(ImportScriptTests.class));
+        //Execute script
+        Map<String, Object> outputMap = WPSScriptExecute.run(groovyClassLoader, scriptPath, propertyMap, inputMap);
+        //Test the outputs
+        Assert.assertEquals("2 files have been imported.", outputMap.get("literalDataOutput"));
+        for (String tableName : new String[]{"IMPORTED_SHPFILE", "IMPORTED_GEOJSONFILE"}) {
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + tableName);
+            Assert.assertTrue(rs.next());
+            Assert.assertEquals(2, rs.getInt(1));
+            rs.close();
+        }
+    }
+
+    @Test
+    public void testImportFilesConcurrently() throws Exception {
+        File directory = new File("target/test-classes/importfilesconcurrently");
+        directory.mkdirs();
+        //Prepare the files, with names which are not valid table names
+        st.execute("DROP TABLE IF EXISTS FILESSOURCE;");
+        st.execute("CREATE TABLE FILESSOURCE (ID INT, THE_GEOM POINT);");
+        st.execute("INSERT INTO FILESSOURCE VALUES (0, ST_GeomFromText('POINT (0 0)'))");
+        st.execute("INSERT INTO FILESSOURCE VALUES (5, ST_GeomFromText('POINT (15 15)'))");
+        String[] fileNames = {"shp-file one.shp", "2nd shp-file.shp", "geojson-file.geojson"};
+        String[] tableNames = {"SHP_FILE_ONE", "_2ND_SHP_FILE", "GEOJSON_FILE"};
+        for (String fileName : fileNames) {
+            st.execute("CALL " + (fileName.endsWith(".shp") ? "SHPWrite" : "GeoJsonWrite") + "('" +
+                    new File(directory, fileName).getAbsolutePath() + "', 'FILESSOURCE')");
+        }
+        DataSource dataSource = H2GISDBFactory.createDataSource(ImportScriptTests.class.getSimpleName() + "Files",
+                true);
+        //The job connection takes one of the three connections of the pool, so two files are imported at a time
+        WpsConnectionPool pool = new WpsConnectionPool(dataSource, 3, WpsConnectionPool.DEFAULT_TIMEOUT);
+        WpsSql jobSql = WpsSql.createJobSql(pool);
+        //Prepare script execution
+        String scriptPath = WPSScriptExecute.class.getResource("scripts/Import/importFiles.groovy").getPath();
+        Map<String, Object> inputMap = new HashMap<>();
+        inputMap.put("fileDataInput", new String[]{directory.getAbsolutePath()});
+        inputMap.put("dropTable", true);
+        inputMap.put("createIndex", true);
+        inputMap.put("maxThreads", 4);
+        Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("sql", jobSql);
+        propertyMap.put("progressMonitor", new ProgressMonitor("root"));
+        propertyMap.put("i18n", I18nFactory.getI18n(ImportScriptTests.class));
+        //Execute script
+        long start = System.currentTimeMillis();
+        Map<String, Object> outputMap;
+        try {
+            outputMap = WPSScriptExecute.run(groovyClassLoader, scriptPath, propertyMap, inputMap);
+        }
+        finally {
+            jobSql.close();
+        }
+        //Test the outputs
+        Assert.assertEquals("3 files have been imported.", outputMap.get("literalDataOutput"));
+        Assert.assertTrue("The threads should not wait for the busy connections of the pool.",
+                System.currentTimeMillis() - start < WpsConnectionPool.DEFAULT_TIMEOUT);
+        Assert.assertEquals("The connections should be given back to the pool.", 3, pool.getIdleCount());
+        try (Connection poolConnection = pool.getConnection();
+             Statement poolStatement = poolConnection.createStatement()) {
+            for (String tableName : tableNames) {
+                ResultSet rs = poolStatement.executeQuery("SELECT COUNT(*) FROM " + tableName);
+                Assert.assertTrue(rs.next());
+                Assert.assertEquals(2, rs.getInt(1));
+                rs.close();
+            }
+        }
+        finally {
+            pool.close();
+        }
+    }
+}
@@ -137,6 +137,7 @@ public class ScriptTests {
         inputMap.put("geometricField", new String[]{"the_geom"});
         inputMap.put("bufferSize", 2.0d);
         inputMap.put("fieldList", new String[]{"id"});
+        inputMap.put("keyField", new String[]{"id"});
         inputMap.put("outputTableName", "buffer_table");
         Map<String, Object> propertyMap = new HashMap<>();
         propertyMap.put("sql", sql);
@@ -564,4 +565,55 @@ public class ScriptTests {
         Assert.assertTrue(rs.getDouble(2)<1);
         rs.close();
     }
+
+    @Test
+    public void testShapeIndices1() throws Exception {
+        String scriptPath = WPSScriptExecute.class.getResource("scripts/Indices/shapeIndices.groovy").getPath();
+        //Prepare input and output values
+        Map<String, Object> inputMap = new HashMap<>();
+        inputMap.put("inputTable", "geomForms");
+        inputMap.put("geometryColumn", new String[]{"the_geom"});
+        inputMap.put("idField", new String[]{"id"});
+        inputMap.put("operations", new String[]{"gravelius", "miller", "morton", "concavity", "formfactor",
+                "shapeindex", "perimeterarearatio", "fractaldim", "maindirection", "equalarearadius"});
+        inputMap.put("dropTable", true);
+        inputMap.put("outputTableName", "geomForms_res");
+        Map<String, Object> propertyMap = new HashMap<>();
+        propertyMap.put("sql", sql);
+        //Add model
+        st.execute("drop table if exists geomForms; create table geomForms (the_geom polygon, id int); "
+                + "INSERT INTO geomForms VALUES(ST_GeomFromText('POLYGON ((100 300, 200 300, 200 200, 100 200, 100 300))'), 1)"
+                + ",(ST_GeomFromText('POLYGON ((100 320, 100 120, 400 120, 400 320, 300 320, 300 200, 200 200, 200 320, 100 320))'), 2)");
+        //Execute
+        Map<String, Object> outputMap = WPSScriptExecute.run(groovyClassLoader, scriptPath, propertyMap, inputMap);
+        Assert.assertEquals("Process done",outputMap.get("literalOutput"));
+        ResultSet rs = st.executeQuery(
+                "SELECT * FROM geomForms_res ORDER BY id;");
+        assertTrue(rs.next());
+        //Square
+        Assert.assertEquals(1.12, rs.getDouble("gravelius"), 0.01);
+        Assert.assertEquals(0.78, rs.getDouble("miller"), 0.01);
+        Assert.assertEquals(0.63, rs.getDouble("morton"), 0.01);
+        Assert.assertEquals(1, rs.getDouble("concavityindice"), 0.01);
+        Assert.assertEquals(0.0625, rs.getDouble("formfactorindex"), 0.0001);
+        Assert.assertEquals(1, rs.getDouble("shapeindex"), 0.01);
+        Assert.assertEquals(0.04, rs.getDouble("perimeterarearatio"), 0.0001);
+        Assert.assertEquals(1.301, rs.getDouble("fractaldim"), 0.001);
+        Assert.assertEquals(56.4, rs.getDouble("radius"), 0.1);
+        assertTrue(rs.next());
+        //Polygon
+        Assert.assertTrue(rs.getDouble("concavityindice") < 1);
+        Assert.assertEquals(1.322, rs.getDouble("fractaldim"), 0.001);
+        //The smallest minimum bounding rectangle is 300 wide along the x axis
+        Assert.assertEquals(90, rs.getDouble("maindirectionsmbr"), 0.01);
+        rs.close();
+        //The equal area circle is centered on the centroid of the geometry
+        rs = st.executeQuery("SELECT ST_X(ST_CENTROID(circle)), ST_Y(ST_CENTROID(circle)), ST_AREA(circle) " +
+                "FROM geomForms_res WHERE id = 1;");
+        assertTrue(rs.next());
+        Assert.assertEquals(150, rs.getDouble(1), 0.01);
+        Assert.assertEquals(250, rs.getDouble(2), 0.01);
+        Assert.assertEquals(10000, rs.getDouble(3), 300);
+        rs.close();
+    }
 }
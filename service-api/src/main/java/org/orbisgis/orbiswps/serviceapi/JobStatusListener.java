@@ -0,0 +1,64 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.serviceapi;
+
+import org.orbisgis.orbiswps.serviceapi.process.WpsJob;
+
+/**
+ * Interface defining the method called by the WpsServer when the status of a job changes, so the clients can be
+ * notified without polling the server with GetStatus requests.
+ *
+ * The method is not called from a single thread : the changes of progress are notified from the progress notifier
+ * thread of the job, the changes of state from the thread running the job, or from the thread cancelling it, and a
+ * listener registered on a finished job is called from the registering thread. The calls for a job may so be
+ * concurrent and the listener should be thread safe. It should also return quickly, as it delays the next
+ * notifications of the job.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public interface JobStatusListener {
+
+    /**
+     * Action to do when the state or the progress of a job has changed. Once the job is finished, the listener is
+     * called a last time and then unregistered.
+     * @param job Job which status has changed.
+     */
+    void onJobStatusChanged(WpsJob job);
+}
@@ -45,7 +45,9 @@ import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
+import java.nio.channels.WritableByteChannel;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * A WPS Service provides access to simple or complex computational processing services.
@@ -63,6 +65,26 @@ public interface WpsServer {
      */
     OutputStream callOperation(InputStream xml);
 
+    /**
+     * Ask the WPS Server to execute the operation contained in the xml argument and writes the xml answer directly into
+     * the given OutputStream, without buffering the whole answer. The stream is not closed.
+     *
+     * @param xml Xml containing the operation to execute.
+     * @param out OutputStream where the xml answer is written.
+     * @return True if an answer has been written, false if the xml can't be parsed or the answer can't be written.
+     */
+    boolean callOperation(InputStream xml, OutputStream out);
+
+    /**
+     * Ask the WPS Server to execute the operation contained in the xml argument and writes the xml answer directly into
+     * the given channel, without buffering the whole answer. The channel is not closed.
+     *
+     * @param xml Xml containing the operation to execute.
+     * @param channel WritableByteChannel where the xml answer is written.
+     * @return True if an answer has been written, false if the xml can't be parsed or the answer can't be written.
+     */
+    boolean callOperation(InputStream xml, WritableByteChannel channel);
+
     /**
      * Add a local groovy file or directory of processes to the wps service.
      * @param f  File object to add to the service.
@@ -87,4 +109,20 @@ public interface WpsServer {
      * @param wpsServerListener WpsServerListener to unregister.
      */
     void removeWpsServerListener(WpsServerListener wpsServerListener);
+
+    /**
+     * Registers a JobStatusListener notified on each change of the state or the progress of the given job. If the job
+     * is already finished, the listener is called immediately. Only the jobs executed by this server can be followed.
+     * @param jobId Id of the job to follow.
+     * @param jobStatusListener JobStatusListener to register.
+     * @return True if the listener has been registered, false if the job is unknown or is executed by another server.
+     */
+    boolean addJobStatusListener(UUID jobId, JobStatusListener jobStatusListener);
+
+    /**
+     * Unregisters a JobStatusListener.
+     * @param jobId Id of the followed job.
+     * @param jobStatusListener JobStatusListener to unregister.
+     */
+    void removeJobStatusListener(UUID jobId, JobStatusListener jobStatusListener);
 }
@@ -0,0 +1,105 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.serviceapi.process;
+
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener.LogType;
+
+/**
+ * Log message of a job. The entries of a job are numbered in their order of creation, starting from 1.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public final class JobLogEntry {
+
+    /** Sequence number of the entry. */
+    private final long sequence;
+    /** Time of the entry in milliseconds. */
+    private final long time;
+    /** Type of the log. */
+    private final LogType logType;
+    /** Message of the log. */
+    private final String message;
+
+    /**
+     * Main constructor.
+     * @param sequence Sequence number of the entry.
+     * @param time Time of the entry in milliseconds.
+     * @param logType Type of the log.
+     * @param message Message of the log.
+     */
+    public JobLogEntry(long sequence, long time, LogType logType, String message){
+        this.sequence = sequence;
+        this.time = time;
+        this.logType = logType;
+        this.message = message;
+    }
+
+    /**
+     * Returns the sequence number of the entry.
+     * @return The sequence number.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Returns the time of the entry in milliseconds.
+     * @return The time of the entry.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the type of the log.
+     * @return The log type.
+     */
+    public LogType getLogType() {
+        return logType;
+    }
+
+    /**
+     * Returns the message of the log.
+     * @return The message.
+     */
+    public String getMessage() {
+        return message;
+    }
+}
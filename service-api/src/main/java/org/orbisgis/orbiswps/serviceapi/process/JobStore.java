@@ -0,0 +1,121 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.serviceapi.process;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Store of the jobs of a WPS server.
+ * The store is responsible of keeping the jobs until their results expire and of freeing them after. An
+ * implementation may persist the jobs, so they can be read back after a restart or by another server sharing the
+ * same storage.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public interface JobStore {
+
+    /**
+     * Adds a new job to the store.
+     *
+     * @param job Job to add.
+     * @return True if the job has been added, false if the store is full.
+     */
+    boolean put(WpsJob job);
+
+    /**
+     * Returns the job with the given id.
+     *
+     * @param jobId Id of the job.
+     * @return The job, or null if there is no job with this id or if it has expired.
+     */
+    WpsJob get(UUID jobId);
+
+    /**
+     * Removes the job with the given id and frees its data.
+     *
+     * @param jobId Id of the job.
+     */
+    void remove(UUID jobId);
+
+    /**
+     * Schedules the destruction of the job with the given id at the given date. The job is kept at least until its
+     * normal expiration.
+     *
+     * @param jobId Id of the job.
+     * @param date Time in milliseconds when the job should be destroyed.
+     */
+    void scheduleDestroying(UUID jobId, long date);
+
+    /**
+     * Removes all the expired jobs and frees their data.
+     */
+    void removeExpiredJobs();
+
+    /**
+     * Returns the number of stored jobs.
+     * @return The number of stored jobs.
+     */
+    int size();
+
+    /**
+     * Returns the number of jobs removed because they have expired.
+     * @return The number of expired jobs.
+     */
+    long getExpiredJobCount();
+
+    /**
+     * Returns the number of jobs evicted to make room for a new one.
+     * @return The number of evicted jobs.
+     */
+    long getEvictedJobCount();
+
+    /**
+     * Returns the jobs held in memory by the store which have not expired. Those jobs are moved into the new store
+     * when the store is replaced.
+     * @return The list of the jobs held in memory.
+     */
+    List<WpsJob> getLocalJobs();
+
+    /**
+     * Stops the background tasks of the store.
+     */
+    void shutdown();
+}
@@ -123,4 +123,61 @@ public interface ProcessMetadata {
     public enum EXECUTION_MODE{PARALLEL_EXECUTION}
     public static final String EXECUTION_MODE_NAME = "EXECUTION_MODE";
 
+    /**
+     * The concurrency metadata. They limit the number of instances of a process running at the same time. They are
+     * set from the 'concurrencyGroup' and 'maxParallel' attributes of the process annotation.
+     *
+     * Metadata meaning :
+     *
+     *  - CONCURRENCY_GROUP : Name of the group of the process. The processes of a same group share the same limit of
+     *    running instances. If not set, the process is its own group.
+     *  - MAX_PARALLEL : Maximum number of running instances of the process group. If the processes of a group declare
+     *    different values, the lowest one is applied to the whole group.
+     *
+     * Usage example :
+     * @ Process(
+     *      ...
+     *      concurrencyGroup = "graph",
+     *      maxParallel = 1
+     *      ...
+     * )
+     */
+    public static final String CONCURRENCY_GROUP_NAME = "CONCURRENCY_GROUP";
+    public static final String MAX_PARALLEL_NAME = "MAX_PARALLEL";
+
+    /**
+     * The result cache metadata. They allow the server to return the cached outputs of a previous execution with the
+     * same inputs instead of running the process again. They are set from the 'cacheable' and 'deterministic'
+     * attributes of the process annotation.
+     *
+     * Metadata meaning :
+     *
+     *  - CACHEABLE : 'true' if the outputs of the process can be cached.
+     *  - DETERMINISTIC : 'false' if the process may give different outputs for the same inputs. Such a process is
+     *    never cached.
+     *
+     * Usage example :
+     * @ Process(
+     *      ...
+     *      cacheable = true
+     *      ...
+     * )
+     */
+    public static final String CACHEABLE_NAME = "CACHEABLE";
+    public static final String DETERMINISTIC_NAME = "DETERMINISTIC";
+
+    /**
+     * The transaction metadata. If its value is 'true', all the database queries of the process are run in a single
+     * transaction which is committed once the process has succeeded and rolled back if it fails. It is set from the
+     * 'transactional' attribute of the process annotation.
+     *
+     * Usage example :
+     * @ Process(
+     *      ...
+     *      transactional = true
+     *      ...
+     * )
+     */
+    public static final String TRANSACTIONAL_NAME = "TRANSACTIONAL";
+
 }
@@ -0,0 +1,123 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.serviceapi.process;
+
+import net.opengis.wps._2_0.ProcessDescriptionType;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Server-side object created by a processing service in response for a particular process execution.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public interface WpsJob extends ProcessExecutionListener {
+
+    /**
+     * Returns the job id.
+     * @return the job id.
+     */
+    UUID getId();
+
+    /**
+     * Returns the description of the executed process.
+     * @return The process description.
+     */
+    ProcessDescriptionType getProcess();
+
+    /**
+     * Returns the process state.
+     * @return The process state.
+     */
+    ProcessState getState();
+
+    /**
+     * Returns the job progress, between 0 and 100 included.
+     * @return The job progress.
+     */
+    int getProgress();
+
+    /**
+     * Returns the start time.
+     * @return The start time, or -1 if the process has not started.
+     */
+    long getStartTime();
+
+    /**
+     * Returns the end time.
+     * @return The end time, or -1 if the process is not finished.
+     */
+    long getEndTime();
+
+    /**
+     * Returns true if the process is finished, successfully or not.
+     * @return True if the process is finished, false otherwise.
+     */
+    boolean isFinished();
+
+    /**
+     * Returns the map of the input and output data of the process execution.
+     * @return The data map.
+     */
+    Map<URI, Object> getDataMap();
+
+    /**
+     * Returns the log entries of the job created after the entry with the given sequence number, in their order of
+     * creation. Only the most recent entries are kept by the job.
+     * @param sequence Sequence number of the last entry already read, 0 to get all the kept entries.
+     * @return The list of the log entries.
+     */
+    List<JobLogEntry> getLogs(long sequence);
+
+    /**
+     * Returns the sequence number of the last log entry of the job.
+     * @return The last sequence number, 0 if there is no log entry.
+     */
+    long getLastLogSequence();
+
+    /**
+     * Returns the delay before the next status polling of the client, in milliseconds.
+     * @return The process polling time.
+     */
+    long getProcessPollingTime();
+}
@@ -45,13 +45,21 @@ import org.orbisgis.orbiswps.service.operations.WPS_1_0_0_OperationsImpl;
 import org.orbisgis.orbiswps.service.operations.WPS_2_0_OperationsImpl;
 import org.orbisgis.orbiswps.serviceapi.operations.WPS_1_0_0_Operations;
 import org.orbisgis.orbiswps.serviceapi.operations.WPS_2_0_Operations;
+import org.orbisgis.orbiswps.serviceapi.process.JobStore;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
+import org.orbisgis.orbiswps.serviceapi.process.WpsJob;
 import org.orbisgis.orbiswps.serviceapi.WpsServerListener;
 import org.orbisgis.orbiswps.serviceapi.*;
+import org.orbisgis.orbiswps.service.process.ExecuteResultCache;
+import org.orbisgis.orbiswps.service.process.JobScheduler;
+import org.orbisgis.orbiswps.service.process.InMemoryJobStore;
+import org.orbisgis.orbiswps.service.process.JdbcJobStore;
 import org.orbisgis.orbiswps.service.process.ProcessManager;
+import org.orbisgis.orbiswps.service.process.ProcessTranslator;
 import org.orbisgis.orbiswps.service.utils.Job;
 import org.orbisgis.orbiswps.service.process.ProcessWorker;
 import org.orbisgis.orbiswps.service.model.JaxbContainer;
+import org.orbisgis.orbiswps.service.model.MarshallerPool;
 import org.orbisgis.orbiswps.service.operations.WpsServerProperties_1_0_0;
 import org.orbisgis.orbiswps.service.operations.WpsServerProperties_2_0;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata;
@@ -70,9 +78,14 @@ import javax.xml.datatype.XMLGregorianCalendar;
 import java.io.*;
 import java.net.URI;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * This class is an implementation of a WPS server.
@@ -90,21 +103,36 @@ public class WpsServerImpl implements WpsServer {
 
     /** Process manager which contains all the loaded scripts. */
     private ProcessManager processManager;
-    /** ExecutorService of OrbisGIS */
-    private ExecutorService executorService;
-    /** True if a process is running, false otherwise. */
-    private boolean processRunning = false;
-    /** FIFO list of ProcessWorker, it is used to run the processes one by one in the good order. */
-    private LinkedList<ProcessWorker> workerFIFO;
+    /** Scheduler running the ProcessWorker with a limited number of concurrent slots. */
+    private JobScheduler jobScheduler;
+    /** Store of the jobs, removing the expired ones. */
+    private volatile JobStore jobStore;
+    /** Custom properties of the server, used to create the JobStore. */
+    private WpsServerProperties_2_0.CustomProperties customProperties;
     /** List of OrbisGISWpsServerListener. */
-    private List<WpsServerListener> wpsServerListenerList = new ArrayList<>();
+    private List<WpsServerListener> wpsServerListenerList = new CopyOnWriteArrayList<>();
     /** Class execution the WPS 2.0 operations. */
     private WPS_2_0_Operations wps20Operations;
     /** Class execution the WPS 1.0.0 operations. */
     private WPS_1_0_0_Operations wps100Operations;
-
-    private Map<UUID, Future> workerMap = new HashMap<>();
-
+    /** Pool of the JAXB Marshaller and Unmarshaller used to read the requests and write the answers. */
+    private MarshallerPool marshallerPool;
+    /** Languages supported by the server, used to precompute the translations of the processes. */
+    private String[] supportedLanguages;
+    /** Cache of the execution results of the cacheable processes, null if the cache is disabled. */
+    private ExecuteResultCache executeResultCache;
+    /**
+     * Executor delivering the progress events of the jobs. Each job notifying its progression uses its own thread, so
+     * a slow listener only delays the events of its job. It is shut down with the server.
+     */
+    private final ExecutorService progressNotifier = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "WpsProgressNotifier");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
 
     /**********************************************/
     /** Initialisation method of the WPS service **/
@@ -114,13 +142,7 @@ public class WpsServerImpl implements WpsServer {
      * EmptyConstructor which load all its properties from the resource WpsServer properties file.
      */
     public WpsServerImpl(){
-        //Creates the attribute for the processes execution
-        processManager = new ProcessManager(null, this);
-        workerFIFO = new LinkedList<>();
-        WpsServerProperties_2_0 props20 = new WpsServerProperties_2_0(null);
-        wps20Operations = new WPS_2_0_OperationsImpl(this, props20, processManager);
-        WpsServerProperties_1_0_0 props100 = new WpsServerProperties_1_0_0(null);
-        wps100Operations = new WPS_1_0_0_OperationsImpl(this, props100, processManager);
+        init(null, null, null);
     }
 
     /**
@@ -129,14 +151,7 @@ public class WpsServerImpl implements WpsServer {
      * @param dataSource DataSource to be used by the server.
      */
     public WpsServerImpl(DataSource dataSource, ExecutorService executorService){
-        this.executorService = executorService;
-        //Creates the attribute for the processes execution
-        processManager = new ProcessManager(dataSource, this);
-        workerFIFO = new LinkedList<>();
-        WpsServerProperties_2_0 props20 = new WpsServerProperties_2_0(null);
-        wps20Operations = new WPS_2_0_OperationsImpl(this, props20, processManager);
-        WpsServerProperties_1_0_0 props100 = new WpsServerProperties_1_0_0(null);
-        wps100Operations = new WPS_1_0_0_OperationsImpl(this, props100, processManager);
+        init(dataSource, null, executorService);
     }
 
     /**
@@ -146,11 +161,31 @@ public class WpsServerImpl implements WpsServer {
      * @param propertyFileLocation Location of the property file of the Server.
      */
     public WpsServerImpl(DataSource dataSource, String propertyFileLocation, ExecutorService executorService){
-        this.executorService = executorService;
-        //Creates the attribute for the processes execution
+        init(dataSource, propertyFileLocation, executorService);
+    }
+
+    /**
+     * Creates the attributes of the server used for the processes execution, shared by the constructors.
+     *
+     * @param dataSource DataSource to be used by the server, can be null.
+     * @param propertyFileLocation Location of the property file of the Server, null to use the resource one.
+     * @param executorService ExecutorService running the jobs, can be null until it is set.
+     */
+    private void init(DataSource dataSource, String propertyFileLocation, ExecutorService executorService){
         processManager = new ProcessManager(dataSource, this);
-        workerFIFO = new LinkedList<>();
         WpsServerProperties_2_0 props20 = new WpsServerProperties_2_0(propertyFileLocation);
+        jobScheduler = new JobScheduler(executorService, props20.CUSTOM_PROPERTIES.MAX_RUNNING_JOBS,
+                props20.CUSTOM_PROPERTIES.MAX_QUEUED_JOBS);
+        processManager.setScriptCacheDirectory(props20.CUSTOM_PROPERTIES.SCRIPT_CACHE_DIRECTORY);
+        processManager.setConnectionPoolSize(props20.CUSTOM_PROPERTIES.CONNECTION_POOL_SIZE);
+        customProperties = props20.CUSTOM_PROPERTIES;
+        jobStore = createJobStore(dataSource);
+        supportedLanguages = props20.GLOBAL_PROPERTIES.SUPPORTED_LANGUAGES;
+        if(props20.CUSTOM_PROPERTIES.EXECUTE_CACHE_SIZE > 0) {
+            executeResultCache = new ExecuteResultCache(props20.CUSTOM_PROPERTIES.EXECUTE_CACHE_SIZE);
+        }
+        marshallerPool = new MarshallerPool(JaxbContainer.JAXBCONTEXT, Runtime.getRuntime().availableProcessors(),
+                props20.CUSTOM_PROPERTIES.FORMATTED_OUTPUT);
         wps20Operations = new WPS_2_0_OperationsImpl(this, props20, processManager);
         WpsServerProperties_1_0_0 props100 = new WpsServerProperties_1_0_0(propertyFileLocation);
         wps100Operations = new WPS_1_0_0_OperationsImpl(this, props100, processManager);
@@ -159,28 +194,63 @@ public class WpsServerImpl implements WpsServer {
     @Reference
     public void setDataSource(DataSource dataSource) {
         processManager.setDataSource(dataSource);
+        replaceJobStore(dataSource);
     }
     public void unsetDataSource(DataSource dataSource) {
         processManager.setDataSource(null);
+        replaceJobStore(null);
+    }
+
+    /**
+     * Creates the JobStore configured by the JOB_STORE property. The jobs are kept in memory if the JDBC store is not
+     * configured or if there is no DataSource.
+     * @param dataSource DataSource of the server, can be null.
+     * @return The JobStore.
+     */
+    private JobStore createJobStore(DataSource dataSource){
+        if("jdbc".equals(customProperties.JOB_STORE) && dataSource != null){
+            return new JdbcJobStore(dataSource, processManager, customProperties.MAX_STORED_JOBS,
+                    customProperties.getDestroyDelayInMillis(), customProperties.MAX_PROCESS_POLLING_DELAY,
+                    customProperties.BASE_PROCESS_POLLING_DELAY);
+        }
+        return new InMemoryJobStore(customProperties.MAX_STORED_JOBS, customProperties.getDestroyDelayInMillis());
+    }
+
+    /**
+     * Replaces the JobStore after a change of DataSource if the jobs are stored in the database. The jobs held in
+     * memory by the old store are moved into the new one before the old store is shut down, so the running and
+     * the finished jobs of this server stay available.
+     * @param dataSource New DataSource of the server, can be null.
+     */
+    private void replaceJobStore(DataSource dataSource){
+        if("jdbc".equals(customProperties.JOB_STORE)){
+            JobStore oldJobStore = jobStore;
+            jobStore = createJobStore(dataSource);
+            for(WpsJob job : oldJobStore.getLocalJobs()){
+                if(!jobStore.put(job)){
+                    LOGGER.warn(I18N.tr("The job {0} can't be moved into the new job store.", job.getId()));
+                }
+            }
+            oldJobStore.shutdown();
+        }
     }
 
     @Reference
     public void setExecutorService(ExecutorService executorService) {
-        this.executorService = executorService;
+        jobScheduler.setExecutorService(executorService);
     }
     public void unsetExecutorService(ExecutorService executorService) {
-        this.executorService = null;
+        jobScheduler.setExecutorService(null);
     }
 
     @Reference(cardinality = ReferenceCardinality.MULTIPLE, policy = ReferencePolicy.DYNAMIC)
     public void addWpsScriptBundle(WpsScriptBundle wpsScriptBundle) {
-        List<URL> scriptList = wpsScriptBundle.getScriptsList();
-        for(URL url : scriptList) {
-            ProcessIdentifier pi = this.processManager.addScript(url);
-            if(pi != null && pi.getProcessOffering() != null) {
+        List<ProcessIdentifier> piList = this.processManager.addScripts(wpsScriptBundle.getScriptsList());
+        for(ProcessIdentifier pi : piList) {
+            if(pi.getProcessOffering() != null) {
                 pi.setI18n(wpsScriptBundle.getI18n());
                 pi.setProperties(wpsScriptBundle.getGroovyProperties());
-                Map<ProcessMetadata.INTERNAL_METADATA, Object> map = wpsScriptBundle.getScriptMetadata(url);
+                Map<ProcessMetadata.INTERNAL_METADATA, Object> map = wpsScriptBundle.getScriptMetadata(pi.getSourceUrl());
                 for (Map.Entry<ProcessMetadata.INTERNAL_METADATA, Object> entry : map.entrySet()) {
                     MetadataType metadataType = new MetadataType();
                     metadataType.setRole(entry.getKey().name());
@@ -201,6 +271,7 @@ public class WpsServerImpl implements WpsServer {
                     }
                     pi.getProcessDescriptionType().getMetadata().add(metadataType);
                 }
+                ProcessTranslator.precomputeTranslations(pi, supportedLanguages);
             }
         }
         for(WpsServerListener listener : wpsServerListenerList){
@@ -213,7 +284,7 @@ public class WpsServerImpl implements WpsServer {
             this.processManager.removeProcess(url);
         }
         for(WpsServerListener listener : wpsServerListenerList){
-            listener.onScriptAdd();
+            listener.onScriptRemoved();
         }
     }
 
@@ -223,18 +294,64 @@ public class WpsServerImpl implements WpsServer {
     @Activate
     public void activate(){}
 
+    /**
+     * Method called on bundle deactivation.
+     */
+    @Deactivate
+    public void deactivate(){
+        jobStore.shutdown();
+        progressNotifier.shutdownNow();
+    }
+
     /*******************************************************************/
     /** Methods from the WpsService interface.                        **/
     /*******************************************************************/
 
     @Override
     public OutputStream callOperation(InputStream xml) {
+        //Write the request answer in an ByteArrayOutputStream
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        callOperation(xml, out);
+        return out;
+    }
+
+    @Override
+    public boolean callOperation(InputStream xml, OutputStream out) {
+        Object result = executeOperation(xml);
+        if(result == null){
+            return false;
+        }
+        try {
+            //Marshall the WpsService answer directly into the given stream
+            Marshaller marshaller = marshallerPool.borrowMarshaller();
+            marshaller.marshal(result, out);
+            marshallerPool.returnMarshaller(marshaller);
+            return true;
+        } catch (JAXBException e) {
+            LOGGER.error(I18N.tr("Unable to parse the outcoming xml.\nCause : {0}.", e.getMessage()));
+            return false;
+        }
+    }
+
+    @Override
+    public boolean callOperation(InputStream xml, WritableByteChannel channel) {
+        return callOperation(xml, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Unmarshalls the operation contained in the given xml and executes it.
+     * @param xml Xml containing the operation to execute.
+     * @return The answer of the operation to marshall, or null if the xml can't be parsed or if the operation is not
+     * supported.
+     */
+    private Object executeOperation(InputStream xml) {
         Object result = null;
         net.opengis.wps._2_0.ObjectFactory factory20 = new net.opengis.wps._2_0.ObjectFactory();
         net.opengis.wps._1_0_0.ObjectFactory factory100 = new net.opengis.wps._1_0_0.ObjectFactory();
         try {
-            Unmarshaller unmarshaller = JaxbContainer.JAXBCONTEXT.createUnmarshaller();
+            Unmarshaller unmarshaller = marshallerPool.borrowUnmarshaller();
             Object o = unmarshaller.unmarshal(xml);
+            marshallerPool.returnUnmarshaller(unmarshaller);
             if(o instanceof JAXBElement){
                 o = ((JAXBElement) o).getValue();
             }
@@ -280,21 +397,9 @@ public class WpsServerImpl implements WpsServer {
             }
         } catch (JAXBException e) {
             LOGGER.error(I18N.tr("Unable to parse the incoming xml.\nCause : {0}.", e.getMessage()));
-            return new ByteArrayOutputStream();
-        }
-        //Write the request answer in an ByteArrayOutputStream
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        if(result != null){
-            try {
-                //Marshall the WpsService answer
-                Marshaller marshaller = JaxbContainer.JAXBCONTEXT.createMarshaller();
-                marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-                marshaller.marshal(result, out);
-            } catch (JAXBException e) {
-                LOGGER.error(I18N.tr("Unable to parse the outcoming xml.\nCause : {0}.", e.getMessage()));
-            }
+            return null;
         }
-        return out;
+        return result;
     }
 
     /************************/
@@ -313,6 +418,9 @@ public class WpsServerImpl implements WpsServer {
         else if(f.isDirectory()){
             piList.addAll(this.processManager.addLocalSource(f.toURI()));
         }
+        for(ProcessIdentifier pi : piList){
+            ProcessTranslator.precomputeTranslations(pi, supportedLanguages);
+        }
         for(WpsServerListener listener : wpsServerListenerList){
             listener.onScriptAdd();
         }
@@ -342,73 +450,70 @@ public class WpsServerImpl implements WpsServer {
         this.wpsServerListenerList.remove(wpsServerListener);
     }
 
+    @Override
+    public boolean addJobStatusListener(UUID jobId, JobStatusListener jobStatusListener) {
+        WpsJob job = jobStore.get(jobId);
+        return job instanceof Job && ((Job) job).addStatusListener(jobStatusListener);
+    }
+
+    @Override
+    public void removeJobStatusListener(UUID jobId, JobStatusListener jobStatusListener) {
+        WpsJob job = jobStore.get(jobId);
+        if(job instanceof Job) {
+            ((Job) job).removeStatusListener(jobStatusListener);
+        }
+    }
+
     /**
-     * Schedule the destroying of a generated result at the given date.
-     * @param resultUri Uri of the result to destroy.
-     * @param date Date when the result should be destroyed.
+     * Schedule the destroying of the results of a job at the given date.
+     * @param jobId Id of the job which results should be destroyed.
+     * @param date Date when the results should be destroyed.
      */
-    public void scheduleResultDestroying(URI resultUri, XMLGregorianCalendar date){
-        //To be implemented
+    public void scheduleResultDestroying(UUID jobId, XMLGregorianCalendar date){
+        if(date != null) {
+            jobStore.scheduleDestroying(jobId, date.toGregorianCalendar().getTimeInMillis());
+        }
     }
 
     /**
-     * Indicates if a process is actually running.
-     * @return True if a process is running, false otherwise.
+     * Returns the store of the jobs of the server.
+     * @return The JobStore.
      */
-    public Future executeNewProcessWorker(Job job, ProcessIdentifier processIdentifier, Map<URI, Object> dataMap){
-        ProcessWorker worker = new ProcessWorker(job, processIdentifier, processManager, dataMap, this);
+    public JobStore getJobStore(){
+        return jobStore;
+    }
 
-        if(processRunning){
-            workerFIFO.push(worker);
-        }
-        else {
-            //Run the worker
-            processRunning = true;
-            if (executorService != null) {
-                Future future = executorService.submit(worker);
-                workerMap.put(worker.getJobId(), future);
-                return future;
-            } else {
-                worker.run();
-            }
-        }
-        return null;
+    /**
+     * Returns the cache of the execution results.
+     * @return The ExecuteResultCache, or null if the cache is disabled.
+     */
+    public ExecuteResultCache getExecuteResultCache(){
+        return executeResultCache;
     }
 
     /**
-     * Action done when a ProcessWorker has finished.
+     * Submit a new ProcessWorker to the JobScheduler. The process is run as soon as a running slot is free.
+     * @param job Job of the process execution.
+     * @param processIdentifier Identifier of the process to execute.
+     * @param dataMap Map containing the input and output data of the process.
+     * @return The Future of the process execution, or null if the server is too busy to accept the job.
      */
-    public void onProcessWorkerFinished(){
-        //clear the workerMap
-        List<UUID> toRemove = new ArrayList<>();
-        for(Map.Entry<UUID, Future> entry : workerMap.entrySet()){
-            if(entry.getValue().isDone()){
-                toRemove.add(entry.getKey());
-            }
-        }
-        for(UUID uuid : toRemove){
-            workerMap.remove(uuid);
-        }
-        processRunning = false;
-        //If other process are waiting, run them
-        if(!processRunning && workerFIFO.size()>0){
-            processRunning = true;
-            if (executorService != null) {
-                ProcessWorker processWorker = workerFIFO.pollFirst();
-                Future future = executorService.submit(processWorker);
-                workerMap.put(processWorker.getJobId(), future);
-            } else {
-                workerFIFO.pollFirst().run();
-            }
-        }
+    public Future executeNewProcessWorker(Job job, ProcessIdentifier processIdentifier, Map<URI, Object> dataMap){
+        ProcessWorker worker = new ProcessWorker(job, processIdentifier, processManager, dataMap,
+                customProperties.PROGRESS_NOTIFICATION_INTERVAL, customProperties.PROGRESS_NOTIFICATION_DELTA,
+                progressNotifier);
+        return jobScheduler.submit(worker);
     }
 
     /**
-     * Cancel the running process corresponding to the given URI.
+     * Cancel the queued or running process corresponding to the given job id. A queued job is removed from the
+     * scheduler and a running one is stopped, so its running slot is freed. Nothing is done for an unknown or finished
+     * job.
      * @param jobId Id of the job to cancel.
      */
     public void cancelProcess(UUID jobId){
-        processManager.cancelProcess(jobId);
-        workerMap.get(jobId).cancel(true);
+        if(!jobScheduler.cancel(jobId)) {
+            processManager.cancelProcess(jobId);
+        }
     }
 }
@@ -0,0 +1,158 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.model;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of JAXB Marshaller and Unmarshaller.
+ *
+ * The JAXB Marshaller and Unmarshaller are not thread safe but can be reused once released, so instead of creating
+ * them for each request they are borrowed from this pool and returned after use. The number of idle instances kept is
+ * bounded, the extra ones are simply dropped.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class MarshallerPool {
+
+    /** JAXB context used to create the Marshaller and Unmarshaller. */
+    private final JAXBContext context;
+    /** Maximum number of idle Marshaller and of idle Unmarshaller kept. */
+    private final int maxIdle;
+    /** True if the xml written by the Marshaller should be indented. */
+    private final boolean formattedOutput;
+    /** Idle Marshaller. */
+    private final Queue<Marshaller> marshallerQueue = new ConcurrentLinkedQueue<>();
+    /** Number of idle Marshaller. */
+    private final AtomicInteger marshallerCount = new AtomicInteger();
+    /** Idle Unmarshaller. */
+    private final Queue<Unmarshaller> unmarshallerQueue = new ConcurrentLinkedQueue<>();
+    /** Number of idle Unmarshaller. */
+    private final AtomicInteger unmarshallerCount = new AtomicInteger();
+
+    /**
+     * Main constructor.
+     * @param context JAXB context used to create the Marshaller and Unmarshaller.
+     * @param maxIdle Maximum number of idle Marshaller and of idle Unmarshaller kept.
+     * @param formattedOutput True if the xml written by the Marshaller should be indented, false for a compact one.
+     */
+    public MarshallerPool(JAXBContext context, int maxIdle, boolean formattedOutput){
+        this.context = context;
+        this.maxIdle = maxIdle;
+        this.formattedOutput = formattedOutput;
+    }
+
+    /**
+     * Returns true if the xml written by the Marshaller is indented.
+     * @return True if the xml is indented, false otherwise.
+     */
+    public boolean isFormattedOutput(){
+        return formattedOutput;
+    }
+
+    /**
+     * Borrows a Marshaller from the pool. It should be returned with {@link #returnMarshaller(Marshaller)} once used.
+     * @return A Marshaller.
+     * @throws JAXBException Exception thrown if a new Marshaller can not be created.
+     */
+    public Marshaller borrowMarshaller() throws JAXBException {
+        Marshaller marshaller = marshallerQueue.poll();
+        if(marshaller != null){
+            marshallerCount.decrementAndGet();
+            return marshaller;
+        }
+        marshaller = context.createMarshaller();
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, formattedOutput);
+        return marshaller;
+    }
+
+    /**
+     * Returns a Marshaller to the pool. It should not be used anymore by the caller.
+     * @param marshaller Marshaller borrowed with {@link #borrowMarshaller()}.
+     */
+    public void returnMarshaller(Marshaller marshaller){
+        if(marshaller == null){
+            return;
+        }
+        if(marshallerCount.incrementAndGet() <= maxIdle){
+            marshallerQueue.offer(marshaller);
+        }
+        else {
+            marshallerCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Borrows an Unmarshaller from the pool. It should be returned with {@link #returnUnmarshaller(Unmarshaller)} once
+     * used.
+     * @return An Unmarshaller.
+     * @throws JAXBException Exception thrown if a new Unmarshaller can not be created.
+     */
+    public Unmarshaller borrowUnmarshaller() throws JAXBException {
+        Unmarshaller unmarshaller = unmarshallerQueue.poll();
+        if(unmarshaller != null){
+            unmarshallerCount.decrementAndGet();
+            return unmarshaller;
+        }
+        return context.createUnmarshaller();
+    }
+
+    /**
+     * Returns an Unmarshaller to the pool. It should not be used anymore by the caller.
+     * @param unmarshaller Unmarshaller borrowed with {@link #borrowUnmarshaller()}.
+     */
+    public void returnUnmarshaller(Unmarshaller unmarshaller){
+        if(unmarshaller == null){
+            return;
+        }
+        if(unmarshallerCount.incrementAndGet() <= maxIdle){
+            unmarshallerQueue.offer(unmarshaller);
+        }
+        else {
+            unmarshallerCount.decrementAndGet();
+        }
+    }
+}
@@ -54,12 +54,15 @@ import net.opengis.wps._2_0.ComplexDataType;
 import net.opengis.wps._2_0.*;
 import org.orbisgis.orbiswps.service.WpsServerImpl;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
+import org.orbisgis.orbiswps.service.process.InMemoryJobStore;
 import org.orbisgis.orbiswps.service.process.ProcessManager;
 import org.orbisgis.orbiswps.service.utils.Job;
 import org.orbisgis.orbiswps.service.model.Enumeration;
 import org.orbisgis.orbiswps.service.model.*;
 import org.orbisgis.orbiswps.service.process.ProcessTranslator;
 import org.orbisgis.orbiswps.service.utils.WpsServerUtils;
+import org.orbisgis.orbiswps.serviceapi.WpsServerListener;
+import org.orbisgis.orbiswps.serviceapi.process.JobStore;
 import org.orbisgis.orbiswps.serviceapi.operations.WPS_1_0_0_Operations;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +73,7 @@ import javax.xml.datatype.XMLGregorianCalendar;
 import java.math.BigInteger;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
@@ -78,12 +82,12 @@ import java.util.concurrent.Future;
  *
  * @author Sylvain PALOMINOS
  */
-public class WPS_1_0_0_OperationsImpl implements WPS_1_0_0_Operations {
+public class WPS_1_0_0_OperationsImpl implements WPS_1_0_0_Operations, WpsServerListener {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(WPS_1_0_0_OperationsImpl.class);
 
-    /** Map containing the WPS Jobs and their UUID */
-    private Map<UUID, Job> jobMap;
+    /** Store containing the WPS Jobs and their UUID, used if there is no WpsServer */
+    private JobStore jobStore;
 
     /** Instance of the WpsServer. */
     private WpsServerImpl wpsServer;
@@ -93,13 +97,52 @@ public class WPS_1_0_0_OperationsImpl implements WPS_1_0_0_Operations {
 
     private ProcessManager processManager;
 
+    /** Cache of the capabilities by language, replaced when the process list changes. */
+    private volatile Map<String, WPSCapabilitiesType> capabilitiesCache = new ConcurrentHashMap<>();
+
     /** Main constructor */
     public WPS_1_0_0_OperationsImpl(WpsServerImpl wpsServer, WpsServerProperties_1_0_0 wpsProp,
                                     ProcessManager processManager){
         this.wpsProp = wpsProp;
         this.wpsServer = wpsServer;
         this.processManager = processManager;
-        jobMap = new HashMap<>();
+        if(wpsServer != null) {
+            wpsServer.addWpsServerListener(this);
+        }
+        else {
+            jobStore = new InMemoryJobStore(wpsProp.CUSTOM_PROPERTIES.MAX_STORED_JOBS, wpsProp.CUSTOM_PROPERTIES.getDestroyDelayInMillis());
+        }
+    }
+
+    @Override
+    public void onScriptAdd() {
+        capabilitiesCache = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void onScriptRemoved() {
+        capabilitiesCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the store of the jobs, which is the one of the WpsServer if it is set.
+     * @return The JobStore.
+     */
+    private JobStore getJobStore(){
+        return wpsServer != null ? wpsServer.getJobStore() : jobStore;
+    }
+
+    /**
+     * Returns the ExceptionReport answered when the server is too busy to accept and queue a request.
+     * @return The ServerBusy ExceptionReport.
+     */
+    private static ExceptionReport getServerBusyReport(){
+        ExceptionType exceptionType = new ExceptionType();
+        exceptionType.setExceptionCode("ServerBusy");
+        exceptionType.getExceptionText().add("The server is too busy to accept and queue the request at this time.");
+        ExceptionReport exceptionReport = new ExceptionReport();
+        exceptionReport.getException().add(exceptionType);
+        return exceptionReport;
     }
 
     @Override
@@ -178,8 +221,22 @@ public class WPS_1_0_0_OperationsImpl implements WPS_1_0_0_Operations {
             }
         }
 
-        getCapabilities.getLanguage();
+        //The cache is read once, so a capabilities built during a process list change is stored in the replaced cache
+        Map<String, WPSCapabilitiesType> cache = capabilitiesCache;
+        WPSCapabilitiesType wpsCapabilitiesType = cache.get(requestLanguage);
+        if(wpsCapabilitiesType == null){
+            wpsCapabilitiesType = buildCapabilities(requestLanguage);
+            cache.put(requestLanguage, wpsCapabilitiesType);
+        }
+        return wpsCapabilitiesType;
+    }
 
+    /**
+     * Builds the capabilities of the server.
+     * @param requestLanguage Language of the capabilities.
+     * @return The capabilities.
+     */
+    private WPSCapabilitiesType buildCapabilities(String requestLanguage){
         //Sets the WPSCapabilitiesType
         WPSCapabilitiesType wpsCapabilitiesType = new WPSCapabilitiesType();
 
@@ -335,10 +392,16 @@ public class WPS_1_0_0_OperationsImpl implements WPS_1_0_0_Operations {
         Job job = new Job(processIdentifier.getProcessDescriptionType(), jobId, dataMap,
                 wpsProp.CUSTOM_PROPERTIES.MAX_PROCESS_POLLING_DELAY,
                 wpsProp.CUSTOM_PROPERTIES.BASE_PROCESS_POLLING_DELAY);
-        jobMap.put(jobId, job);
+        if(!getJobStore().put(job)){
+            return getServerBusyReport();
+        }
 
         //Process execution in new thread
         Future future = wpsServer.executeNewProcessWorker(job, processIdentifier, dataMap);
+        if(future == null){
+            getJobStore().remove(jobId);
+            return getServerBusyReport();
+        }
 
         Object object = null;
 
@@ -359,16 +422,11 @@ public class WPS_1_0_0_OperationsImpl implements WPS_1_0_0_Operations {
                 }
                 if(contained) {
                     object = entry.getValue();
-                    //Sets and schedule the destroy date
-                    long destructionDelay = wpsProp.CUSTOM_PROPERTIES.getDestroyDelayInMillis();
-                    if(destructionDelay != 0) {
-                        wpsServer.scheduleResultDestroying(entry.getKey(),
-                                WpsServerUtils.getXMLGregorianCalendar(destructionDelay));
-                    }
                 }
             }
 
-            jobMap.remove(jobId);
+            //The raw data is returned only once, so the job is no longer needed
+            getJobStore().remove(jobId);
 
             return object;
         }
@@ -447,15 +505,15 @@ public class WPS_1_0_0_OperationsImpl implements WPS_1_0_0_Operations {
                             literalDataType.setDataType("string");
                             dataType.setLiteralData(literalDataType);
                             outputDataType.setData(dataType);
-                            //Sets and schedule the destroy date
-                            long destructionDelay = wpsProp.CUSTOM_PROPERTIES.getDestroyDelayInMillis();
-                            if(destructionDelay != 0) {
-                                wpsServer.scheduleResultDestroying(entry.getKey(),
-                                        WpsServerUtils.getXMLGregorianCalendar(destructionDelay));
-                            }
                         }
                     }
                     response.setProcessOutputs(processOutputs);
+                    //Sets and schedule the destroy date
+                    long destructionDelay = wpsProp.CUSTOM_PROPERTIES.getDestroyDelayInMillis();
+                    if(destructionDelay != 0) {
+                        wpsServer.scheduleResultDestroying(jobId,
+                                WpsServerUtils.getXMLGregorianCalendar(destructionDelay));
+                    }
                     break;
             }
             response.setStatus(status);
@@ -44,27 +44,42 @@ import net.opengis.wps._2_0.*;
 import net.opengis.wps._2_0.GetCapabilitiesType;
 import org.orbisgis.orbiswps.service.WpsServerImpl;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
+import org.orbisgis.orbiswps.service.process.ExecuteResultCache;
+import org.orbisgis.orbiswps.service.process.InMemoryJobStore;
 import org.orbisgis.orbiswps.service.process.ProcessManager;
 import org.orbisgis.orbiswps.service.utils.Job;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener;
 import org.orbisgis.orbiswps.service.process.ProcessTranslator;
 import org.orbisgis.orbiswps.service.utils.WpsServerUtils;
+import org.orbisgis.orbiswps.serviceapi.WpsServerListener;
+import org.orbisgis.orbiswps.serviceapi.process.JobStore;
+import org.orbisgis.orbiswps.serviceapi.process.WpsJob;
 import org.orbisgis.orbiswps.serviceapi.operations.WPS_2_0_Operations;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
 
 import javax.xml.datatype.XMLGregorianCalendar;
 import java.io.Serializable;
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementations of the WPS 2.0 operations.
  * 
  * @author Sylvain PALOMINOS
  */
-public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations {
+public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations, WpsServerListener {
 
-    /** Map containing the WPS Jobs and their UUID */
-    private Map<UUID, Job> jobMap;
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WPS_2_0_OperationsImpl.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(WPS_2_0_OperationsImpl.class);
+
+    /** Store containing the WPS Jobs and their UUID, used if there is no WpsServer */
+    private JobStore jobStore;
 
     /** Instance of the WpsServer. */
     private WpsServerImpl wpsServer;
@@ -74,13 +89,53 @@ public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations {
 
     private ProcessManager processManager;
 
+    /** Cache of the capabilities by language and requested sections, replaced when the process list changes. */
+    private volatile Map<String, WPSCapabilitiesType> capabilitiesCache = new ConcurrentHashMap<>();
+
     /** Main constructor */
     public WPS_2_0_OperationsImpl(WpsServerImpl wpsServer, WpsServerProperties_2_0 wpsProp,
                                   ProcessManager processManager){
         this.wpsServer = wpsServer;
         this.wpsProp = wpsProp;
         this.processManager = processManager;
-        jobMap = new HashMap<>();
+        if(wpsServer != null) {
+            wpsServer.addWpsServerListener(this);
+        }
+        else {
+            jobStore = new InMemoryJobStore(wpsProp.CUSTOM_PROPERTIES.MAX_STORED_JOBS,
+                    wpsProp.CUSTOM_PROPERTIES.getDestroyDelayInMillis());
+        }
+    }
+
+    @Override
+    public void onScriptAdd() {
+        capabilitiesCache = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void onScriptRemoved() {
+        capabilitiesCache = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Returns the store of the jobs, which is the one of the WpsServer if it is set.
+     * @return The JobStore.
+     */
+    private JobStore getJobStore(){
+        return wpsServer != null ? wpsServer.getJobStore() : jobStore;
+    }
+
+    /**
+     * Returns the ExceptionReport answered when the server is too busy to accept and queue a request.
+     * @return The ServerBusy ExceptionReport.
+     */
+    private static ExceptionReport getServerBusyReport(){
+        ExceptionType exceptionType = new ExceptionType();
+        exceptionType.setExceptionCode("ServerBusy");
+        exceptionType.getExceptionText().add("The server is too busy to accept and queue the request at this time.");
+        ExceptionReport exceptionReport = new ExceptionReport();
+        exceptionReport.getException().add(exceptionType);
+        return exceptionReport;
     }
 
     /** Enumeration of the section names. */
@@ -168,7 +223,8 @@ public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations {
                         String baseLanguage = language.substring(0, 2);
                         for (String serverLanguage : wpsProp.GLOBAL_PROPERTIES.SUPPORTED_LANGUAGES) {
                             if (serverLanguage.substring(0, 2).equals(baseLanguage)) {
-                                requestLanguage = language;
+                                //The server language is used so the cache only contains the supported languages
+                                requestLanguage = serverLanguage;
                                 languageFound = true;
                                 break;
                             }
@@ -191,6 +247,27 @@ public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations {
             }
         }
 
+        //The cache is read once, so a capabilities built during a process list change is stored in the replaced cache
+        Map<String, WPSCapabilitiesType> cache = capabilitiesCache;
+        //An empty Sections element gives an empty list, which EnumSet.copyOf() rejects
+        Set<SectionName> sectionSet = EnumSet.noneOf(SectionName.class);
+        sectionSet.addAll(requestedSections);
+        String cacheKey = requestLanguage + sectionSet;
+        WPSCapabilitiesType capabilitiesType = cache.get(cacheKey);
+        if(capabilitiesType == null){
+            capabilitiesType = buildCapabilities(requestLanguage, requestedSections);
+            cache.put(cacheKey, capabilitiesType);
+        }
+        return capabilitiesType;
+    }
+
+    /**
+     * Builds the capabilities of the server.
+     * @param requestLanguage Language of the capabilities.
+     * @param requestedSections Sections to include in the capabilities.
+     * @return The capabilities.
+     */
+    private WPSCapabilitiesType buildCapabilities(String requestLanguage, List<SectionName> requestedSections){
         /** Building of the WPSCapabilitiesTypeAnswer **/
 
         //Copy the content of the basicCapabilities into the new one
@@ -356,12 +433,37 @@ public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations {
         //Generate the processInstance
         Job job = new Job(processIdentifier.getProcessDescriptionType(), jobId, dataMap,
                 wpsProp.CUSTOM_PROPERTIES.MAX_PROCESS_POLLING_DELAY,
-                wpsProp.CUSTOM_PROPERTIES.BASE_PROCESS_POLLING_DELAY);
-        jobMap.put(jobId, job);
+                wpsProp.CUSTOM_PROPERTIES.BASE_PROCESS_POLLING_DELAY,
+                wpsProp.CUSTOM_PROPERTIES.MAX_JOB_LOG_ENTRIES);
+        //If the process is cacheable, look for the outputs of a previous execution with the same inputs
+        ExecuteResultCache executeResultCache = wpsServer != null ? wpsServer.getExecuteResultCache() : null;
+        String cacheKey = null;
+        if(executeResultCache != null) {
+            cacheKey = executeResultCache.getKey(processIdentifier, dataMap);
+            Map<URI, Object> cachedOutputMap = cacheKey != null ? executeResultCache.get(cacheKey) : null;
+            if (cachedOutputMap != null) {
+                dataMap.putAll(cachedOutputMap);
+                job.appendLog(ProcessExecutionListener.LogType.INFO,
+                        I18N.tr("The outputs are taken from the result cache."));
+                job.setProcessState(ProcessExecutionListener.ProcessState.SUCCEEDED);
+            }
+        }
+        if(!getJobStore().put(job)){
+            return getServerBusyReport();
+        }
         statusInfo.setStatus(job.getState().name());
+        if(job.isFinished()){
+            return statusInfo;
+        }
+        if(cacheKey != null){
+            job.addStatusListener(executeResultCache.getCachingListener(cacheKey));
+        }
 
         //Process execution in new thread
-        wpsServer.executeNewProcessWorker(job, processIdentifier, dataMap);
+        if(wpsServer.executeNewProcessWorker(job, processIdentifier, dataMap) == null){
+            getJobStore().remove(jobId);
+            return getServerBusyReport();
+        }
         //Return the StatusInfo to the user
         statusInfo.setStatus(job.getState().name());
         XMLGregorianCalendar date = WpsServerUtils.getXMLGregorianCalendar(job.getProcessPollingTime());
@@ -373,7 +475,11 @@ public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations {
     public StatusInfo getStatus(GetStatus getStatus) {
         //Get the job concerned by the getStatus request
         UUID jobId = UUID.fromString(getStatus.getJobID());
-        Job job = jobMap.get(jobId);
+        WpsJob job = getJobStore().get(jobId);
+        if(job == null){
+            LOGGER.error(I18N.tr("The job {0} does not exist or has expired.", jobId));
+            return null;
+        }
         //Generate the StatusInfo to return
         StatusInfo statusInfo = new StatusInfo();
         statusInfo.setJobID(jobId.toString());
@@ -402,7 +508,11 @@ public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations {
         result.setExpirationDate(WpsServerUtils.getXMLGregorianCalendar(destructionDelay));
         //Get the concerned Job
         UUID jobId = UUID.fromString(getResult.getJobID());
-        Job job = jobMap.get(jobId);
+        WpsJob job = getJobStore().get(jobId);
+        if(job == null){
+            LOGGER.error(I18N.tr("The job {0} does not exist or has expired.", jobId));
+            return null;
+        }
         result.setJobID(jobId.toString());
         //Get the list of outputs to transmit
         List<DataOutputType> listOutput = new ArrayList<>();
@@ -430,17 +540,18 @@ public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations {
                 data.getContent().addAll(serializableList);
                 output.setData(data);
                 listOutput.add(output);
-                //Sets and schedule the destroy date
-                if (destructionDelay != 0) {
-                    wpsServer.scheduleResultDestroying(entry.getKey(),
-                            WpsServerUtils.getXMLGregorianCalendar(destructionDelay));
-                }
             }
         }
         result.getOutput().clear();
         result.getOutput().addAll(listOutput);
 
-        jobMap.remove(jobId);
+        //Sets and schedule the destroy date, or remove the job if the results are never destroyed
+        if (destructionDelay != 0) {
+            wpsServer.scheduleResultDestroying(jobId, result.getExpirationDate());
+        }
+        else {
+            getJobStore().remove(jobId);
+        }
 
         return result;
     }
@@ -448,8 +559,14 @@ public class WPS_2_0_OperationsImpl implements WPS_2_0_Operations {
     @Override
     public StatusInfo dismiss(Dismiss dismiss) {
         UUID jobId = UUID.fromString(dismiss.getJobID());
-        wpsServer.cancelProcess(jobId);
-        Job job = jobMap.get(jobId);
+        if(wpsServer != null) {
+            wpsServer.cancelProcess(jobId);
+        }
+        WpsJob job = getJobStore().get(jobId);
+        if(job == null){
+            LOGGER.error(I18N.tr("The job {0} does not exist or has expired.", jobId));
+            return null;
+        }
         //Generate the StatusInfo to return
         StatusInfo statusInfo = new StatusInfo();
         statusInfo.setJobID(jobId.toString());
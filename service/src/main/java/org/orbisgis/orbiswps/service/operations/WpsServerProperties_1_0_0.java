@@ -466,6 +466,8 @@ public class WpsServerProperties_1_0_0 {
         public final boolean IS_STATUS_SUPPORTED;
         public final boolean IS_STORE_SUPPORTED;
         public final String MAXIMUM_MEGABYTES;
+        /** Maximum number of jobs kept by the server. */
+        public final int MAX_STORED_JOBS;
 
         /**
          * Properties which are not defined in the WPS standard.
@@ -478,6 +480,14 @@ public class WpsServerProperties_1_0_0 {
             IS_STATUS_SUPPORTED = Boolean.valueOf(properties.getProperty("IS_STATUS_SUPPORTED"));
             IS_STORE_SUPPORTED = Boolean.valueOf(properties.getProperty("MAX_PROCESS_POLLING_DELAY"));
             MAXIMUM_MEGABYTES = properties.getProperty("MAXIMUM_MEGABYTES");
+            //If not set, there is no limit
+            String maxStoredJobs = properties.getProperty("MAX_STORED_JOBS");
+            if(maxStoredJobs == null || maxStoredJobs.isEmpty()){
+                MAX_STORED_JOBS = Integer.MAX_VALUE;
+            }
+            else{
+                MAX_STORED_JOBS = Integer.decode(maxStoredJobs);
+            }
         }
 
         /**
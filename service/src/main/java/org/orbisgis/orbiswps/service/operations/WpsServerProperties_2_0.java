@@ -40,6 +40,8 @@
 package org.orbisgis.orbiswps.service.operations;
 
 import net.opengis.ows._2.*;
+import org.orbisgis.orbiswps.service.process.ProgressMonitor;
+import org.orbisgis.orbiswps.service.utils.JobLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
@@ -464,6 +466,28 @@ public class WpsServerProperties_2_0 {
 
         public final long BASE_PROCESS_POLLING_DELAY;
         public final long MAX_PROCESS_POLLING_DELAY;
+        /** Maximum number of processes running at the same time. */
+        public final int MAX_RUNNING_JOBS;
+        /** Maximum number of processes waiting for a free running slot. */
+        public final int MAX_QUEUED_JOBS;
+        /** Directory of the compiled script cache, null if the cache is disabled. */
+        public final File SCRIPT_CACHE_DIRECTORY;
+        /** True if the xml answers should be indented, false for a compact xml. */
+        public final boolean FORMATTED_OUTPUT;
+        /** Maximum number of jobs kept by the server. */
+        public final int MAX_STORED_JOBS;
+        /** Type of the job store, 'memory' or 'jdbc'. */
+        public final String JOB_STORE;
+        /** Maximum number of log entries kept for each job. */
+        public final int MAX_JOB_LOG_ENTRIES;
+        /** Minimum interval in milliseconds between two progress notifications of a job. */
+        public final long PROGRESS_NOTIFICATION_INTERVAL;
+        /** Minimum change of progression, between 0.0 and 1.0, triggering a progress notification of a job. */
+        public final double PROGRESS_NOTIFICATION_DELTA;
+        /** Maximum number of cached execution results, 0 if the cache is disabled. */
+        public final int EXECUTE_CACHE_SIZE;
+        /** Maximum number of connections of the built-in connection pool, 0 if the DataSource is used as it is. */
+        public final int CONNECTION_POOL_SIZE;
 
         /**
          * Properties which are not defined in the WPS standard.
@@ -473,6 +497,87 @@ public class WpsServerProperties_2_0 {
             destroyDelay = properties.getProperty("DESTROY_DURATION");
             BASE_PROCESS_POLLING_DELAY = Long.decode(properties.getProperty("BASE_PROCESS_POLLING_DELAY"));
             MAX_PROCESS_POLLING_DELAY = Long.decode(properties.getProperty("MAX_PROCESS_POLLING_DELAY"));
+            //If not set or lower than 1, use the number of available processors
+            String maxRunningJobs = properties.getProperty("MAX_RUNNING_JOBS");
+            if(maxRunningJobs == null || maxRunningJobs.isEmpty() || Integer.decode(maxRunningJobs) < 1){
+                MAX_RUNNING_JOBS = Runtime.getRuntime().availableProcessors();
+            }
+            else{
+                MAX_RUNNING_JOBS = Integer.decode(maxRunningJobs);
+            }
+            //If not set, there is no limit
+            String maxQueuedJobs = properties.getProperty("MAX_QUEUED_JOBS");
+            if(maxQueuedJobs == null || maxQueuedJobs.isEmpty()){
+                MAX_QUEUED_JOBS = Integer.MAX_VALUE;
+            }
+            else{
+                MAX_QUEUED_JOBS = Integer.decode(maxQueuedJobs);
+            }
+            //If not set, the scripts are compiled on each start
+            String scriptCacheDirectory = properties.getProperty("SCRIPT_CACHE_DIRECTORY");
+            if(scriptCacheDirectory == null || scriptCacheDirectory.isEmpty()){
+                SCRIPT_CACHE_DIRECTORY = null;
+            }
+            else{
+                SCRIPT_CACHE_DIRECTORY = new File(scriptCacheDirectory);
+            }
+            //If not set, the answers are compact
+            FORMATTED_OUTPUT = Boolean.parseBoolean(properties.getProperty("FORMATTED_OUTPUT"));
+            //If not set, there is no limit
+            String maxStoredJobs = properties.getProperty("MAX_STORED_JOBS");
+            if(maxStoredJobs == null || maxStoredJobs.isEmpty()){
+                MAX_STORED_JOBS = Integer.MAX_VALUE;
+            }
+            else{
+                MAX_STORED_JOBS = Integer.decode(maxStoredJobs);
+            }
+            //If not set, the jobs are kept in memory
+            String jobStore = properties.getProperty("JOB_STORE");
+            if(jobStore == null || jobStore.isEmpty()){
+                JOB_STORE = "memory";
+            }
+            else{
+                JOB_STORE = jobStore.trim().toLowerCase();
+            }
+            //If not set, use the default capacity of the JobLog
+            String maxJobLogEntries = properties.getProperty("MAX_JOB_LOG_ENTRIES");
+            if(maxJobLogEntries == null || maxJobLogEntries.isEmpty()){
+                MAX_JOB_LOG_ENTRIES = JobLog.DEFAULT_CAPACITY;
+            }
+            else{
+                MAX_JOB_LOG_ENTRIES = Integer.decode(maxJobLogEntries);
+            }
+            //If not set, use the default values of the ProgressMonitor
+            String progressInterval = properties.getProperty("PROGRESS_NOTIFICATION_INTERVAL");
+            if(progressInterval == null || progressInterval.isEmpty()){
+                PROGRESS_NOTIFICATION_INTERVAL = ProgressMonitor.DEFAULT_NOTIFICATION_INTERVAL;
+            }
+            else{
+                PROGRESS_NOTIFICATION_INTERVAL = Long.decode(progressInterval);
+            }
+            String progressDelta = properties.getProperty("PROGRESS_NOTIFICATION_DELTA");
+            if(progressDelta == null || progressDelta.isEmpty()){
+                PROGRESS_NOTIFICATION_DELTA = ProgressMonitor.DEFAULT_NOTIFICATION_DELTA;
+            }
+            else{
+                PROGRESS_NOTIFICATION_DELTA = Double.parseDouble(progressDelta) / 100;
+            }
+            //If not set, the execution results are not cached
+            String executeCacheSize = properties.getProperty("EXECUTE_CACHE_SIZE");
+            if(executeCacheSize == null || executeCacheSize.isEmpty()){
+                EXECUTE_CACHE_SIZE = 0;
+            }
+            else{
+                EXECUTE_CACHE_SIZE = Integer.decode(executeCacheSize);
+            }
+            //If not set, the DataSource is used as it is
+            String connectionPoolSize = properties.getProperty("CONNECTION_POOL_SIZE");
+            if(connectionPoolSize == null || connectionPoolSize.isEmpty()){
+                CONNECTION_POOL_SIZE = 0;
+            }
+            else{
+                CONNECTION_POOL_SIZE = Integer.decode(connectionPoolSize);
+            }
         }
 
         /**
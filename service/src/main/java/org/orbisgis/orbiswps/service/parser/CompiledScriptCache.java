@@ -0,0 +1,401 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.parser;
+
+import groovy.lang.GroovySystem;
+import net.opengis.wps._2_0.ProcessOffering;
+import net.opengis.wps._2_0.ProcessOfferings;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.groovy.tools.GroovyClass;
+import org.orbisgis.orbiswps.service.model.JaxbContainer;
+import org.orbisgis.orbiswps.service.utils.ObjectAnnotationConverter;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * On disk cache of the compiled groovy scripts.
+ *
+ * Each script is stored under a key computed from its source code, its URI, the groovy version and the byte code of the
+ * classes parsing the scripts, so an upgrade of the parsers invalidates the stored ProcessOfferings :
+ *  - the directory '[key]' contains the class files of the script and a property file with the name of its main class,
+ *  - the file '[key].xml' contains the ProcessOffering parsed from the script.
+ * As an entry is never modified once written, a script which has not changed since the last start of the server can be
+ * registered without invoking the groovy compiler, and a modified script simply gets a new entry. The key starts with
+ * a hash of the script URI, so the entries of the previous versions of a script are found when a new one is stored.
+ * As running jobs, or another server sharing the directory, may still load classes from them, these entries are only
+ * marked with a '[key].retired' file and removed on a later start once the marker is older than a grace period. An
+ * entry used again before its removal is no more marked.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class CompiledScriptCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledScriptCache.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(CompiledScriptCache.class);
+
+    /** Version of the cache layout, to change each time the content of an entry changes. */
+    private static final String CACHE_VERSION = "1";
+    /** Name of the property file of an entry. */
+    private static final String ENTRY_FILE_NAME = "script.properties";
+    /** Key of the main class name in the entry property file. */
+    private static final String MAIN_CLASS_PROPERTY = "mainClass";
+    /** Extension of the serialized ProcessOffering files. */
+    private static final String OFFERING_EXTENSION = ".xml";
+    /** Extension of the temporary files and directories. */
+    private static final String TMP_EXTENSION = ".tmp";
+    /** Extension of the files marking the entries of the previous versions of a script. */
+    private static final String RETIRED_EXTENSION = ".retired";
+    /** Delay in milliseconds after which a marked entry is removed. */
+    private static final long RETIRED_ENTRY_DELAY_MILLIS = 24 * 60 * 60 * 1000L;
+    /** Number of hexadecimal characters of the script URI hash starting the keys. */
+    private static final int LOCATION_PREFIX_LENGTH = 16;
+    /** Classes building the ProcessOffering of the scripts, their byte code is part of the keys. */
+    private static final Class[] PARSER_CLASSES = {ParserController.class, ProcessParser.class,
+            BoundingBoxParser.class, EnumerationParser.class, GeometryParser.class, JDBCColumnParser.class,
+            JDBCTableParser.class, JDBCValueParser.class, LiteralDataParser.class, PasswordParser.class,
+            RawDataParser.class, ObjectAnnotationConverter.class, ProcessMetadata.class};
+    /** Hash of the byte code of the parser classes. */
+    private static final String PARSER_FINGERPRINT = getParserFingerprint();
+
+    /** Root directory of the cache. */
+    private final File cacheDirectory;
+
+    /**
+     * Main constructor.
+     * @param cacheDirectory Root directory of the cache. It is created if it does not exist.
+     */
+    public CompiledScriptCache(File cacheDirectory){
+        this.cacheDirectory = cacheDirectory;
+        if(!cacheDirectory.exists() && !cacheDirectory.mkdirs()){
+            LOGGER.warn(I18N.tr("Unable to create the script cache directory {0}.", cacheDirectory.getAbsolutePath()));
+        }
+        removeRetiredEntries();
+    }
+
+    /**
+     * Returns the root directory of the cache.
+     * @return The root directory of the cache.
+     */
+    public File getCacheDirectory(){
+        return cacheDirectory;
+    }
+
+    /**
+     * Computes the key of a script.
+     * @param source Source code of the script.
+     * @param scriptLocation Location of the script (it is used as process identifier if the script does not set one).
+     * @return The hexadecimal SHA-256 hash of the script location followed by the hexadecimal SHA-256 hash of the
+     * script, or null if it can't be computed.
+     */
+    public static String getKey(byte[] source, String scriptLocation){
+        try {
+            byte[] location = scriptLocation.getBytes(StandardCharsets.UTF_8);
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((CACHE_VERSION + "\n" + GroovySystem.getVersion() + "\n" + PARSER_FINGERPRINT + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update(location);
+            digest.update((byte)'\n');
+            digest.update(source);
+            String scriptHash = toHex(digest.digest());
+            String locationHash = toHex(MessageDigest.getInstance("SHA-256").digest(location));
+            return locationHash.substring(0, LOCATION_PREFIX_LENGTH) + "-" + scriptHash;
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.error(I18N.tr("Unable to compute the script hash.\nCause : {0}.", e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Computes the hash of the byte code of the parser classes. If the byte code of a class can't be read, its name and
+     * the version of its package are used instead.
+     * @return The hexadecimal SHA-256 hash of the parser classes, or an empty String if it can't be computed.
+     */
+    private static String getParserFingerprint(){
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for(Class clazz : PARSER_CLASSES){
+                byte[] byteCode = null;
+                try (InputStream in = clazz.getResourceAsStream(clazz.getSimpleName() + ".class")) {
+                    if(in != null){
+                        byteCode = IOUtils.toByteArray(in);
+                    }
+                } catch (IOException e) {
+                    LOGGER.debug(I18N.tr("Unable to read the byte code of {0}.\nCause : {1}.",
+                            clazz.getName(), e.getMessage()));
+                }
+                if(byteCode == null){
+                    Package classPackage = clazz.getPackage();
+                    byteCode = (clazz.getName() + "\n" + (classPackage != null ?
+                            classPackage.getImplementationVersion() : null)).getBytes(StandardCharsets.UTF_8);
+                }
+                digest.update(byteCode);
+            }
+            return toHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            LOGGER.error(I18N.tr("Unable to compute the script hash.\nCause : {0}.", e.getMessage()));
+            return "";
+        }
+    }
+
+    /**
+     * Returns the hexadecimal representation of the given bytes.
+     * @param bytes Bytes to convert.
+     * @return The hexadecimal String.
+     */
+    private static String toHex(byte[] bytes){
+        StringBuilder sb = new StringBuilder();
+        for(byte b : bytes){
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the directory containing the class files of the given entry.
+     * @param key Key of the entry.
+     * @return The class directory of the entry.
+     */
+    public File getClassDirectory(String key){
+        return new File(cacheDirectory, key);
+    }
+
+    /**
+     * Returns the name of the main class of the script stored under the given key.
+     * @param key Key of the entry.
+     * @return The main class name, or null if the classes of the script are not in the cache.
+     */
+    public String getMainClassName(String key){
+        File entryFile = new File(getClassDirectory(key), ENTRY_FILE_NAME);
+        if(!entryFile.isFile()){
+            return null;
+        }
+        //The entry is used again, so it should not be removed
+        File retiredFile = new File(cacheDirectory, key + RETIRED_EXTENSION);
+        if(retiredFile.exists()){
+            delete(retiredFile);
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(entryFile)) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOGGER.warn(I18N.tr("Unable to read the script cache entry {0}.\nCause : {1}.", key, e.getMessage()));
+            return null;
+        }
+        return properties.getProperty(MAIN_CLASS_PROPERTY);
+    }
+
+    /**
+     * Stores the compiled classes of a script. The classes are first written in a temporary directory which is then
+     * renamed, so a concurrent reader never sees a partial entry. The entries of the other versions of the script are
+     * then marked to be removed later.
+     * @param key Key of the entry.
+     * @param mainClassName Name of the main class of the script.
+     * @param classes Classes generated by the groovy compiler.
+     * @return True if the entry is available in the cache, false otherwise.
+     */
+    public boolean storeClasses(String key, String mainClassName, List<GroovyClass> classes){
+        File classDirectory = getClassDirectory(key);
+        File tmpDirectory = new File(cacheDirectory, key + "." + UUID.randomUUID() + TMP_EXTENSION);
+        try {
+            for(GroovyClass groovyClass : classes){
+                File classFile = new File(tmpDirectory, groovyClass.getName().replace('.', File.separatorChar) + ".class");
+                if(!classFile.getParentFile().exists() && !classFile.getParentFile().mkdirs()){
+                    throw new IOException(I18N.tr("Unable to create the directory {0}.", classFile.getParent()));
+                }
+                try (OutputStream out = new FileOutputStream(classFile)) {
+                    out.write(groovyClass.getBytes());
+                }
+            }
+            Properties properties = new Properties();
+            properties.setProperty(MAIN_CLASS_PROPERTY, mainClassName);
+            try (OutputStream out = new FileOutputStream(new File(tmpDirectory, ENTRY_FILE_NAME))) {
+                properties.store(out, null);
+            }
+            if(!tmpDirectory.renameTo(classDirectory) && getMainClassName(key) == null){
+                throw new IOException(I18N.tr("Unable to move the directory {0}.", tmpDirectory.getAbsolutePath()));
+            }
+            retireOtherEntries(key);
+            return true;
+        } catch (IOException e) {
+            LOGGER.warn(I18N.tr("Unable to store the classes of the script {0} in the cache.\nCause : {1}.",
+                    mainClassName, e.getMessage()));
+            return false;
+        } finally {
+            delete(tmpDirectory);
+        }
+    }
+
+    /**
+     * Returns the ProcessOffering stored under the given key. The returned object is a new one on each call and its
+     * JDBC inputs and outputs are not linked yet.
+     * @param key Key of the entry.
+     * @return The ProcessOffering, or null if it is not in the cache.
+     */
+    public ProcessOffering getProcessOffering(String key){
+        File offeringFile = new File(cacheDirectory, key + OFFERING_EXTENSION);
+        if(!offeringFile.isFile()){
+            return null;
+        }
+        try {
+            Object o = JaxbContainer.JAXBCONTEXT.createUnmarshaller().unmarshal(offeringFile);
+            if(o instanceof JAXBElement){
+                o = ((JAXBElement) o).getValue();
+            }
+            if(o instanceof ProcessOfferings && ((ProcessOfferings) o).getProcessOffering().size() == 1){
+                return ((ProcessOfferings) o).getProcessOffering().get(0);
+            }
+        } catch (JAXBException e) {
+            LOGGER.warn(I18N.tr("Unable to read the cached process {0}.\nCause : {1}.", key, e.getMessage()));
+        }
+        return null;
+    }
+
+    /**
+     * Stores the ProcessOffering of a script.
+     * @param key Key of the entry.
+     * @param processOffering ProcessOffering to store.
+     */
+    public void storeProcessOffering(String key, ProcessOffering processOffering){
+        File offeringFile = new File(cacheDirectory, key + OFFERING_EXTENSION);
+        File tmpFile = new File(cacheDirectory, key + "." + UUID.randomUUID() + TMP_EXTENSION);
+        ProcessOfferings processOfferings = new ProcessOfferings();
+        processOfferings.getProcessOffering().add(processOffering);
+        try {
+            Marshaller marshaller = JaxbContainer.JAXBCONTEXT.createMarshaller();
+            marshaller.marshal(processOfferings, tmpFile);
+            Files.move(tmpFile.toPath(), offeringFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (JAXBException|IOException e) {
+            LOGGER.warn(I18N.tr("Unable to store the process {0} in the cache.\nCause : {1}.",
+                    processOffering.getProcess().getIdentifier().getValue(), e.getMessage()));
+        } finally {
+            delete(tmpFile);
+        }
+    }
+
+    /**
+     * Marks the entries stored for the same script location as the given key but under another key, i.e. the entries
+     * of the previous versions of the script, so they are removed once the grace period is over. The entries are not
+     * removed immediately as running jobs may still load classes from them.
+     * @param key Key of the entry to keep.
+     */
+    private void retireOtherEntries(String key){
+        String prefix = key.substring(0, key.indexOf('-') + 1);
+        File[] files = cacheDirectory.listFiles();
+        if(files == null){
+            return;
+        }
+        for(File file : files){
+            String name = file.getName();
+            String entryKey = null;
+            if(name.endsWith(OFFERING_EXTENSION)){
+                entryKey = name.substring(0, name.length() - OFFERING_EXTENSION.length());
+            }
+            else if(file.isDirectory() && !name.endsWith(TMP_EXTENSION)){
+                entryKey = name;
+            }
+            if(entryKey != null && entryKey.startsWith(prefix) && !entryKey.equals(key)){
+                File retiredFile = new File(cacheDirectory, entryKey + RETIRED_EXTENSION);
+                try {
+                    retiredFile.createNewFile();
+                } catch (IOException e) {
+                    LOGGER.debug(I18N.tr("Unable to create the file {0}.", retiredFile.getAbsolutePath()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the entries which have been marked for longer than the grace period.
+     */
+    private void removeRetiredEntries(){
+        File[] files = cacheDirectory.listFiles();
+        if(files == null){
+            return;
+        }
+        long limit = System.currentTimeMillis() - RETIRED_ENTRY_DELAY_MILLIS;
+        for(File file : files){
+            String name = file.getName();
+            if(name.endsWith(RETIRED_EXTENSION) && file.lastModified() < limit){
+                String key = name.substring(0, name.length() - RETIRED_EXTENSION.length());
+                delete(getClassDirectory(key));
+                delete(new File(cacheDirectory, key + OFFERING_EXTENSION));
+                delete(file);
+            }
+        }
+    }
+
+    /**
+     * Recursively deletes a file or a directory if it exists.
+     * @param file File to delete.
+     */
+    private static void delete(File file){
+        File[] children = file.listFiles();
+        if(children != null){
+            for(File child : children){
+                delete(child);
+            }
+        }
+        if(file.exists() && !file.delete()){
+            LOGGER.debug(I18N.tr("Unable to delete the file {0}.", file.getAbsolutePath()));
+        }
+    }
+}
@@ -42,6 +42,7 @@ package org.orbisgis.orbiswps.service.parser;
 import groovy.lang.GroovyClassLoader;
 import groovy.lang.GroovyCodeSource;
 import groovy.lang.GroovyShell;
+import groovy.lang.GroovySystem;
 import net.opengis.wps._2_0.InputDescriptionType;
 import net.opengis.wps._2_0.OutputDescriptionType;
 import net.opengis.wps._2_0.ProcessDescriptionType;
@@ -51,19 +52,31 @@ import org.orbisgis.orbiswps.groovyapi.attributes.OutputAttribute;
 import org.orbisgis.orbiswps.service.model.*;
 import org.orbisgis.orbiswps.serviceapi.model.MalformedScriptException;
 import org.orbisgis.orbiswps.serviceapi.parser.Parser;
+import org.apache.commons.io.IOUtils;
+import org.codehaus.groovy.ast.ClassNode;
+import org.codehaus.groovy.ast.ModuleNode;
+import org.codehaus.groovy.control.CompilationUnit;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.Phases;
+import org.codehaus.groovy.tools.GroovyClass;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * This controller manage the different Parser and is able to parse a script into a process.
@@ -79,7 +92,13 @@ public class ParserController {
     /** Parser list */
     private List<Parser> parserList;
     private ProcessParser processParser;
+    /** Parent class loader of the process classes. Each process class is compiled with its own child class loader in
+     * order to be able to release it without touching the other processes. */
     private GroovyClassLoader groovyClassLoader;
+    /** On disk cache of the compiled scripts, null if the cache is disabled. */
+    private CompiledScriptCache scriptCache;
+    /** Cache keys of the process classes compiled or loaded through the script cache. */
+    private final Map<Class, String> cacheKeyMap = Collections.synchronizedMap(new WeakHashMap<Class, String>());
     /** I18N object */
     private static final I18n I18N = I18nFactory.getI18n(ParserController.class);
 
@@ -99,29 +118,143 @@ public class ParserController {
         groovyClassLoader = new GroovyShell().getClassLoader();
     }
 
+    /**
+     * Sets the directory of the on disk cache of the compiled scripts. If set, the compiled classes and the parsed
+     * ProcessOffering of the scripts are stored in this directory and reused as long as the script source does not
+     * change.
+     * @param cacheDirectory Directory of the cache, or null to disable it.
+     */
+    public void setScriptCacheDirectory(File cacheDirectory){
+        if(cacheDirectory == null){
+            scriptCache = null;
+        }
+        else {
+            scriptCache = new CompiledScriptCache(cacheDirectory);
+        }
+    }
+
+    /**
+     * Compiles the groovy file at the given path into a class with its own class loader.
+     * @param filePath String path of the file to compile.
+     * @return The class of the script, or null if the compilation has failed.
+     */
     public Class getProcessClass(String filePath){
+        File groovyFile = new File(filePath);
         try {
-            File groovyFile = new File(filePath);
-            groovyClassLoader.clearCache();
-            return groovyClassLoader.parseClass(groovyFile);
+            if(scriptCache != null){
+                return getCachedProcessClass(groovyFile.toURI().toURL(), groovyFile.getName());
+            }
+            GroovyClassLoader processClassLoader = new GroovyClassLoader(groovyClassLoader);
+            return processClassLoader.parseClass(groovyFile);
         } catch (Exception e) {
             LOGGER.error(I18N.tr("Can not parse the process : {0}\n Cause : {1}.", filePath, e.getLocalizedMessage()));
         }
         return null;
     }
 
+    /**
+     * Compiles the groovy file at the given URL into a class with its own class loader.
+     * @param url URL of the file to compile.
+     * @return The class of the script, or null if the compilation has failed.
+     */
     public Class getProcessClass(URL url){
         //Retrieve the class corresponding to the Groovy script.
         Class clazz = null;
         try {
-            groovyClassLoader.clearCache();
-            clazz =  groovyClassLoader.parseClass(new GroovyCodeSource(url));
+            if(scriptCache != null){
+                String path = url.getPath();
+                clazz = getCachedProcessClass(url, path.substring(path.lastIndexOf('/') + 1));
+            }
+            else {
+                GroovyClassLoader processClassLoader = new GroovyClassLoader(groovyClassLoader);
+                clazz = processClassLoader.parseClass(new GroovyCodeSource(url));
+            }
         } catch (Exception e) {
             LOGGER.error(I18N.tr("Can not parse the process : {0}\n Cause : {1}.", url, e.getLocalizedMessage()));
         }
         return clazz;
     }
 
+    /**
+     * Returns the class of the script at the given URL from the script cache. If the script is not in the cache yet, it
+     * is compiled and its classes are stored in the cache before being loaded.
+     * @param url URL of the script.
+     * @param fileName Name of the script file, used to name the script class.
+     * @return The class of the script.
+     * @throws IOException Exception thrown if the script can not be read.
+     * @throws ClassNotFoundException Exception thrown if the cached classes can not be loaded.
+     */
+    private Class getCachedProcessClass(URL url, String fileName) throws IOException, ClassNotFoundException {
+        byte[] source;
+        try(InputStream in = url.openStream()){
+            source = IOUtils.toByteArray(in);
+        }
+        String key = CompiledScriptCache.getKey(source, url.toString());
+        if(key == null){
+            return new GroovyClassLoader(groovyClassLoader).parseClass(new GroovyCodeSource(url));
+        }
+        String mainClassName = scriptCache.getMainClassName(key);
+        if(mainClassName == null){
+            //Compile the script and store its classes
+            CompilerConfiguration configuration = CompilerConfiguration.DEFAULT;
+            CompilationUnit unit = new CompilationUnit(configuration, null, new GroovyClassLoader(groovyClassLoader));
+            unit.addSource(fileName, new String(source, configuration.getSourceEncoding()));
+            unit.compile(Phases.CLASS_GENERATION);
+            mainClassName = getMainClassName(unit);
+            @SuppressWarnings("unchecked")
+            List<GroovyClass> classes = unit.getClasses();
+            if(!scriptCache.storeClasses(key, mainClassName, classes)){
+                return new GroovyClassLoader(groovyClassLoader).parseClass(new GroovyCodeSource(url));
+            }
+        }
+        GroovyClassLoader processClassLoader = new GroovyClassLoader(groovyClassLoader);
+        processClassLoader.addURL(scriptCache.getClassDirectory(key).toURI().toURL());
+        Class clazz = processClassLoader.loadClass(mainClassName);
+        cacheKeyMap.put(clazz, key);
+        return clazz;
+    }
+
+    /**
+     * Returns the name of the main class of a compiled script, i.e. its script class if any, its first class otherwise.
+     * @param unit Compilation unit of the script.
+     * @return The name of the main class.
+     */
+    private static String getMainClassName(CompilationUnit unit){
+        ModuleNode module = unit.getAST().getModules().get(0);
+        for(ClassNode classNode : module.getClasses()){
+            if(classNode.isScript()){
+                return classNode.getName();
+            }
+        }
+        return module.getClasses().get(0).getName();
+    }
+
+    /**
+     * Releases a class compiled with the methods {@link #getProcessClass(String)} or {@link #getProcessClass(URL)}.
+     * Its meta class is removed from the groovy registry and its class loader is closed, so the class can be garbage
+     * collected. It must only be called once no running process uses the class anymore, as the classes of the script
+     * (like its closures) are loaded lazily.
+     * @param clazz Class to release.
+     */
+    public void releaseProcessClass(Class clazz){
+        if(clazz == null){
+            return;
+        }
+        GroovySystem.getMetaClassRegistry().removeMetaClass(clazz);
+        ClassLoader classLoader = clazz.getClassLoader();
+        while(classLoader instanceof GroovyClassLoader && classLoader != groovyClassLoader){
+            GroovyClassLoader processClassLoader = (GroovyClassLoader) classLoader;
+            processClassLoader.clearCache();
+            try {
+                processClassLoader.close();
+            } catch (IOException e) {
+                LOGGER.warn(I18N.tr("Unable to close the class loader of the process {0}.\nCause : {1}.",
+                        clazz.getName(), e.getMessage()));
+            }
+            classLoader = classLoader.getParent();
+        }
+    }
+
     /**
      * Parse a groovy file under a wps process and the groovy class representing the script.
      * @param processUrl URL path of the file to parse.
@@ -130,30 +263,16 @@ public class ParserController {
      */
     public ProcessOffering parseProcess(URL processUrl) throws MalformedScriptException {
         //Retrieve the class corresponding to the Groovy script.
-        Class clazz = null;
-        try {
-            groovyClassLoader.clearCache();
-            clazz =  groovyClassLoader.parseClass(new GroovyCodeSource(processUrl));
-        } catch (Exception e) {
-            LOGGER.error(I18N.tr("Can not parse the process : {0}\n Cause : {1}.", processUrl, e.getLocalizedMessage()));
-        }
+        Class clazz = getProcessClass(processUrl);
         if(clazz == null){
             return null;
         }
-
-        //Parse the process
-        ProcessOffering processOffering;
         try {
-            URI uri = processUrl.toURI();
-            processOffering = processParser.parseProcess(clazz.getDeclaredMethod("processing"), uri);
-            setProcessOffering(processOffering, clazz);
-        } catch (NoSuchMethodException e) {
-            return null;
+            return parseProcess(clazz, processUrl.toURI());
         } catch (URISyntaxException e) {
             LOGGER.error(I18N.tr("unable to generate the URI of the process {0}.", processUrl.toString()));
             return null;
         }
-        return processOffering;
     }
 
     /**
@@ -164,20 +283,39 @@ public class ParserController {
      */
     public ProcessOffering parseProcess(String processPath) throws MalformedScriptException {
         //Retrieve the class corresponding to the Groovy script.
-        File processFile = new File(processPath);
         Class clazz = getProcessClass(processPath);
         if(clazz == null){
             return null;
         }
+        return parseProcess(clazz, new File(processPath).toURI());
+    }
 
-        //Parse the process
+    /**
+     * Parse an already compiled groovy script class under a wps process.
+     * @param clazz Class of the groovy script.
+     * @param processUri URI of the script file.
+     * @return The process offering, or null if the script has no 'processing' method.
+     * @throws MalformedScriptException
+     */
+    public ProcessOffering parseProcess(Class clazz, URI processUri) throws MalformedScriptException {
+        String key = cacheKeyMap.get(clazz);
+        if(key != null && scriptCache != null){
+            ProcessOffering processOffering = scriptCache.getProcessOffering(key);
+            if(processOffering != null){
+                relink(processOffering.getProcess());
+                return processOffering;
+            }
+        }
         ProcessOffering processOffering;
         try {
-            processOffering = processParser.parseProcess(clazz.getDeclaredMethod("processing"), processFile.toURI());
+            processOffering = processParser.parseProcess(clazz.getDeclaredMethod("processing"), processUri);
             setProcessOffering(processOffering, clazz);
         } catch (NoSuchMethodException e) {
             return null;
         }
+        if(key != null && scriptCache != null){
+            scriptCache.storeProcessOffering(key, processOffering);
+        }
         return processOffering;
     }
 
@@ -280,6 +418,30 @@ public class ParserController {
         link(processOffering.getProcess());
     }
 
+    /**
+     * Links again the input and output of a process read from the script cache. The unmarshalled JDBCTable and
+     * JDBCColumn contain copies of their children instead of the process inputs and outputs, so they are replaced.
+     * @param p Process to link.
+     */
+    private void relink(ProcessDescriptionType p){
+        List<Object> dataDescriptions = new ArrayList<>();
+        for(InputDescriptionType i : p.getInput()){
+            dataDescriptions.add(i.getDataDescription().getValue());
+        }
+        for(OutputDescriptionType o : p.getOutput()){
+            dataDescriptions.add(o.getDataDescription().getValue());
+        }
+        for(Object dataDescription : dataDescriptions){
+            if(dataDescription instanceof JDBCTable){
+                ((JDBCTable)dataDescription).getListJDBCColumn().clear();
+            }
+            if(dataDescription instanceof JDBCColumn){
+                ((JDBCColumn)dataDescription).getJDBCValueList().clear();
+            }
+        }
+        link(p);
+    }
+
     /**
      * Links the input and output with the 'parent'.
      * i.e. : The JDBCTable contains a list of JDBCColumn related.
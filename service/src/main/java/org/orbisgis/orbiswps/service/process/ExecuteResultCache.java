@@ -0,0 +1,393 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import net.opengis.ows._2.MetadataType;
+import net.opengis.wps._2_0.OutputDescriptionType;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import org.orbisgis.orbiswps.serviceapi.JobStatusListener;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener.ProcessState;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata;
+import org.orbisgis.orbiswps.serviceapi.process.WpsJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the outputs of the process executions.
+ * Only the processes declared as cacheable and deterministic with the CACHEABLE and DETERMINISTIC metadata (see
+ * {@link ProcessMetadata}) are cached. The key of an execution is built from the process identifier, the hash of the
+ * script content, so a modified script is never answered with the outputs of its previous version, and the
+ * normalized inputs.
+ * Only the executions whose inputs and outputs are simple values (String, Number, Boolean or a list of them) are
+ * cached : the files and the database tables may change or be removed without the cache knowing it.
+ * The cache is bounded and the least recently used result is dropped once the maximum size is reached.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class ExecuteResultCache {
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExecuteResultCache.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(ExecuteResultCache.class);
+    /** Size of the buffer used to read the scripts. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Map of the cached outputs with their key, in access order. Guarded by itself. */
+    private final Map<String, Map<URI, Object>> resultMap;
+    /** Map of the script hash with the process identifier. */
+    private final ConcurrentMap<String, ScriptHash> scriptHashMap = new ConcurrentHashMap<>();
+    /** Number of executions answered from the cache. */
+    private final AtomicLong hitCount = new AtomicLong();
+    /** Number of cacheable executions not found in the cache. */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Main constructor.
+     *
+     * @param maxSize Maximum number of cached results.
+     */
+    public ExecuteResultCache(int maxSize){
+        final int max = Math.max(1, maxSize);
+        resultMap = new LinkedHashMap<String, Map<URI, Object>>(16, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Map<URI, Object>> eldest) {
+                return size() > max;
+            }
+        };
+    }
+
+    /**
+     * Returns true if the given process is declared as cacheable and is not declared as non deterministic.
+     *
+     * @param process Description of the process.
+     * @return True if the outputs of the process can be cached.
+     */
+    public static boolean isCacheable(ProcessDescriptionType process){
+        boolean cacheable = false;
+        boolean deterministic = true;
+        for(MetadataType metadata : process.getMetadata()){
+            if(ProcessMetadata.CACHEABLE_NAME.equalsIgnoreCase(metadata.getRole())){
+                cacheable = Boolean.parseBoolean(metadata.getTitle());
+            }
+            else if(ProcessMetadata.DETERMINISTIC_NAME.equalsIgnoreCase(metadata.getRole())){
+                deterministic = Boolean.parseBoolean(metadata.getTitle());
+            }
+        }
+        return cacheable && deterministic;
+    }
+
+    /**
+     * Returns the cache key of the execution of the given process with the given inputs.
+     *
+     * @param pi ProcessIdentifier of the executed process.
+     * @param inputMap Map of the inputs with their identifier.
+     * @return The cache key, or null if the execution can't be cached.
+     */
+    public String getKey(ProcessIdentifier pi, Map<URI, Object> inputMap){
+        ProcessDescriptionType process = pi.getProcessDescriptionType();
+        if(process == null || !isCacheable(process)){
+            return null;
+        }
+        String scriptHash = getScriptHash(pi);
+        if(scriptHash == null){
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append(process.getIdentifier().getValue()).append('\n').append(scriptHash).append('\n');
+        //The inputs are sorted by identifier so the key does not depend on their order in the request
+        Map<String, Object> sortedMap = new TreeMap<>();
+        for(Map.Entry<URI, Object> entry : inputMap.entrySet()){
+            sortedMap.put(entry.getKey().toString(), entry.getValue());
+        }
+        for(Map.Entry<String, Object> entry : sortedMap.entrySet()){
+            appendString(sb, entry.getKey());
+            if(!appendValue(sb, entry.getValue())){
+                return null;
+            }
+        }
+        return toHex(digest(sb.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns a copy of the cached outputs of the execution with the given key.
+     *
+     * @param key Key of the execution.
+     * @return The map of the outputs with their identifier, or null if the execution is not cached.
+     */
+    public Map<URI, Object> get(String key){
+        Map<URI, Object> outputMap;
+        synchronized (resultMap) {
+            outputMap = resultMap.get(key);
+        }
+        if(outputMap == null){
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return new HashMap<>(outputMap);
+    }
+
+    /**
+     * Caches the outputs contained in the data map of a successful execution. Nothing is cached if one of the outputs
+     * is not a simple value.
+     *
+     * @param key Key of the execution.
+     * @param process Description of the executed process.
+     * @param dataMap Data map of the execution, containing the inputs and the outputs.
+     * @return True if the outputs have been cached, false otherwise.
+     */
+    public boolean put(String key, ProcessDescriptionType process, Map<URI, Object> dataMap){
+        Map<URI, Object> outputMap = new HashMap<>();
+        for(OutputDescriptionType output : process.getOutput()){
+            URI id = URI.create(output.getIdentifier().getValue());
+            if(dataMap.containsKey(id)){
+                Object value = dataMap.get(id);
+                if(!appendValue(new StringBuilder(), value)){
+                    LOGGER.debug(I18N.tr("The output {0} of the process {1} can't be cached.", id,
+                            process.getIdentifier().getValue()));
+                    return false;
+                }
+                outputMap.put(id, value instanceof List ? Collections.unmodifiableList((List) value) : value);
+            }
+        }
+        synchronized (resultMap) {
+            resultMap.put(key, Collections.unmodifiableMap(outputMap));
+        }
+        return true;
+    }
+
+    /**
+     * Returns a JobStatusListener caching the outputs of the job once it has succeeded.
+     *
+     * @param key Key of the execution run by the job.
+     * @return The JobStatusListener.
+     */
+    public JobStatusListener getCachingListener(final String key){
+        return new JobStatusListener() {
+            @Override
+            public void onJobStatusChanged(WpsJob job) {
+                if(job.getState() == ProcessState.SUCCEEDED){
+                    put(key, job.getProcess(), job.getDataMap());
+                }
+            }
+        };
+    }
+
+    /**
+     * Removes all the cached results.
+     */
+    public void clear(){
+        synchronized (resultMap) {
+            resultMap.clear();
+        }
+        scriptHashMap.clear();
+    }
+
+    /**
+     * Returns the number of cached results.
+     * @return The number of cached results.
+     */
+    public int size(){
+        synchronized (resultMap) {
+            return resultMap.size();
+        }
+    }
+
+    /**
+     * Returns the number of executions answered from the cache.
+     * @return The hit count.
+     */
+    public long getHitCount(){
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of cacheable executions not found in the cache.
+     * @return The miss count.
+     */
+    public long getMissCount(){
+        return missCount.get();
+    }
+
+    /**
+     * Returns the hash of the script of the given process. The hash of a script file is computed again only if the
+     * file has been modified.
+     *
+     * @param pi ProcessIdentifier of the process.
+     * @return The hexadecimal hash of the script, or null if it can't be read.
+     */
+    private String getScriptHash(ProcessIdentifier pi){
+        String id = pi.getProcessDescriptionType().getIdentifier().getValue();
+        URL sourceUrl = pi.getSourceUrl();
+        File file = sourceUrl == null && pi.getFilePath() != null ? new File(pi.getFilePath()) : null;
+        String source = sourceUrl != null ? sourceUrl.toString() : pi.getFilePath();
+        if(source == null){
+            return null;
+        }
+        long lastModified = file != null ? file.lastModified() : 0;
+        ScriptHash scriptHash = scriptHashMap.get(id);
+        if(scriptHash != null && scriptHash.source.equals(source) && scriptHash.lastModified == lastModified){
+            return scriptHash.hash;
+        }
+        try (InputStream inputStream = file != null ? new FileInputStream(file) : sourceUrl.openStream()) {
+            MessageDigest messageDigest = getMessageDigest();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while((read = inputStream.read(buffer)) != -1){
+                messageDigest.update(buffer, 0, read);
+            }
+            String hash = toHex(messageDigest.digest());
+            scriptHashMap.put(id, new ScriptHash(source, lastModified, hash));
+            return hash;
+        } catch (IOException e) {
+            LOGGER.warn(I18N.tr("Unable to read the script of the process {0}, its results won't be cached.\n" +
+                    "Cause : {1}.", id, e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Appends the normalized representation of the given value to the StringBuilder. The strings are prefixed with
+     * their length so two different values never give the same representation.
+     *
+     * @param sb StringBuilder to fill.
+     * @param value Value to append.
+     * @return True if the value is a simple value, false otherwise.
+     */
+    private static boolean appendValue(StringBuilder sb, Object value){
+        if(value == null){
+            sb.append('N');
+        }
+        else if(value instanceof String){
+            sb.append('S');
+            appendString(sb, (String) value);
+        }
+        else if(value instanceof Boolean){
+            sb.append('B').append(value).append(';');
+        }
+        else if(value instanceof Number){
+            //The numbers are compared by their value, so 1, 1.0 and 1L give the same key
+            String number;
+            try {
+                number = new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+            } catch (NumberFormatException e){
+                number = value.toString();
+            }
+            sb.append('D').append(number).append(';');
+        }
+        else if(value instanceof List){
+            List list = (List) value;
+            sb.append('L').append(list.size()).append(';');
+            for(Object element : list){
+                if(element instanceof List || !appendValue(sb, element)){
+                    return false;
+                }
+            }
+        }
+        else{
+            return false;
+        }
+        return true;
+    }
+
+    private static void appendString(StringBuilder sb, String string){
+        sb.append(string.length()).append(':').append(string);
+    }
+
+    private static MessageDigest getMessageDigest(){
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] digest(byte[] bytes){
+        return getMessageDigest().digest(bytes);
+    }
+
+    private static String toHex(byte[] bytes){
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for(byte b : bytes){
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Hash of a script with the source and the modification date it has been computed from.
+     */
+    private static class ScriptHash {
+        private final String source;
+        private final long lastModified;
+        private final String hash;
+
+        ScriptHash(String source, long lastModified, String hash){
+            this.source = source;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+}
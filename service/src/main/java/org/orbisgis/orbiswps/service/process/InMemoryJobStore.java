@@ -0,0 +1,298 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import org.orbisgis.orbiswps.serviceapi.process.JobStore;
+import org.orbisgis.orbiswps.serviceapi.process.WpsJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Store keeping the jobs of the server in memory.
+ * The number of stored jobs is bounded : once the maximum is reached, the oldest finished job is evicted to make room
+ * for the new one, and if all the jobs are still running, the new one is refused.
+ * A finished job expires after the destroy delay of the server. A background reaper removes the expired jobs and
+ * frees their data, deleting the result files written in the temporary directory.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class InMemoryJobStore implements JobStore {
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemoryJobStore.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(InMemoryJobStore.class);
+    /** Maximum period of the reaper in milliseconds. */
+    private static final long MAX_REAPER_PERIOD_MILLIS = 60000;
+
+    /** Map of the stored jobs with their id. */
+    private final ConcurrentMap<UUID, StoredJob> jobMap = new ConcurrentHashMap<>();
+    /** Maximum number of stored jobs. */
+    private final int maxJobs;
+    /** Delay in milliseconds before the destruction of a finished job, 0 if it never expires. */
+    private final long destroyDelay;
+    /** Executor running the reaper, null if the jobs never expire. */
+    private final ScheduledExecutorService reaper;
+    /** Number of jobs removed because they have expired. */
+    private final AtomicLong expiredJobCount = new AtomicLong();
+    /** Number of jobs removed to make room for a new one. */
+    private final AtomicLong evictedJobCount = new AtomicLong();
+
+    /**
+     * Main constructor.
+     *
+     * @param maxJobs Maximum number of stored jobs.
+     * @param destroyDelay Delay in milliseconds before the destruction of a finished job, 0 if it never expires.
+     */
+    public InMemoryJobStore(int maxJobs, long destroyDelay){
+        this.maxJobs = Math.max(1, maxJobs);
+        this.destroyDelay = Math.max(0, destroyDelay);
+        if(this.destroyDelay > 0) {
+            reaper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "WpsJobReaper");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            long period = Math.min(this.destroyDelay, MAX_REAPER_PERIOD_MILLIS);
+            reaper.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        removeExpiredJobs();
+                    }
+                    catch (RuntimeException e){
+                        LOGGER.error(I18N.tr("Unable to remove the expired jobs.\nCause : {0}.", e.getMessage()));
+                    }
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+        else{
+            reaper = null;
+        }
+    }
+
+    @Override
+    public boolean put(WpsJob job){
+        synchronized (this) {
+            if(jobMap.size() >= maxJobs && !evictOldestFinishedJob()){
+                LOGGER.warn(I18N.tr("Unable to store the job {0}, the maximum number of jobs ({1}) is reached.",
+                        job.getId(), maxJobs));
+                return false;
+            }
+            jobMap.put(job.getId(), new StoredJob(job));
+        }
+        return true;
+    }
+
+    @Override
+    public WpsJob get(UUID jobId){
+        StoredJob storedJob = jobMap.get(jobId);
+        if(storedJob == null){
+            return null;
+        }
+        if(storedJob.isExpired(System.currentTimeMillis())){
+            if(jobMap.remove(jobId, storedJob)){
+                expiredJobCount.incrementAndGet();
+                destroy(storedJob.job);
+            }
+            return null;
+        }
+        return storedJob.job;
+    }
+
+    @Override
+    public void remove(UUID jobId){
+        StoredJob storedJob = jobMap.remove(jobId);
+        if(storedJob != null){
+            destroy(storedJob.job);
+        }
+    }
+
+    @Override
+    public void scheduleDestroying(UUID jobId, long date){
+        StoredJob storedJob = jobMap.get(jobId);
+        if(storedJob != null){
+            storedJob.destroyDate = Math.max(storedJob.destroyDate, date);
+        }
+    }
+
+    @Override
+    public void removeExpiredJobs(){
+        long now = System.currentTimeMillis();
+        for(Map.Entry<UUID, StoredJob> entry : jobMap.entrySet()){
+            if(entry.getValue().isExpired(now) && jobMap.remove(entry.getKey(), entry.getValue())){
+                expiredJobCount.incrementAndGet();
+                destroy(entry.getValue().job);
+            }
+        }
+    }
+
+    @Override
+    public int size(){
+        return jobMap.size();
+    }
+
+    @Override
+    public long getExpiredJobCount(){
+        return expiredJobCount.get();
+    }
+
+    @Override
+    public long getEvictedJobCount(){
+        return evictedJobCount.get();
+    }
+
+    @Override
+    public List<WpsJob> getLocalJobs(){
+        long now = System.currentTimeMillis();
+        List<WpsJob> jobList = new ArrayList<>();
+        for(StoredJob storedJob : jobMap.values()){
+            if(!storedJob.isExpired(now)){
+                jobList.add(storedJob.job);
+            }
+        }
+        return jobList;
+    }
+
+    @Override
+    public void shutdown(){
+        if(reaper != null){
+            reaper.shutdownNow();
+        }
+    }
+
+    /**
+     * Evicts the finished job which has finished first.
+     * @return True if a job has been evicted, false if all the jobs are unfinished.
+     */
+    private boolean evictOldestFinishedJob(){
+        StoredJob oldest = null;
+        for(StoredJob storedJob : jobMap.values()){
+            if(storedJob.job.isFinished() && (oldest == null || storedJob.job.getEndTime() < oldest.job.getEndTime())){
+                oldest = storedJob;
+            }
+        }
+        if(oldest == null || !jobMap.remove(oldest.job.getId(), oldest)){
+            return false;
+        }
+        evictedJobCount.incrementAndGet();
+        destroy(oldest.job);
+        return true;
+    }
+
+    /**
+     * Frees the data of the given job. The files located in the temporary directory are deleted.
+     * @param job Job to destroy.
+     */
+    static void destroy(WpsJob job){
+        Map<URI, Object> dataMap = job.getDataMap();
+        if(dataMap == null){
+            return;
+        }
+        synchronized (dataMap) {
+            for(Object value : dataMap.values()){
+                if(value instanceof File && isTemporaryFile((File) value) && !((File) value).delete()){
+                    LOGGER.warn(I18N.tr("Unable to delete the result file {0} of the job {1}.", value, job.getId()));
+                }
+            }
+            dataMap.clear();
+        }
+    }
+
+    /**
+     * Returns true if the given file is located in the temporary directory.
+     * @param file File to check.
+     * @return True if the file is located in the temporary directory, false otherwise.
+     */
+    private static boolean isTemporaryFile(File file){
+        try {
+            String tmpDir = new File(System.getProperty("java.io.tmpdir")).getCanonicalPath() + File.separator;
+            return file.isFile() && file.getCanonicalPath().startsWith(tmpDir);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Job stored with its destruction date.
+     */
+    private class StoredJob {
+        /** Stored job. */
+        private final WpsJob job;
+        /** Time in milliseconds when the job should be destroyed, -1 if not scheduled. */
+        private volatile long destroyDate = -1;
+
+        StoredJob(WpsJob job){
+            this.job = job;
+        }
+
+        /**
+         * Returns true if the job has expired at the given time.
+         * @param now Time in milliseconds.
+         * @return True if the job has expired, false otherwise.
+         */
+        boolean isExpired(long now){
+            if(destroyDelay == 0 || !job.isFinished()){
+                return false;
+            }
+            return now >= Math.max(job.getEndTime() + destroyDelay, destroyDate);
+        }
+    }
+}
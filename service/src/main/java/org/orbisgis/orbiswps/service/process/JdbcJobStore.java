@@ -0,0 +1,840 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import net.opengis.ows._2.CodeType;
+import net.opengis.wps._2_0.OutputDescriptionType;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import org.orbisgis.orbiswps.service.utils.Job;
+import org.orbisgis.orbiswps.serviceapi.process.JobLogEntry;
+import org.orbisgis.orbiswps.serviceapi.process.JobStore;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener.LogType;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener.ProcessState;
+import org.orbisgis.orbiswps.serviceapi.process.WpsJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Store persisting the jobs in the database of a DataSource, so they survive a restart of the server and can be shared
+ * by several servers using the same database.
+ *
+ * The jobs executed by this server are kept in memory and their state, progress, logs and results are written in the
+ * database by a background task, in one batch for all the modified jobs. The jobs executed by another server are read
+ * from the database. As in the {@link InMemoryJobStore}, the number of jobs kept in memory is bounded and the finished
+ * jobs expire after the destroy delay.
+ * Only the outputs which are simple values (String, Number or Boolean) are written in the database with their type, so
+ * they are read back with the same type. The other outputs are only available from the server which has executed the
+ * job.
+ *
+ * The unfinished jobs of this server have their heartbeat refreshed periodically. The unfinished jobs whose heartbeat
+ * is too old belong to a server which has stopped or crashed during their execution : they are marked as failed and
+ * given a destroy date, so they don't stay forever in the database.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class JdbcJobStore implements JobStore {
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JdbcJobStore.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(JdbcJobStore.class);
+    /** Period in milliseconds of the writing of the modified jobs in the database. */
+    private static final long FLUSH_PERIOD_MILLIS = 1000;
+    /** Maximum period of the reaper in milliseconds. */
+    private static final long MAX_REAPER_PERIOD_MILLIS = 60000;
+    /** Period in milliseconds of the refreshing of the heartbeat of the unfinished jobs. */
+    private static final long HEARTBEAT_PERIOD_MILLIS = 30000;
+    /** Age in milliseconds of the heartbeat after which an unfinished job is considered as orphaned. */
+    static final long ORPHAN_TIMEOUT_MILLIS = 4 * HEARTBEAT_PERIOD_MILLIS;
+
+    /** Table of the jobs. */
+    private static final String JOB_TABLE = "WPS_JOB";
+    /** Table of the job results. */
+    private static final String OUTPUT_TABLE = "WPS_JOB_OUTPUT";
+    /** Table of the job logs. */
+    private static final String LOG_TABLE = "WPS_JOB_LOG";
+
+    /** DataSource of the database. */
+    private final DataSource dataSource;
+    /** ProcessManager used to get the description of the processes of the jobs read from the database. */
+    private final ProcessManager processManager;
+    /** Maximum number of jobs kept in memory. */
+    private final int maxJobs;
+    /** Delay in milliseconds before the destruction of a finished job, 0 if it never expires. */
+    private final long destroyDelay;
+    /** Maximum value of the polling delay of the jobs read from the database. */
+    private final long maxPollingDelay;
+    /** Base value of the polling delay of the jobs read from the database. */
+    private final long basePollingDelay;
+    /** Map of the jobs executed by this server with their id. */
+    private final ConcurrentMap<UUID, LocalJob> jobMap = new ConcurrentHashMap<>();
+    /** Executor writing the modified jobs and removing the expired ones. */
+    private final ScheduledExecutorService executor;
+    /** Number of jobs removed because they have expired. */
+    private final AtomicLong expiredJobCount = new AtomicLong();
+    /** Number of jobs removed from the memory to make room for a new one. */
+    private final AtomicLong evictedJobCount = new AtomicLong();
+
+    /**
+     * Main constructor. The tables of the store are created if they don't exist. The orphaned jobs are marked as
+     * failed once the store is started, then periodically.
+     *
+     * @param dataSource DataSource of the database.
+     * @param processManager ProcessManager used to get the description of the processes.
+     * @param maxJobs Maximum number of jobs kept in memory.
+     * @param destroyDelay Delay in milliseconds before the destruction of a finished job, 0 if it never expires.
+     * @param maxPollingDelay Maximum value of the polling delay of the jobs read from the database.
+     * @param basePollingDelay Base value of the polling delay of the jobs read from the database.
+     */
+    public JdbcJobStore(DataSource dataSource, ProcessManager processManager, int maxJobs, long destroyDelay,
+                        long maxPollingDelay, long basePollingDelay){
+        this.dataSource = dataSource;
+        this.processManager = processManager;
+        this.maxJobs = Math.max(1, maxJobs);
+        this.destroyDelay = Math.max(0, destroyDelay);
+        this.maxPollingDelay = maxPollingDelay;
+        this.basePollingDelay = basePollingDelay;
+        createTables();
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "WpsJdbcJobStore");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flush();
+                }
+                catch (RuntimeException e){
+                    LOGGER.error(I18N.tr("Unable to write the jobs in the database.\nCause : {0}.", e.getMessage()));
+                }
+            }
+        }, FLUSH_PERIOD_MILLIS, FLUSH_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    beat();
+                    failOrphanedJobs(System.currentTimeMillis() - ORPHAN_TIMEOUT_MILLIS);
+                }
+                catch (RuntimeException e){
+                    LOGGER.error(I18N.tr("Unable to check the orphaned jobs.\nCause : {0}.", e.getMessage()));
+                }
+            }
+        }, 0, HEARTBEAT_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+        if(this.destroyDelay > 0) {
+            long period = Math.min(this.destroyDelay, MAX_REAPER_PERIOD_MILLIS);
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        removeExpiredJobs();
+                    }
+                    catch (RuntimeException e){
+                        LOGGER.error(I18N.tr("Unable to remove the expired jobs.\nCause : {0}.", e.getMessage()));
+                    }
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Creates the tables of the store if they don't exist.
+     */
+    private void createTables(){
+        try(Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS " + JOB_TABLE + "(ID VARCHAR(36) PRIMARY KEY, " +
+                    "PROCESS_ID VARCHAR, STATE VARCHAR(16), PROGRESS INT, START_TIME BIGINT, END_TIME BIGINT, " +
+                    "DESTROY_DATE BIGINT, HEARTBEAT BIGINT)");
+            statement.execute("CREATE TABLE IF NOT EXISTS " + OUTPUT_TABLE + "(JOB_ID VARCHAR(36), " +
+                    "OUTPUT_ID VARCHAR, OUTPUT_TYPE VARCHAR(16), OUTPUT_VALUE VARCHAR)");
+            statement.execute("CREATE TABLE IF NOT EXISTS " + LOG_TABLE + "(JOB_ID VARCHAR(36), " +
+                    "SEQUENCE BIGINT, LOG_TIME BIGINT, LOG_TYPE VARCHAR(8), MESSAGE VARCHAR)");
+        } catch (SQLException e) {
+            LOGGER.error(I18N.tr("Unable to create the tables of the job store.\nCause : {0}.", e.getMessage()));
+        }
+    }
+
+    @Override
+    public boolean put(WpsJob job){
+        synchronized (this) {
+            if(jobMap.size() >= maxJobs && !evictOldestFinishedJob()){
+                LOGGER.warn(I18N.tr("Unable to store the job {0}, the maximum number of jobs ({1}) is reached.",
+                        job.getId(), maxJobs));
+                return false;
+            }
+            jobMap.put(job.getId(), new LocalJob(job));
+        }
+        return true;
+    }
+
+    @Override
+    public WpsJob get(UUID jobId){
+        LocalJob localJob = jobMap.get(jobId);
+        if(localJob != null){
+            if(localJob.isExpired(System.currentTimeMillis())){
+                return null;
+            }
+            return localJob.job;
+        }
+        return read(jobId);
+    }
+
+    @Override
+    public void remove(UUID jobId){
+        LocalJob localJob = jobMap.remove(jobId);
+        if(localJob != null){
+            InMemoryJobStore.destroy(localJob.job);
+        }
+        try(Connection connection = dataSource.getConnection()) {
+            delete(connection, "ID = ?", jobId.toString());
+        } catch (SQLException e) {
+            LOGGER.error(I18N.tr("Unable to remove the job {0} from the database.\nCause : {1}.",
+                    jobId, e.getMessage()));
+        }
+    }
+
+    @Override
+    public void scheduleDestroying(UUID jobId, long date){
+        LocalJob localJob = jobMap.get(jobId);
+        if(localJob != null){
+            localJob.destroyDate = Math.max(localJob.destroyDate, date);
+            return;
+        }
+        try(Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement("UPDATE " + JOB_TABLE +
+                    " SET DESTROY_DATE = ? WHERE ID = ? AND DESTROY_DATE < ?")) {
+            statement.setLong(1, date);
+            statement.setString(2, jobId.toString());
+            statement.setLong(3, date);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            LOGGER.error(I18N.tr("Unable to schedule the destruction of the job {0}.\nCause : {1}.",
+                    jobId, e.getMessage()));
+        }
+    }
+
+    @Override
+    public void removeExpiredJobs(){
+        flush();
+        long now = System.currentTimeMillis();
+        for(Map.Entry<UUID, LocalJob> entry : jobMap.entrySet()){
+            if(entry.getValue().isExpired(now) && jobMap.remove(entry.getKey(), entry.getValue())){
+                InMemoryJobStore.destroy(entry.getValue().job);
+            }
+        }
+        try(Connection connection = dataSource.getConnection()) {
+            int count = delete(connection, "DESTROY_DATE <= ?", now);
+            expiredJobCount.addAndGet(count);
+        } catch (SQLException e) {
+            LOGGER.error(I18N.tr("Unable to remove the expired jobs.\nCause : {0}.", e.getMessage()));
+        }
+    }
+
+    @Override
+    public int size(){
+        try(Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + JOB_TABLE)) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        } catch (SQLException e) {
+            LOGGER.error(I18N.tr("Unable to count the jobs.\nCause : {0}.", e.getMessage()));
+            return jobMap.size();
+        }
+    }
+
+    @Override
+    public long getExpiredJobCount(){
+        return expiredJobCount.get();
+    }
+
+    @Override
+    public long getEvictedJobCount(){
+        return evictedJobCount.get();
+    }
+
+    @Override
+    public List<WpsJob> getLocalJobs(){
+        long now = System.currentTimeMillis();
+        List<WpsJob> jobList = new ArrayList<>();
+        for(LocalJob localJob : jobMap.values()){
+            if(!localJob.isExpired(now)){
+                jobList.add(localJob.job);
+            }
+        }
+        return jobList;
+    }
+
+    @Override
+    public void shutdown(){
+        executor.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Writes in the database the jobs of this server which have been modified since the last writing. All the
+     * modifications are sent in one batch per table and committed together.
+     */
+    public synchronized void flush(){
+        Map<LocalJob, Snapshot> modifiedJobs = new HashMap<>();
+        for(LocalJob localJob : jobMap.values()){
+            Snapshot snapshot = new Snapshot(localJob);
+            if(!snapshot.equals(localJob.written)){
+                modifiedJobs.put(localJob, snapshot);
+            }
+        }
+        if(modifiedJobs.isEmpty()){
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try(Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try(PreparedStatement insertJob = connection.prepareStatement("INSERT INTO " + JOB_TABLE +
+                    "(STATE, PROGRESS, START_TIME, END_TIME, DESTROY_DATE, HEARTBEAT, PROCESS_ID, ID) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                PreparedStatement updateJob = connection.prepareStatement("UPDATE " + JOB_TABLE +
+                    " SET STATE = ?, PROGRESS = ?, START_TIME = ?, END_TIME = ?, DESTROY_DATE = ?, HEARTBEAT = ? " +
+                    "WHERE ID = ?");
+                PreparedStatement insertLog = connection.prepareStatement("INSERT INTO " + LOG_TABLE +
+                    "(JOB_ID, SEQUENCE, LOG_TIME, LOG_TYPE, MESSAGE) VALUES (?, ?, ?, ?, ?)");
+                PreparedStatement insertOutput = connection.prepareStatement("INSERT INTO " + OUTPUT_TABLE +
+                    "(JOB_ID, OUTPUT_ID, OUTPUT_TYPE, OUTPUT_VALUE) VALUES (?, ?, ?, ?)")) {
+                for(Map.Entry<LocalJob, Snapshot> entry : modifiedJobs.entrySet()){
+                    WpsJob job = entry.getKey().job;
+                    Snapshot previous = entry.getKey().written;
+                    Snapshot snapshot = entry.getValue();
+                    String id = job.getId().toString();
+                    if(previous == null){
+                        //The job may already be in the database if it has been moved from another store
+                        delete(connection, "ID = ?", id);
+                    }
+                    PreparedStatement statement = previous == null ? insertJob : updateJob;
+                    statement.setString(1, snapshot.state.name());
+                    statement.setInt(2, snapshot.progress);
+                    statement.setLong(3, snapshot.startTime);
+                    statement.setLong(4, snapshot.endTime);
+                    if(snapshot.destroyDate == -1){
+                        statement.setNull(5, Types.BIGINT);
+                    }
+                    else {
+                        statement.setLong(5, snapshot.destroyDate);
+                    }
+                    statement.setLong(6, now);
+                    if(previous == null){
+                        statement.setString(7, job.getProcess() == null ? null :
+                                job.getProcess().getIdentifier().getValue());
+                        statement.setString(8, id);
+                    }
+                    else {
+                        statement.setString(7, id);
+                    }
+                    statement.addBatch();
+                    //Only the log entries created since the previous writing are inserted
+                    for(JobLogEntry log : job.getLogs(previous == null ? 0 : previous.lastLogSequence)){
+                        if(log.getSequence() > snapshot.lastLogSequence){
+                            break;
+                        }
+                        insertLog.setString(1, id);
+                        insertLog.setLong(2, log.getSequence());
+                        insertLog.setLong(3, log.getTime());
+                        insertLog.setString(4, log.getLogType().name());
+                        insertLog.setString(5, log.getMessage());
+                        insertLog.addBatch();
+                    }
+                    if(snapshot.endTime != -1 && (previous == null || previous.endTime == -1)){
+                        for(Map.Entry<URI, Object> output : getOutputs(job).entrySet()){
+                            String type = getOutputType(output.getValue());
+                            if(type == null){
+                                LOGGER.warn(I18N.tr("The output {0} of the job {1} is not a simple value, it is not " +
+                                        "written in the database.", output.getKey(), id));
+                                continue;
+                            }
+                            insertOutput.setString(1, id);
+                            insertOutput.setString(2, output.getKey().toString());
+                            insertOutput.setString(3, type);
+                            insertOutput.setString(4, output.getValue() == null ? null : output.getValue().toString());
+                            insertOutput.addBatch();
+                        }
+                    }
+                }
+                insertJob.executeBatch();
+                updateJob.executeBatch();
+                insertLog.executeBatch();
+                insertOutput.executeBatch();
+                connection.commit();
+                for(Map.Entry<LocalJob, Snapshot> entry : modifiedJobs.entrySet()){
+                    entry.getKey().written = entry.getValue();
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            LOGGER.error(I18N.tr("Unable to write the jobs in the database.\nCause : {0}.", e.getMessage()));
+        }
+    }
+
+    /**
+     * Refreshes in the database the heartbeat of the unfinished jobs of this server.
+     */
+    private void beat(){
+        List<String> ids = new ArrayList<>();
+        for(LocalJob localJob : jobMap.values()){
+            Snapshot written = localJob.written;
+            if(written != null && written.endTime == -1){
+                ids.add(localJob.job.getId().toString());
+            }
+        }
+        if(ids.isEmpty()){
+            return;
+        }
+        try(Connection connection = dataSource.getConnection();
+            PreparedStatement statement = connection.prepareStatement("UPDATE " + JOB_TABLE +
+                    " SET HEARTBEAT = ? WHERE ID = ?")) {
+            long now = System.currentTimeMillis();
+            for(String id : ids){
+                statement.setLong(1, now);
+                statement.setString(2, id);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException e) {
+            LOGGER.error(I18N.tr("Unable to refresh the heartbeat of the jobs.\nCause : {0}.", e.getMessage()));
+        }
+    }
+
+    /**
+     * Marks as failed the unfinished jobs whose heartbeat is older than the given time. Those jobs were executed by a
+     * server which has stopped or crashed, so they will never finish. An error is added to their logs and they are
+     * given a destroy date as the other finished jobs.
+     *
+     * @param heartbeatLimit Time in milliseconds before which the heartbeat of a running job is considered as lost.
+     * @return The number of jobs marked as failed.
+     */
+    int failOrphanedJobs(long heartbeatLimit){
+        String condition = " WHERE STATE IN (?, ?) AND (HEARTBEAT IS NULL OR HEARTBEAT < ?)";
+        try(Connection connection = dataSource.getConnection()) {
+            List<String> ids = new ArrayList<>();
+            try(PreparedStatement statement = connection.prepareStatement("SELECT ID FROM " + JOB_TABLE +
+                    condition)) {
+                statement.setString(1, ProcessState.ACCEPTED.name());
+                statement.setString(2, ProcessState.RUNNING.name());
+                statement.setLong(3, heartbeatLimit);
+                try(ResultSet resultSet = statement.executeQuery()) {
+                    while(resultSet.next()){
+                        ids.add(resultSet.getString(1));
+                    }
+                }
+            }
+            if(ids.isEmpty()){
+                return 0;
+            }
+            long now = System.currentTimeMillis();
+            String message = I18N.tr("The job has been interrupted by the stop of its server.");
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try(PreparedStatement insertLog = connection.prepareStatement("INSERT INTO " + LOG_TABLE +
+                    "(JOB_ID, SEQUENCE, LOG_TIME, LOG_TYPE, MESSAGE) SELECT ?, COALESCE(MAX(SEQUENCE), 0) + 1, ?, ?, ? " +
+                    "FROM " + LOG_TABLE + " WHERE JOB_ID = ?");
+                PreparedStatement updateJob = connection.prepareStatement("UPDATE " + JOB_TABLE +
+                    " SET STATE = ?, END_TIME = ?, DESTROY_DATE = ? WHERE ID = ?")) {
+                for(String id : ids){
+                    insertLog.setString(1, id);
+                    insertLog.setLong(2, now);
+                    insertLog.setString(3, LogType.ERROR.name());
+                    insertLog.setString(4, message);
+                    insertLog.setString(5, id);
+                    insertLog.addBatch();
+                    updateJob.setString(1, ProcessState.FAILED.name());
+                    updateJob.setLong(2, now);
+                    if(destroyDelay == 0){
+                        updateJob.setNull(3, Types.BIGINT);
+                    }
+                    else {
+                        updateJob.setLong(3, now + destroyDelay);
+                    }
+                    updateJob.setString(4, id);
+                    updateJob.addBatch();
+                }
+                insertLog.executeBatch();
+                updateJob.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            LOGGER.warn(I18N.tr("{0} orphaned jobs have been marked as failed.", ids.size()));
+            return ids.size();
+        } catch (SQLException e) {
+            LOGGER.error(I18N.tr("Unable to mark the orphaned jobs as failed.\nCause : {0}.", e.getMessage()));
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the job with the given id from the database.
+     *
+     * @param jobId Id of the job.
+     * @return The job, or null if there is no job with this id or if it has expired.
+     */
+    private WpsJob read(UUID jobId){
+        String id = jobId.toString();
+        try(Connection connection = dataSource.getConnection()) {
+            String processId;
+            ProcessState state;
+            int progress;
+            long startTime;
+            long endTime;
+            try(PreparedStatement statement = connection.prepareStatement("SELECT PROCESS_ID, STATE, PROGRESS, " +
+                    "START_TIME, END_TIME, DESTROY_DATE FROM " + JOB_TABLE + " WHERE ID = ?")) {
+                statement.setString(1, id);
+                try(ResultSet resultSet = statement.executeQuery()) {
+                    if(!resultSet.next()){
+                        return null;
+                    }
+                    long destroyDate = resultSet.getLong(6);
+                    if(!resultSet.wasNull() && destroyDate <= System.currentTimeMillis()){
+                        return null;
+                    }
+                    processId = resultSet.getString(1);
+                    state = ProcessState.valueOf(resultSet.getString(2));
+                    progress = resultSet.getInt(3);
+                    startTime = resultSet.getLong(4);
+                    endTime = resultSet.getLong(5);
+                }
+            }
+            Map<URI, Object> dataMap = new HashMap<>();
+            try(PreparedStatement statement = connection.prepareStatement("SELECT OUTPUT_ID, OUTPUT_TYPE, " +
+                    "OUTPUT_VALUE FROM " + OUTPUT_TABLE + " WHERE JOB_ID = ?")) {
+                statement.setString(1, id);
+                try(ResultSet resultSet = statement.executeQuery()) {
+                    while(resultSet.next()){
+                        dataMap.put(URI.create(resultSet.getString(1)),
+                                parseOutput(resultSet.getString(2), resultSet.getString(3)));
+                    }
+                }
+            }
+            List<JobLogEntry> logs = new ArrayList<>();
+            try(PreparedStatement statement = connection.prepareStatement("SELECT SEQUENCE, LOG_TIME, LOG_TYPE, " +
+                    "MESSAGE FROM " + LOG_TABLE + " WHERE JOB_ID = ? ORDER BY SEQUENCE")) {
+                statement.setString(1, id);
+                try(ResultSet resultSet = statement.executeQuery()) {
+                    while(resultSet.next()){
+                        logs.add(new JobLogEntry(resultSet.getLong(1), resultSet.getLong(2),
+                                LogType.valueOf(resultSet.getString(3)), resultSet.getString(4)));
+                    }
+                }
+            }
+            Job job = new Job(getProcess(processId, dataMap), jobId, dataMap, maxPollingDelay, basePollingDelay);
+            job.restore(state, progress, startTime, endTime, logs);
+            return job;
+        } catch (SQLException e) {
+            LOGGER.error(I18N.tr("Unable to read the job {0} from the database.\nCause : {1}.", jobId, e.getMessage()));
+            return null;
+        }
+    }
+
+    /**
+     * Returns the description of the process with the given identifier. If the process is not loaded by this server,
+     * a description containing only the identifiers of the process and of the given outputs is returned.
+     *
+     * @param processId Identifier of the process.
+     * @param outputMap Map of the outputs of the job.
+     * @return The description of the process.
+     */
+    private ProcessDescriptionType getProcess(String processId, Map<URI, Object> outputMap){
+        CodeType codeType = new CodeType();
+        codeType.setValue(processId);
+        ProcessDescriptionType process = processManager == null ? null : processManager.getProcess(codeType);
+        if(process == null){
+            process = new ProcessDescriptionType();
+            process.setIdentifier(codeType);
+            for(URI outputId : outputMap.keySet()){
+                OutputDescriptionType output = new OutputDescriptionType();
+                CodeType outputCodeType = new CodeType();
+                outputCodeType.setValue(outputId.toString());
+                output.setIdentifier(outputCodeType);
+                process.getOutput().add(output);
+            }
+        }
+        return process;
+    }
+
+    /**
+     * Returns the outputs of the given job.
+     *
+     * @param job Job.
+     * @return Map of the outputs with their identifier.
+     */
+    private static Map<URI, Object> getOutputs(WpsJob job){
+        Map<URI, Object> outputMap = new HashMap<>();
+        if(job.getProcess() == null || job.getDataMap() == null){
+            return outputMap;
+        }
+        for(OutputDescriptionType output : job.getProcess().getOutput()){
+            URI outputId = URI.create(output.getIdentifier().getValue());
+            if(job.getDataMap().containsKey(outputId)){
+                outputMap.put(outputId, job.getDataMap().get(outputId));
+            }
+        }
+        return outputMap;
+    }
+
+    /**
+     * Returns the type under which the given output value is written in the database.
+     *
+     * @param value Value of the output.
+     * @return The type of the value, or null if it is not a simple value.
+     */
+    static String getOutputType(Object value){
+        if(value == null){
+            return "NULL";
+        }
+        else if(value instanceof String){
+            return "STRING";
+        }
+        else if(value instanceof Boolean){
+            return "BOOLEAN";
+        }
+        else if(value instanceof Integer || value instanceof Short || value instanceof Byte){
+            return "INTEGER";
+        }
+        else if(value instanceof Long){
+            return "LONG";
+        }
+        else if(value instanceof Double || value instanceof Float){
+            return "DOUBLE";
+        }
+        else if(value instanceof BigInteger){
+            return "BIGINTEGER";
+        }
+        else if(value instanceof BigDecimal){
+            return "BIGDECIMAL";
+        }
+        return null;
+    }
+
+    /**
+     * Returns the output value read from the database with its type.
+     *
+     * @param type Type of the value, as returned by {@link #getOutputType(Object)}.
+     * @param value String representation of the value.
+     * @return The output value.
+     */
+    static Object parseOutput(String type, String value){
+        if(value == null || type == null){
+            return value;
+        }
+        switch (type){
+            case "BOOLEAN":
+                return Boolean.valueOf(value);
+            case "INTEGER":
+                return Integer.valueOf(value);
+            case "LONG":
+                return Long.valueOf(value);
+            case "DOUBLE":
+                return Double.valueOf(value);
+            case "BIGINTEGER":
+                return new BigInteger(value);
+            case "BIGDECIMAL":
+                return new BigDecimal(value);
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Deletes from the database the jobs matching the given condition, with their results and logs.
+     *
+     * @param connection Connection to the database.
+     * @param condition SQL condition on the job table with one parameter.
+     * @param parameter Parameter of the condition.
+     * @return The number of deleted jobs.
+     */
+    private static int delete(Connection connection, String condition, Object parameter) throws SQLException {
+        String jobIds = "SELECT ID FROM " + JOB_TABLE + " WHERE " + condition;
+        try(PreparedStatement deleteOutputs = connection.prepareStatement("DELETE FROM " + OUTPUT_TABLE +
+                " WHERE JOB_ID IN (" + jobIds + ")");
+            PreparedStatement deleteLogs = connection.prepareStatement("DELETE FROM " + LOG_TABLE +
+                    " WHERE JOB_ID IN (" + jobIds + ")");
+            PreparedStatement deleteJobs = connection.prepareStatement("DELETE FROM " + JOB_TABLE +
+                    " WHERE " + condition)) {
+            deleteOutputs.setObject(1, parameter);
+            deleteOutputs.executeUpdate();
+            deleteLogs.setObject(1, parameter);
+            deleteLogs.executeUpdate();
+            deleteJobs.setObject(1, parameter);
+            return deleteJobs.executeUpdate();
+        }
+    }
+
+    /**
+     * Removes from the memory the finished job which has finished first and which has been written in the database.
+     * As in the {@link InMemoryJobStore}, the data of the evicted job is destroyed, so its temporary result files are
+     * deleted. The job is still available from the database, but only with the outputs written in it.
+     * @return True if a job has been evicted, false otherwise.
+     */
+    private boolean evictOldestFinishedJob(){
+        LocalJob oldest = null;
+        for(LocalJob localJob : jobMap.values()){
+            if(localJob.written != null && localJob.written.endTime != -1 &&
+                    (oldest == null || localJob.written.endTime < oldest.written.endTime)){
+                oldest = localJob;
+            }
+        }
+        if(oldest == null || !jobMap.remove(oldest.job.getId(), oldest)){
+            return false;
+        }
+        evictedJobCount.incrementAndGet();
+        InMemoryJobStore.destroy(oldest.job);
+        return true;
+    }
+
+    /**
+     * Job executed by this server, with the last state written in the database.
+     */
+    private class LocalJob {
+        /** Stored job. */
+        private final WpsJob job;
+        /** Time in milliseconds when the job should be destroyed, -1 if not scheduled. */
+        private volatile long destroyDate = -1;
+        /** Last state written in the database, null if the job has not been written yet. */
+        private volatile Snapshot written;
+
+        LocalJob(WpsJob job){
+            this.job = job;
+        }
+
+        /**
+         * Returns the time when the job should be destroyed.
+         * @return The destroy time in milliseconds, or -1 if the job does not expire.
+         */
+        long getDestroyDate(){
+            if(destroyDelay == 0 || !job.isFinished()){
+                return -1;
+            }
+            return Math.max(job.getEndTime() + destroyDelay, destroyDate);
+        }
+
+        /**
+         * Returns true if the job has expired at the given time.
+         * @param now Time in milliseconds.
+         * @return True if the job has expired, false otherwise.
+         */
+        boolean isExpired(long now){
+            long date = getDestroyDate();
+            return date != -1 && now >= date;
+        }
+    }
+
+    /**
+     * State of a job at a given time, used to know if it should be written again in the database.
+     */
+    private static class Snapshot {
+        private final ProcessState state;
+        private final int progress;
+        private final long startTime;
+        private final long endTime;
+        private final long destroyDate;
+        private final long lastLogSequence;
+
+        Snapshot(LocalJob localJob){
+            WpsJob job = localJob.job;
+            endTime = job.getEndTime();
+            state = job.getState();
+            progress = job.getProgress();
+            startTime = job.getStartTime();
+            destroyDate = localJob.getDestroyDate();
+            lastLogSequence = job.getLastLogSequence();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Snapshot)){
+                return false;
+            }
+            Snapshot snapshot = (Snapshot) obj;
+            return state == snapshot.state && progress == snapshot.progress && startTime == snapshot.startTime &&
+                    endTime == snapshot.endTime && destroyDate == snapshot.destroyDate &&
+                    lastLogSequence == snapshot.lastLogSequence;
+        }
+
+        @Override
+        public int hashCode() {
+            return state.hashCode() * 31 + progress;
+        }
+    }
+}
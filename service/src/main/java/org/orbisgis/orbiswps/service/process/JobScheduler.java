@@ -0,0 +1,403 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import net.opengis.ows._2.MetadataType;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Scheduler of the process executions.
+ * It runs at most a given number of ProcessWorker at the same time. The other ones are kept in a FIFO queue until a
+ * running slot is freed. The size of the queue is bounded, so once it is full the new jobs are refused.
+ *
+ * A process can also limit the number of its running instances with the CONCURRENCY_GROUP and MAX_PARALLEL
+ * metadata (see {@link ProcessMetadata}). A queued job whose group is full is skipped, so it does not block the jobs
+ * queued after it. As the processes of a group share the same counter, the limit of a group is the lowest MAX_PARALLEL
+ * value declared by the processes of the group submitted so far.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class JobScheduler {
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobScheduler.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(JobScheduler.class);
+
+    /** Maximum number of jobs running at the same time. */
+    private final int maxRunningJobs;
+    /** Maximum number of jobs waiting for a free running slot. */
+    private final int maxQueuedJobs;
+    /** ExecutorService used to run the jobs. If null, the jobs are run in the calling thread. */
+    private volatile ExecutorService executorService;
+    /** FIFO queue of the jobs waiting for a free running slot. */
+    private final LinkedList<JobTask> queue = new LinkedList<>();
+    /** Map of the queued and running jobs with their id. */
+    private final Map<UUID, JobTask> jobTaskMap = new HashMap<>();
+    /** Number of jobs actually running. */
+    private int runningJobs = 0;
+    /** Number of jobs actually running for each concurrency group. */
+    private final Map<String, Integer> runningJobsByGroup = new HashMap<>();
+    /** Maximum number of running jobs of each limited concurrency group : the lowest MAX_PARALLEL declared. */
+    private final Map<String, Integer> groupLimits = new HashMap<>();
+
+    /**
+     * Main constructor.
+     *
+     * @param executorService ExecutorService used to run the jobs. If null, the jobs are run in the calling thread.
+     * @param maxRunningJobs Maximum number of jobs running at the same time.
+     * @param maxQueuedJobs Maximum number of jobs waiting for a free running slot.
+     */
+    public JobScheduler(ExecutorService executorService, int maxRunningJobs, int maxQueuedJobs){
+        this.executorService = executorService;
+        this.maxRunningJobs = Math.max(1, maxRunningJobs);
+        this.maxQueuedJobs = Math.max(0, maxQueuedJobs);
+    }
+
+    /**
+     * Sets the ExecutorService used to run the jobs.
+     * @param executorService The ExecutorService to use. If null, the jobs are run in the calling thread.
+     */
+    public void setExecutorService(ExecutorService executorService){
+        this.executorService = executorService;
+    }
+
+    /**
+     * Submit a new ProcessWorker. It is run immediately if a running slot is free, otherwise it is queued.
+     *
+     * @param worker ProcessWorker to run.
+     * @return The Future of the job, or null if the queue is full and the job has been refused.
+     */
+    public Future submit(ProcessWorker worker){
+        JobTask task = new JobTask(worker);
+        synchronized (this) {
+            if(task.maxParallel > 0){
+                Integer limit = groupLimits.get(task.concurrencyGroup);
+                if(limit == null || task.maxParallel < limit){
+                    groupLimits.put(task.concurrencyGroup, task.maxParallel);
+                }
+            }
+            if(!canStart(task)){
+                if(queue.size() >= maxQueuedJobs){
+                    LOGGER.warn(I18N.tr("Unable to queue the job {0}, the maximum number of queued jobs ({1}) is " +
+                            "reached.", worker.getJobId(), maxQueuedJobs));
+                    return null;
+                }
+                queue.addLast(task);
+                jobTaskMap.put(task.getJobId(), task);
+                return task;
+            }
+            take(task);
+            jobTaskMap.put(task.getJobId(), task);
+        }
+        start(task);
+        return task;
+    }
+
+    /**
+     * Cancel the job with the given id. If the job is queued, it is removed from the queue and marked as failed, if it
+     * is running its ProgressMonitor is cancelled, its running queries are cancelled and its thread is interrupted.
+     * The running slot of a job which has not started yet is released immediately. The one of a running job is only
+     * released once its worker has returned, as the script may ignore the cancellation and keep its connection.
+     *
+     * @param jobId Id of the job to cancel.
+     * @return True if the job was queued or running, false otherwise.
+     */
+    public boolean cancel(UUID jobId){
+        JobTask task;
+        synchronized (this) {
+            task = jobTaskMap.get(jobId);
+        }
+        return task != null && task.cancel(true);
+    }
+
+    /**
+     * Returns the Future of the queued or running job with the given id.
+     * @param jobId Id of the job.
+     * @return The Future of the job, or null if the job is neither queued nor running.
+     */
+    public synchronized Future getFuture(UUID jobId){
+        return jobTaskMap.get(jobId);
+    }
+
+    /**
+     * Returns the number of running jobs.
+     * @return The number of running jobs.
+     */
+    public synchronized int getRunningJobCount(){
+        return runningJobs;
+    }
+
+    /**
+     * Returns the number of jobs waiting for a free running slot.
+     * @return The number of queued jobs.
+     */
+    public synchronized int getQueuedJobCount(){
+        return queue.size();
+    }
+
+    /**
+     * Returns the maximum number of jobs running at the same time.
+     * @return The maximum number of running jobs.
+     */
+    public int getMaxRunningJobs(){
+        return maxRunningJobs;
+    }
+
+    /**
+     * Returns the maximum number of running jobs of the given concurrency group.
+     * @param concurrencyGroup Name of the concurrency group.
+     * @return The lowest MAX_PARALLEL declared by the processes of the group, or 0 if the group is not limited.
+     */
+    public synchronized int getGroupLimit(String concurrencyGroup){
+        Integer limit = groupLimits.get(concurrencyGroup);
+        return limit == null ? 0 : limit;
+    }
+
+    /**
+     * Returns the number of running jobs of the given concurrency group.
+     * @param concurrencyGroup Name of the concurrency group.
+     * @return The number of running jobs of the group.
+     */
+    public synchronized int getRunningJobCount(String concurrencyGroup){
+        Integer count = runningJobsByGroup.get(concurrencyGroup);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Returns true if there is a free running slot for the given task, false otherwise.
+     * Should be called with the JobScheduler lock.
+     * @param task Task to check.
+     * @return True if the task can be started.
+     */
+    private boolean canStart(JobTask task){
+        if(runningJobs >= maxRunningJobs){
+            return false;
+        }
+        Integer limit = groupLimits.get(task.concurrencyGroup);
+        if(limit == null){
+            return true;
+        }
+        Integer groupCount = runningJobsByGroup.get(task.concurrencyGroup);
+        return groupCount == null || groupCount < limit;
+    }
+
+    /**
+     * Takes a running slot for the given task. Should be called with the JobScheduler lock.
+     * @param task Task taking the slot.
+     */
+    private void take(JobTask task){
+        task.started = true;
+        runningJobs++;
+        Integer groupCount = runningJobsByGroup.get(task.concurrencyGroup);
+        runningJobsByGroup.put(task.concurrencyGroup, groupCount == null ? 1 : groupCount + 1);
+    }
+
+    /**
+     * Releases the running slot of the given task. Should be called with the JobScheduler lock.
+     * @param task Task releasing the slot.
+     */
+    private void release(JobTask task){
+        runningJobs--;
+        Integer groupCount = runningJobsByGroup.get(task.concurrencyGroup);
+        if(groupCount == null || groupCount <= 1){
+            runningJobsByGroup.remove(task.concurrencyGroup);
+        }
+        else {
+            runningJobsByGroup.put(task.concurrencyGroup, groupCount - 1);
+        }
+    }
+
+    /**
+     * Runs the given task with the ExecutorService or in the calling thread if there is no ExecutorService.
+     * @param task Task to run.
+     */
+    private void start(JobTask task){
+        ExecutorService executor = executorService;
+        if(executor == null){
+            task.run();
+            return;
+        }
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.error(I18N.tr("Unable to run the job {0}.\nCause : {1}.", task.getJobId(), e.getMessage()));
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Action done when the worker of a task has returned or when a task is cancelled before running : release its slot
+     * and start the next queued tasks.
+     * @param task The finished task.
+     */
+    private void onTaskDone(JobTask task){
+        List<JobTask> nextList = new ArrayList<>();
+        synchronized (this) {
+            if(task.released){
+                return;
+            }
+            task.released = true;
+            jobTaskMap.remove(task.getJobId());
+            if(task.started){
+                release(task);
+            }
+            else {
+                queue.remove(task);
+            }
+            //Start the first queued tasks which can be started, in the FIFO order.
+            Iterator<JobTask> it = queue.iterator();
+            while(runningJobs < maxRunningJobs && it.hasNext()){
+                JobTask next = it.next();
+                if(canStart(next)){
+                    it.remove();
+                    take(next);
+                    nextList.add(next);
+                }
+            }
+        }
+        for(JobTask next : nextList){
+            start(next);
+        }
+    }
+
+    /**
+     * FutureTask wrapping a ProcessWorker which notifies the scheduler once its worker has returned, or once cancelled
+     * if the worker has never been run.
+     */
+    private class JobTask extends FutureTask<Object> {
+        /** Worker run by the task. */
+        private final ProcessWorker worker;
+        /** Id of the job run by the task. */
+        private final UUID jobId;
+        /** Concurrency group of the process. */
+        private final String concurrencyGroup;
+        /** MAX_PARALLEL declared by the process, lower than 1 for no limit. */
+        private final int maxParallel;
+        /** True if the task has taken a running slot. Guarded by the JobScheduler lock. */
+        private boolean started = false;
+        /** True once the task is run by a thread. Guarded by the JobScheduler lock. */
+        private boolean entered = false;
+        /** True once the task has released its slot or left the queue. Guarded by the JobScheduler lock. */
+        private boolean released = false;
+
+        JobTask(ProcessWorker worker){
+            super(worker, null);
+            this.worker = worker;
+            this.jobId = worker.getJobId();
+            ProcessDescriptionType process = worker.getProcess();
+            String group = process.getIdentifier().getValue();
+            int max = 0;
+            for(MetadataType metadata : process.getMetadata()){
+                if(ProcessMetadata.CONCURRENCY_GROUP_NAME.equalsIgnoreCase(metadata.getRole()) &&
+                        metadata.getTitle() != null && !metadata.getTitle().isEmpty()){
+                    group = metadata.getTitle();
+                }
+                else if(ProcessMetadata.MAX_PARALLEL_NAME.equalsIgnoreCase(metadata.getRole())){
+                    try {
+                        max = Integer.parseInt(metadata.getTitle());
+                    } catch (NumberFormatException e) {
+                        LOGGER.warn(I18N.tr("Invalid {0} metadata value : {1}.", ProcessMetadata.MAX_PARALLEL_NAME,
+                                metadata.getTitle()));
+                    }
+                }
+            }
+            this.concurrencyGroup = group;
+            this.maxParallel = max;
+        }
+
+        UUID getJobId(){
+            return jobId;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning){
+            //Dismisses the queued job or stops the running queries, so the running slot is freed promptly
+            worker.cancel();
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public void run(){
+            synchronized (JobScheduler.this) {
+                //Cancelled before its start, its slot is already released
+                if(released){
+                    return;
+                }
+                entered = true;
+            }
+            try {
+                super.run();
+            }
+            finally {
+                onTaskDone(this);
+            }
+        }
+
+        @Override
+        protected void done(){
+            //The slot of a running task is released once its worker returns, not when it is cancelled
+            boolean neverRun;
+            synchronized (JobScheduler.this) {
+                neverRun = !entered;
+            }
+            if(neverRun){
+                onTaskDone(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import net.opengis.wps._2_0.DataDescriptionType;
+import net.opengis.wps._2_0.DescriptionType;
+import net.opengis.wps._2_0.InputDescriptionType;
+import net.opengis.wps._2_0.LiteralDataType;
+import net.opengis.wps._2_0.OutputDescriptionType;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import org.orbisgis.orbiswps.groovyapi.attributes.DescriptionTypeAttribute;
+import org.orbisgis.orbiswps.service.model.Enumeration;
+import org.orbisgis.orbiswps.service.model.JDBCColumn;
+import org.orbisgis.orbiswps.service.model.JDBCValue;
+import org.orbisgis.orbiswps.service.model.RawData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binding plan between the inputs and outputs of a process and the fields of its script class.
+ *
+ * The plan is built once for a process class : the field of each input and output is resolved and its setter and
+ * getter are converted into MethodHandle, and the conversion to apply on the input data is chosen according to the
+ * input type. So binding the data of a job does not need any reflective lookup.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class ProcessBinding {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessBinding.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(ProcessBinding.class);
+
+    /** Generic type of the field setters : (Object script, Object value)void. */
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    /** Generic type of the field getters : (Object script)Object. */
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    /** Conversion to apply to the data of an input before setting it in the script. */
+    private enum Conversion {
+        /** The data is set as it is. */
+        NONE,
+        /** The data is a list of values separated by tabulations. */
+        SPLIT,
+        /** The data is converted into the number type of the field. */
+        NUMBER,
+        /** The data 'true' or 'false' is converted into a boolean. */
+        BOOLEAN
+    }
+
+    /** Binding of an input or an output with its field. */
+    private static class FieldBinding {
+        /** URI of the input or output. */
+        private final URI identifier;
+        /** Setter of the field. */
+        private final MethodHandle setter;
+        /** Getter of the field. */
+        private final MethodHandle getter;
+        /** Conversion of the data before setting it. */
+        private final Conversion conversion;
+        /** 'valueOf(String)' method of the field number type, used by the NUMBER conversion. */
+        private final MethodHandle valueOf;
+
+        private FieldBinding(URI identifier, MethodHandle setter, MethodHandle getter, Conversion conversion,
+                             MethodHandle valueOf){
+            this.identifier = identifier;
+            this.setter = setter;
+            this.getter = getter;
+            this.conversion = conversion;
+            this.valueOf = valueOf;
+        }
+    }
+
+    /** Class of the process script. */
+    private final Class processClass;
+    /** Bindings of the inputs. */
+    private final List<FieldBinding> inputBindingList;
+    /** Bindings of the outputs. */
+    private final List<FieldBinding> outputBindingList;
+
+    /**
+     * Builds the binding plan of the given process with the given script class.
+     * @param process Process description.
+     * @param processClass Class of the process script.
+     */
+    public ProcessBinding(ProcessDescriptionType process, Class processClass){
+        this.processClass = processClass;
+        String processId = process.getIdentifier().getValue();
+        List<FieldBinding> inputBindings = new ArrayList<>();
+        for(InputDescriptionType input : process.getInput()){
+            FieldBinding binding = createBinding(processId, input, input.getDataDescription().getValue());
+            if(binding != null){
+                inputBindings.add(binding);
+            }
+        }
+        List<FieldBinding> outputBindings = new ArrayList<>();
+        for(OutputDescriptionType output : process.getOutput()){
+            FieldBinding binding = createBinding(processId, output, null);
+            if(binding != null){
+                outputBindings.add(binding);
+            }
+        }
+        inputBindingList = Collections.unmodifiableList(inputBindings);
+        outputBindingList = Collections.unmodifiableList(outputBindings);
+    }
+
+    /**
+     * Returns the class of the process script used to build the plan.
+     * @return The class of the process script.
+     */
+    public Class getProcessClass(){
+        return processClass;
+    }
+
+    /**
+     * Sets the data of the inputs and outputs into the given script object.
+     * @param scriptObject Instance of the process class.
+     * @param dataMap Map of the data of the inputs and outputs.
+     */
+    public void bind(Object scriptObject, Map<URI, Object> dataMap){
+        for(FieldBinding binding : inputBindingList){
+            set(binding, scriptObject, convert(binding, dataMap.get(binding.identifier)));
+        }
+        for(FieldBinding binding : outputBindingList){
+            set(binding, scriptObject, dataMap.get(binding.identifier));
+        }
+    }
+
+    /**
+     * Retrieves the data of the inputs and outputs from the given script object and stores them into the data map.
+     * @param scriptObject Instance of the process class.
+     * @param dataMap Map of the data of the inputs and outputs.
+     */
+    public void retrieve(Object scriptObject, Map<URI, Object> dataMap){
+        for(FieldBinding binding : inputBindingList){
+            dataMap.put(binding.identifier, get(binding, scriptObject));
+        }
+        for(FieldBinding binding : outputBindingList){
+            dataMap.put(binding.identifier, get(binding, scriptObject));
+        }
+    }
+
+    /**
+     * Creates the binding of the given input or output.
+     * @param processId Identifier of the process.
+     * @param description Description of the input or output.
+     * @param inputDataDescription Data description of the input, null for an output.
+     * @return The binding, or null if there is no field corresponding to the input or output.
+     */
+    private FieldBinding createBinding(String processId, DescriptionType description,
+                                       DataDescriptionType inputDataDescription){
+        String descriptionId = description.getIdentifier().getValue();
+        //The last matching field is used
+        Field field = null;
+        for(Field f : processClass.getDeclaredFields()){
+            for(Annotation a : f.getDeclaredAnnotations()){
+                if(a instanceof DescriptionTypeAttribute){
+                    String id = ((DescriptionTypeAttribute) a).identifier();
+                    if(descriptionId.equals(processId+":"+id) || descriptionId.equals(id) ||
+                            descriptionId.equals(processId+":"+f.getName())){
+                        field = f;
+                    }
+                }
+            }
+        }
+        if(field == null){
+            return null;
+        }
+        field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle setter;
+        MethodHandle getter;
+        try {
+            setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            LOGGER.error(I18N.tr("Unable to access to the field {0}.\nCause : {1}.", field, e.getMessage()));
+            return null;
+        }
+        Conversion conversion = Conversion.NONE;
+        MethodHandle valueOf = null;
+        if(inputDataDescription instanceof JDBCValue ||
+                inputDataDescription instanceof JDBCColumn ||
+                inputDataDescription instanceof Enumeration ||
+                inputDataDescription instanceof RawData){
+            conversion = Conversion.SPLIT;
+        }
+        else if(inputDataDescription instanceof LiteralDataType){
+            if(Number.class.isAssignableFrom(field.getType())){
+                try {
+                    valueOf = lookup.findStatic(field.getType(), "valueOf",
+                            MethodType.methodType(field.getType(), String.class))
+                            .asType(MethodType.methodType(Object.class, String.class));
+                    conversion = Conversion.NUMBER;
+                } catch (NoSuchMethodException|IllegalAccessException e) {
+                    LOGGER.warn(I18N.tr("Unable to convert the LiteralData to the good script type."));
+                }
+            }
+            else {
+                conversion = Conversion.BOOLEAN;
+            }
+        }
+        return new FieldBinding(URI.create(descriptionId), setter, getter, conversion, valueOf);
+    }
+
+    /**
+     * Converts the given input data according to the binding.
+     * @param binding Binding of the input.
+     * @param data Data to convert.
+     * @return The converted data.
+     */
+    private static Object convert(FieldBinding binding, Object data){
+        if(data == null){
+            return null;
+        }
+        switch(binding.conversion){
+            case SPLIT:
+                return data.toString().split("\\t");
+            case NUMBER:
+                try {
+                    return (Object) binding.valueOf.invokeExact(data.toString());
+                } catch (RuntimeException|Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    LOGGER.warn(I18N.tr("Unable to convert the LiteralData to the good script type."));
+                    return data;
+                }
+            case BOOLEAN:
+                if(data.equals("true") || data.equals("false")){
+                    return data.equals("true");
+                }
+                return data;
+            default:
+                return data;
+        }
+    }
+
+    /**
+     * Sets the value of the bound field.
+     * @param binding Binding of the field.
+     * @param scriptObject Instance of the process class.
+     * @param value Value to set.
+     */
+    private static void set(FieldBinding binding, Object scriptObject, Object value){
+        try {
+            binding.setter.invokeExact(scriptObject, value);
+        } catch (RuntimeException|Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns the value of the bound field.
+     * @param binding Binding of the field.
+     * @param scriptObject Instance of the process class.
+     * @return The value of the field.
+     */
+    private static Object get(FieldBinding binding, Object scriptObject){
+        try {
+            return (Object) binding.getter.invokeExact(scriptObject);
+        } catch (RuntimeException|Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
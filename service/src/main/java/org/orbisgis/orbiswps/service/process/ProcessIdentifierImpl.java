@@ -46,6 +46,7 @@ import org.xnap.commons.i18n.I18n;
 import org.xnap.commons.i18n.I18nFactory;
 
 import java.net.URL;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -68,6 +69,15 @@ public class ProcessIdentifierImpl implements ProcessIdentifier {
 
     private Map<String, Object> properties;
 
+    /** Compiled class of the process script. */
+    private Class processClass;
+    /** Last modification date of the script source when the class was compiled, 0 if unknown. */
+    private long processClassLastModified;
+    /** Binding plan of the process inputs and outputs with the fields of the process class. */
+    private ProcessBinding processBinding;
+    /** Translations of the process precomputed by language. The map is never modified, only replaced. */
+    private volatile Map<String, ProcessDescriptionType> translatedProcessMap = Collections.emptyMap();
+
     /**
      * Main constructor.
      *
@@ -96,6 +106,24 @@ public class ProcessIdentifierImpl implements ProcessIdentifier {
 
     public void setI18n(I18n i18n){
         this.i18n = i18n;
+        this.translatedProcessMap = Collections.emptyMap();
+    }
+
+    /**
+     * Returns the precomputed translation of the process in the given language.
+     * @param language Language of the translation.
+     * @return The translated process, or null if it has not been precomputed.
+     */
+    public ProcessDescriptionType getTranslatedProcess(String language){
+        return translatedProcessMap.get(language);
+    }
+
+    /**
+     * Sets the precomputed translations of the process.
+     * @param translatedProcessMap Map of the translated processes by language.
+     */
+    public void setTranslatedProcesses(Map<String, ProcessDescriptionType> translatedProcessMap){
+        this.translatedProcessMap = Collections.unmodifiableMap(new HashMap<>(translatedProcessMap));
     }
 
     /**
@@ -144,4 +172,47 @@ public class ProcessIdentifierImpl implements ProcessIdentifier {
     public Map<String, Object> getProperties() {
         return properties;
     }
+
+    /**
+     * Returns the compiled class of the process script.
+     * @return The class of the script, null if not compiled.
+     */
+    public Class getProcessClass() {
+        return processClass;
+    }
+
+    /**
+     * Returns the last modification date of the script source when the class was compiled.
+     * @return The last modification date in milliseconds, 0 if unknown.
+     */
+    public long getProcessClassLastModified() {
+        return processClassLastModified;
+    }
+
+    /**
+     * Sets the compiled class of the process script.
+     * @param processClass The class of the script.
+     * @param lastModified Last modification date of the script source when the class was compiled, 0 if unknown.
+     */
+    public void setProcessClass(Class processClass, long lastModified) {
+        this.processClass = processClass;
+        this.processClassLastModified = lastModified;
+        this.processBinding = null;
+    }
+
+    /**
+     * Returns the binding plan of the process class.
+     * @return The binding plan, null if not built for the current process class.
+     */
+    public ProcessBinding getProcessBinding() {
+        return processBinding;
+    }
+
+    /**
+     * Sets the binding plan of the process class.
+     * @param processBinding The binding plan.
+     */
+    public void setProcessBinding(ProcessBinding processBinding) {
+        this.processBinding = processBinding;
+    }
 }
@@ -48,9 +48,8 @@ import org.orbisgis.orbiswps.serviceapi.model.MalformedScriptException;
 import org.orbisgis.orbiswps.serviceapi.WpsServer;
 import org.orbisgis.orbiswps.service.parser.ParserController;
 import org.orbisgis.orbiswps.service.utils.CancelClosure;
+import org.orbisgis.orbiswps.service.utils.WpsConnectionPool;
 import org.orbisgis.orbiswps.service.utils.WpsSql;
-import org.orbisgis.orbiswps.service.model.*;
-import org.orbisgis.orbiswps.service.model.Enumeration;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata.DBMS_TYPE;
@@ -63,12 +62,18 @@ import javax.sql.DataSource;
 import java.io.File;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Class used to manage process.
@@ -78,16 +83,24 @@ import java.util.*;
  **/
 
 public class ProcessManager {
-    /** List of process identifier*/
-    private List<ProcessIdentifier> processIdList;
+    /** Registry of the process identifiers. */
+    private final ProcessRegistry processRegistry;
     /** Controller used to parse process */
     private ParserController parserController;
-    /** DataSource to use. */
+    /** DataSource to use, wrapped in the connection pool if it is enabled. */
     private DataSource dataSource;
+    /** DataSource given to the ProcessManager. */
+    private DataSource rawDataSource;
+    /** Maximum number of connections of the built-in pool, 0 if the DataSource is used as it is. */
+    private int connectionPoolSize = 0;
     /** WpsServer to use. */
     private WpsServer wpsServer;
-    /** Map of closure for the process cancellation. */
-    private Map<UUID, CancelClosure> closureMap;
+    /** Map of closure for the process cancellation, with the id of the running job. */
+    private final Map<UUID, CancelClosure> closureMap;
+    /** Number of running jobs by process class, used to defer the release of the replaced or removed classes. */
+    private final Map<Class, Integer> runningClassMap = new HashMap<>();
+    /** Replaced or removed process classes waiting for the end of their running jobs to be released. */
+    private final Set<Class> retiredClassSet = new HashSet<>();
     /** Logger object. */
     private static final Logger LOGGER = LoggerFactory.getLogger(ProcessManager.class);
     /** I18N object */
@@ -100,45 +113,106 @@ public class ProcessManager {
      * @param wpsServer
      */
     public ProcessManager(DataSource dataSource, WpsServer wpsServer){
-        processIdList = new ArrayList<>();
+        processRegistry = new ProcessRegistry();
         parserController = new ParserController();
         this.setDataSource(dataSource);
         this.wpsServer = wpsServer;
-        this.closureMap = new HashMap<>();
-        //Method get from H2GIS JDBCUtilities to avoid adding a dependency
-        try {
-            if(dataSource!=null && dataSource.getConnection()!=null && dataSource.getConnection().getMetaData()!=null) {
-                String driverName = dataSource.getConnection().getMetaData().getDriverName();
-                database = driverName.equalsIgnoreCase("H2 JDBC Driver") ? DBMS_TYPE.H2GIS : DBMS_TYPE.POSTGIS;
-            }
-        } catch (SQLException ignore) {
-            LOGGER.error((I18N.tr("Unable detect if the dataSource is H2GIS or Postgresql")));
-        }
+        this.closureMap = new ConcurrentHashMap<>();
     }
 
     /**
-     * Sets the DataSource that should be used by the ProcessManager
+     * Sets the DataSource that should be used by the ProcessManager. The type of the database is detected once here.
+     * If the connection pool is enabled, the DataSource is wrapped in a new pool and the previous one is closed.
      * @param dataSource The DataSource that should be used by the ProcessManager
      */
     public void setDataSource(DataSource dataSource){
-        this.dataSource = dataSource;
-        //Method get from H2GIS JDBCUtilities to avoid adding a dependency
-        try {
-            if(dataSource!=null && dataSource.getConnection()!=null && dataSource.getConnection().getMetaData()!=null) {
-                String driverName = dataSource.getConnection().getMetaData().getDriverName();
-                database = driverName.equalsIgnoreCase("H2 JDBC Driver") ? DBMS_TYPE.H2GIS : DBMS_TYPE.POSTGIS;
+        DataSource oldDataSource = this.dataSource;
+        this.rawDataSource = dataSource;
+        if(dataSource != null && connectionPoolSize > 0){
+            this.dataSource = new WpsConnectionPool(dataSource, connectionPoolSize, WpsConnectionPool.DEFAULT_TIMEOUT);
+        }
+        else {
+            this.dataSource = dataSource;
+        }
+        if(oldDataSource instanceof WpsConnectionPool){
+            ((WpsConnectionPool) oldDataSource).close();
+        }
+        if(this.dataSource != null) {
+            //Method get from H2GIS JDBCUtilities to avoid adding a dependency
+            try (Connection connection = this.dataSource.getConnection()) {
+                if (connection != null && connection.getMetaData() != null) {
+                    String driverName = connection.getMetaData().getDriverName();
+                    database = driverName.equalsIgnoreCase("H2 JDBC Driver") ? DBMS_TYPE.H2GIS : DBMS_TYPE.POSTGIS;
+                }
+            } catch (SQLException ignore) {
+                LOGGER.error((I18N.tr("Unable detect if the dataSource is H2GIS or Postgresql")));
             }
-        } catch (SQLException ignore) {
-            LOGGER.error((I18N.tr("Unable detect if the dataSource is H2GIS or Postgresql")));
         }
     }
 
+    /**
+     * Sets the size of the built-in connection pool, used for a DataSource which does not pool its connections.
+     * @param connectionPoolSize Maximum number of connections of the pool, 0 to use the DataSource as it is.
+     */
+    public void setConnectionPoolSize(int connectionPoolSize){
+        if(this.connectionPoolSize != connectionPoolSize) {
+            this.connectionPoolSize = Math.max(0, connectionPoolSize);
+            setDataSource(rawDataSource);
+        }
+    }
+
+    /**
+     * Sets the directory of the on disk cache of the compiled scripts.
+     * @param cacheDirectory Directory of the cache, or null to compile the scripts on each start.
+     */
+    public void setScriptCacheDirectory(File cacheDirectory){
+        parserController.setScriptCacheDirectory(cacheDirectory);
+    }
+
     /**
      * Adds a script which is at the given URI and returns its process identifier.
      * @param scriptUri Uri of the process.
      * @return Process identifier corresponding to the process.
      */
     public ProcessIdentifier addScript(URI scriptUri){
+        return registerProcess(parseScript(scriptUri));
+    }
+
+    /**
+     * Adds a script which is at the given URL and returns its process identifier.
+     * @param scriptUrl Url of the process.
+     * @return Process identifier corresponding to the process.
+     */
+    public ProcessIdentifier addScript(URL scriptUrl){
+        return registerProcess(parseScript(scriptUrl));
+    }
+
+    /**
+     * Adds all the scripts at the given URLs. The scripts are compiled and parsed in parallel, then registered in the
+     * order of the list, so if two scripts have the same identifier, the first one of the list is kept.
+     * @param scriptUrlList List of the script URLs.
+     * @return The list of process identifier corresponding to the scripts which have been added.
+     */
+    public List<ProcessIdentifier> addScripts(List<URL> scriptUrlList){
+        List<Callable<ProcessIdentifierImpl>> parsingTaskList = new ArrayList<>();
+        for(final URL url : scriptUrlList){
+            parsingTaskList.add(new Callable<ProcessIdentifierImpl>() {
+                @Override
+                public ProcessIdentifierImpl call() throws Exception {
+                    return parseScript(url);
+                }
+            });
+        }
+        return parseAndRegister(parsingTaskList);
+    }
+
+    /**
+     * Parses the script which is at the given URI without registering it.
+     * @param scriptUri Uri of the process.
+     * @return The process identifier of the script with its compiled class, a process identifier without process if the
+     * script is not compatible with the database or null if the script is not valid.
+     */
+    private ProcessIdentifierImpl parseScript(URI scriptUri){
         File f = new File(scriptUri);
         if(!f.exists()){
             LOGGER.error(I18N.tr("The script file doesn't exists."));
@@ -146,20 +220,19 @@ public class ProcessManager {
         }
         //Test that the script name is not only '.groovy'
         if (f.getName().endsWith(".groovy") && f.getName().length()>7) {
-            //Ensure that the process does not already exists.
             //Parse the process
             ProcessOffering processOffering = null;
+            long lastModified = f.lastModified();
+            Class clazz = parserController.getProcessClass(f.getAbsolutePath());
             try {
-                processOffering = parserController.parseProcess(f.getAbsolutePath());
+                if(clazz != null) {
+                    processOffering = parserController.parseProcess(clazz, f.toURI());
+                }
                 if(processOffering == null){
+                    parserController.releaseProcessClass(clazz);
                     LOGGER.error(I18N.tr("Unable to parse the process {0}.", scriptUri));
                     return null;
                 }
-                if(getProcess(processOffering.getProcess().getIdentifier()) != null){
-                    LOGGER.warn(I18N.tr("A process with the identifier {0} already exists.",
-                            processOffering.getProcess().getIdentifier().getValue()));
-                    return null;
-                }
                 //Check if the process is compatible with the DBMS connected to OrbisGIS.
                 boolean isAcceptedDBMS = true;
                 for(MetadataType metadata : processOffering.getProcess().getMetadata()){
@@ -177,16 +250,19 @@ public class ProcessManager {
                     }
                 }
                 if(!isAcceptedDBMS){
+                    parserController.releaseProcessClass(clazz);
                     return new ProcessIdentifierImpl(null, "");
                 }
             } catch (MalformedScriptException e) {
+                parserController.releaseProcessClass(clazz);
+                processOffering = null;
                 LOGGER.error(I18N.tr("Unable to parse the process {0}.\nCause : {1}", scriptUri, e.getMessage()), e);
             }
-            //If the process is not already registered
             if(processOffering != null) {
-                //Save the process in a ProcessIdentifier
-                ProcessIdentifier pi = new ProcessIdentifierImpl(processOffering, f.getAbsolutePath());
-                processIdList.add(pi);
+                //Save the process and its compiled class in a ProcessIdentifier
+                ProcessIdentifierImpl pi = new ProcessIdentifierImpl(processOffering, f.getAbsolutePath());
+                pi.setProcessClass(clazz, lastModified);
+                pi.setProcessBinding(new ProcessBinding(processOffering.getProcess(), clazz));
                 return pi;
             }
         }
@@ -195,27 +271,27 @@ public class ProcessManager {
     }
 
     /**
-     * Adds a script which is at the given URL and returns its process identifier.
+     * Parses the script which is at the given URL without registering it.
      * @param scriptUrl Url of the process.
-     * @return Process identifier corresponding to the process.
+     * @return The process identifier of the script with its compiled class, a process identifier without process if the
+     * script is not compatible with the database or null if the script is not valid.
      */
-    public ProcessIdentifier addScript(URL scriptUrl){
+    private ProcessIdentifierImpl parseScript(URL scriptUrl){
         //Test that the script name is not only '.groovy'
         if (scriptUrl.toString().endsWith(".groovy") && scriptUrl.toString().length()>7) {
-            //Ensure that the process does not already exists.
             //Parse the process
             ProcessOffering processOffering = null;
+            long lastModified = getLastModified(scriptUrl);
+            Class clazz = parserController.getProcessClass(scriptUrl);
             try {
-                processOffering = parserController.parseProcess(scriptUrl);
+                if(clazz != null) {
+                    processOffering = parserController.parseProcess(clazz, scriptUrl.toURI());
+                }
                 if(processOffering == null){
+                    parserController.releaseProcessClass(clazz);
                     LOGGER.error(I18N.tr("Unable to parse the process {0}.", scriptUrl));
                     return null;
                 }
-                if(getProcess(processOffering.getProcess().getIdentifier()) != null){
-                    LOGGER.warn(I18N.tr("A process with the identifier {0} already exists.",
-                            processOffering.getProcess().getIdentifier().getValue()));
-                    return null;
-                }
                 //Check if the process is compatible with the DBMS connected to OrbisGIS.
                 boolean isAcceptedDBMS = true;
                 for(MetadataType metadata : processOffering.getProcess().getMetadata()){
@@ -233,16 +309,23 @@ public class ProcessManager {
                     }
                 }
                 if(!isAcceptedDBMS){
+                    parserController.releaseProcessClass(clazz);
                     return new ProcessIdentifierImpl(null, "");
                 }
             } catch (MalformedScriptException e) {
+                parserController.releaseProcessClass(clazz);
+                processOffering = null;
                 LOGGER.error(I18N.tr("Unable to parse the process {0}.\nCause : {1}", scriptUrl.toString(), e.getMessage()), e);
+            } catch (URISyntaxException e) {
+                parserController.releaseProcessClass(clazz);
+                processOffering = null;
+                LOGGER.error(I18N.tr("unable to generate the URI of the process {0}.", scriptUrl.toString()));
             }
-            //If the process is not already registered
             if(processOffering != null) {
-                //Save the process in a ProcessIdentifier
-                ProcessIdentifier pi = new ProcessIdentifierImpl(processOffering, scriptUrl);
-                processIdList.add(pi);
+                //Save the process and its compiled class in a ProcessIdentifier
+                ProcessIdentifierImpl pi = new ProcessIdentifierImpl(processOffering, scriptUrl);
+                pi.setProcessClass(clazz, lastModified);
+                pi.setProcessBinding(new ProcessBinding(processOffering.getProcess(), clazz));
                 return pi;
             }
         }
@@ -250,27 +333,110 @@ public class ProcessManager {
         return null;
     }
 
+    /**
+     * Registers a parsed process if there is no other process with the same identifier.
+     * The check and the registration are done atomically, so two scripts with the same identifier can't be registered
+     * at the same time.
+     * @param pi Process identifier returned by the parsing of the script.
+     * @return The registered process identifier, the given one if it has no process or null if it was not registered.
+     */
+    private ProcessIdentifier registerProcess(ProcessIdentifierImpl pi){
+        if(pi == null || pi.getProcessOffering() == null){
+            return pi;
+        }
+        //Ensure that the process does not already exists.
+        String identifier = pi.getProcessDescriptionType().getIdentifier().getValue();
+        if(processRegistry.getByInputOutputIdentifier(identifier) != null || !processRegistry.add(pi)){
+            parserController.releaseProcessClass(pi.getProcessClass());
+            LOGGER.warn(I18N.tr("A process with the identifier {0} already exists.", identifier));
+            return null;
+        }
+        return pi;
+    }
+
+    /**
+     * Runs the given parsing tasks on a pool bounded by the number of available processors and registers their results
+     * in the order of the task list.
+     * @param parsingTaskList List of the script parsing tasks.
+     * @return The list of the registered process identifiers.
+     */
+    private List<ProcessIdentifier> parseAndRegister(List<Callable<ProcessIdentifierImpl>> parsingTaskList){
+        List<ProcessIdentifier> piList = new ArrayList<>();
+        if(parsingTaskList.isEmpty()){
+            return piList;
+        }
+        int poolSize = Math.min(parsingTaskList.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executorService = Executors.newFixedThreadPool(poolSize);
+        try {
+            List<Future<ProcessIdentifierImpl>> futureList = executorService.invokeAll(parsingTaskList);
+            //The registration follows the task order to keep it independent from the parsing duration of each script
+            for(Future<ProcessIdentifierImpl> future : futureList){
+                try {
+                    ProcessIdentifier pi = registerProcess(future.get());
+                    if(pi != null) {
+                        piList.add(pi);
+                    }
+                } catch (ExecutionException e) {
+                    LOGGER.error(I18N.tr("Unable to parse the script.\nCause : {0}.", e.getCause().getMessage()));
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.error(I18N.tr("The script registration has been interrupted."));
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+        return piList;
+    }
+
     /**
      * Adds a local source to the toolbox and get all the groovy script.
+     * The scripts are registered in the alphabetical order of their file name.
      * @param uri URI to the local source.
      * @return The list of process identifier corresponding to the given uri.
      */
     public List<ProcessIdentifier> addLocalSource(URI uri){
-        List<ProcessIdentifier> piList = new ArrayList<>();
         File folder = new File(uri);
+        List<Callable<ProcessIdentifierImpl>> parsingTaskList = new ArrayList<>();
         if(folder.exists() && folder.isDirectory()){
-            for(File f : folder.listFiles()){
-                ProcessIdentifier pi = addScript(f.toURI());
-                if(pi != null) {
-                    piList.add(pi);
-                }
+            File[] files = folder.listFiles();
+            Arrays.sort(files);
+            for(final File f : files){
+                parsingTaskList.add(new Callable<ProcessIdentifierImpl>() {
+                    @Override
+                    public ProcessIdentifierImpl call() throws Exception {
+                        return parseScript(f.toURI());
+                    }
+                });
             }
         }
-        return piList;
+        return parseAndRegister(parsingTaskList);
+    }
+
+    /**
+     * Creates the Sql object of a job executing the given process. All the queries of the job are run on a single
+     * connection, and in a single transaction if the process has the TRANSACTIONAL metadata. The caller is
+     * responsible for ending the transaction and closing the Sql object.
+     * @param process Description of the process to execute.
+     * @return The Sql object of the job, null if there is no DataSource.
+     */
+    public WpsSql createJobSql(ProcessDescriptionType process){
+        if(dataSource == null){
+            return null;
+        }
+        WpsSql sql = WpsSql.createJobSql(dataSource);
+        for(MetadataType metadata : process.getMetadata()){
+            if(ProcessMetadata.TRANSACTIONAL_NAME.equalsIgnoreCase(metadata.getRole()) &&
+                    Boolean.parseBoolean(metadata.getTitle())){
+                sql.setJobTransaction(true);
+            }
+        }
+        return sql;
     }
 
     /**
-     * Execute the given process with the given model.
+     * Execute the given process with the given model. The queries of the process are run on a single connection in
+     * auto commit mode, closed at the end of the execution.
      * @param jobId UUID of the job to execute.
      * @param processIdentifier ProcessIdentifier of the process to execute.
      * @param dataMap Map containing the model for the process.
@@ -284,204 +450,268 @@ public class ProcessManager {
             Map<URI, Object> dataMap,
             Map<String, Object> propertiesMap,
             ProgressMonitor progressMonitor){
+        WpsSql sql = dataSource != null ? WpsSql.createJobSql(dataSource) : null;
+        try {
+            return executeProcess(jobId, processIdentifier, dataMap, propertiesMap, progressMonitor, sql);
+        }
+        finally {
+            if(sql != null) {
+                sql.close();
+            }
+        }
+    }
+
+    /**
+     * Execute the given process with the given model and the given Sql object. The Sql object is not closed.
+     * @param jobId UUID of the job to execute.
+     * @param processIdentifier ProcessIdentifier of the process to execute.
+     * @param dataMap Map containing the model for the process.
+     * @param propertiesMap Map containing the properties for the GroovyObject.
+     * @param progressMonitor ProgressMonitor associated to the process execution.
+     * @param sql Sql object of the job, created with {@link #createJobSql(ProcessDescriptionType)}, can be null.
+     * @return The groovy object on which the 'processing' method will be called.
+     */
+    public GroovyObject executeProcess(
+            UUID jobId,
+            ProcessIdentifier processIdentifier,
+            Map<URI, Object> dataMap,
+            Map<String, Object> propertiesMap,
+            ProgressMonitor progressMonitor,
+            WpsSql sql){
 
         ProcessDescriptionType process = processIdentifier.getProcessDescriptionType();
-        Class clazz;
-        if(processIdentifier.getFilePath() != null){
-            clazz = parserController.getProcessClass(processIdentifier.getFilePath());
+        ProcessBinding binding = getProcessBinding(processIdentifier);
+        if(binding == null){
+            return null;
         }
-        else if(processIdentifier.getSourceUrl() != null){
-            clazz = parserController.getProcessClass(processIdentifier.getSourceUrl());
+        try {
+            return runProcess(jobId, processIdentifier, process, binding, dataMap, propertiesMap, progressMonitor, sql);
         }
-        else{
-            clazz = null;
+        finally {
+            endProcessClassUse(binding.getProcessClass());
         }
-        GroovyObject groovyObject = createProcess(process, clazz, dataMap);
+    }
+
+    /**
+     * Execute the given process with its binding plan.
+     * @param jobId UUID of the job to execute.
+     * @param processIdentifier ProcessIdentifier of the process to execute.
+     * @param process Description of the process.
+     * @param binding Binding plan of the process class.
+     * @param dataMap Map containing the model for the process.
+     * @param propertiesMap Map containing the properties for the GroovyObject.
+     * @param progressMonitor ProgressMonitor associated to the process execution.
+     * @param sql Sql object of the job, can be null.
+     * @return The groovy object on which the 'processing' method has been called.
+     */
+    private GroovyObject runProcess(
+            UUID jobId,
+            ProcessIdentifier processIdentifier,
+            ProcessDescriptionType process,
+            ProcessBinding binding,
+            Map<URI, Object> dataMap,
+            Map<String, Object> propertiesMap,
+            ProgressMonitor progressMonitor,
+            WpsSql sql){
+        GroovyObject groovyObject = createProcess(process, binding, dataMap);
         if(groovyObject != null) {
             CancelClosure closure = new CancelClosure(this);
             closureMap.put(jobId, closure);
-            if(propertiesMap != null) {
-                for (Map.Entry<String, Object> entry : propertiesMap.entrySet()) {
-                    groovyObject.setProperty(entry.getKey(), entry.getValue());
+            try {
+                //The job may have been cancelled before the registration of its closure
+                if (progressMonitor != null && progressMonitor.isCanceled()) {
+                    closure.cancel();
                 }
+                if (propertiesMap != null) {
+                    for (Map.Entry<String, Object> entry : propertiesMap.entrySet()) {
+                        groovyObject.setProperty(entry.getKey(), entry.getValue());
+                    }
+                }
+                if (sql != null) {
+                    sql.withStatement(closure);
+                    groovyObject.setProperty("sql", sql);
+                    groovyObject.setProperty("isH2", database == DBMS_TYPE.H2GIS);
+                }
+                groovyObject.setProperty("i18n", processIdentifier.getI18n());
+                groovyObject.setProperty("logger", LoggerFactory.getLogger(ProcessManager.class));
+                groovyObject.setProperty("progressMonitor", progressMonitor);
+                groovyObject.invokeMethod("processing", null);
+                retrieveData(process, binding, groovyObject, dataMap);
             }
-            if (dataSource != null) {
-                WpsSql sql = new WpsSql(dataSource);
-                sql.withStatement(closure);
-                groovyObject.setProperty("sql", sql);
-                groovyObject.setProperty("isH2", database.equals(DBMS_TYPE.H2GIS));
+            finally {
+                closureMap.remove(jobId);
             }
-            groovyObject.setProperty("i18n", processIdentifier.getI18n());
-            groovyObject.setProperty("logger", LoggerFactory.getLogger(ProcessManager.class));
-            groovyObject.setProperty("progressMonitor", progressMonitor);
-            groovyObject.invokeMethod("processing", null);
-            retrieveData(process, clazz, groovyObject, dataMap);
         }
         return groovyObject;
     }
 
     /**
-     * Retrieve the model from the groovy object and store the into the dataMap.
-     * @param process Process that has generate the groovy object.
-     * @param groovyObject GroovyObject containing the processed model.
-     * @param dataMap Map linking the model and their identifier.
+     * Returns the binding plan of the compiled class of the given process. The class compiled on the process
+     * registration and its plan are reused as long as the script source has not been modified, otherwise the script is
+     * compiled again. The class of a registered process is counted as used by a running job until
+     * {@link #endProcessClassUse(Class)} is called, so it is not released while the job is running.
+     * @param processIdentifier ProcessIdentifier of the process.
+     * @return The binding plan of the process script, null if the script can't be compiled.
      */
-    private void retrieveData(ProcessDescriptionType process, Class clazz, GroovyObject groovyObject, Map<URI, Object> dataMap){
-        ProcessIdentifier pi = null;
-        for(ProcessIdentifier proId : processIdList){
-            if(proId.getProcessDescriptionType().getIdentifier().getValue().equals(process.getIdentifier().getValue())){
-                pi = proId;
-            }
+    private ProcessBinding getProcessBinding(ProcessIdentifier processIdentifier){
+        long lastModified;
+        if(processIdentifier.getFilePath() != null){
+            lastModified = new File(processIdentifier.getFilePath()).lastModified();
         }
-        if(pi == null){
-            return;
+        else if(processIdentifier.getSourceUrl() != null){
+            lastModified = getLastModified(processIdentifier.getSourceUrl());
         }
-        try {
-            for(InputDescriptionType i : process.getInput()) {
-                Field field = null;
-                for(Field f : clazz.getDeclaredFields()){
-                    for(Annotation a : f.getDeclaredAnnotations()){
-                        if(a instanceof DescriptionTypeAttribute){
-                            DescriptionTypeAttribute descriptionTypeAttribute = (DescriptionTypeAttribute) a;
-                            String id = descriptionTypeAttribute.identifier();
-                            String inputId = i.getIdentifier().getValue();
-                            String processId = process.getIdentifier().getValue();
-                            if(inputId.equals(processId+":"+id) || inputId.equals(id) ||
-                                    inputId.equals(processId+":"+f.getName())){
-                                field = f;
-                            }
-                        }
-                    }
-                }
-                if(field != null) {
-                    field.setAccessible(true);
-                    dataMap.put(URI.create(i.getIdentifier().getValue()), field.get(groovyObject));
-                }
+        else{
+            return null;
+        }
+        if(!(processIdentifier instanceof ProcessIdentifierImpl)){
+            Class clazz = compileProcessClass(processIdentifier);
+            if(clazz == null){
+                return null;
             }
-            for(OutputDescriptionType o : process.getOutput()) {
-                Field field = null;
-                for(Field f : clazz.getDeclaredFields()){
-                    for(Annotation a : f.getDeclaredAnnotations()){
-                        if(a instanceof DescriptionTypeAttribute){
-                            DescriptionTypeAttribute descriptionTypeAttribute = (DescriptionTypeAttribute) a;
-                            String id = descriptionTypeAttribute.identifier();
-                            String outputId = o.getIdentifier().getValue();
-                            String processId = process.getIdentifier().getValue();
-                            if(outputId.equals(processId+":"+id) || outputId.equals(id) ||
-                                    outputId.equals(processId+":"+f.getName())){
-                                field = f;
-                            }
-                        }
-                    }
-                }
-                if(field != null) {
-                    field.setAccessible(true);
-                    dataMap.put(URI.create(o.getIdentifier().getValue()), field.get(groovyObject));
+            return new ProcessBinding(processIdentifier.getProcessDescriptionType(), clazz);
+        }
+        ProcessIdentifierImpl pi = (ProcessIdentifierImpl) processIdentifier;
+        synchronized (pi) {
+            Class clazz = pi.getProcessClass();
+            if(clazz == null || pi.getProcessClassLastModified() != lastModified) {
+                Class newClazz = compileProcessClass(pi);
+                if(newClazz != null) {
+                    pi.setProcessClass(newClazz, lastModified);
+                    retireProcessClass(clazz);
+                    clazz = newClazz;
                 }
             }
-        } catch (IllegalAccessException e) {
-            LoggerFactory.getLogger(ProcessManager.class).error(e.getMessage());
+            if(clazz == null){
+                return null;
+            }
+            ProcessBinding binding = pi.getProcessBinding();
+            if(binding == null || binding.getProcessClass() != clazz){
+                binding = new ProcessBinding(pi.getProcessDescriptionType(), clazz);
+                pi.setProcessBinding(binding);
+            }
+            //The use is counted under the process lock, so the class can't be retired before
+            startProcessClassUse(clazz);
+            return binding;
+        }
+    }
+
+    /**
+     * Counts a running job using the given process class.
+     * @param clazz Process class.
+     */
+    private void startProcessClassUse(Class clazz){
+        synchronized (runningClassMap) {
+            Integer count = runningClassMap.get(clazz);
+            runningClassMap.put(clazz, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Ends the use of the given process class by a running job. If the class has been retired and is no more used, it
+     * is released. Does nothing if the class use was not counted.
+     * @param clazz Process class.
+     */
+    private void endProcessClassUse(Class clazz){
+        synchronized (runningClassMap) {
+            Integer count = runningClassMap.get(clazz);
+            if(count == null){
+                return;
+            }
+            if(count > 1){
+                runningClassMap.put(clazz, count - 1);
+                return;
+            }
+            runningClassMap.remove(clazz);
+            if(!retiredClassSet.remove(clazz)){
+                return;
+            }
+        }
+        parserController.releaseProcessClass(clazz);
+    }
+
+    /**
+     * Releases a replaced or removed process class. As the running jobs may still load classes of the script (like its
+     * closures) or use its metaclass, the release is deferred until the end of the last job using the class.
+     * @param clazz Process class to release, can be null.
+     */
+    private void retireProcessClass(Class clazz){
+        if(clazz == null){
+            return;
+        }
+        synchronized (runningClassMap) {
+            if(runningClassMap.containsKey(clazz)){
+                retiredClassSet.add(clazz);
+                return;
+            }
+        }
+        parserController.releaseProcessClass(clazz);
+    }
+
+    /**
+     * Compiles the script of the given process.
+     * @param processIdentifier ProcessIdentifier of the process.
+     * @return The class of the process script.
+     */
+    private Class compileProcessClass(ProcessIdentifier processIdentifier){
+        if(processIdentifier.getFilePath() != null){
+            return parserController.getProcessClass(processIdentifier.getFilePath());
+        }
+        else if(processIdentifier.getSourceUrl() != null){
+            return parserController.getProcessClass(processIdentifier.getSourceUrl());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the last modification date of the script at the given URL. Only the local files are checked, the other
+     * sources (like the bundle resources) can't change while registered.
+     * @param scriptUrl URL of the script.
+     * @return The last modification date in milliseconds, 0 if unknown.
+     */
+    private static long getLastModified(URL scriptUrl){
+        if("file".equals(scriptUrl.getProtocol())){
+            try {
+                return new File(scriptUrl.toURI()).lastModified();
+            } catch (URISyntaxException|IllegalArgumentException ignored) {}
         }
+        return 0;
+    }
+
+    /**
+     * Retrieve the model from the groovy object and store the into the dataMap.
+     * @param process Process that has generate the groovy object.
+     * @param binding Binding plan of the process class.
+     * @param groovyObject GroovyObject containing the processed model.
+     * @param dataMap Map linking the model and their identifier.
+     */
+    private void retrieveData(ProcessDescriptionType process, ProcessBinding binding, GroovyObject groovyObject,
+                              Map<URI, Object> dataMap){
+        if(processRegistry.get(process.getIdentifier().getValue()) == null){
+            return;
+        }
+        binding.retrieve(groovyObject, dataMap);
     }
 
     /**
      * Create a groovy object corresponding to the process with the given model.
      * @param process Process that will generate the groovy object.
+     * @param binding Binding plan of the process class.
      * @param dataMap Map of the model for the process.
      * @return A groovy object representing the process with the given model.
      */
-    private GroovyObject createProcess(ProcessDescriptionType process, Class clazz, Map<URI, Object> dataMap){
-        ProcessIdentifier pi = null;
-        for(ProcessIdentifier proId : processIdList){
-            if(proId.getProcessDescriptionType().getIdentifier().getValue().equals(process.getIdentifier().getValue())){
-                pi = proId;
-            }
-        }
-        if(pi == null){
+    private GroovyObject createProcess(ProcessDescriptionType process, ProcessBinding binding, Map<URI, Object> dataMap){
+        if(processRegistry.get(process.getIdentifier().getValue()) == null){
             return null;
         }
         GroovyObject groovyObject;
         try {
-            groovyObject = (GroovyObject) clazz.newInstance();
+            groovyObject = (GroovyObject) binding.getProcessClass().newInstance();
         } catch (InstantiationException|IllegalAccessException e) {
             LoggerFactory.getLogger(ProcessManager.class).error(e.getMessage());
             return null;
         }
-        try {
-            for(InputDescriptionType i : process.getInput()) {
-                Field field = null;
-                for(Field f : clazz.getDeclaredFields()){
-                    for(Annotation a : f.getDeclaredAnnotations()){
-                        if(a instanceof DescriptionTypeAttribute){
-                            DescriptionTypeAttribute descriptionTypeAttribute = (DescriptionTypeAttribute) a;
-                            String id = descriptionTypeAttribute.identifier();
-                            String inputId = i.getIdentifier().getValue();
-                            String processId = process.getIdentifier().getValue();
-                            if(inputId.equals(processId+":"+id) || inputId.equals(id) ||
-                                    inputId.equals(processId+":"+f.getName())){
-                                field = f;
-                            }
-                        }
-                    }
-                }
-                if(field != null) {
-                    field.setAccessible(true);
-                    Object data = dataMap.get(URI.create(i.getIdentifier().getValue()));
-                    //If the descriptionType contains a JDBCValue, a JDBCColumn or an Enumeration, parse the value
-                    // which is coma separated.
-                    DataDescriptionType dataDescriptionType = i.getDataDescription().getValue();
-                    if(dataDescriptionType instanceof JDBCValue ||
-                            dataDescriptionType instanceof JDBCColumn ||
-                            dataDescriptionType instanceof Enumeration ||
-                            dataDescriptionType instanceof RawData){
-                        if(data != null) {
-                            data = data.toString().split("\\t");
-                        }
-                    }
-                    if(dataDescriptionType instanceof LiteralDataType) {
-                        if (Number.class.isAssignableFrom(field.getType()) && data != null) {
-                            try {
-                                Method valueOf = field.getType().getMethod("valueOf", String.class);
-                                if (valueOf != null) {
-                                    valueOf.setAccessible(true);
-                                    data = valueOf.invoke(this, data.toString());
-                                }
-                            } catch (NoSuchMethodException | InvocationTargetException e) {
-                                LOGGER.warn(I18N.tr("Unable to convert the LiteralData to the good script type."));
-                            }
-                        }
-                        else if(data != null && (data.equals("true") || data.equals("false"))){
-                            data = data.equals("true");
-                        }
-                    }
-                    field.set(groovyObject, data);
-                }
-            }
-            for(OutputDescriptionType o : process.getOutput()) {
-                Field field = null;
-                for(Field f : clazz.getDeclaredFields()){
-                    for(Annotation a : f.getDeclaredAnnotations()){
-                        if(a instanceof DescriptionTypeAttribute){
-                            DescriptionTypeAttribute descriptionTypeAttribute = (DescriptionTypeAttribute) a;
-                            String id = descriptionTypeAttribute.identifier();
-                            String outputId = o.getIdentifier().getValue();
-                            String processId = process.getIdentifier().getValue();
-                            if(outputId.equals(processId+":"+id) || outputId.equals(id) ||
-                                    outputId.equals(processId+":"+f.getName())){
-                                field = f;
-                            }
-                        }
-                    }
-                }
-                if(field != null) {
-                    field.setAccessible(true);
-                    field.set(groovyObject, dataMap.get(URI.create(o.getIdentifier().getValue())));
-                }
-            }
-        } catch (IllegalAccessException e) {
-            LoggerFactory.getLogger(ProcessManager.class).error(e.getMessage());
-            return null;
-        }
+        binding.bind(groovyObject, dataMap);
         return groovyObject;
     }
 
@@ -492,24 +722,14 @@ public class ProcessManager {
      * @return The process.
      */
     public ProcessDescriptionType getProcess(CodeType identifier){
-        for(ProcessIdentifier pi : processIdList){
-            if(pi.getProcessDescriptionType().getIdentifier().getValue().equals(identifier.getValue())){
-                return pi.getProcessDescriptionType();
-            }
+        ProcessIdentifier pi = processRegistry.get(identifier.getValue());
+        if(pi == null){
+            pi = processRegistry.getByInputOutputIdentifier(identifier.getValue());
         }
-        for(ProcessIdentifier pi : processIdList){
-            for(InputDescriptionType input : pi.getProcessDescriptionType().getInput()) {
-                if (input.getIdentifier().getValue().equals(identifier.getValue())) {
-                    return pi.getProcessDescriptionType();
-                }
-            }
-            for(OutputDescriptionType output : pi.getProcessDescriptionType().getOutput()) {
-                if (output.getIdentifier().getValue().equals(identifier.getValue())) {
-                    return pi.getProcessDescriptionType();
-                }
-            }
+        if(pi == null){
+            return null;
         }
-        return null;
+        return pi.getProcessDescriptionType();
     }
 
     /**
@@ -540,25 +760,39 @@ public class ProcessManager {
      * @param process Process to remove.
      */
     public void removeProcess(ProcessDescriptionType process) {
-        ProcessIdentifier toRemove = null;
-        for(ProcessIdentifier pi : processIdList){
-            if(pi.getProcessDescriptionType().getIdentifier().getValue().equals(process.getIdentifier().getValue())){
-                toRemove = pi;
-            }
-        }
-        if(toRemove != null){
-            processIdList.remove(toRemove);
+        ProcessIdentifier toRemove = processRegistry.get(process.getIdentifier().getValue());
+        if(toRemove != null && processRegistry.remove(toRemove)){
+            releaseProcessClass(toRemove);
         }
     }
+
+    /**
+     * Remove the process which script is at the given URL.
+     * @param processUrl URL of the script of the process to remove.
+     */
     public void removeProcess(URL processUrl) {
-        ProcessIdentifier toRemove = null;
-        for(ProcessIdentifier pi : processIdList){
-            if(pi.getSourceUrl().equals(processUrl)){
-                toRemove = pi;
-            }
+        ProcessIdentifier toRemove = processRegistry.getBySourceUrl(processUrl);
+        if(toRemove == null && "file".equals(processUrl.getProtocol())){
+            try {
+                toRemove = processRegistry.getByFilePath(new File(processUrl.toURI()).getAbsolutePath());
+            } catch (URISyntaxException|IllegalArgumentException ignored) {}
+        }
+        if(toRemove != null && processRegistry.remove(toRemove)){
+            releaseProcessClass(toRemove);
         }
-        if(toRemove != null){
-            processIdList.remove(toRemove);
+    }
+
+    /**
+     * Releases the compiled class of the given removed process.
+     * @param processIdentifier ProcessIdentifier of the removed process.
+     */
+    private void releaseProcessClass(ProcessIdentifier processIdentifier){
+        if(processIdentifier instanceof ProcessIdentifierImpl){
+            ProcessIdentifierImpl pi = (ProcessIdentifierImpl) processIdentifier;
+            synchronized (pi) {
+                retireProcessClass(pi.getProcessClass());
+                pi.setProcessClass(null, 0);
+            }
         }
     }
 
@@ -568,28 +802,30 @@ public class ProcessManager {
      * @return The process.
      */
     public ProcessIdentifier getProcessIdentifier(CodeType identifier){
-        for(ProcessIdentifier pi : processIdList){
-            if(pi.getProcessDescriptionType().getIdentifier().getValue().equals(identifier.getValue())){
-                return pi;
-            }
-        }
-        return null;
+        return processRegistry.get(identifier.getValue());
     }
 
     /**
-     * Returns all the process identifiers.
+     * Returns all the process identifiers, in their registration order. The returned list is read only and can be
+     * iterated while processes are added or removed.
      * @return All the process identifiers.
      */
     public List<ProcessIdentifier> getAllProcessIdentifier(){
-        return processIdList;
+        return processRegistry.getAll();
     }
 
     /**
-     * Cancel the job corresponding to the jobID.
+     * Cancel the running queries of the job corresponding to the jobID. The next queries of the job will fail.
      * @param jobId Id of the job to cancel.
+     * @return True if the job was running, false if it is not started or already finished.
      */
-    public void cancelProcess(UUID jobId){
-        closureMap.get(jobId).cancel();
+    public boolean cancelProcess(UUID jobId){
+        CancelClosure closure = closureMap.get(jobId);
+        if(closure == null){
+            return false;
+        }
+        closure.cancel();
+        return true;
     }
 
     /**
@@ -0,0 +1,200 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import net.opengis.wps._2_0.InputDescriptionType;
+import net.opengis.wps._2_0.OutputDescriptionType;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the ProcessIdentifier of the ProcessManager.
+ *
+ * The processes are indexed by their identifier, by the identifier of their inputs and outputs and by their source
+ * (URL or file path), so each lookup is done in constant time. The lookups are not blocking and can be done while
+ * processes are added or removed, the additions and removals being serialized.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class ProcessRegistry {
+
+    /** Registered processes, in the registration order. */
+    private final List<ProcessIdentifier> processIdList = new CopyOnWriteArrayList<>();
+    /** Processes indexed by their identifier. */
+    private final ConcurrentMap<String, ProcessIdentifier> processIdMap = new ConcurrentHashMap<>();
+    /** Processes indexed by the identifier of their inputs and outputs. */
+    private final ConcurrentMap<String, ProcessIdentifier> inputOutputIdMap = new ConcurrentHashMap<>();
+    /** Processes indexed by the URL of their script. */
+    private final ConcurrentMap<String, ProcessIdentifier> sourceUrlMap = new ConcurrentHashMap<>();
+    /** Processes indexed by the file path of their script. */
+    private final ConcurrentMap<String, ProcessIdentifier> filePathMap = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a process if there is no process registered with the same identifier.
+     * If an input or output identifier is already used by another process, the other process stays the one returned by
+     * {@link #getByInputOutputIdentifier(String)}.
+     * @param pi ProcessIdentifier to add.
+     * @return True if the process has been added, false otherwise.
+     */
+    public synchronized boolean add(ProcessIdentifier pi){
+        ProcessDescriptionType process = pi.getProcessDescriptionType();
+        if(processIdMap.putIfAbsent(process.getIdentifier().getValue(), pi) != null){
+            return false;
+        }
+        for(InputDescriptionType input : process.getInput()){
+            inputOutputIdMap.putIfAbsent(input.getIdentifier().getValue(), pi);
+        }
+        for(OutputDescriptionType output : process.getOutput()){
+            inputOutputIdMap.putIfAbsent(output.getIdentifier().getValue(), pi);
+        }
+        if(pi.getSourceUrl() != null){
+            sourceUrlMap.putIfAbsent(pi.getSourceUrl().toString(), pi);
+        }
+        if(pi.getFilePath() != null){
+            filePathMap.putIfAbsent(pi.getFilePath(), pi);
+        }
+        processIdList.add(pi);
+        return true;
+    }
+
+    /**
+     * Removes a process.
+     * @param pi ProcessIdentifier to remove.
+     * @return True if the process was registered, false otherwise.
+     */
+    public synchronized boolean remove(ProcessIdentifier pi){
+        if(!processIdList.remove(pi)){
+            return false;
+        }
+        ProcessDescriptionType process = pi.getProcessDescriptionType();
+        processIdMap.remove(process.getIdentifier().getValue(), pi);
+        for(InputDescriptionType input : process.getInput()){
+            removeInputOutputIdentifier(input.getIdentifier().getValue(), pi);
+        }
+        for(OutputDescriptionType output : process.getOutput()){
+            removeInputOutputIdentifier(output.getIdentifier().getValue(), pi);
+        }
+        if(pi.getSourceUrl() != null){
+            sourceUrlMap.remove(pi.getSourceUrl().toString(), pi);
+        }
+        if(pi.getFilePath() != null){
+            filePathMap.remove(pi.getFilePath(), pi);
+        }
+        return true;
+    }
+
+    /**
+     * Removes an input or output identifier from the index. If another registered process has an input or output with
+     * the same identifier, it takes its place in the index.
+     * @param identifier Identifier of the input or output.
+     * @param pi ProcessIdentifier removed.
+     */
+    private void removeInputOutputIdentifier(String identifier, ProcessIdentifier pi){
+        if(!inputOutputIdMap.remove(identifier, pi)){
+            return;
+        }
+        for(ProcessIdentifier other : processIdList){
+            for(InputDescriptionType input : other.getProcessDescriptionType().getInput()){
+                if(input.getIdentifier().getValue().equals(identifier)){
+                    inputOutputIdMap.putIfAbsent(identifier, other);
+                    return;
+                }
+            }
+            for(OutputDescriptionType output : other.getProcessDescriptionType().getOutput()){
+                if(output.getIdentifier().getValue().equals(identifier)){
+                    inputOutputIdMap.putIfAbsent(identifier, other);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the process with the given identifier.
+     * @param identifier Identifier of the process.
+     * @return The ProcessIdentifier of the process, or null if there is none.
+     */
+    public ProcessIdentifier get(String identifier){
+        return processIdMap.get(identifier);
+    }
+
+    /**
+     * Returns the process having an input or an output with the given identifier.
+     * @param identifier Identifier of the input or output.
+     * @return The ProcessIdentifier of the process, or null if there is none.
+     */
+    public ProcessIdentifier getByInputOutputIdentifier(String identifier){
+        return inputOutputIdMap.get(identifier);
+    }
+
+    /**
+     * Returns the process which script is at the given URL.
+     * @param sourceUrl URL of the script.
+     * @return The ProcessIdentifier of the process, or null if there is none.
+     */
+    public ProcessIdentifier getBySourceUrl(URL sourceUrl){
+        return sourceUrlMap.get(sourceUrl.toString());
+    }
+
+    /**
+     * Returns the process which script is at the given file path.
+     * @param filePath Path of the script file.
+     * @return The ProcessIdentifier of the process, or null if there is none.
+     */
+    public ProcessIdentifier getByFilePath(String filePath){
+        return filePathMap.get(filePath);
+    }
+
+    /**
+     * Returns all the registered processes in the registration order. The returned list is a read only view which can
+     * be iterated while processes are added or removed.
+     * @return All the registered processes.
+     */
+    public List<ProcessIdentifier> getAll(){
+        return Collections.unmodifiableList(processIdList);
+    }
+}
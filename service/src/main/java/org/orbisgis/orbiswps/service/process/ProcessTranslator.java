@@ -51,8 +51,10 @@ import org.xnap.commons.i18n.I18n;
 
 import javax.xml.bind.JAXBElement;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 /**
  * This class contains methods which does the translation of a process.
@@ -65,26 +67,77 @@ public class ProcessTranslator {
     /**
      * Return the process with the given language translation.
      * If the asked translation doesn't exists, use the english one. If it doesn't exists too, uses one of the others.
+     * The translation precomputed with {@link #precomputeTranslations(ProcessIdentifier, String[])} is returned if it
+     * exists, so it should not be modified.
      * @param requestedLanguage Language asked.
      * @param defaultLanguage Default language.
      * @return The traduced process.
      */
     public static ProcessDescriptionType getTranslatedProcess(
             ProcessIdentifier pi, String requestedLanguage, String defaultLanguage){
+        if(pi instanceof ProcessIdentifierImpl){
+            ProcessDescriptionType translatedProcess =
+                    ((ProcessIdentifierImpl) pi).getTranslatedProcess(requestedLanguage);
+            if(translatedProcess != null){
+                return translatedProcess;
+            }
+        }
+        return translateProcess(pi, requestedLanguage);
+    }
+
+    /**
+     * Builds the translation of the process in each of the given languages and stores them in the ProcessIdentifier,
+     * replacing the previous ones. It should be called once the process is fully configured (I18n and metadata set).
+     * @param pi ProcessIdentifier of the process.
+     * @param languages Languages of the translations.
+     */
+    public static void precomputeTranslations(ProcessIdentifier pi, String[] languages){
+        if(!(pi instanceof ProcessIdentifierImpl) || pi.getProcessDescriptionType() == null){
+            return;
+        }
+        Map<String, ProcessDescriptionType> translationMap = new HashMap<>();
+        for(String language : languages){
+            translationMap.put(language, translateProcess(pi, language));
+        }
+        ((ProcessIdentifierImpl) pi).setTranslatedProcesses(translationMap);
+    }
+
+    /**
+     * Builds the translation of the process in the given language.
+     * As the I18n object may be shared, its locale is changed and then restored while holding its lock.
+     * @param pi ProcessIdentifier of the process.
+     * @param requestedLanguage Language asked.
+     * @return The traduced process.
+     */
+    private static ProcessDescriptionType translateProcess(ProcessIdentifier pi, String requestedLanguage){
         I18n i18n = pi.getI18n();
-        i18n.setLocale(Locale.forLanguageTag(requestedLanguage.substring(0, 2)));
-        ProcessDescriptionType process = pi.getProcessDescriptionType();
+        synchronized (i18n) {
+            Locale locale = i18n.getLocale();
+            i18n.setLocale(Locale.forLanguageTag(requestedLanguage.substring(0, 2)));
+            try {
+                return translateProcess(pi.getProcessDescriptionType(), requestedLanguage, i18n);
+            } finally {
+                i18n.setLocale(locale);
+            }
+        }
+    }
+
+    /**
+     * Builds the translation of the process with the given I18n object, which locale is already set.
+     * The source process is not modified.
+     * @param process Process to translate.
+     * @param requestedLanguage Language asked.
+     * @param i18n I18n object used for the translation.
+     * @return The traduced process.
+     */
+    private static ProcessDescriptionType translateProcess(ProcessDescriptionType process, String requestedLanguage,
+                                                           I18n i18n){
         ProcessDescriptionType translatedProcess = new ProcessDescriptionType();
         translatedProcess.setLang(requestedLanguage);
         List<InputDescriptionType> inputList = new ArrayList<>();
         for(InputDescriptionType input : process.getInput()){
             InputDescriptionType translatedInput = new InputDescriptionType();
-            JAXBElement jaxbElement = input.getDataDescription();
-            if(jaxbElement.getValue() instanceof TranslatableComplexData){
-                TranslatableComplexData translatableComplexData = (TranslatableComplexData)jaxbElement.getValue();
-                jaxbElement.setValue(translatableComplexData.getTranslatedData(i18n));
-            }
-            translatedInput.setDataDescription(jaxbElement);
+            translatedInput.setDataDescription(translateDataDescription(input.getDataDescription(), i18n));
             translatedInput.setMaxOccurs(input.getMaxOccurs());
             translatedInput.setMinOccurs(input.getMinOccurs());
             translateDescriptionType(translatedInput, input, requestedLanguage, i18n);
@@ -95,21 +148,33 @@ public class ProcessTranslator {
         List<OutputDescriptionType> outputList = new ArrayList<>();
         for(OutputDescriptionType output : process.getOutput()){
             OutputDescriptionType translatedOutput = new OutputDescriptionType();
-            JAXBElement jaxbElement = output.getDataDescription();
-            if(jaxbElement.getValue() instanceof TranslatableComplexData){
-                TranslatableComplexData translatableComplexData = (TranslatableComplexData)jaxbElement.getValue();
-                jaxbElement.setValue(translatableComplexData.getTranslatedData(i18n));
-            }
-            translatedOutput.setDataDescription(jaxbElement);
+            translatedOutput.setDataDescription(translateDataDescription(output.getDataDescription(), i18n));
             translateDescriptionType(translatedOutput, output, requestedLanguage, i18n);
             outputList.add(translatedOutput);
         }
         translatedProcess.getOutput().clear();
         translatedProcess.getOutput().addAll(outputList);
-        translateDescriptionType(translatedProcess, process, requestedLanguage, pi.getI18n());
+        translateDescriptionType(translatedProcess, process, requestedLanguage, i18n);
         return translatedProcess;
     }
 
+    /**
+     * Returns the translated data description. If the data is translatable, a new JAXBElement containing the
+     * translated data is returned, otherwise the source JAXBElement is returned.
+     * @param jaxbElement JAXBElement of the data description.
+     * @param i18n I18n object used for the translation.
+     * @return The translated data description.
+     */
+    @SuppressWarnings("unchecked")
+    private static JAXBElement translateDataDescription(JAXBElement jaxbElement, I18n i18n){
+        if(jaxbElement.getValue() instanceof TranslatableComplexData){
+            TranslatableComplexData translatableComplexData = (TranslatableComplexData)jaxbElement.getValue();
+            return new JAXBElement(jaxbElement.getName(), jaxbElement.getDeclaredType(), jaxbElement.getScope(),
+                    translatableComplexData.getTranslatedData(i18n));
+        }
+        return jaxbElement;
+    }
+
     /**
      * Sets the given translatedDescriptionType with the traduced elements of the source descriptionType.
      * If the asked translation doesn't exists, use the english one. If it doesn't exists too, uses one of the others.
@@ -40,10 +40,10 @@
 package org.orbisgis.orbiswps.service.process;
 
 import net.opengis.wps._2_0.ProcessDescriptionType;
-import org.orbisgis.orbiswps.service.WpsServerImpl;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener;
 import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
 import org.orbisgis.orbiswps.service.utils.Job;
+import org.orbisgis.orbiswps.service.utils.WpsSql;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xnap.commons.i18n.I18n;
@@ -54,6 +54,9 @@ import java.beans.PropertyChangeListener;
 import java.net.URI;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Class extending the SwingWorkerPM class dedicated to the WPS process execution.
@@ -75,31 +78,60 @@ public class ProcessWorker implements Runnable, PropertyChangeListener {
     /** Logger */
     private static final Logger LOGGER = LoggerFactory.getLogger(ProcessWorker.class);
     private ProgressMonitor progressMonitor;
-    private WpsServerImpl wpsServer;
+    /** True once the worker has been started or dismissed before its start. */
+    private final AtomicBoolean started = new AtomicBoolean(false);
 
+    public ProcessWorker(Job job,
+                         ProcessIdentifier processIdentifier,
+                         ProcessManager processManager,
+                         Map<URI, Object> dataMap){
+        this(job, processIdentifier, processManager, dataMap, ProgressMonitor.DEFAULT_NOTIFICATION_INTERVAL,
+                ProgressMonitor.DEFAULT_NOTIFICATION_DELTA, null);
+    }
+
+    /**
+     * Constructor setting the coalescing of the progress events of the job and the executor delivering them.
+     *
+     * @param job Job of the process execution.
+     * @param processIdentifier Identifier of the process to execute.
+     * @param processManager The process manager.
+     * @param dataMap Map containing the input and output data of the process.
+     * @param progressInterval Minimum interval in milliseconds between two progress events.
+     * @param progressDelta Minimum change of progression, between 0.0 and 1.0, triggering a progress event.
+     * @param progressNotifier Executor delivering the progress events, null to deliver them on the thread running
+     *                         the job.
+     */
     public ProcessWorker(Job job,
                          ProcessIdentifier processIdentifier,
                          ProcessManager processManager,
                          Map<URI, Object> dataMap,
-                         WpsServerImpl wpsServer){
+                         long progressInterval,
+                         double progressDelta,
+                         Executor progressNotifier){
         this.job = job;
         this.processIdentifier = processIdentifier;
         this.processManager = processManager;
         this.dataMap = dataMap;
-        this.wpsServer = wpsServer;
-        progressMonitor = new ProgressMonitor(job.getProcess().getTitle().get(0).getValue());
+        progressMonitor = new ProgressMonitor(job.getProcess().getTitle().get(0).getValue(), progressInterval,
+                progressDelta, progressNotifier);
         progressMonitor.addPropertyChangeListener(ProgressMonitor.PROPERTY_PROGRESS, this.job);
         progressMonitor.addPropertyChangeListener(ProgressMonitor.PROPERTY_CANCEL, this);
     }
 
     @Override
     public void run() {
+        //The job has been dismissed before its start
+        if(!started.compareAndSet(false, true)){
+            return;
+        }
         String title = job.getProcess().getTitle().get(0).getValue();
         progressMonitor.setTaskName(I18N.tr("{0} : Preprocessing", title));
         if(job != null) {
             job.setProcessState(ProcessExecutionListener.ProcessState.RUNNING);
         }
         ProcessDescriptionType process = processIdentifier.getProcessDescriptionType();
+        //Sql object of the job, running its queries in a single transaction if the process asks for it
+        WpsSql sql = processManager.createJobSql(process);
         //Catch all the Exception that can be thrown during the script execution.
         try {
             //Print in the log the process execution start
@@ -117,7 +149,16 @@ public class ProcessWorker implements Runnable, PropertyChangeListener {
                 job.appendLog(ProcessExecutionListener.LogType.INFO, I18N.tr("Execute the script."));
             }
             progressMonitor.setTaskName(I18N.tr("{0} : Execution", title));
-            processManager.executeProcess(job.getId(), processIdentifier, dataMap, processIdentifier.getProperties(), progressMonitor);
+            processManager.executeProcess(job.getId(), processIdentifier, dataMap, processIdentifier.getProperties(),
+                    progressMonitor, sql);
+            //A cancelled job fails even if the script has ignored the cancellation
+            if(progressMonitor.isCanceled()){
+                throw new CancellationException(I18N.tr("The job has been cancelled."));
+            }
+            //The job transaction is committed before the success is published
+            if(sql != null) {
+                sql.commitJob();
+            }
             progressMonitor.setTaskName(I18N.tr("{0} : Postprocessing", title));
             //Post-process the model
             if(job != null) {
@@ -125,14 +166,16 @@ public class ProcessWorker implements Runnable, PropertyChangeListener {
             }
 
             //Print in the log the process execution end
+            progressMonitor.endOfProgress();
             if(job != null) {
                 job.appendLog(ProcessExecutionListener.LogType.INFO, I18N.tr("End of the process."));
                 job.setProcessState(ProcessExecutionListener.ProcessState.SUCCEEDED);
             }
-            progressMonitor.endOfProgress();
-            wpsServer.onProcessWorkerFinished();
         }
         catch (Exception e) {
+            if(sql != null) {
+                sql.rollbackJob();
+            }
             if(job != null) {
                 job.setProcessState(ProcessExecutionListener.ProcessState.FAILED);
                 LOGGER.error(e.getLocalizedMessage());
@@ -143,7 +186,11 @@ public class ProcessWorker implements Runnable, PropertyChangeListener {
                 LOGGER.error(I18N.tr("Error on execution the WPS  process {0}.\nCause : {1}.",
                         process.getTitle(),e.getMessage()));
             }
-            wpsServer.onProcessWorkerFinished();
+        }
+        finally {
+            if(sql != null) {
+                sql.close();
+            }
         }
     }
 
@@ -154,7 +201,29 @@ public class ProcessWorker implements Runnable, PropertyChangeListener {
         }
     }
 
+    /**
+     * Cancels the job. If the worker is not started yet, the job fails immediately. Otherwise the ProgressMonitor is
+     * cancelled, which stops the H2GIS drivers and the running queries of the job.
+     */
+    public void cancel(){
+        if(started.compareAndSet(false, true)){
+            job.appendLog(ProcessExecutionListener.LogType.INFO, I18N.tr("The job has been dismissed."));
+            job.setProcessState(ProcessExecutionListener.ProcessState.FAILED);
+        }
+        if(!progressMonitor.isCanceled()) {
+            progressMonitor.cancel();
+        }
+    }
+
     public UUID getJobId(){
         return job.getId();
     }
+
+    /**
+     * Returns the description of the process executed by the worker.
+     * @return The process description.
+     */
+    public ProcessDescriptionType getProcess(){
+        return processIdentifier.getProcessDescriptionType();
+    }
 }
@@ -44,11 +44,22 @@ import org.h2gis.api.ProgressVisitor;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Process monitor used in the WPS script to set the progression of a process. As it extends the H2GIS ProgressVisitor
  * interface, it can be use in the drivers export function for example.
  *
+ * The drivers may call endStep() for each row, so the progression is stored in an atomic value and the
+ * PROPERTY_PROGRESS events are coalesced : an event is only sent when the progression has changed by a minimum delta
+ * or after a minimum interval since the previous one. The events are delivered by the notifier given at the
+ * construction, owned by the WPS server, not by the thread running the process. The events of a monitor are delivered
+ * one after the other, but a slow listener of a monitor does not delay the events of the others. Without notifier,
+ * the events are delivered by the thread changing the progression.
+ *
  * @author Sylvain PALOMINOS
  */
 public class ProgressMonitor implements ProgressVisitor {
@@ -58,41 +69,128 @@ public class ProgressMonitor implements ProgressVisitor {
     public static String PROPERTY_CANCEL = "PROPERTY_CANCEL";
     public static String PROPERTY_NAME = "PROPERTY_NAME";
 
-    /** Progress done by the process. Should be between 0.0 and 1.0 included. */
-    private double progressDone = 0;
+    /** Default minimum interval in milliseconds between two progress events. */
+    public static final long DEFAULT_NOTIFICATION_INTERVAL = 250;
+    /** Default minimum change of progression, between 0.0 and 1.0, triggering a progress event. */
+    public static final double DEFAULT_NOTIFICATION_DELTA = 0.01;
+
+    /** Bits of the double progress done by the process. Should be between 0.0 and 1.0 included. */
+    private final AtomicLong progressDone = new AtomicLong(Double.doubleToLongBits(0));
     /** Name of the task. */
-    private String taskName;
+    private volatile String taskName;
     /** PropertyChangeSupport object managing the PropertyChangeEvent. */
     private PropertyChangeSupport propertyChangeSupport = new PropertyChangeSupport(this);
     /** True if the process has been cancelled, false otherwise. */
-    private boolean isCancelled;
+    private volatile boolean isCancelled;
     /** Count of step to do. */
-    private int stepCount;
+    private volatile int stepCount;
     /** Count of step done. */
-    private int stepDone = 0;
+    private final AtomicInteger stepDone = new AtomicInteger();
+    /** Minimum interval in milliseconds between two progress events. */
+    private final long notificationInterval;
+    /** Minimum change of progression triggering a progress event. */
+    private final double notificationDelta;
+    /** Progression at the last scheduling of a progress event. */
+    private volatile double notifiedProgress = 0;
+    /** Time of the last scheduling of a progress event. */
+    private volatile long notificationTime = 0;
+    /** Progression sent in the last progress event. Only used by the running delivery. */
+    private double deliveredProgress = 0;
+    /** Number of progress events requested and not delivered yet. */
+    private final AtomicInteger notificationRequests = new AtomicInteger();
+    /** Executor delivering the progress events, null to deliver them on the thread changing the progression. */
+    private final Executor notifier;
 
     /**
      * Main constructor.
      * @param taskName Name of the task.
      */
     public ProgressMonitor(String taskName) {
+        this(taskName, DEFAULT_NOTIFICATION_INTERVAL, DEFAULT_NOTIFICATION_DELTA);
+    }
+
+    /**
+     * Constructor setting the coalescing of the progress events.
+     * @param taskName Name of the task.
+     * @param notificationInterval Minimum interval in milliseconds between two progress events.
+     * @param notificationDelta Minimum change of progression, between 0.0 and 1.0, triggering a progress event.
+     */
+    public ProgressMonitor(String taskName, long notificationInterval, double notificationDelta) {
+        this(taskName, notificationInterval, notificationDelta, null);
+    }
+
+    /**
+     * Constructor setting the coalescing of the progress events and the executor delivering them.
+     * @param taskName Name of the task.
+     * @param notificationInterval Minimum interval in milliseconds between two progress events.
+     * @param notificationDelta Minimum change of progression, between 0.0 and 1.0, triggering a progress event.
+     * @param notifier Executor delivering the progress events, null to deliver them on the thread changing the
+     *                 progression.
+     */
+    public ProgressMonitor(String taskName, long notificationInterval, double notificationDelta, Executor notifier) {
         this.isCancelled = false;
         this.taskName = taskName;
+        this.notificationInterval = notificationInterval;
+        this.notificationDelta = notificationDelta;
+        this.notifier = notifier;
     }
 
     /**
-     * Increase the progression with the given value.
-     * @param incProg Increment of the progression.
+     * Sets the progression to the given value and schedules a progress event if the change is big enough or if the
+     * previous event is old enough.
+     * @param progression New progression, clamped between 0.0 and 1.0.
      */
-    private synchronized void pushProgression(double incProg) {
-        if(progressDone + incProg > 1.0){
-            progressDone = 1.0;
+    private void setProgression(double progression) {
+        double value = progression >= 1.0 ? 1.0 : (progression > 0 ? progression : 0);
+        progressDone.set(Double.doubleToLongBits(value));
+        if(value == notifiedProgress){
+            return;
         }
-        else{
-            progressDone += incProg;
+        long now = System.currentTimeMillis();
+        if(value == 1.0 || Math.abs(value - notifiedProgress) >= notificationDelta ||
+                now - notificationTime >= notificationInterval){
+            notifiedProgress = value;
+            notificationTime = now;
+            //Only the first request starts a delivery, the following ones are merged into it
+            if(notificationRequests.getAndIncrement() == 0){
+                if(notifier == null){
+                    deliverProgression();
+                    return;
+                }
+                try {
+                    notifier.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            deliverProgression();
+                        }
+                    });
+                }
+                catch (RejectedExecutionException e){
+                    //The notifier has been shut down with the server
+                    deliverProgression();
+                }
+            }
         }
     }
 
+    /**
+     * Fires the progress event with the actual progression, so all the changes done since the scheduling are merged in
+     * one event. The requests done during the delivery are served by the same call, so only one delivery of the
+     * monitor runs at a time.
+     */
+    private void deliverProgression() {
+        int requests = notificationRequests.get();
+        do {
+            double value = getProgression();
+            if(value != deliveredProgress){
+                double oldValue = deliveredProgress;
+                deliveredProgress = value;
+                triggerPropertyChangeEvent(PROPERTY_PROGRESS, oldValue*100, value*100);
+            }
+            requests = notificationRequests.addAndGet(-requests);
+        } while(requests != 0);
+    }
+
     /**
      * Returns the task name.
      * @return The task name.
@@ -106,7 +204,7 @@ public class ProgressMonitor implements ProgressVisitor {
      * @param taskName New task name.
      */
     public void setTaskName(String taskName){
-        String oldName = taskName;
+        String oldName = this.taskName;
         this.taskName = taskName;
         triggerPropertyChangeEvent(PROPERTY_NAME, oldName, taskName);
     }
@@ -116,33 +214,31 @@ public class ProgressMonitor implements ProgressVisitor {
      * @param progress Progression value to use to set the progressDone.
      */
     public void progressTo(long progress) {
-        double oldProgress = progressDone;
-        pushProgression((double)progress/stepCount-progressDone);
-        triggerPropertyChangeEvent(PROPERTY_PROGRESS, oldProgress*100, progressDone*100);
+        int count = stepCount;
+        setProgression(count == 0 ? 1.0 : (double)progress/count);
     }
 
     @Override
     public void endOfProgress() {
-        progressTo(1);
+        setProgression(1.0);
     }
 
     @Override
     public ProgressVisitor subProcess(int i) {
         stepCount = i;
-        stepDone = 0;
+        stepDone.set(0);
         return this;
     }
 
     @Override
     public void endStep() {
-        stepDone++;
-        progressTo(stepDone);
+        progressTo(stepDone.incrementAndGet());
     }
 
     @Override
     public void setStep(int i) {
-        stepDone = i;
-        progressTo(stepDone);
+        stepDone.set(i);
+        progressTo(i);
     }
 
     @Override
@@ -152,7 +248,7 @@ public class ProgressMonitor implements ProgressVisitor {
 
     @Override
     public double getProgression() {
-        return progressDone;
+        return Double.longBitsToDouble(progressDone.get());
     }
 
     @Override
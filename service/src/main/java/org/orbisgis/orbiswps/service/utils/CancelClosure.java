@@ -40,24 +40,37 @@
 package org.orbisgis.orbiswps.service.utils;
 
 import groovy.lang.Closure;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
 
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Groovy closure used to ba able to cancel a running process.
+ * It is called by the Sql object of the job on each new statement and keeps the statements which are not closed yet,
+ * so a cancellation reaches the running queries. Once cancelled, the creation of a new statement throws a
+ * CancellationException, so the script stops on its next query.
  *
  * @author Sylvain PALOMINOS
  */
 public class CancelClosure extends Closure {
 
-    private List<Statement> statementList;
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(CancelClosure.class);
+
+    /** Statements of the job which are not closed yet. */
+    private final Set<Statement> statementSet = Collections.newSetFromMap(new ConcurrentHashMap<Statement, Boolean>());
+    /** True once the job has been cancelled. */
+    private volatile boolean cancelled = false;
 
     public CancelClosure(Object owner) {
         super(owner);
-        statementList = new ArrayList<>();
     }
 
     /**
@@ -65,18 +78,69 @@ public class CancelClosure extends Closure {
      * @param stmt
      */
     public void doCall(Statement stmt){
-        statementList.add(stmt);
+        if(cancelled){
+            cancelStatement(stmt);
+            throw new CancellationException(I18N.tr("The job has been cancelled."));
+        }
+        removeClosedStatements();
+        statementSet.add(stmt);
+        //The job may have been cancelled while the statement was registered
+        if(cancelled && statementSet.remove(stmt)){
+            cancelStatement(stmt);
+        }
     }
 
     /**
      * Cancel all the running sql queries.
      */
     public void cancel(){
-        for(Statement stmt : statementList){
+        cancelled = true;
+        Iterator<Statement> it = statementSet.iterator();
+        while(it.hasNext()){
+            Statement stmt = it.next();
+            it.remove();
+            cancelStatement(stmt);
+        }
+    }
+
+    /**
+     * Returns true if the job has been cancelled.
+     * @return True if the job has been cancelled.
+     */
+    public boolean isCancelled(){
+        return cancelled;
+    }
+
+    /**
+     * Returns the number of statements of the job which are not closed yet.
+     * @return The number of live statements.
+     */
+    public int getStatementCount(){
+        removeClosedStatements();
+        return statementSet.size();
+    }
+
+    /**
+     * Removes the closed statements, so only the live ones are kept.
+     */
+    private void removeClosedStatements(){
+        Iterator<Statement> it = statementSet.iterator();
+        while(it.hasNext()){
+            Statement stmt = it.next();
             try {
-                stmt.cancel();
-            } catch (SQLException ignored) {
+                if(stmt.isClosed()){
+                    it.remove();
+                }
+            } catch (SQLException|AbstractMethodError e) {
+                it.remove();
             }
         }
     }
+
+    private static void cancelStatement(Statement stmt){
+        try {
+            stmt.cancel();
+        } catch (SQLException ignored) {
+        }
+    }
 }
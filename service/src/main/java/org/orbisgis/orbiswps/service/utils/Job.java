@@ -40,22 +40,34 @@
 package org.orbisgis.orbiswps.service.utils;
 
 import net.opengis.wps._2_0.ProcessDescriptionType;
-import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener;
+import org.orbisgis.orbiswps.serviceapi.JobStatusListener;
+import org.orbisgis.orbiswps.serviceapi.process.JobLogEntry;
+import org.orbisgis.orbiswps.serviceapi.process.WpsJob;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
 import org.orbisgis.orbiswps.service.process.ProgressMonitor;
 
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.net.URI;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Server-side object created by a processing service in response for a particular process execution.
  *
  * @author Sylvain PALOMINOS
  */
-public class Job implements ProcessExecutionListener, PropertyChangeListener {
+public class Job implements WpsJob, PropertyChangeListener {
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(Job.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(Job.class);
 
     /** Process polling time in milliseconds. */
     private final long MAX_PROCESS_POLLING_DELAY_MILLIS;
@@ -65,17 +77,23 @@ public class Job implements ProcessExecutionListener, PropertyChangeListener {
     /** Unique identifier of the job */
     private UUID id;
     /** Time when the process has been started */
-    private long startTime = -1;
-    /** Map containing all the log messages */
-    private Map<String, LogType> logMap;
+    private volatile long startTime = -1;
+    /** Time when the process has finished, successfully or not */
+    private volatile long endTime = -1;
+    /** Bounded log of the job */
+    private final JobLog jobLog;
     /** State of the process running */
-    private ProcessState state;
+    private volatile ProcessState state;
     /** Map of the input/output model of the process execution */
     private Map<URI, Object> dataMap;
     /** Actual process polling delay in milliseconds */
     private long processPollingDelay;
     /** Progress of the job. */
-    private int progress = 0;
+    private volatile int progress = 0;
+    /** Listeners notified on the changes of state or progress. */
+    private final List<JobStatusListener> statusListenerList = new CopyOnWriteArrayList<>();
+    /** True if the job has been read back from a JobStore and is not executed by this server. */
+    private volatile boolean detached = false;
 
     /**
      * Main constructor.
@@ -88,9 +106,24 @@ public class Job implements ProcessExecutionListener, PropertyChangeListener {
      */
     public Job(ProcessDescriptionType process, UUID id, Map<URI, Object> dataMap,
                long maxPollingDelay, long basePollingDelay){
+        this(process, id, dataMap, maxPollingDelay, basePollingDelay, JobLog.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor setting the maximum number of log entries kept.
+     *
+     * @param process Process done in the job.
+     * @param id UUID of the job.
+     * @param dataMap Map containing the model for the process execution.
+     * @param maxPollingDelay Maximum value of the polling delay.
+     * @param basePollingDelay Base value of the polling delay.
+     * @param logCapacity Maximum number of log entries kept.
+     */
+    public Job(ProcessDescriptionType process, UUID id, Map<URI, Object> dataMap,
+               long maxPollingDelay, long basePollingDelay, int logCapacity){
         this.process = process;
         this.id = id;
-        logMap = new HashMap<>();
+        jobLog = new JobLog(logCapacity);
         state = ProcessState.ACCEPTED;
         this.dataMap = dataMap;
         MAX_PROCESS_POLLING_DELAY_MILLIS = maxPollingDelay;
@@ -98,17 +131,92 @@ public class Job implements ProcessExecutionListener, PropertyChangeListener {
         processPollingDelay = basePollingDelay;
     }
 
-    /**
-     * Returns the start time.
-     * @return The start time.
-     */
+    @Override
     public long getStartTime(){
         return startTime;
     }
 
     @Override
     public void appendLog(LogType logType, String message) {
-        logMap.put(message, logType);
+        jobLog.append(logType, message);
+    }
+
+    @Override
+    public List<JobLogEntry> getLogs(long sequence){
+        return jobLog.getEntries(sequence);
+    }
+
+    @Override
+    public long getLastLogSequence(){
+        return jobLog.getLastSequence();
+    }
+
+    /**
+     * Restores the state of a job read back from a JobStore.
+     *
+     * @param state State of the process.
+     * @param progress Progress of the job.
+     * @param startTime Time when the process has been started, -1 if not started.
+     * @param endTime Time when the process has finished, -1 if not finished.
+     * @param logs Log entries of the job, in their order of creation.
+     */
+    public void restore(ProcessState state, int progress, long startTime, long endTime, List<JobLogEntry> logs){
+        this.state = state;
+        this.progress = progress;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        for(JobLogEntry entry : logs){
+            jobLog.restore(entry);
+        }
+        detached = true;
+    }
+
+    /**
+     * Registers a JobStatusListener notified on each change of state or progress. If the job is already finished, the
+     * listener is called immediately and is not kept.
+     * @param listener JobStatusListener to register.
+     * @return True if the listener has been registered or called, false if the job is not executed by this server.
+     */
+    public boolean addStatusListener(JobStatusListener listener){
+        if(isFinished()){
+            listener.onJobStatusChanged(this);
+            return true;
+        }
+        if(detached){
+            return false;
+        }
+        statusListenerList.add(listener);
+        //The job may have finished before the listener registration
+        if(isFinished() && statusListenerList.remove(listener)){
+            listener.onJobStatusChanged(this);
+        }
+        return true;
+    }
+
+    /**
+     * Unregisters a JobStatusListener.
+     * @param listener JobStatusListener to unregister.
+     */
+    public void removeStatusListener(JobStatusListener listener){
+        statusListenerList.remove(listener);
+    }
+
+    /**
+     * Notifies the listeners of a change of state or progress. Once the job is finished, the listeners are removed.
+     */
+    private void fireStatusChanged(){
+        for(JobStatusListener listener : statusListenerList){
+            if(isFinished() && !statusListenerList.remove(listener)){
+                continue;
+            }
+            try {
+                listener.onJobStatusChanged(this);
+            }
+            catch (RuntimeException e){
+                LOGGER.error(I18N.tr("Error while notifying the status of the job {0}.\nCause : {1}.",
+                        id, e.getMessage()));
+            }
+        }
     }
 
     @Override
@@ -117,44 +225,46 @@ public class Job implements ProcessExecutionListener, PropertyChangeListener {
             startTime = System.currentTimeMillis();
         }
         state = processState;
+        if(processState == ProcessState.SUCCEEDED){
+            progress = 100;
+        }
+        if(endTime == -1 && (processState == ProcessState.SUCCEEDED || processState == ProcessState.FAILED)){
+            endTime = System.currentTimeMillis();
+        }
+        fireStatusChanged();
     }
 
-    /**
-     * Returns the process state.
-     * @return The process state.
-     */
+    @Override
+    public long getEndTime(){
+        return endTime;
+    }
+
+    @Override
+    public boolean isFinished(){
+        return endTime != -1;
+    }
+
+    @Override
     public ProcessState getState(){
         return state;
     }
 
-    /**
-     * Returns the dataMap.
-     * @return The dataMap.
-     */
+    @Override
     public Map<URI, Object> getDataMap(){
         return dataMap;
     }
 
-    /**
-     * Returns the process.
-     * @return The process.
-     */
+    @Override
     public ProcessDescriptionType getProcess(){
         return process;
     }
 
-    /**
-     * Returns the job id.
-     * @return the job id.
-     */
+    @Override
     public UUID getId() {
         return id;
     }
 
-    /**
-     * Returns the process polling time.
-     * @return The process polling time.
-     */
+    @Override
     public long getProcessPollingTime(){
         long time = processPollingDelay;
         if(processPollingDelay < MAX_PROCESS_POLLING_DELAY_MILLIS) {
@@ -168,13 +278,13 @@ public class Job implements ProcessExecutionListener, PropertyChangeListener {
      * @param progress new progress.
      */
     public void setProgress(int progress){
-        this.progress = progress;
+        if(this.progress != progress) {
+            this.progress = progress;
+            fireStatusChanged();
+        }
     }
 
-    /**
-     * Returns the job progress.
-     * @return The job progress.
-     */
+    @Override
     public int getProgress(){
         return progress;
     }
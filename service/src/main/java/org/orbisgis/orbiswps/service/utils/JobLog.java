@@ -0,0 +1,133 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.utils;
+
+import org.orbisgis.orbiswps.serviceapi.process.JobLogEntry;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener.LogType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded log of a job. The entries are kept in a ring buffer, so once the capacity is reached the oldest entries are
+ * overwritten. The entries are numbered, so a reader can fetch only the entries created since its previous read.
+ * Appending and reading don't take any lock.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class JobLog {
+
+    /** Default maximum number of entries kept. */
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    /** Ring buffer of the entries, the entry with the sequence number n is at the index n % capacity. */
+    private final AtomicReferenceArray<JobLogEntry> entries;
+    /** Maximum number of entries kept. */
+    private final int capacity;
+    /** Sequence number of the last created entry, 0 if the log is empty. */
+    private final AtomicLong lastSequence = new AtomicLong(0);
+
+    /**
+     * Main constructor.
+     * @param capacity Maximum number of entries kept.
+     */
+    public JobLog(int capacity){
+        this.capacity = Math.max(1, capacity);
+        entries = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    /**
+     * Appends a new entry to the log.
+     * @param logType Type of the log.
+     * @param message Message of the log.
+     * @return The new entry.
+     */
+    public JobLogEntry append(LogType logType, String message){
+        long sequence = lastSequence.incrementAndGet();
+        JobLogEntry entry = new JobLogEntry(sequence, System.currentTimeMillis(), logType, message);
+        entries.set((int)(sequence % capacity), entry);
+        return entry;
+    }
+
+    /**
+     * Puts back an existing entry in the log, keeping its sequence number. Used to restore the log of a job read from
+     * a JobStore, so the entries should be restored in their order.
+     * @param entry Entry to restore.
+     */
+    public void restore(JobLogEntry entry){
+        entries.set((int)(entry.getSequence() % capacity), entry);
+        if(lastSequence.get() < entry.getSequence()){
+            lastSequence.set(entry.getSequence());
+        }
+    }
+
+    /**
+     * Returns the entries which sequence number is greater than the given one, in their order of creation. The
+     * entries already overwritten are skipped.
+     * @param sequence Sequence number of the last entry already read, 0 to get all the entries.
+     * @return The list of the entries.
+     */
+    public List<JobLogEntry> getEntries(long sequence){
+        long last = lastSequence.get();
+        long first = Math.max(Math.max(sequence, 0) + 1, last - capacity + 1);
+        List<JobLogEntry> list = new ArrayList<>((int)Math.max(0, last - first + 1));
+        for(long i = first; i <= last; i++){
+            JobLogEntry entry = entries.get((int)(i % capacity));
+            if(entry == null || entry.getSequence() < i){
+                //The entry is still being written, the next ones are not available yet
+                break;
+            }
+            if(entry.getSequence() == i){
+                list.add(entry);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the sequence number of the last created entry.
+     * @return The last sequence number, 0 if the log is empty.
+     */
+    public long getLastSequence(){
+        return lastSequence.get();
+    }
+}
@@ -49,6 +49,7 @@ import org.orbisgis.orbiswps.service.model.*;
 import org.orbisgis.orbiswps.service.model.BoundingBoxData;
 import org.orbisgis.orbiswps.service.model.Enumeration;
 import org.orbisgis.orbiswps.serviceapi.model.MalformedScriptException;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata;
 
 import java.math.BigInteger;
 import java.net.URI;
@@ -436,6 +437,36 @@ public class ObjectAnnotationConverter {
             metadata.setTitle(properties[i+1]);
             metadataList.add(metadata);
         }
+        if(!processAttribute.concurrencyGroup().isEmpty()){
+            MetadataType metadata = new MetadataType();
+            metadata.setRole(ProcessMetadata.CONCURRENCY_GROUP_NAME);
+            metadata.setTitle(processAttribute.concurrencyGroup());
+            metadataList.add(metadata);
+        }
+        if(processAttribute.maxParallel() > 0){
+            MetadataType metadata = new MetadataType();
+            metadata.setRole(ProcessMetadata.MAX_PARALLEL_NAME);
+            metadata.setTitle(Integer.toString(processAttribute.maxParallel()));
+            metadataList.add(metadata);
+        }
+        if(processAttribute.cacheable()){
+            MetadataType metadata = new MetadataType();
+            metadata.setRole(ProcessMetadata.CACHEABLE_NAME);
+            metadata.setTitle(Boolean.toString(true));
+            metadataList.add(metadata);
+        }
+        if(!processAttribute.deterministic()){
+            MetadataType metadata = new MetadataType();
+            metadata.setRole(ProcessMetadata.DETERMINISTIC_NAME);
+            metadata.setTitle(Boolean.toString(false));
+            metadataList.add(metadata);
+        }
+        if(processAttribute.transactional()){
+            MetadataType metadata = new MetadataType();
+            metadata.setRole(ProcessMetadata.TRANSACTIONAL_NAME);
+            metadata.setTitle(Boolean.toString(true));
+            metadataList.add(metadata);
+        }
     }
 
     /**
@@ -0,0 +1,322 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of connections built on a DataSource which does not pool its connections.
+ * At most 'maxSize' connections are lent at the same time, a request for a connection waits for one to be given back
+ * until the timeout is reached. Closing a lent connection gives it back to the pool : its pending transaction is rolled
+ * back and the auto commit mode is restored before it is reused.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class WpsConnectionPool implements DataSource {
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WpsConnectionPool.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(WpsConnectionPool.class);
+    /** Default time in milliseconds to wait for a free connection. */
+    public static final long DEFAULT_TIMEOUT = 30000;
+    /** Time in seconds given to the validation of an idle connection. */
+    private static final int VALIDATION_TIMEOUT = 1;
+
+    /** DataSource creating the physical connections. */
+    private final DataSource dataSource;
+    /** Idle physical connections, the most recently used first. */
+    private final BlockingDeque<Connection> idleConnections = new LinkedBlockingDeque<>();
+    /** Permits of the connections which can still be lent. */
+    private final Semaphore permits;
+    /** Time in milliseconds to wait for a free connection. */
+    private final long timeout;
+    /** True once the pool is closed. */
+    private volatile boolean closed = false;
+
+    /**
+     * Main constructor.
+     *
+     * @param dataSource DataSource creating the physical connections.
+     * @param maxSize Maximum number of connections lent at the same time.
+     * @param timeout Time in milliseconds to wait for a free connection.
+     */
+    public WpsConnectionPool(DataSource dataSource, int maxSize, long timeout){
+        this.dataSource = dataSource;
+        this.permits = new Semaphore(Math.max(1, maxSize), true);
+        this.timeout = Math.max(0, timeout);
+    }
+
+    /**
+     * Returns the DataSource creating the physical connections.
+     * @return The pooled DataSource.
+     */
+    public DataSource getDataSource(){
+        return dataSource;
+    }
+
+    /**
+     * Returns the number of idle connections in the pool.
+     * @return The number of idle connections.
+     */
+    public int getIdleCount(){
+        return idleConnections.size();
+    }
+
+    /**
+     * Closes the idle connections and refuses the new requests. The lent connections are closed when given back.
+     */
+    public void close(){
+        closed = true;
+        Connection connection;
+        while((connection = idleConnections.poll()) != null){
+            closePhysical(connection);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if(closed){
+            throw new SQLException(I18N.tr("The connection pool is closed."));
+        }
+        try {
+            if(!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)){
+                throw new SQLException(I18N.tr("No connection available after {0} ms.", timeout));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(I18N.tr("Interrupted while waiting for a connection."), e);
+        }
+        return lend();
+    }
+
+    /**
+     * Returns a connection if one can be lent at once, without waiting for a connection to be given back.
+     *
+     * @return A connection, or null if all the connections are lent.
+     * @throws SQLException Exception thrown if the pool is closed or if the connection can't be opened.
+     */
+    public Connection tryGetConnection() throws SQLException {
+        if(closed){
+            throw new SQLException(I18N.tr("The connection pool is closed."));
+        }
+        if(!permits.tryAcquire()){
+            return null;
+        }
+        return lend();
+    }
+
+    /**
+     * Lends a connection once its permit has been acquired. The permit is released if the connection can't be opened.
+     *
+     * @return The lent connection.
+     * @throws SQLException Exception thrown if the connection can't be opened.
+     */
+    private Connection lend() throws SQLException {
+        try {
+            Connection connection;
+            while((connection = idleConnections.pollFirst()) != null){
+                if(isValid(connection)){
+                    break;
+                }
+                closePhysical(connection);
+            }
+            if(connection == null){
+                connection = dataSource.getConnection();
+            }
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class[]{Connection.class}, new PooledConnectionHandler(connection));
+        }
+        catch (SQLException|RuntimeException e){
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException(I18N.tr("The pooled connections use the DataSource credentials."));
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if(iface.isInstance(this)){
+            return iface.cast(this);
+        }
+        return dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+
+    /**
+     * Gives a physical connection back to the pool, resetting its state.
+     * @param connection Physical connection.
+     */
+    private void release(Connection connection){
+        try {
+            if(closed || connection.isClosed()){
+                closePhysical(connection);
+                return;
+            }
+            if(!connection.getAutoCommit()){
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            connection.clearWarnings();
+            idleConnections.offerFirst(connection);
+        } catch (SQLException e) {
+            LOGGER.warn(I18N.tr("Unable to reset a pooled connection, it is closed.\nCause : {0}.", e.getMessage()));
+            closePhysical(connection);
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    private static boolean isValid(Connection connection){
+        try {
+            return !connection.isClosed() && connection.isValid(VALIDATION_TIMEOUT);
+        } catch (SQLException|AbstractMethodError e) {
+            return false;
+        }
+    }
+
+    private static void closePhysical(Connection connection){
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.warn(I18N.tr("Unable to close a pooled connection.\nCause : {0}.", e.getMessage()));
+        }
+    }
+
+    /**
+     * Handler of the lent connections : the call to 'close' gives the physical connection back to the pool, and the
+     * connection can't be used anymore.
+     */
+    private class PooledConnectionHandler implements InvocationHandler {
+        /** Physical connection, null once given back to the pool. */
+        private Connection connection;
+
+        PooledConnectionHandler(Connection connection){
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Connection physical;
+            synchronized (this) {
+                physical = connection;
+                if("close".equals(method.getName()) && method.getParameterTypes().length == 0) {
+                    connection = null;
+                    if(physical != null) {
+                        release(physical);
+                    }
+                    return null;
+                }
+            }
+            switch (method.getName()){
+                case "isClosed":
+                    if(physical == null){
+                        return true;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + physical;
+            }
+            if(physical == null){
+                throw new SQLException(I18N.tr("The connection has been given back to the pool."));
+            }
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
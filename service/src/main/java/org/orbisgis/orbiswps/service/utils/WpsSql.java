@@ -40,19 +40,662 @@
 package org.orbisgis.orbiswps.service.utils;
 
 import groovy.sql.Sql;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xnap.commons.i18n.I18n;
+import org.xnap.commons.i18n.I18nFactory;
 
 import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 /**
  * Subclass of the Groovy Sql class.
- * The only difference is that the log is shutdown.
+ * The log is shutdown, and the Sql object created for a job with {@link #createJobSql(DataSource)} runs all its
+ * statements on a single connection taken from the DataSource on the first use and given back on {@link #close()}.
+ * The connection returned by {@link #getConnection()} and the ones given by the DataSource returned by
+ * {@link #getDataSource()} are handles on this same connection, so a script calling
+ * 'sql.getDataSource().getConnection()' does not open a new connection, and closing such handle has no effect.
+ * The job connection can also run all the queries of the job in a single transaction (see
+ * {@link #setJobTransaction(boolean)}), and the batch methods send many queries in a few round-trips.
+ * The per-feature queries can be split by key range and run concurrently on several connections with
+ * {@link #executePartitioned(String, String, String, String)}.
  *
  * @author Sylvain PALOMINOS
  */
 public class WpsSql extends Sql {
+
+    /** Logger */
+    private static final Logger LOGGER = LoggerFactory.getLogger(WpsSql.class);
+    /** I18N object */
+    private static final I18n I18N = I18nFactory.getI18n(WpsSql.class);
+    /** Default number of queries sent to the database in one round-trip by the batch methods. */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    /** Token of the partitioned queries replaced by the key range condition of each partition. */
+    public static final String PARTITION_FILTER = "{PARTITION_FILTER}";
+
+    /** Connection of the job, null if the Sql object is not bound to a job. */
+    private final JobConnection jobConnection;
+    /** DataSource giving handles on the job connection, null if the Sql object is not bound to a job. */
+    private final DataSource jobDataSource;
+    /** Number of queries sent to the database in one round-trip by the batch methods. */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    /** Number of partitions run concurrently by {@link #executePartitioned(String, String, String, String)}. */
+    private int partitionCount = Runtime.getRuntime().availableProcessors();
+
     public WpsSql(DataSource dataSource) {
         super(dataSource);
         LOG.setLevel(Level.OFF);
+        this.jobConnection = null;
+        this.jobDataSource = null;
+    }
+
+    private WpsSql(JobConnection jobConnection) {
+        super(jobConnection.createHandle());
+        LOG.setLevel(Level.OFF);
+        this.jobConnection = jobConnection;
+        this.jobDataSource = new JobDataSource(jobConnection);
+    }
+
+    /**
+     * Creates the Sql object of a job. All its statements are run on a single connection of the given DataSource,
+     * opened on the first use. The connection is closed, or given back to the pool, by {@link #close()}.
+     *
+     * @param dataSource DataSource of the server.
+     * @return The Sql object of the job.
+     */
+    public static WpsSql createJobSql(DataSource dataSource){
+        return new WpsSql(new JobConnection(dataSource));
+    }
+
+    @Override
+    public DataSource getDataSource() {
+        return jobDataSource != null ? jobDataSource : super.getDataSource();
+    }
+
+    /**
+     * Returns the DataSource of the server, giving new connections independent from the job connection. It is used by
+     * the scripts running queries in parallel on several connections. Those connections are not part of the job
+     * transaction and should be closed by the script.
+     *
+     * @return The DataSource of the server.
+     */
+    public DataSource getParallelDataSource(){
+        return jobConnection != null ? jobConnection.getDataSource() : super.getDataSource();
+    }
+
+    /**
+     * Opens up to the given number of connections on the server DataSource, independent from the job connection. If
+     * the DataSource is a connection pool, only its free connections are taken, without waiting for the others, so a
+     * job never waits for the connections held by itself or by the other jobs. The connections should be closed by
+     * the caller.
+     *
+     * @param count Maximum number of connections to open.
+     * @return The opened connections, possibly less than the given count or none.
+     */
+    public List<Connection> openParallelConnections(long count){
+        List<Connection> connections = new ArrayList<>();
+        DataSource dataSource = getParallelDataSource();
+        if(dataSource == null){
+            return connections;
+        }
+        try {
+            while(connections.size() < count){
+                Connection connection = dataSource instanceof WpsConnectionPool ?
+                        ((WpsConnectionPool) dataSource).tryGetConnection() : dataSource.getConnection();
+                if(connection == null){
+                    break;
+                }
+                connections.add(connection);
+            }
+        } catch (SQLException e) {
+            LOGGER.warn(I18N.tr("Unable to open a parallel connection.\nCause : {0}.", e.getMessage()));
+        }
+        return connections;
+    }
+
+    /**
+     * Enables or disables the job transaction. Once enabled, all the queries of the job are run in a single
+     * transaction which should be ended with {@link #commitJob()} or {@link #rollbackJob()}. It should be called
+     * before the first query of the job.
+     *
+     * @param jobTransaction True to run the job in a single transaction.
+     */
+    public void setJobTransaction(boolean jobTransaction){
+        if(jobConnection == null){
+            throw new IllegalStateException(I18N.tr("The Sql object is not bound to a job."));
+        }
+        jobConnection.setTransactional(jobTransaction);
+    }
+
+    /**
+     * Commits the job transaction. Nothing is done if the job transaction is disabled or if no query has been run.
+     *
+     * @throws SQLException Exception thrown if the commit fails.
+     */
+    public void commitJob() throws SQLException {
+        if(jobConnection != null){
+            jobConnection.commit();
+        }
+    }
+
+    /**
+     * Rolls back the job transaction. Nothing is done if the job transaction is disabled or if no query has been run.
+     */
+    public void rollbackJob() {
+        if(jobConnection != null){
+            try {
+                jobConnection.rollback();
+            } catch (SQLException e) {
+                LOGGER.error(I18N.tr("Unable to roll back the transaction of the job.\nCause : {0}.",
+                        e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Sets the number of queries sent to the database in one round-trip by the batch methods.
+     *
+     * @param batchSize Number of queries of a batch.
+     */
+    public void setBatchSize(int batchSize){
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Executes the given queries in batches. If the connection is in auto commit mode, the queries are run in a
+     * single transaction, so they are all applied or none of them is.
+     *
+     * @param queries List of the queries to execute.
+     * @return The update counts of the queries.
+     * @throws SQLException Exception thrown if a query fails.
+     */
+    public int[] executeBatch(List<String> queries) throws SQLException {
+        return runBatch(null, queries);
+    }
+
+    /**
+     * Executes the given prepared query once for each list of parameters, in batches. If the connection is in auto
+     * commit mode, the queries are run in a single transaction, so they are all applied or none of them is.
+     *
+     * @param query Query to prepare, with a '?' for each parameter.
+     * @param parameters List of the parameter lists, one for each execution of the query.
+     * @return The update counts of the executions.
+     * @throws SQLException Exception thrown if an execution fails.
+     */
+    public int[] executeBatch(String query, List<? extends List<?>> parameters) throws SQLException {
+        return runBatch(query, parameters);
+    }
+
+    /**
+     * Runs the batch of the given items.
+     *
+     * @param query Query to prepare, or null if the items are the queries.
+     * @param items List of the queries if the query is null, list of the parameter lists otherwise.
+     * @return The update counts.
+     * @throws SQLException Exception thrown if a query fails.
+     */
+    private int[] runBatch(String query, List<?> items) throws SQLException {
+        int[] updateCounts = new int[items.size()];
+        if(items.isEmpty()){
+            return updateCounts;
+        }
+        Connection connection = createConnection();
+        Statement statement = null;
+        boolean autoCommit = connection.getAutoCommit();
+        try {
+            if(autoCommit) {
+                connection.setAutoCommit(false);
+            }
+            statement = query == null ? connection.createStatement() : connection.prepareStatement(query);
+            //Registers the statement so it can be cancelled
+            configure(statement);
+            int done = 0;
+            for(int i = 0; i < items.size(); i++){
+                if(query == null) {
+                    statement.addBatch((String) items.get(i));
+                }
+                else {
+                    PreparedStatement preparedStatement = (PreparedStatement) statement;
+                    List<?> parameterList = (List<?>) items.get(i);
+                    for(int j = 0; j < parameterList.size(); j++){
+                        preparedStatement.setObject(j + 1, parameterList.get(j));
+                    }
+                    preparedStatement.addBatch();
+                }
+                if((i + 1) % batchSize == 0 || i == items.size() - 1){
+                    int[] counts = statement.executeBatch();
+                    System.arraycopy(counts, 0, updateCounts, done, counts.length);
+                    done += counts.length;
+                }
+            }
+            if(autoCommit) {
+                connection.commit();
+            }
+            return updateCounts;
+        }
+        catch (SQLException e){
+            if(autoCommit) {
+                connection.rollback();
+            }
+            throw e;
+        }
+        finally {
+            if(autoCommit) {
+                connection.setAutoCommit(true);
+            }
+            closeResources(connection, statement);
+        }
+    }
+
+    /**
+     * Sets the number of partitions run concurrently by {@link #executePartitioned(String, String, String, String)}.
+     *
+     * @param partitionCount Number of partitions, 1 to run the query without partitioning.
+     */
+    public void setPartitionCount(int partitionCount){
+        this.partitionCount = Math.max(1, partitionCount);
+    }
+
+    /**
+     * Creates the output table from the given select query, running it by key range partitions on several
+     * connections. The query should contain the {@link #PARTITION_FILTER} token in its WHERE clause, which is replaced
+     * by the key range condition of each partition, for example :
+     * 'SELECT id, ST_BUFFER(the_geom, 10) AS the_geom FROM input WHERE {PARTITION_FILTER}'.
+     *
+     * The empty output table is first created on the job connection, then the key range between the minimum and
+     * maximum key is split into partitions whose rows are inserted concurrently into the output table, each one on
+     * its own connection of the server DataSource. If a partition fails, the statements of the others are cancelled
+     * and the output table is dropped.
+     *
+     * The number of partitions is limited to the number of connections free in the server connection pool, as the job
+     * would otherwise hold its own connection while waiting for the others. The query is run without partitioning, on
+     * the job connection, if the key is not numeric, if less than two partitions can be run, or if the job runs in a
+     * single transaction, because the other connections can't see the tables not committed yet.
+     *
+     * An embedded H2 database runs the statements of all its connections one at a time unless its MULTI_THREADED
+     * setting is enabled, which is not the default of H2 1.4. The partitions would then only add connections and
+     * INSERT...SELECT overhead, so the query is also run without partitioning on such a database.
+     *
+     * @param outputTable Name of the table to create.
+     * @param query Select query containing the {@link #PARTITION_FILTER} token.
+     * @param inputTable Name of the table to partition.
+     * @param keyColumn Name of the key column of the input table, used to split it.
+     * @throws SQLException Exception thrown if the query fails.
+     */
+    public void executePartitioned(String outputTable, String query, String inputTable, String keyColumn)
+            throws SQLException {
+        if(!query.contains(PARTITION_FILTER)){
+            throw new IllegalArgumentException(I18N.tr("The query should contain the token {0}.", PARTITION_FILTER));
+        }
+        //Gets the key range of the input table
+        Object min = null;
+        Object max = null;
+        Connection connection = createConnection();
+        Statement statement = null;
+        ResultSet resultSet = null;
+        try {
+            if(partitionCount > 1 && connection.getAutoCommit() && !isSerializedDatabase(connection)) {
+                statement = connection.createStatement();
+                configure(statement);
+                resultSet = statement.executeQuery("SELECT MIN(" + keyColumn + "), MAX(" + keyColumn + ") FROM " +
+                        inputTable);
+                if (resultSet.next()) {
+                    min = resultSet.getObject(1);
+                    max = resultSet.getObject(2);
+                }
+            }
+        }
+        finally {
+            closeResources(connection, statement, resultSet);
+        }
+        List<Connection> connections = new ArrayList<>();
+        List<Statement> statements = new ArrayList<>();
+        try {
+            if(min instanceof Number && max instanceof Number) {
+                openPartitionConnections(connections, statements,
+                        Math.min(partitionCount, ((Number) max).longValue() - ((Number) min).longValue()));
+            }
+            if(statements.size() < 2){
+                execute("CREATE TABLE " + outputTable + " AS " + query.replace(PARTITION_FILTER, "1=1"));
+                return;
+            }
+            executePartitions(outputTable, query, keyColumn, ((Number) min).longValue(),
+                    ((Number) max).longValue(), statements);
+        }
+        finally {
+            closePartitionConnections(connections, statements);
+        }
+    }
+
+    /**
+     * Returns true if the database of the given connection runs the statements of its connections one at a time, i.e.
+     * if it is a H2 database without the MULTI_THREADED setting.
+     *
+     * @param connection Connection to the database.
+     * @return True if the statements are serialized by the database, false otherwise.
+     * @throws SQLException Exception thrown if the database metadata can't be read.
+     */
+    private static boolean isSerializedDatabase(Connection connection) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        if(metaData == null || !"H2".equalsIgnoreCase(metaData.getDatabaseProductName())){
+            return false;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(
+                     "SELECT VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE NAME = 'MULTI_THREADED'")) {
+            if(resultSet.next()){
+                String value = resultSet.getString(1);
+                return !"1".equals(value) && !"true".equalsIgnoreCase(value);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Opens the connections and the statements of the partitions on the server DataSource. If the DataSource is a
+     * connection pool, only its free connections are taken, without waiting for the others.
+     *
+     * @param connections List filled with the opened connections.
+     * @param statements List filled with one statement for each opened connection.
+     * @param count Maximum number of connections to open.
+     */
+    private void openPartitionConnections(List<Connection> connections, List<Statement> statements, long count){
+        connections.addAll(openParallelConnections(count));
+        try {
+            for(Connection connection : connections){
+                Statement statement = connection.createStatement();
+                //Registers the statement so it can be cancelled with the job
+                configure(statement);
+                statements.add(statement);
+            }
+        } catch (SQLException e) {
+            LOGGER.warn(I18N.tr("Unable to open a connection for a partition.\nCause : {0}.", e.getMessage()));
+        }
+    }
+
+    /**
+     * Closes the statements and the connections of the partitions.
+     *
+     * @param connections Connections of the partitions.
+     * @param statements Statements of the partitions.
+     */
+    private static void closePartitionConnections(List<Connection> connections, List<Statement> statements){
+        for(Statement statement : statements){
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                LOGGER.warn(I18N.tr("Unable to close the statement of a partition.\nCause : {0}.", e.getMessage()));
+            }
+        }
+        for(Connection connection : connections){
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                LOGGER.warn(I18N.tr("Unable to close the connection of a partition.\nCause : {0}.", e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Creates the empty output table and fills it by running the partitions concurrently, one on each statement.
+     *
+     * @param outputTable Name of the table to create.
+     * @param query Select query containing the {@link #PARTITION_FILTER} token.
+     * @param keyColumn Name of the key column of the input table.
+     * @param min Minimum value of the key.
+     * @param max Maximum value of the key.
+     * @param statements Statements of the partitions, each one on its own connection.
+     * @throws SQLException Exception thrown if a partition fails.
+     */
+    private void executePartitions(String outputTable, String query, String keyColumn, long min, long max,
+                                   List<Statement> statements) throws SQLException {
+        //Splits the key range in partitions : the first one takes the null keys and the last one has no upper bound
+        int count = statements.size();
+        long step = (max - min) / count + 1;
+        final List<String> queries = new ArrayList<>();
+        for(int i = 0; i < count; i++){
+            String filter;
+            if(i == 0){
+                filter = "(" + keyColumn + " < " + (min + step) + " OR " + keyColumn + " IS NULL)";
+            }
+            else if(i == count - 1){
+                filter = keyColumn + " >= " + (min + i * step);
+            }
+            else {
+                filter = keyColumn + " >= " + (min + i * step) + " AND " + keyColumn + " < " + (min + (i + 1) * step);
+            }
+            queries.add("INSERT INTO " + outputTable + " " + query.replace(PARTITION_FILTER, filter));
+        }
+        execute("CREATE TABLE " + outputTable + " AS " + query.replace(PARTITION_FILTER, "1=0"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        List<Future<Integer>> futures = new ArrayList<>();
+        try {
+            for(int i = 0; i < count; i++){
+                final Statement statement = statements.get(i);
+                final String partitionQuery = queries.get(i);
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws SQLException {
+                        return statement.executeUpdate(partitionQuery);
+                    }
+                }));
+            }
+            for(Future<Integer> future : futures){
+                future.get();
+            }
+        }
+        catch (ExecutionException | InterruptedException e){
+            //Interrupting the threads does not stop the queries, so their statements are cancelled
+            for(Statement statement : statements){
+                try {
+                    statement.cancel();
+                } catch (SQLException ex) {
+                    LOGGER.warn(I18N.tr("Unable to cancel a partition.\nCause : {0}.", ex.getMessage()));
+                }
+            }
+            for(Future<Integer> future : futures){
+                future.cancel(true);
+            }
+            try {
+                execute("DROP TABLE IF EXISTS " + outputTable);
+            } catch (SQLException ex) {
+                LOGGER.error(I18N.tr("Unable to drop the table {0}.\nCause : {1}.", outputTable, ex.getMessage()));
+            }
+            Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if(cause instanceof SQLException){
+                throw (SQLException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException(I18N.tr("Unable to run the partitioned query.\nCause : {0}.",
+                    cause.getMessage()), cause);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if(jobConnection != null){
+            try {
+                jobConnection.close();
+            } catch (SQLException e) {
+                LOGGER.error(I18N.tr("Unable to close the connection of the job.\nCause : {0}.", e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Connection of a job, lazily taken from the DataSource.
+     */
+    private static class JobConnection {
+        /** DataSource of the server. */
+        private final DataSource dataSource;
+        /** Connection taken from the DataSource, null if not opened yet. */
+        private Connection connection;
+        /** True once the job connection is closed. */
+        private boolean closed = false;
+        /** True if the queries of the job are run in a single transaction. */
+        private boolean transactional = false;
+
+        JobConnection(DataSource dataSource){
+            this.dataSource = dataSource;
+        }
+
+        DataSource getDataSource(){
+            return dataSource;
+        }
+
+        synchronized Connection get() throws SQLException {
+            if(closed){
+                throw new SQLException(I18N.tr("The connection of the job is closed."));
+            }
+            if(connection == null){
+                Connection c = dataSource.getConnection();
+                if(transactional){
+                    c.setAutoCommit(false);
+                }
+                connection = c;
+            }
+            return connection;
+        }
+
+        synchronized void setTransactional(boolean transactional) {
+            this.transactional = transactional;
+        }
+
+        synchronized void commit() throws SQLException {
+            if(transactional && connection != null && !connection.getAutoCommit()){
+                connection.commit();
+            }
+        }
+
+        synchronized void rollback() throws SQLException {
+            if(transactional && connection != null && !connection.getAutoCommit()){
+                connection.rollback();
+            }
+        }
+
+        synchronized boolean isClosed() throws SQLException {
+            return closed || (connection != null && connection.isClosed());
+        }
+
+        synchronized void close() throws SQLException {
+            closed = true;
+            if(connection != null){
+                Connection c = connection;
+                connection = null;
+                c.close();
+            }
+        }
+
+        /**
+         * Creates a handle on the job connection. Closing the handle has no effect.
+         * @return The connection handle.
+         */
+        Connection createHandle(){
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class[]{Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()){
+                        case "close":
+                            return null;
+                        case "isClosed":
+                            return isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "JobConnectionHandle";
+                    }
+                    try {
+                        return method.invoke(get(), args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * DataSource giving handles on the job connection.
+     */
+    private static class JobDataSource implements DataSource {
+        private final JobConnection jobConnection;
+
+        JobDataSource(JobConnection jobConnection){
+            this.jobConnection = jobConnection;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return jobConnection.createHandle();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return jobConnection.createHandle();
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return jobConnection.getDataSource().getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            jobConnection.getDataSource().setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            jobConnection.getDataSource().setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return jobConnection.getDataSource().getLoginTimeout();
+        }
+
+        @Override
+        public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            return jobConnection.getDataSource().getParentLogger();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            return jobConnection.getDataSource().unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return jobConnection.getDataSource().isWrapperFor(iface);
+        }
     }
 }
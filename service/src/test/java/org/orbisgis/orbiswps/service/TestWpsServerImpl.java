@@ -39,15 +39,16 @@
  */
 package org.orbisgis.orbiswps.service;
 
-import junit.framework.Assert;
 import net.opengis.ows._2.AcceptVersionsType;
 import net.opengis.ows._2.ExceptionReport;
 import net.opengis.ows._2.SectionsType;
 import net.opengis.wps._2_0.*;
+import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.orbisgis.orbiswps.service.model.JaxbContainer;
 import org.orbisgis.orbiswps.serviceapi.WpsServerListener;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
@@ -57,6 +58,8 @@ import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.Executors;
 
@@ -807,6 +810,62 @@ public class TestWpsServerImpl {
         wpsServer.removeWpsServerListener(listener2);
     }
 
+    /**
+     * Test the streaming callOperation methods writing into an OutputStream and into a WritableByteChannel.
+     *
+     * @throws JAXBException Exception get if the marshaller fails.
+     * @throws IOException Exception get if the resource getting fails.
+     */
+    @Test
+    public void testStreamingCallOperation() throws JAXBException, IOException {
+        Unmarshaller unmarshaller = JaxbContainer.JAXBCONTEXT.createUnmarshaller();
+        File getCapabilitiesFile = new File(this.getClass().getResource("GetCapabilities.xml").getFile());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try(InputStream in = new FileInputStream(getCapabilitiesFile)) {
+            Assert.assertTrue("An answer should be written into the stream", wpsServer.callOperation(in, out));
+        }
+        Object resultObject = unmarshaller.unmarshal(new ByteArrayInputStream(out.toByteArray()));
+        Assert.assertTrue("The answer should be a WPSCapabilitiesType",
+                ((JAXBElement)resultObject).getValue() instanceof WPSCapabilitiesType);
+
+        ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+        try(InputStream in = new FileInputStream(getCapabilitiesFile)) {
+            Assert.assertTrue("An answer should be written into the channel",
+                    wpsServer.callOperation(in, Channels.newChannel(channelOut)));
+        }
+        Assert.assertArrayEquals("The channel and the stream should receive the same answer",
+                out.toByteArray(), channelOut.toByteArray());
+
+        ByteArrayOutputStream badOut = new ByteArrayOutputStream();
+        Assert.assertFalse("No answer should be written for an invalid xml",
+                wpsServer.callOperation(new ByteArrayInputStream("<notWps/>".getBytes()), badOut));
+        Assert.assertEquals("No answer should be written for an invalid xml", 0, badOut.size());
+    }
+
+    /**
+     * Test the addition of a script folder, which scripts are parsed in parallel but registered in the file name order.
+     */
+    @Test
+    public void testAddProcessFolder() throws URISyntaxException {
+        File folder = new File(this.getClass().getResource("ascriptfolder").toURI());
+        List<ProcessIdentifier> piList = wpsServer.addProcess(folder);
+        Assert.assertEquals("The three scripts of the folder should be added", 3, piList.size());
+        Assert.assertEquals("The scripts should be registered in the file name order", "script1ID",
+                piList.get(0).getProcessDescriptionType().getIdentifier().getValue());
+        Assert.assertEquals("The scripts should be registered in the file name order", "script2ID",
+                piList.get(1).getProcessDescriptionType().getIdentifier().getValue());
+        Assert.assertEquals("The scripts should be registered in the file name order", "script3ID",
+                piList.get(2).getProcessDescriptionType().getIdentifier().getValue());
+
+        piList = wpsServer.addProcess(folder);
+        Assert.assertTrue("The scripts already registered should not be added again", piList.isEmpty());
+
+        wpsServer.removeProcess(URI.create("script1ID"));
+        wpsServer.removeProcess(URI.create("script2ID"));
+        wpsServer.removeProcess(URI.create("script3ID"));
+    }
+
     /**
      * Class implementing the interface WpsServerListener used for the tests.
      */
@@ -0,0 +1,80 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Test class for the MarshallerPool.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class MarshallerPoolTest {
+
+    @Test
+    public void testMarshallerReuse() throws JAXBException {
+        MarshallerPool pool = new MarshallerPool(JaxbContainer.JAXBCONTEXT, 1, false);
+        Marshaller marshaller1 = pool.borrowMarshaller();
+        Marshaller marshaller2 = pool.borrowMarshaller();
+        Assert.assertNotSame("Two borrowed Marshaller should be different", marshaller1, marshaller2);
+        Assert.assertEquals("The Marshaller output should be compact", Boolean.FALSE,
+                marshaller1.getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+        pool.returnMarshaller(marshaller1);
+        pool.returnMarshaller(marshaller2);
+        Assert.assertSame("The returned Marshaller should be reused", marshaller1, pool.borrowMarshaller());
+        Assert.assertNotSame("Only one idle Marshaller should be kept", marshaller2, pool.borrowMarshaller());
+    }
+
+    @Test
+    public void testUnmarshallerReuse() throws JAXBException {
+        MarshallerPool pool = new MarshallerPool(JaxbContainer.JAXBCONTEXT, 2, true);
+        Assert.assertTrue("The output should be formatted", pool.isFormattedOutput());
+        Assert.assertEquals("The Marshaller output should be formatted", Boolean.TRUE,
+                pool.borrowMarshaller().getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+        Unmarshaller unmarshaller = pool.borrowUnmarshaller();
+        pool.returnUnmarshaller(unmarshaller);
+        Assert.assertSame("The returned Unmarshaller should be reused", unmarshaller, pool.borrowUnmarshaller());
+    }
+}
@@ -331,6 +331,72 @@ public class TestWPS_2_0_OperationsImpl {
                 ((ExceptionReport) resultObject).getException().get(0).getLocator(), "AcceptLanguages");
     }
 
+    /**
+     * Test that the capabilities are cached until the process list changes.
+     */
+    @Test
+    public void testCapabilitiesCache() {
+        GetCapabilitiesType getCapabilitiesType = new GetCapabilitiesType();
+        Object capabilities = wps20Operations.getCapabilities(getCapabilitiesType);
+        Assert.assertTrue("The capabilities should be a WPSCapabilitiesType", capabilities instanceof WPSCapabilitiesType);
+        Assert.assertSame("The cached capabilities should be returned", capabilities,
+                wps20Operations.getCapabilities(getCapabilitiesType));
+
+        SectionsType sectionsType = new SectionsType();
+        sectionsType.getSection().add("Languages");
+        GetCapabilitiesType languagesCapabilitiesType = new GetCapabilitiesType();
+        languagesCapabilitiesType.setSections(sectionsType);
+        Object languagesCapabilities = wps20Operations.getCapabilities(languagesCapabilitiesType);
+        Assert.assertNotSame("The capabilities should be cached by sections", capabilities, languagesCapabilities);
+        Assert.assertNull("The capabilities should only contain the requested sections",
+                ((WPSCapabilitiesType)languagesCapabilities).getContents());
+
+        //An empty Sections element should be answered and cached
+        GetCapabilitiesType noSectionCapabilitiesType = new GetCapabilitiesType();
+        noSectionCapabilitiesType.setSections(new SectionsType());
+        Object noSectionCapabilities = wps20Operations.getCapabilities(noSectionCapabilitiesType);
+        Assert.assertTrue("The capabilities should be a WPSCapabilitiesType",
+                noSectionCapabilities instanceof WPSCapabilitiesType);
+        Assert.assertSame("The capabilities without section should be cached", noSectionCapabilities,
+                wps20Operations.getCapabilities(noSectionCapabilitiesType));
+
+        //The languages matched with best-effort semantic should share the entry of the server language
+        for(String language : new String[]{"en-1", "en-2"}) {
+            GetCapabilitiesType.AcceptLanguages acceptLanguages = new GetCapabilitiesType.AcceptLanguages();
+            acceptLanguages.getLanguage().add(language);
+            GetCapabilitiesType bestEffortCapabilitiesType = new GetCapabilitiesType();
+            bestEffortCapabilitiesType.setAcceptLanguages(acceptLanguages);
+            Assert.assertSame("The capabilities should be cached by server language", capabilities,
+                    wps20Operations.getCapabilities(bestEffortCapabilitiesType));
+        }
+
+        //The addition of a process through the server invalidates the cache
+        File file = new File(TestWPS_2_0_OperationsImpl.class.getResource("Enumeration.groovy").getFile());
+        processManager.addScript(file.toURI());
+        wpsServer.addProcess(file);
+        Object newCapabilities = wps20Operations.getCapabilities(getCapabilitiesType);
+        Assert.assertNotSame("The cache should be invalidated on script addition", capabilities, newCapabilities);
+        Assert.assertEquals("The new process should be in the capabilities", 1,
+                ((WPSCapabilitiesType)newCapabilities).getContents().getProcessSummary().size());
+        Assert.assertSame("The new capabilities should be cached", newCapabilities,
+                wps20Operations.getCapabilities(getCapabilitiesType));
+
+        //Each listener call replaces the cached capabilities
+        WPS_2_0_OperationsImpl operations = (WPS_2_0_OperationsImpl) wps20Operations;
+        operations.onScriptAdd();
+        Object addedCapabilities = wps20Operations.getCapabilities(getCapabilitiesType);
+        Assert.assertNotSame("The cache should be replaced on script addition", newCapabilities, addedCapabilities);
+        Assert.assertSame("The capabilities should be cached again", addedCapabilities,
+                wps20Operations.getCapabilities(getCapabilitiesType));
+        operations.onScriptRemoved();
+        Object removedCapabilities = wps20Operations.getCapabilities(getCapabilitiesType);
+        Assert.assertNotSame("The cache should be replaced on script removal", addedCapabilities, removedCapabilities);
+        Assert.assertSame("The capabilities should be cached again", removedCapabilities,
+                wps20Operations.getCapabilities(getCapabilitiesType));
+        Assert.assertNotSame("The sections capabilities should be replaced on script removal", languagesCapabilities,
+                wps20Operations.getCapabilities(languagesCapabilitiesType));
+    }
+
         /**
          * Test process execution with bad ExecuteRequestType object.
          *
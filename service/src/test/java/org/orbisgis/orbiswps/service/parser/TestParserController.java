@@ -39,13 +39,24 @@
  */
 package org.orbisgis.orbiswps.service.parser;
 
+import net.opengis.wps._2_0.InputDescriptionType;
 import net.opengis.wps._2_0.ProcessOffering;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.orbisgis.orbiswps.service.model.JDBCTable;
 import org.orbisgis.orbiswps.service.parser.ParserController;
 import org.orbisgis.orbiswps.serviceapi.model.MalformedScriptException;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
 /**
  * Test class for the ParserController
  *
@@ -55,10 +66,32 @@ public class TestParserController {
 
     /** JDBCTable parser. */
     private ParserController parserController;
+    /** Temporary directory used by the script cache tests. */
+    private File tmpDirectory;
 
     @Before
-    public void initialization(){
+    public void initialization() throws IOException {
         parserController = new ParserController();
+        tmpDirectory = Files.createTempDirectory("scriptCache").toFile();
+    }
+
+    @After
+    public void cleanUp(){
+        delete(tmpDirectory);
+    }
+
+    /**
+     * Recursively deletes a file or a directory.
+     * @param file File to delete.
+     */
+    private static void delete(File file){
+        File[] children = file.listFiles();
+        if(children != null){
+            for(File child : children){
+                delete(child);
+            }
+        }
+        file.delete();
     }
 
     @Test
@@ -94,4 +127,77 @@ public class TestParserController {
         } catch (MalformedScriptException ignored) {}
         Assert.assertNotNull("The ProcessOffering should not be null.", processOffering);
     }
+
+    @Test
+    public void testScriptCache() throws IOException, URISyntaxException, MalformedScriptException {
+        File cacheDirectory = new File(tmpDirectory, "cache");
+        URL url = TestParserController.class.getResource("../JDBCValue.groovy");
+
+        parserController.setScriptCacheDirectory(cacheDirectory);
+        Class compiledClass = parserController.getProcessClass(url);
+        Assert.assertNotNull("The generated class should not be null.", compiledClass);
+        ProcessOffering compiledOffering = parserController.parseProcess(compiledClass, url.toURI());
+        Assert.assertNotNull("The ProcessOffering should not be null.", compiledOffering);
+        Assert.assertEquals("The cache should contain the classes and the process of the script.",
+                2, cacheDirectory.list().length);
+
+        //A new controller should load the script from the cache
+        ParserController cachedController = new ParserController();
+        cachedController.setScriptCacheDirectory(cacheDirectory);
+        Class cachedClass = cachedController.getProcessClass(url);
+        Assert.assertNotNull("The cached class should not be null.", cachedClass);
+        Assert.assertEquals("The cached class should have the same name.", compiledClass.getName(),
+                cachedClass.getName());
+        Assert.assertTrue("The cached class should be loaded from the cache directory.",
+                cachedClass.getProtectionDomain().getCodeSource().getLocation().getPath()
+                        .startsWith(cacheDirectory.toURI().getPath()));
+        ProcessOffering cachedOffering = cachedController.parseProcess(cachedClass, url.toURI());
+        Assert.assertNotNull("The cached ProcessOffering should not be null.", cachedOffering);
+        Assert.assertEquals("The cached process should have the same identifier.",
+                compiledOffering.getProcess().getIdentifier().getValue(),
+                cachedOffering.getProcess().getIdentifier().getValue());
+        Assert.assertEquals("The cached process should have the same inputs.",
+                compiledOffering.getProcess().getInput().size(), cachedOffering.getProcess().getInput().size());
+        for(InputDescriptionType input : cachedOffering.getProcess().getInput()){
+            if(input.getDataDescription().getValue() instanceof JDBCTable){
+                JDBCTable jdbcTable = (JDBCTable)input.getDataDescription().getValue();
+                Assert.assertEquals("The cached JDBCTable should be linked once to its JDBCColumn.",
+                        1, jdbcTable.getListJDBCColumn().size());
+            }
+        }
+    }
+
+    @Test
+    public void testScriptCacheReplacement() throws IOException {
+        File cacheDirectory = new File(tmpDirectory, "cache");
+        File script = new File(tmpDirectory, "SimpleProcess.groovy");
+        Files.copy(new File(this.getClass().getResource("SimpleProcess.groovy").getFile()).toPath(), script.toPath());
+
+        parserController.setScriptCacheDirectory(cacheDirectory);
+        Assert.assertNotNull("The generated class should not be null.",
+                parserController.getProcessClass(script.toURI().toURL()));
+        String[] firstEntries = cacheDirectory.list();
+        Assert.assertEquals("The cache should contain the classes of the script.", 1, firstEntries.length);
+
+        //A modified script should mark the entry of its previous version
+        Files.write(script.toPath(), "\n//Modified\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        ParserController otherController = new ParserController();
+        otherController.setScriptCacheDirectory(cacheDirectory);
+        Assert.assertNotNull("The generated class should not be null.",
+                otherController.getProcessClass(script.toURI().toURL()));
+        File firstEntry = new File(cacheDirectory, firstEntries[0]);
+        File retiredFile = new File(cacheDirectory, firstEntries[0] + ".retired");
+        Assert.assertTrue("The entry of the previous version should be kept for the running jobs.", firstEntry.exists());
+        Assert.assertTrue("The entry of the previous version should be marked.", retiredFile.exists());
+        Assert.assertEquals("The cache should contain both versions and the marker.", 3, cacheDirectory.list().length);
+
+        //The marked entry is removed on a later start once the grace period is over
+        new CompiledScriptCache(cacheDirectory);
+        Assert.assertTrue("The marked entry should be kept during the grace period.", firstEntry.exists());
+        Assert.assertTrue(retiredFile.setLastModified(System.currentTimeMillis() - 2 * 24 * 60 * 60 * 1000L));
+        new CompiledScriptCache(cacheDirectory);
+        Assert.assertFalse("The marked entry should be removed.", firstEntry.exists());
+        Assert.assertFalse("The marker should be removed.", retiredFile.exists());
+        Assert.assertEquals("The cache should only contain the modified script.", 1, cacheDirectory.list().length);
+    }
 }
@@ -0,0 +1,179 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import net.opengis.ows._2.CodeType;
+import net.opengis.ows._2.MetadataType;
+import net.opengis.wps._2_0.OutputDescriptionType;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import net.opengis.wps._2_0.ProcessOffering;
+import org.junit.Assert;
+import org.junit.Test;
+import org.orbisgis.orbiswps.service.utils.Job;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Test class for the ExecuteResultCache.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class ExecuteResultCacheTest {
+
+    private static final URI INPUT_1 = URI.create("orbisgis:test:input1");
+    private static final URI INPUT_2 = URI.create("orbisgis:test:input2");
+    private static final URI OUTPUT = URI.create("orbisgis:test:output");
+
+    /**
+     * Creates a ProcessIdentifier of a process with one output and the given metadata, backed by the given file.
+     * @param file Script file of the process.
+     * @param cacheable Value of the CACHEABLE metadata.
+     * @param deterministic Value of the DETERMINISTIC metadata.
+     * @return The ProcessIdentifier.
+     */
+    private static ProcessIdentifierImpl createProcessIdentifier(File file, boolean cacheable, boolean deterministic){
+        ProcessDescriptionType process = new ProcessDescriptionType();
+        CodeType codeType = new CodeType();
+        codeType.setValue("orbisgis:test:process");
+        process.setIdentifier(codeType);
+        MetadataType cacheableMetadata = new MetadataType();
+        cacheableMetadata.setRole(ProcessMetadata.CACHEABLE_NAME);
+        cacheableMetadata.setTitle(Boolean.toString(cacheable));
+        process.getMetadata().add(cacheableMetadata);
+        MetadataType deterministicMetadata = new MetadataType();
+        deterministicMetadata.setRole(ProcessMetadata.DETERMINISTIC_NAME);
+        deterministicMetadata.setTitle(Boolean.toString(deterministic));
+        process.getMetadata().add(deterministicMetadata);
+        OutputDescriptionType output = new OutputDescriptionType();
+        CodeType outputCodeType = new CodeType();
+        outputCodeType.setValue(OUTPUT.toString());
+        output.setIdentifier(outputCodeType);
+        process.getOutput().add(output);
+        ProcessOffering processOffering = new ProcessOffering();
+        processOffering.setProcess(process);
+        return new ProcessIdentifierImpl(processOffering, file.getAbsolutePath());
+    }
+
+    private static File createScript(String content) throws IOException {
+        File file = File.createTempFile("executeResultCacheTest", ".groovy");
+        file.deleteOnExit();
+        try(FileWriter writer = new FileWriter(file)) {
+            writer.write(content);
+        }
+        return file;
+    }
+
+    @Test
+    public void testKey() throws IOException {
+        ExecuteResultCache cache = new ExecuteResultCache(10);
+        File script = createScript("return 1");
+        ProcessIdentifierImpl pi = createProcessIdentifier(script, true, true);
+
+        Map<URI, Object> inputMap1 = new HashMap<>();
+        inputMap1.put(INPUT_1, "value");
+        inputMap1.put(INPUT_2, 1);
+        Map<URI, Object> inputMap2 = new HashMap<>();
+        inputMap2.put(INPUT_2, 1.0);
+        inputMap2.put(INPUT_1, "value");
+        String key = cache.getKey(pi, inputMap1);
+        Assert.assertNotNull("The execution should be cacheable.", key);
+        Assert.assertEquals("Equal inputs should give the same key.", key, cache.getKey(pi, inputMap2));
+        inputMap2.put(INPUT_1, "other value");
+        Assert.assertFalse("Different inputs should give different keys.", key.equals(cache.getKey(pi, inputMap2)));
+        inputMap2.put(INPUT_1, Arrays.asList("value", null));
+        Assert.assertNotNull("A list of simple values should be cacheable.", cache.getKey(pi, inputMap2));
+        inputMap2.put(INPUT_1, new Object());
+        Assert.assertNull("A complex input should not be cacheable.", cache.getKey(pi, inputMap2));
+
+        Assert.assertNull("A non cacheable process should not be cached.",
+                cache.getKey(createProcessIdentifier(script, false, true), inputMap1));
+        Assert.assertNull("A non deterministic process should not be cached.",
+                cache.getKey(createProcessIdentifier(script, true, false), inputMap1));
+
+        try(FileWriter writer = new FileWriter(script)) {
+            writer.write("return 2");
+        }
+        Assert.assertTrue(script.setLastModified(script.lastModified() + 2000));
+        Assert.assertFalse("A modified script should give a different key.", key.equals(cache.getKey(pi, inputMap1)));
+    }
+
+    @Test
+    public void testCachingListener() throws IOException {
+        ExecuteResultCache cache = new ExecuteResultCache(1);
+        ProcessIdentifierImpl pi = createProcessIdentifier(createScript("return 1"), true, true);
+        Map<URI, Object> dataMap = new HashMap<>();
+        dataMap.put(INPUT_1, "value");
+        String key = cache.getKey(pi, dataMap);
+        Assert.assertNull("The execution should not be cached yet.", cache.get(key));
+
+        Job job = new Job(pi.getProcessDescriptionType(), UUID.randomUUID(), dataMap, 10000, 1000);
+        Assert.assertTrue(job.addStatusListener(cache.getCachingListener(key)));
+        dataMap.put(OUTPUT, "result");
+        job.setProcessState(ProcessExecutionListener.ProcessState.RUNNING);
+        Assert.assertEquals("A running job should not be cached.", 0, cache.size());
+        job.setProcessState(ProcessExecutionListener.ProcessState.SUCCEEDED);
+
+        Map<URI, Object> outputMap = cache.get(key);
+        Assert.assertNotNull("The outputs of the succeeded job should be cached.", outputMap);
+        Assert.assertEquals("Only the outputs should be cached.", 1, outputMap.size());
+        Assert.assertEquals("result", outputMap.get(OUTPUT));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        dataMap.put(INPUT_1, "other value");
+        String otherKey = cache.getKey(pi, dataMap);
+        dataMap.put(OUTPUT, new File("result.csv"));
+        Assert.assertFalse("A file output should not be cached.",
+                cache.put(otherKey, pi.getProcessDescriptionType(), dataMap));
+        dataMap.put(OUTPUT, "other result");
+        Assert.assertTrue(cache.put(otherKey, pi.getProcessDescriptionType(), dataMap));
+        Assert.assertNull("The least recently used result should be dropped.", cache.get(key));
+        Assert.assertEquals("other result", cache.get(otherKey).get(OUTPUT));
+    }
+}
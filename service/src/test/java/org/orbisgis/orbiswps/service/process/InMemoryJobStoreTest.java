@@ -0,0 +1,135 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.orbisgis.orbiswps.service.utils.Job;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Test class for the InMemoryJobStore.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class InMemoryJobStoreTest {
+
+    /**
+     * Creates a new job with an empty data map.
+     * @return A new job.
+     */
+    private static Job createJob(){
+        return new Job(null, UUID.randomUUID(), new HashMap<URI, Object>(), 10000, 1000);
+    }
+
+    @Test
+    public void testEviction(){
+        InMemoryJobStore jobStore = new InMemoryJobStore(2, 0);
+        Job job1 = createJob();
+        Job job2 = createJob();
+        Assert.assertTrue("The job should be stored.", jobStore.put(job1));
+        Assert.assertTrue("The job should be stored.", jobStore.put(job2));
+        Assert.assertFalse("The store is full of unfinished jobs, the job should be refused.",
+                jobStore.put(createJob()));
+
+        job1.setProcessState(ProcessExecutionListener.ProcessState.SUCCEEDED);
+        Job job3 = createJob();
+        Assert.assertTrue("The finished job should be evicted to store the new one.", jobStore.put(job3));
+        Assert.assertNull("The finished job should have been evicted.", jobStore.get(job1.getId()));
+        Assert.assertSame("The running job should be kept.", job2, jobStore.get(job2.getId()));
+        Assert.assertSame("The new job should be stored.", job3, jobStore.get(job3.getId()));
+        Assert.assertEquals("One job should have been evicted.", 1, jobStore.getEvictedJobCount());
+        Assert.assertEquals("The store should contain two jobs.", 2, jobStore.size());
+    }
+
+    @Test
+    public void testExpiration() throws IOException, InterruptedException {
+        InMemoryJobStore jobStore = new InMemoryJobStore(10, 1);
+        try {
+            Job runningJob = createJob();
+            Job finishedJob = createJob();
+            File result = File.createTempFile("jobStoreTest", ".csv");
+            finishedJob.getDataMap().put(URI.create("orbisgis:test:output"), result);
+            jobStore.put(runningJob);
+            jobStore.put(finishedJob);
+            finishedJob.setProcessState(ProcessExecutionListener.ProcessState.SUCCEEDED);
+            Thread.sleep(10);
+
+            jobStore.removeExpiredJobs();
+            Assert.assertNull("The finished job should have expired.", jobStore.get(finishedJob.getId()));
+            Assert.assertSame("The running job should not expire.", runningJob, jobStore.get(runningJob.getId()));
+            Assert.assertEquals("One job should have expired.", 1, jobStore.getExpiredJobCount());
+            Assert.assertTrue("The data of the expired job should be freed.", finishedJob.getDataMap().isEmpty());
+            Assert.assertFalse("The temporary result file should be deleted.", result.exists());
+        }
+        finally {
+            jobStore.shutdown();
+        }
+    }
+
+    @Test
+    public void testScheduleDestroying() throws InterruptedException {
+        InMemoryJobStore jobStore = new InMemoryJobStore(10, 1);
+        try {
+            Job job = createJob();
+            Map<URI, Object> dataMap = job.getDataMap();
+            dataMap.put(URI.create("orbisgis:test:output"), "result");
+            jobStore.put(job);
+            job.setProcessState(ProcessExecutionListener.ProcessState.SUCCEEDED);
+            jobStore.scheduleDestroying(job.getId(), System.currentTimeMillis() + 60000);
+            Thread.sleep(10);
+
+            jobStore.removeExpiredJobs();
+            Assert.assertSame("The job should be kept until its destroy date.", job, jobStore.get(job.getId()));
+            Assert.assertEquals("The result should be kept until its destroy date.", "result",
+                    dataMap.get(URI.create("orbisgis:test:output")));
+        }
+        finally {
+            jobStore.shutdown();
+        }
+    }
+}
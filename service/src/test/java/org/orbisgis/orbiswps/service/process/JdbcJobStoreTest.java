@@ -0,0 +1,277 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import net.opengis.ows._2.CodeType;
+import net.opengis.wps._2_0.OutputDescriptionType;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.orbisgis.orbiswps.service.utils.Job;
+import org.orbisgis.orbiswps.serviceapi.process.JobLogEntry;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener;
+import org.orbisgis.orbiswps.serviceapi.process.WpsJob;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Test class for the JdbcJobStore.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class JdbcJobStoreTest {
+
+    private static final URI STRING_OUTPUT = URI.create("orbisgis:test:string");
+    private static final URI DOUBLE_OUTPUT = URI.create("orbisgis:test:double");
+    private static final URI FILE_OUTPUT = URI.create("orbisgis:test:file");
+
+    private DataSource dataSource;
+
+    @Before
+    public void initialization() throws SQLException {
+        dataSource = H2GISDBFactory.createDataSource(JdbcJobStoreTest.class.getSimpleName(), false);
+    }
+
+    /**
+     * Creates a new job of a process with a String, a Double and a File output.
+     * @return A new job.
+     */
+    private static Job createJob(){
+        ProcessDescriptionType process = new ProcessDescriptionType();
+        CodeType processId = new CodeType();
+        processId.setValue("orbisgis:test:process");
+        process.setIdentifier(processId);
+        for(URI outputUri : new URI[]{STRING_OUTPUT, DOUBLE_OUTPUT, FILE_OUTPUT}){
+            OutputDescriptionType output = new OutputDescriptionType();
+            CodeType outputId = new CodeType();
+            outputId.setValue(outputUri.toString());
+            output.setIdentifier(outputId);
+            process.getOutput().add(output);
+        }
+        return new Job(process, UUID.randomUUID(), new HashMap<URI, Object>(), 10000, 1000);
+    }
+
+    /**
+     * Returns the number of rows of the given table for the given job.
+     * @param table Name of the table.
+     * @param jobId Id of the job.
+     * @return The number of rows.
+     */
+    private int countRows(String table, UUID jobId) throws SQLException {
+        try(Connection connection = dataSource.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM " + table +
+                    " WHERE " + ("WPS_JOB".equals(table) ? "ID" : "JOB_ID") + " = '" + jobId + "'")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    @Test
+    public void testReadFromAnotherStore(){
+        JdbcJobStore jobStore = new JdbcJobStore(dataSource, null, 10, 0, 10000, 1000);
+        JdbcJobStore otherStore = new JdbcJobStore(dataSource, null, 10, 0, 10000, 1000);
+        try {
+            Job job = createJob();
+            Assert.assertTrue("The job should be stored.", jobStore.put(job));
+            job.getDataMap().put(STRING_OUTPUT, "result");
+            job.getDataMap().put(DOUBLE_OUTPUT, 1.5);
+            job.getDataMap().put(FILE_OUTPUT, new File("result.csv"));
+            job.setProgress(100);
+            job.setProcessState(ProcessExecutionListener.ProcessState.SUCCEEDED);
+            jobStore.flush();
+
+            WpsJob readJob = otherStore.get(job.getId());
+            Assert.assertNotNull("The job should be read from the database.", readJob);
+            Assert.assertNotSame("The job should be read from the database.", job, readJob);
+            Assert.assertEquals(ProcessExecutionListener.ProcessState.SUCCEEDED, readJob.getState());
+            Assert.assertEquals(100, readJob.getProgress());
+            Assert.assertEquals(job.getEndTime(), readJob.getEndTime());
+            Assert.assertEquals("The String output should be read back.", "result",
+                    readJob.getDataMap().get(STRING_OUTPUT));
+            Assert.assertEquals("The Double output should be read back with its type.", 1.5,
+                    readJob.getDataMap().get(DOUBLE_OUTPUT));
+            Assert.assertFalse("The File output should not be written in the database.",
+                    readJob.getDataMap().containsKey(FILE_OUTPUT));
+            Assert.assertNull("An unknown job should not be found.", otherStore.get(UUID.randomUUID()));
+        }
+        finally {
+            jobStore.shutdown();
+            otherStore.shutdown();
+        }
+    }
+
+    @Test
+    public void testIncrementalLogs() throws SQLException {
+        JdbcJobStore jobStore = new JdbcJobStore(dataSource, null, 10, 0, 10000, 1000);
+        JdbcJobStore otherStore = new JdbcJobStore(dataSource, null, 10, 0, 10000, 1000);
+        try {
+            Job job = createJob();
+            jobStore.put(job);
+            job.appendLog(ProcessExecutionListener.LogType.INFO, "log 1");
+            job.appendLog(ProcessExecutionListener.LogType.INFO, "log 2");
+            jobStore.flush();
+            Assert.assertEquals(2, countRows("WPS_JOB_LOG", job.getId()));
+            jobStore.flush();
+            Assert.assertEquals("An unmodified job should not be written again.", 2,
+                    countRows("WPS_JOB_LOG", job.getId()));
+            job.appendLog(ProcessExecutionListener.LogType.WARN, "log 3");
+            jobStore.flush();
+            Assert.assertEquals("Only the new log entry should be inserted.", 3,
+                    countRows("WPS_JOB_LOG", job.getId()));
+
+            List<JobLogEntry> logs = otherStore.get(job.getId()).getLogs(0);
+            Assert.assertEquals(3, logs.size());
+            Assert.assertEquals("log 1", logs.get(0).getMessage());
+            Assert.assertEquals("log 3", logs.get(2).getMessage());
+            Assert.assertEquals(ProcessExecutionListener.LogType.WARN, logs.get(2).getLogType());
+            Assert.assertTrue(logs.get(1).getSequence() < logs.get(2).getSequence());
+        }
+        finally {
+            jobStore.shutdown();
+            otherStore.shutdown();
+        }
+    }
+
+    @Test
+    public void testEviction() throws IOException {
+        JdbcJobStore jobStore = new JdbcJobStore(dataSource, null, 1, 0, 10000, 1000);
+        try {
+            Job job1 = createJob();
+            Assert.assertTrue(jobStore.put(job1));
+            Assert.assertFalse("The store is full of unfinished jobs, the job should be refused.",
+                    jobStore.put(createJob()));
+
+            File result = File.createTempFile("jobStoreTest", ".csv");
+            job1.getDataMap().put(FILE_OUTPUT, result);
+            //Only the finished jobs written in the database can be evicted
+            job1.setProcessState(ProcessExecutionListener.ProcessState.SUCCEEDED);
+            jobStore.flush();
+            Job job2 = createJob();
+            Assert.assertTrue("The finished job should be evicted to store the new one.", jobStore.put(job2));
+            Assert.assertEquals("One job should have been evicted.", 1, jobStore.getEvictedJobCount());
+            Assert.assertTrue("The data of the evicted job should be freed.", job1.getDataMap().isEmpty());
+            Assert.assertFalse("The temporary result file should be deleted.", result.exists());
+            Assert.assertSame("The new job should be kept in memory.", job2, jobStore.get(job2.getId()));
+            WpsJob readJob = jobStore.get(job1.getId());
+            Assert.assertNotNull("The evicted job should be read from the database.", readJob);
+            Assert.assertNotSame(job1, readJob);
+            Assert.assertEquals(ProcessExecutionListener.ProcessState.SUCCEEDED, readJob.getState());
+        }
+        finally {
+            jobStore.shutdown();
+        }
+    }
+
+    @Test
+    public void testExpiration() throws InterruptedException, SQLException {
+        JdbcJobStore jobStore = new JdbcJobStore(dataSource, null, 10, 1, 10000, 1000);
+        //Store without reaper, so only the first store removes the expired jobs
+        JdbcJobStore otherStore = new JdbcJobStore(dataSource, null, 10, 0, 10000, 1000);
+        try {
+            Job runningJob = createJob();
+            Job finishedJob = createJob();
+            jobStore.put(runningJob);
+            jobStore.put(finishedJob);
+            finishedJob.getDataMap().put(STRING_OUTPUT, "result");
+            finishedJob.appendLog(ProcessExecutionListener.LogType.INFO, "log");
+            finishedJob.setProcessState(ProcessExecutionListener.ProcessState.SUCCEEDED);
+            jobStore.flush();
+            Thread.sleep(10);
+
+            Assert.assertNull("The expired job should not be read from the database.",
+                    otherStore.get(finishedJob.getId()));
+            jobStore.removeExpiredJobs();
+            Assert.assertNull("The finished job should have expired.", jobStore.get(finishedJob.getId()));
+            Assert.assertSame("The running job should not expire.", runningJob, jobStore.get(runningJob.getId()));
+            Assert.assertNotNull("The running job should be kept in the database.",
+                    otherStore.get(runningJob.getId()));
+            Assert.assertEquals("The expired job should be deleted.", 1, jobStore.getExpiredJobCount());
+            Assert.assertEquals(0, countRows("WPS_JOB", finishedJob.getId()));
+            Assert.assertEquals(0, countRows("WPS_JOB_OUTPUT", finishedJob.getId()));
+            Assert.assertEquals(0, countRows("WPS_JOB_LOG", finishedJob.getId()));
+        }
+        finally {
+            jobStore.shutdown();
+            otherStore.shutdown();
+        }
+    }
+
+    @Test
+    public void testOrphanedJobs(){
+        JdbcJobStore jobStore = new JdbcJobStore(dataSource, null, 10, 60000, 10000, 1000);
+        JdbcJobStore otherStore = new JdbcJobStore(dataSource, null, 10, 60000, 10000, 1000);
+        try {
+            Job job = createJob();
+            jobStore.put(job);
+            job.setProcessState(ProcessExecutionListener.ProcessState.RUNNING);
+            jobStore.flush();
+            Assert.assertEquals("A job with a recent heartbeat should not be failed.", 0,
+                    otherStore.failOrphanedJobs(System.currentTimeMillis() - JdbcJobStore.ORPHAN_TIMEOUT_MILLIS));
+
+            //The server of the job is considered as stopped
+            Assert.assertEquals(1, otherStore.failOrphanedJobs(System.currentTimeMillis() + 1));
+            WpsJob readJob = otherStore.get(job.getId());
+            Assert.assertEquals("The orphaned job should be failed.", ProcessExecutionListener.ProcessState.FAILED,
+                    readJob.getState());
+            Assert.assertTrue("The orphaned job should be finished.", readJob.isFinished());
+            List<JobLogEntry> logs = readJob.getLogs(0);
+            Assert.assertEquals(ProcessExecutionListener.LogType.ERROR, logs.get(logs.size() - 1).getLogType());
+            Assert.assertEquals("A failed job should not be failed again.", 0,
+                    otherStore.failOrphanedJobs(System.currentTimeMillis() + 1));
+        }
+        finally {
+            jobStore.shutdown();
+            otherStore.shutdown();
+        }
+    }
+}
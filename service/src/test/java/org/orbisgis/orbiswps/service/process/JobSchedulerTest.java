@@ -0,0 +1,296 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import net.opengis.ows._2.CodeType;
+import net.opengis.ows._2.LanguageStringType;
+import net.opengis.ows._2.MetadataType;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.orbisgis.orbiswps.service.utils.Job;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test class for the JobScheduler.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class JobSchedulerTest {
+
+    /** Tasks given to the test executor, which keeps them without running them. */
+    private List<Runnable> taskList;
+    /** Executor keeping the tasks, so the test decides when they run. */
+    private AbstractExecutorService executor;
+    /** Ids of the jobs in their start order. */
+    private List<UUID> startOrder;
+    private ProcessManager processManager;
+
+    @Before
+    public void initialization(){
+        processManager = new ProcessManager(null, null);
+        taskList = Collections.synchronizedList(new ArrayList<Runnable>());
+        startOrder = Collections.synchronizedList(new ArrayList<UUID>());
+        executor = new AbstractExecutorService() {
+            @Override public void shutdown() {}
+            @Override public List<Runnable> shutdownNow() {return taskList;}
+            @Override public boolean isShutdown() {return false;}
+            @Override public boolean isTerminated() {return false;}
+            @Override public boolean awaitTermination(long timeout, TimeUnit unit) {return true;}
+            @Override public void execute(Runnable command) {taskList.add(command);}
+        };
+    }
+
+    /**
+     * Creates a process description with the given concurrency metadata.
+     * @param id Identifier and title of the process.
+     * @param group Concurrency group, null for none.
+     * @param maxParallel MAX_PARALLEL value, lower than 1 for none.
+     * @return The process description.
+     */
+    private ProcessDescriptionType createProcess(String id, String group, int maxParallel){
+        ProcessDescriptionType process = new ProcessDescriptionType();
+        CodeType identifier = new CodeType();
+        identifier.setValue(id);
+        process.setIdentifier(identifier);
+        LanguageStringType title = new LanguageStringType();
+        title.setValue(id);
+        process.getTitle().add(title);
+        if(group != null){
+            MetadataType metadata = new MetadataType();
+            metadata.setRole(ProcessMetadata.CONCURRENCY_GROUP_NAME);
+            metadata.setTitle(group);
+            process.getMetadata().add(metadata);
+        }
+        if(maxParallel > 0){
+            MetadataType metadata = new MetadataType();
+            metadata.setRole(ProcessMetadata.MAX_PARALLEL_NAME);
+            metadata.setTitle(Integer.toString(maxParallel));
+            process.getMetadata().add(metadata);
+        }
+        return process;
+    }
+
+    /**
+     * ProcessWorker recording its start. Its run blocks until it is released and ignores the interruptions, as a
+     * script ignoring the cancellation.
+     */
+    private class TestWorker extends ProcessWorker {
+        private final ProcessDescriptionType process;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch released;
+
+        TestWorker(ProcessDescriptionType process, boolean blocking){
+            super(new Job(process, UUID.randomUUID(), new HashMap<URI, Object>(), 10000, 1000), null,
+                    processManager, new HashMap<URI, Object>());
+            this.process = process;
+            this.released = new CountDownLatch(blocking ? 1 : 0);
+        }
+
+        @Override
+        public void run(){
+            startOrder.add(getJobId());
+            started.countDown();
+            while(released.getCount() > 0){
+                try {
+                    released.await();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }
+
+        @Override
+        public ProcessDescriptionType getProcess(){
+            return process;
+        }
+    }
+
+    @Test
+    public void testFifoOrder() {
+        JobScheduler jobScheduler = new JobScheduler(executor, 1, 10);
+        ProcessDescriptionType process = createProcess("process", null, 0);
+        TestWorker worker1 = new TestWorker(process, false);
+        TestWorker worker2 = new TestWorker(process, false);
+        TestWorker worker3 = new TestWorker(process, false);
+        Assert.assertNotNull(jobScheduler.submit(worker1));
+        Assert.assertNotNull(jobScheduler.submit(worker2));
+        Assert.assertNotNull(jobScheduler.submit(worker3));
+        Assert.assertEquals(1, jobScheduler.getRunningJobCount());
+        Assert.assertEquals(2, jobScheduler.getQueuedJobCount());
+
+        //Each finished job starts the next queued one
+        for(int i = 0; i < 3; i++){
+            Assert.assertEquals("Only one job should be given to the executor at a time.", i + 1, taskList.size());
+            taskList.get(i).run();
+        }
+        Assert.assertEquals("The jobs should run in their submission order.",
+                Arrays.asList(worker1.getJobId(), worker2.getJobId(), worker3.getJobId()), startOrder);
+        Assert.assertEquals(0, jobScheduler.getRunningJobCount());
+        Assert.assertEquals(0, jobScheduler.getQueuedJobCount());
+    }
+
+    @Test
+    public void testQueueFull() {
+        JobScheduler jobScheduler = new JobScheduler(executor, 1, 1);
+        ProcessDescriptionType process = createProcess("process", null, 0);
+        Assert.assertNotNull("The first job should run.", jobScheduler.submit(new TestWorker(process, false)));
+        Assert.assertNotNull("The second job should be queued.", jobScheduler.submit(new TestWorker(process, false)));
+        TestWorker refused = new TestWorker(process, false);
+        Assert.assertNull("The job should be refused once the queue is full.", jobScheduler.submit(refused));
+        Assert.assertNull(jobScheduler.getFuture(refused.getJobId()));
+        Assert.assertEquals(1, jobScheduler.getQueuedJobCount());
+
+        //Once a slot is freed, the queue accepts a new job
+        taskList.get(0).run();
+        Assert.assertEquals(0, jobScheduler.getQueuedJobCount());
+        Assert.assertNotNull(jobScheduler.submit(new TestWorker(process, false)));
+    }
+
+    @Test
+    public void testGroupLimit() {
+        JobScheduler jobScheduler = new JobScheduler(executor, 10, 10);
+        ProcessDescriptionType process1 = createProcess("process1", "group", 2);
+        ProcessDescriptionType process2 = createProcess("process2", "group", 1);
+        ProcessDescriptionType other = createProcess("other", null, 0);
+
+        TestWorker first = new TestWorker(process1, false);
+        Assert.assertNotNull(jobScheduler.submit(first));
+        Assert.assertEquals(2, jobScheduler.getGroupLimit("group"));
+        Assert.assertEquals(1, jobScheduler.getRunningJobCount("group"));
+        //The lowest MAX_PARALLEL of the group is applied to all its processes
+        TestWorker queued2 = new TestWorker(process2, false);
+        TestWorker queued1 = new TestWorker(process1, false);
+        Assert.assertNotNull(jobScheduler.submit(queued2));
+        Assert.assertEquals(1, jobScheduler.getGroupLimit("group"));
+        Assert.assertNotNull(jobScheduler.submit(queued1));
+        Assert.assertEquals("The group is full, its jobs should be queued.", 2, jobScheduler.getQueuedJobCount());
+        Assert.assertEquals(1, jobScheduler.getRunningJobCount("group"));
+
+        //A job of another group is not blocked by the queued jobs of a full group
+        TestWorker otherWorker = new TestWorker(other, false);
+        Assert.assertNotNull(jobScheduler.submit(otherWorker));
+        Assert.assertEquals(2, jobScheduler.getRunningJobCount());
+        Assert.assertEquals(2, jobScheduler.getQueuedJobCount());
+
+        //The end of the group job starts the next queued job of the group only
+        taskList.get(0).run();
+        Assert.assertEquals(1, jobScheduler.getRunningJobCount("group"));
+        Assert.assertEquals(1, jobScheduler.getQueuedJobCount());
+        Assert.assertEquals(3, taskList.size());
+        taskList.get(2).run();
+        Assert.assertEquals("The queued jobs of the group should start in their submission order.",
+                Arrays.asList(first.getJobId(), queued2.getJobId()), startOrder);
+    }
+
+    @Test
+    public void testCancellation() throws URISyntaxException {
+        URL url = JobSchedulerTest.class.getResource("../operations/Enumeration.groovy");
+        ProcessIdentifier pi = processManager.addScript(new File(url.toURI()).toURI());
+        Assert.assertFalse("An unknown job should not be cancelled.", processManager.cancelProcess(UUID.randomUUID()));
+
+        JobScheduler jobScheduler = new JobScheduler(executor, 1, 10);
+        Map<URI, Object> dataMap = new HashMap<>();
+        Job runningJob = new Job(pi.getProcessDescriptionType(), UUID.randomUUID(), dataMap, 10000, 1000);
+        Job queuedJob = new Job(pi.getProcessDescriptionType(), UUID.randomUUID(), dataMap, 10000, 1000);
+        Assert.assertNotNull(jobScheduler.submit(new ProcessWorker(runningJob, pi, processManager, dataMap)));
+        Assert.assertNotNull(jobScheduler.submit(new ProcessWorker(queuedJob, pi, processManager, dataMap)));
+        Assert.assertEquals(1, jobScheduler.getQueuedJobCount());
+
+        Assert.assertTrue("The queued job should be cancelled.", jobScheduler.cancel(queuedJob.getId()));
+        Assert.assertEquals("The queued job should be removed.", 0, jobScheduler.getQueuedJobCount());
+        Assert.assertEquals("The dismissed job should fail.", ProcessExecutionListener.ProcessState.FAILED,
+                queuedJob.getState());
+
+        Assert.assertTrue("The job not run yet should be cancelled.", jobScheduler.cancel(runningJob.getId()));
+        Assert.assertEquals("The slot of a job not run yet should be released.", 0,
+                jobScheduler.getRunningJobCount());
+        Assert.assertFalse("A cancelled job should not be cancelled twice.", jobScheduler.cancel(runningJob.getId()));
+        //The worker of the cancelled job should not run the script
+        taskList.get(0).run();
+        Assert.assertTrue("The cancelled job should not produce outputs.", dataMap.isEmpty());
+    }
+
+    @Test
+    public void testCancellationOfRunningJob() throws InterruptedException {
+        JobScheduler jobScheduler = new JobScheduler(executor, 1, 10);
+        ProcessDescriptionType process = createProcess("process", null, 0);
+        final TestWorker running = new TestWorker(process, true);
+        TestWorker queued = new TestWorker(process, false);
+        Assert.assertNotNull(jobScheduler.submit(running));
+        Assert.assertNotNull(jobScheduler.submit(queued));
+        Thread thread = new Thread(taskList.get(0));
+        thread.start();
+        Assert.assertTrue(running.started.await(10, TimeUnit.SECONDS));
+
+        //The worker ignores the cancellation, so it keeps its slot
+        Assert.assertTrue(jobScheduler.cancel(running.getJobId()));
+        Assert.assertEquals("The slot should be kept while the worker runs.", 1, jobScheduler.getRunningJobCount());
+        Assert.assertEquals("The queued job should wait for the worker.", 1, jobScheduler.getQueuedJobCount());
+        Assert.assertEquals(1, taskList.size());
+
+        //Once the worker returns, its slot goes to the queued job
+        running.released.countDown();
+        thread.join(10000);
+        Assert.assertEquals(0, jobScheduler.getQueuedJobCount());
+        Assert.assertEquals(1, jobScheduler.getRunningJobCount());
+        Assert.assertEquals(2, taskList.size());
+        taskList.get(1).run();
+        Assert.assertEquals(Arrays.asList(running.getJobId(), queued.getJobId()), startOrder);
+        Assert.assertEquals(0, jobScheduler.getRunningJobCount());
+    }
+}
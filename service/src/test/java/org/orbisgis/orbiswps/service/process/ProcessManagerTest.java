@@ -0,0 +1,137 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import net.opengis.ows._2.CodeType;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Test class for the process registry of the ProcessManager.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class ProcessManagerTest {
+
+    private ProcessManager processManager;
+
+    @Before
+    public void initialization(){
+        processManager = new ProcessManager(null, null);
+    }
+
+    @Test
+    public void testProcessLookup() throws URISyntaxException {
+        URL url = ProcessManagerTest.class.getResource("../ascriptfolder/script1.groovy");
+        ProcessIdentifier pi = processManager.addScript(new File(url.toURI()).toURI());
+        Assert.assertNotNull("The process should be added.", pi);
+        Assert.assertNull("A process with the same identifier should not be added.",
+                processManager.addScript(new File(url.toURI()).toURI()));
+        Assert.assertEquals("The registry should contain one process.", 1,
+                processManager.getAllProcessIdentifier().size());
+
+        CodeType processId = new CodeType();
+        processId.setValue("script1ID");
+        Assert.assertSame("The process should be found with its identifier.", pi,
+                processManager.getProcessIdentifier(processId));
+        Assert.assertSame("The process should be found with its identifier.", pi.getProcessDescriptionType(),
+                processManager.getProcess(processId));
+
+        CodeType outputId = pi.getProcessDescriptionType().getOutput().get(0).getIdentifier();
+        Assert.assertSame("The process should be found with the identifier of its output.",
+                pi.getProcessDescriptionType(), processManager.getProcess(outputId));
+        Assert.assertNull("The output identifier is not a process identifier.",
+                processManager.getProcessIdentifier(outputId));
+
+        processManager.removeProcess(url);
+        Assert.assertNull("The process should have been removed.", processManager.getProcess(processId));
+        Assert.assertNull("The process should have been removed.", processManager.getProcess(outputId));
+        Assert.assertTrue("The registry should be empty.", processManager.getAllProcessIdentifier().isEmpty());
+    }
+
+    @Test
+    public void testProcessExecutionBinding() throws URISyntaxException {
+        URL url = ProcessManagerTest.class.getResource("../operations/Enumeration.groovy");
+        ProcessIdentifier pi = processManager.addScript(new File(url.toURI()).toURI());
+        Assert.assertNotNull("The process should be added.", pi);
+
+        URI inputId = URI.create(pi.getProcessDescriptionType().getInput().get(0).getIdentifier().getValue());
+        URI outputId = URI.create(pi.getProcessDescriptionType().getOutput().get(0).getIdentifier().getValue());
+        Map<URI, Object> dataMap = new HashMap<>();
+        dataMap.put(inputId, "value1\tvalue2");
+        processManager.executeProcess(UUID.randomUUID(), pi, dataMap, null, null);
+
+        Object output = dataMap.get(outputId);
+        Assert.assertTrue("The output should be retrieved from the script.", output instanceof String[]);
+        Assert.assertArrayEquals("The input should be split and set in the script.",
+                new String[]{"value1", "value2"}, (String[]) output);
+    }
+
+    @Test
+    public void testPrecomputedTranslations() throws URISyntaxException {
+        URL url = ProcessManagerTest.class.getResource("../operations/Enumeration.groovy");
+        ProcessIdentifier pi = processManager.addScript(new File(url.toURI()).toURI());
+        Assert.assertNotNull("The process should be added.", pi);
+        Object enumeration = pi.getProcessDescriptionType().getInput().get(0).getDataDescription().getValue();
+
+        ProcessTranslator.precomputeTranslations(pi, new String[]{"en", "fr-fr"});
+        ProcessDescriptionType translatedProcess = ProcessTranslator.getTranslatedProcess(pi, "fr-fr", "en");
+        Assert.assertSame("The precomputed translation should be returned.", translatedProcess,
+                ProcessTranslator.getTranslatedProcess(pi, "fr-fr", "en"));
+        Assert.assertEquals("The translation should be in the requested language.", "fr-fr",
+                translatedProcess.getLang());
+        Assert.assertSame("The source process should not be modified by the translation.", enumeration,
+                pi.getProcessDescriptionType().getInput().get(0).getDataDescription().getValue());
+        Assert.assertNotSame("A language which is not precomputed should be translated on request.",
+                ProcessTranslator.getTranslatedProcess(pi, "de", "en"),
+                ProcessTranslator.getTranslatedProcess(pi, "de", "en"));
+    }
+}
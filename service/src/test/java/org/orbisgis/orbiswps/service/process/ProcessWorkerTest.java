@@ -0,0 +1,152 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import groovy.lang.GroovyObject;
+import net.opengis.wps._2_0.ProcessDescriptionType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.orbisgis.orbiswps.service.utils.CountingDataSource;
+import org.orbisgis.orbiswps.service.utils.Job;
+import org.orbisgis.orbiswps.service.utils.WpsSql;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessIdentifier;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Test class for the job transaction handled by the ProcessWorker.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class ProcessWorkerTest {
+
+    /** End of the script execution simulated by the test ProcessManager. */
+    private enum Outcome {SUCCESS, FAILURE, CANCELLATION}
+
+    /** DataSource counting the commits and rollbacks of the job connection. */
+    private final CountingDataSource countingDataSource = new CountingDataSource();
+
+    /**
+     * ProcessManager giving a transactional Sql object to the jobs and simulating the script execution by running a
+     * query and ending with the given outcome.
+     */
+    private class TestProcessManager extends ProcessManager {
+        private final Outcome outcome;
+
+        TestProcessManager(Outcome outcome){
+            super(null, null);
+            this.outcome = outcome;
+        }
+
+        @Override
+        public WpsSql createJobSql(ProcessDescriptionType process){
+            WpsSql sql = WpsSql.createJobSql(countingDataSource.getDataSource());
+            sql.setJobTransaction(true);
+            return sql;
+        }
+
+        @Override
+        public GroovyObject executeProcess(UUID jobId, ProcessIdentifier processIdentifier, Map<URI, Object> dataMap,
+                                           Map<String, Object> propertiesMap, ProgressMonitor progressMonitor,
+                                           WpsSql sql){
+            try {
+                sql.execute("UPDATE output SET value = 1");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            switch (outcome){
+                case FAILURE:
+                    throw new IllegalStateException("Failure of the script");
+                case CANCELLATION:
+                    //The script ignores the cancellation and returns normally
+                    progressMonitor.cancel();
+                    break;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Runs a job with the given outcome.
+     * @param outcome End of the script execution.
+     * @return The state of the job at the end of the execution.
+     */
+    private ProcessExecutionListener.ProcessState runJob(Outcome outcome) throws URISyntaxException {
+        ProcessManager processManager = new TestProcessManager(outcome);
+        URL url = ProcessWorkerTest.class.getResource("../operations/Enumeration.groovy");
+        ProcessIdentifier pi = processManager.addScript(new File(url.toURI()).toURI());
+        Map<URI, Object> dataMap = new HashMap<>();
+        Job job = new Job(pi.getProcessDescriptionType(), UUID.randomUUID(), dataMap, 10000, 1000);
+        new ProcessWorker(job, pi, processManager, dataMap).run();
+        return job.getState();
+    }
+
+    @Test
+    public void testCommitOnSuccess() throws URISyntaxException {
+        Assert.assertEquals(ProcessExecutionListener.ProcessState.SUCCEEDED, runJob(Outcome.SUCCESS));
+        Assert.assertEquals("The job transaction should be committed.", 1, countingDataSource.commitCount.get());
+        Assert.assertEquals(0, countingDataSource.rollbackCount.get());
+        Assert.assertEquals("The job connection should be closed.", 1, countingDataSource.closedCount.get());
+    }
+
+    @Test
+    public void testRollbackOnFailure() throws URISyntaxException {
+        Assert.assertEquals(ProcessExecutionListener.ProcessState.FAILED, runJob(Outcome.FAILURE));
+        Assert.assertEquals("The job transaction should not be committed.", 0, countingDataSource.commitCount.get());
+        Assert.assertEquals("The job transaction should be rolled back.", 1, countingDataSource.rollbackCount.get());
+        Assert.assertEquals("The job connection should be closed.", 1, countingDataSource.closedCount.get());
+    }
+
+    @Test
+    public void testRollbackOnCancellation() throws URISyntaxException {
+        Assert.assertEquals(ProcessExecutionListener.ProcessState.FAILED, runJob(Outcome.CANCELLATION));
+        Assert.assertEquals("The job transaction should not be committed.", 0, countingDataSource.commitCount.get());
+        Assert.assertEquals("The job transaction should be rolled back.", 1, countingDataSource.rollbackCount.get());
+        Assert.assertEquals("The job connection should be closed.", 1, countingDataSource.closedCount.get());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.process;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class for the progress events of the ProgressMonitor.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class ProgressMonitorTest {
+
+    @Test
+    public void testCoalescedProgress() throws InterruptedException {
+        ExecutorService notifier = Executors.newCachedThreadPool();
+        try {
+            runCoalescedProgress(notifier);
+        }
+        finally {
+            notifier.shutdownNow();
+        }
+    }
+
+    private void runCoalescedProgress(ExecutorService notifier) throws InterruptedException {
+        ProgressMonitor progressMonitor = new ProgressMonitor("test", Long.MAX_VALUE, 0.1, notifier);
+        final AtomicInteger eventCount = new AtomicInteger();
+        final CountDownLatch endLatch = new CountDownLatch(1);
+        final Thread workerThread = Thread.currentThread();
+        final AtomicInteger workerThreadEvents = new AtomicInteger();
+        progressMonitor.addPropertyChangeListener(ProgressMonitor.PROPERTY_PROGRESS, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent event) {
+                eventCount.incrementAndGet();
+                if(Thread.currentThread() == workerThread){
+                    workerThreadEvents.incrementAndGet();
+                }
+                if((Double) event.getNewValue() == 100){
+                    endLatch.countDown();
+                }
+            }
+        });
+        progressMonitor.subProcess(100000);
+        for(int i = 0; i < 100000; i++){
+            progressMonitor.endStep();
+        }
+        Assert.assertEquals("The progression should be updated on each step.", 1.0,
+                progressMonitor.getProgression(), 0);
+        Assert.assertTrue("The last progress event should be delivered.", endLatch.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue("The progress events should be coalesced.", eventCount.get() <= 11);
+        Assert.assertEquals("The progress events should not be delivered by the worker thread.", 0,
+                workerThreadEvents.get());
+    }
+
+    @Test
+    public void testSlowListener() throws InterruptedException {
+        ExecutorService notifier = Executors.newCachedThreadPool();
+        final CountDownLatch slowListenerLatch = new CountDownLatch(1);
+        try {
+            ProgressMonitor slowMonitor = new ProgressMonitor("slow", 0, 0, notifier);
+            slowMonitor.addPropertyChangeListener(ProgressMonitor.PROPERTY_PROGRESS, new PropertyChangeListener() {
+                @Override
+                public void propertyChange(PropertyChangeEvent event) {
+                    try {
+                        slowListenerLatch.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            });
+            final CountDownLatch endLatch = new CountDownLatch(1);
+            ProgressMonitor progressMonitor = new ProgressMonitor("test", 0, 0, notifier);
+            progressMonitor.addPropertyChangeListener(ProgressMonitor.PROPERTY_PROGRESS, new PropertyChangeListener() {
+                @Override
+                public void propertyChange(PropertyChangeEvent event) {
+                    if((Double) event.getNewValue() == 100){
+                        endLatch.countDown();
+                    }
+                }
+            });
+            slowMonitor.subProcess(2);
+            slowMonitor.endStep();
+            progressMonitor.endOfProgress();
+            Assert.assertTrue("A slow listener should not delay the events of the other monitors.",
+                    endLatch.await(10, TimeUnit.SECONDS));
+        }
+        finally {
+            slowListenerLatch.countDown();
+            notifier.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShutdownNotifier() {
+        ExecutorService notifier = Executors.newCachedThreadPool();
+        notifier.shutdownNow();
+        ProgressMonitor progressMonitor = new ProgressMonitor("test", 0, 0, notifier);
+        final AtomicInteger eventCount = new AtomicInteger();
+        progressMonitor.addPropertyChangeListener(ProgressMonitor.PROPERTY_PROGRESS, new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent event) {
+                eventCount.incrementAndGet();
+            }
+        });
+        progressMonitor.endOfProgress();
+        Assert.assertEquals("Once the notifier is shut down, the event should be delivered by the caller.", 1,
+                eventCount.get());
+    }
+}
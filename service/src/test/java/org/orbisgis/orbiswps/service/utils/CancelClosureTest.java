@@ -0,0 +1,111 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test class for the CancelClosure.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class CancelClosureTest {
+
+    /** Number of cancelled statements. */
+    private final AtomicInteger cancelCount = new AtomicInteger();
+
+    /**
+     * Creates a Statement which counts its cancellations and can be closed with the given flag.
+     * @param closed Flag telling if the statement is closed.
+     * @return The test Statement.
+     */
+    private Statement createStatement(final AtomicBoolean closed){
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class[]{Statement.class},
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()){
+                    case "cancel":
+                        cancelCount.incrementAndGet();
+                        return null;
+                    case "isClosed":
+                        return closed.get();
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testCancel(){
+        CancelClosure closure = new CancelClosure(this);
+        AtomicBoolean closed = new AtomicBoolean(false);
+        closure.doCall(createStatement(closed));
+        closure.doCall(createStatement(new AtomicBoolean(false)));
+        Assert.assertEquals(2, closure.getStatementCount());
+        closed.set(true);
+        Assert.assertEquals("The closed statement should be removed.", 1, closure.getStatementCount());
+
+        closure.cancel();
+        Assert.assertTrue(closure.isCancelled());
+        Assert.assertEquals("Only the live statement should be cancelled.", 1, cancelCount.get());
+        Assert.assertEquals(0, closure.getStatementCount());
+        try {
+            closure.doCall(createStatement(new AtomicBoolean(false)));
+            Assert.fail("A new statement of a cancelled job should be refused.");
+        } catch (CancellationException ignored) {
+        }
+        Assert.assertEquals("The refused statement should be cancelled.", 2, cancelCount.get());
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.utils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test DataSource whose connections don't access any database : they only count the calls done by the tested classes
+ * and record the executed queries. The key range queries return the range 1 to 100. The connections can pretend to be
+ * connected to a H2 database with a given MULTI_THREADED setting.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class CountingDataSource {
+
+    /** Number of physical connections opened. */
+    public final AtomicInteger openedCount = new AtomicInteger();
+    /** Number of physical connections closed. */
+    public final AtomicInteger closedCount = new AtomicInteger();
+    /** Number of commits of the physical connections. */
+    public final AtomicInteger commitCount = new AtomicInteger();
+    /** Number of rollbacks of the physical connections. */
+    public final AtomicInteger rollbackCount = new AtomicInteger();
+    /** Number of batches sent to the database. */
+    public final AtomicInteger batchCount = new AtomicInteger();
+    /** Number of cancelled statements. */
+    public final AtomicInteger cancelCount = new AtomicInteger();
+    /** Queries executed by the statements. */
+    public final List<String> queries = Collections.synchronizedList(new ArrayList<String>());
+    /** Part of the queries whose execution fails, null if no query fails. */
+    private volatile String failingQuery = null;
+    /** Value of the H2 MULTI_THREADED setting, null if the connections are not H2 ones. */
+    private volatile String h2MultiThreaded = null;
+
+    /**
+     * Sets the part of the queries whose execution fails.
+     * @param failingQuery Part of the failing queries, null if no query fails.
+     */
+    public void setFailingQuery(String failingQuery){
+        this.failingQuery = failingQuery;
+    }
+
+    /**
+     * Makes the connections pretend to be connected to a H2 database.
+     * @param h2MultiThreaded Value of the MULTI_THREADED setting of the database, null if the connections are not H2
+     *                        ones.
+     */
+    public void setH2MultiThreaded(String h2MultiThreaded){
+        this.h2MultiThreaded = h2MultiThreaded;
+    }
+
+    /**
+     * Returns the DataSource giving the counting connections.
+     * @return The test DataSource.
+     */
+    public DataSource getDataSource(){
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(), new Class[]{DataSource.class},
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if("getConnection".equals(method.getName())){
+                    openedCount.incrementAndGet();
+                    return createConnection();
+                }
+                return null;
+            }
+        });
+    }
+
+    private Connection createConnection(){
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class[]{Connection.class},
+                new InvocationHandler() {
+            private boolean closed = false;
+            private boolean autoCommit = true;
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()){
+                    case "setAutoCommit":
+                        autoCommit = (Boolean) args[0];
+                        return null;
+                    case "getAutoCommit":
+                        return autoCommit;
+                    case "commit":
+                        commitCount.incrementAndGet();
+                        return null;
+                    case "rollback":
+                        rollbackCount.incrementAndGet();
+                        return null;
+                    case "createStatement":
+                        return createStatement();
+                    case "getMetaData":
+                        return h2MultiThreaded != null ? createH2MetaData() : null;
+                    case "close":
+                        if(!closed) {
+                            closed = true;
+                            closedCount.incrementAndGet();
+                        }
+                        return null;
+                    case "isClosed":
+                        return closed;
+                    case "isValid":
+                        return !closed;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    private Statement createStatement(){
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class[]{Statement.class},
+                new InvocationHandler() {
+            private int size = 0;
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()){
+                    case "addBatch":
+                        size++;
+                        return null;
+                    case "executeBatch":
+                        batchCount.incrementAndGet();
+                        int[] counts = new int[size];
+                        Arrays.fill(counts, 1);
+                        size = 0;
+                        return counts;
+                    case "executeQuery":
+                        queries.add((String) args[0]);
+                        if(((String) args[0]).contains("INFORMATION_SCHEMA.SETTINGS")){
+                            return createSettingResultSet();
+                        }
+                        return createKeyRangeResultSet();
+                    case "execute":
+                    case "executeUpdate":
+                        String query = (String) args[0];
+                        queries.add(query);
+                        if(failingQuery != null && query.contains(failingQuery)){
+                            throw new SQLException("Failure of the query " + query);
+                        }
+                        return "execute".equals(method.getName()) ? (Object) false : (Object) 0;
+                    case "cancel":
+                        cancelCount.incrementAndGet();
+                        return null;
+                    case "getUpdateCount":
+                        return 0;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the metadata of a H2 database.
+     * @return The test DatabaseMetaData.
+     */
+    private DatabaseMetaData createH2MetaData(){
+        return (DatabaseMetaData) Proxy.newProxyInstance(DatabaseMetaData.class.getClassLoader(),
+                new Class[]{DatabaseMetaData.class}, new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                return "getDatabaseProductName".equals(method.getName()) ? "H2" : null;
+            }
+        });
+    }
+
+    /**
+     * Creates a ResultSet with a single row containing the MULTI_THREADED setting.
+     * @return The test ResultSet.
+     */
+    private ResultSet createSettingResultSet(){
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class[]{ResultSet.class},
+                new InvocationHandler() {
+            private boolean read = false;
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()){
+                    case "next":
+                        boolean next = !read;
+                        read = true;
+                        return next;
+                    case "getString":
+                        return h2MultiThreaded;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates a ResultSet with a single row containing the key range 1 to 100.
+     * @return The test ResultSet.
+     */
+    private ResultSet createKeyRangeResultSet(){
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class[]{ResultSet.class},
+                new InvocationHandler() {
+            private boolean read = false;
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                switch (method.getName()){
+                    case "next":
+                        boolean next = !read;
+                        read = true;
+                        return next;
+                    case "getObject":
+                        return (Integer) args[0] == 1 ? 1L : 100L;
+                    default:
+                        return null;
+                }
+            }
+        });
+    }
+}
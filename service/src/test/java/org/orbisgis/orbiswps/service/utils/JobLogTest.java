@@ -0,0 +1,89 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.orbisgis.orbiswps.serviceapi.process.JobLogEntry;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener.LogType;
+
+import java.util.List;
+
+/**
+ * Test class for the JobLog.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class JobLogTest {
+
+    @Test
+    public void testOrderedEntries(){
+        JobLog jobLog = new JobLog(10);
+        jobLog.append(LogType.INFO, "message");
+        jobLog.append(LogType.WARN, "message");
+        jobLog.append(LogType.ERROR, "error");
+
+        List<JobLogEntry> entries = jobLog.getEntries(0);
+        Assert.assertEquals("The repeated messages should be kept.", 3, entries.size());
+        for(int i = 0; i < entries.size(); i++){
+            Assert.assertEquals("The entries should be ordered.", i + 1, entries.get(i).getSequence());
+        }
+        Assert.assertEquals(LogType.WARN, entries.get(1).getLogType());
+
+        entries = jobLog.getEntries(2);
+        Assert.assertEquals("Only the entries after the given sequence should be returned.", 1, entries.size());
+        Assert.assertEquals("error", entries.get(0).getMessage());
+        Assert.assertTrue("There is no entry after the last one.", jobLog.getEntries(3).isEmpty());
+    }
+
+    @Test
+    public void testBoundedEntries(){
+        JobLog jobLog = new JobLog(5);
+        for(int i = 1; i <= 12; i++){
+            jobLog.append(LogType.INFO, "message " + i);
+        }
+        List<JobLogEntry> entries = jobLog.getEntries(0);
+        Assert.assertEquals("Only the last entries should be kept.", 5, entries.size());
+        Assert.assertEquals("message 8", entries.get(0).getMessage());
+        Assert.assertEquals("message 12", entries.get(4).getMessage());
+        Assert.assertEquals(12, jobLog.getLastSequence());
+        Assert.assertEquals("The already read entries should be skipped.", 2, jobLog.getEntries(10).size());
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.orbisgis.orbiswps.serviceapi.JobStatusListener;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessExecutionListener.ProcessState;
+import org.orbisgis.orbiswps.serviceapi.process.WpsJob;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Test class for the Job status notifications.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class JobTest {
+
+    /**
+     * JobStatusListener recording the notified states and progress.
+     */
+    private static class StatusRecorder implements JobStatusListener {
+        private final List<String> statusList = new ArrayList<>();
+
+        @Override
+        public void onJobStatusChanged(WpsJob job) {
+            statusList.add(job.getState().name() + ":" + job.getProgress());
+        }
+    }
+
+    @Test
+    public void testStatusListener(){
+        Job job = new Job(null, UUID.randomUUID(), new HashMap<URI, Object>(), 10000, 1000);
+        StatusRecorder recorder = new StatusRecorder();
+        Assert.assertTrue("The listener should be registered.", job.addStatusListener(recorder));
+
+        job.setProcessState(ProcessState.RUNNING);
+        job.setProgress(50);
+        job.setProgress(50);
+        job.setProcessState(ProcessState.SUCCEEDED);
+        job.setProgress(100);
+        Assert.assertEquals("Each change of status should be notified once, until the end of the job.",
+                3, recorder.statusList.size());
+        Assert.assertEquals("RUNNING:0", recorder.statusList.get(0));
+        Assert.assertEquals("RUNNING:50", recorder.statusList.get(1));
+        Assert.assertEquals("SUCCEEDED:100", recorder.statusList.get(2));
+
+        StatusRecorder lateRecorder = new StatusRecorder();
+        Assert.assertTrue("The listener should be accepted.", job.addStatusListener(lateRecorder));
+        Assert.assertEquals("A listener registered on a finished job should be called immediately.",
+                1, lateRecorder.statusList.size());
+    }
+}
@@ -39,12 +39,14 @@
  */
 package org.orbisgis.orbiswps.service.utils;
 
+import net.opengis.ows._2.MetadataType;
 import net.opengis.wps._2_0.ProcessDescriptionType;
 import net.opengis.wps._2_0.ProcessOffering;
 import org.junit.Assert;
 import org.junit.Test;
 import org.orbisgis.orbiswps.groovyapi.attributes.ProcessAttribute;
 import org.orbisgis.orbiswps.service.utils.ObjectAnnotationConverter;
+import org.orbisgis.orbiswps.serviceapi.process.ProcessMetadata;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
@@ -59,7 +61,12 @@ public class ProcessConvertTest {
 
     /** Field containing the full annotation. */
     @ProcessAttribute(
-            language = "en"
+            language = "en",
+            concurrencyGroup = "group",
+            maxParallel = 2,
+            cacheable = true,
+            deterministic = false,
+            transactional = true
     )
     public Object fullProcessAttribute;
     /** Name of the field containing the full ProcessAttribute annotation. */
@@ -105,6 +112,38 @@ public class ProcessConvertTest {
             boolean conditionLanguage = process.getLang().equals(language);
             Assert.assertTrue(messageLanguage, conditionLanguage);
 
+            //Test the concurrency metadata
+            String concurrencyGroup = null;
+            String maxParallel = null;
+            String cacheable = null;
+            String deterministic = null;
+            String transactional = null;
+            for(MetadataType metadata : process.getMetadata()){
+                if(ProcessMetadata.CONCURRENCY_GROUP_NAME.equals(metadata.getRole())){
+                    concurrencyGroup = metadata.getTitle();
+                }
+                if(ProcessMetadata.MAX_PARALLEL_NAME.equals(metadata.getRole())){
+                    maxParallel = metadata.getTitle();
+                }
+                if(ProcessMetadata.CACHEABLE_NAME.equals(metadata.getRole())){
+                    cacheable = metadata.getTitle();
+                }
+                if(ProcessMetadata.DETERMINISTIC_NAME.equals(metadata.getRole())){
+                    deterministic = metadata.getTitle();
+                }
+                if(ProcessMetadata.TRANSACTIONAL_NAME.equals(metadata.getRole())){
+                    transactional = metadata.getTitle();
+                }
+            }
+            Assert.assertEquals("The process concurrency group is not the one expected.", "group", concurrencyGroup);
+            Assert.assertEquals("The process maximum parallel instance count is not the one expected.", "2",
+                    maxParallel);
+            Assert.assertEquals("The process cacheable metadata is not the one expected.", "true", cacheable);
+            Assert.assertEquals("The process deterministic metadata is not the one expected.", "false",
+                    deterministic);
+            Assert.assertEquals("The process transactional metadata is not the one expected.", "true",
+                    transactional);
+
         } catch (NoSuchFieldException e) {
             Assert.fail("Unable to get the field '" + FULL_PROCESS_ATTRIBUTE_FIELD_NAME + "' from the class '" +
                     this.getClass().getCanonicalName() + "'.");
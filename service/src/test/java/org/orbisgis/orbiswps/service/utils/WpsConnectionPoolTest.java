@@ -0,0 +1,105 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Test class for the WpsConnectionPool and the job connection of the WpsSql.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class WpsConnectionPoolTest {
+
+    /** DataSource counting the opened and closed connections. */
+    private final CountingDataSource countingDataSource = new CountingDataSource();
+
+    @Test
+    public void testConnectionReuse() throws SQLException {
+        WpsConnectionPool pool = new WpsConnectionPool(countingDataSource.getDataSource(), 2, 100);
+        Connection connection1 = pool.getConnection();
+        Connection connection2 = pool.getConnection();
+        Assert.assertEquals(2, countingDataSource.openedCount.get());
+        try {
+            pool.getConnection();
+            Assert.fail("The pool is bounded, no connection should be available.");
+        } catch (SQLException ignored) {
+        }
+        Assert.assertNull("No connection should be lent without waiting.", pool.tryGetConnection());
+        connection1.close();
+        Assert.assertTrue("The connection should be closed for its user.", connection1.isClosed());
+        Assert.assertEquals("The physical connection should be kept in the pool.", 0,
+                countingDataSource.closedCount.get());
+        Assert.assertEquals(1, pool.getIdleCount());
+
+        Connection connection3 = pool.tryGetConnection();
+        Assert.assertNotNull("The free connection should be lent without waiting.", connection3);
+        Assert.assertEquals("The idle connection should be reused.", 2, countingDataSource.openedCount.get());
+        Assert.assertFalse(connection3.isClosed());
+        connection2.close();
+        connection3.close();
+        pool.close();
+        Assert.assertEquals("The closed pool should close its connections.", 2, countingDataSource.closedCount.get());
+    }
+
+    @Test
+    public void testJobConnection() throws SQLException {
+        WpsSql sql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        Assert.assertEquals("The job connection should be opened on the first use.", 0,
+                countingDataSource.openedCount.get());
+        Connection handle1 = sql.getDataSource().getConnection();
+        Connection handle2 = sql.getDataSource().getConnection();
+        Assert.assertTrue(handle1.getAutoCommit());
+        Assert.assertTrue(handle2.getAutoCommit());
+        Assert.assertEquals("All the handles should share the job connection.", 1,
+                countingDataSource.openedCount.get());
+        handle1.close();
+        Assert.assertFalse("Closing a handle should not close the job connection.", handle2.isClosed());
+        Assert.assertEquals(0, countingDataSource.closedCount.get());
+        sql.close();
+        Assert.assertTrue(handle2.isClosed());
+        Assert.assertEquals("The job connection should be closed with the Sql object.", 1,
+                countingDataSource.closedCount.get());
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * OrbisWPS contains a set of libraries to build a Web Processing Service (WPS)
+ * compliant with the 2.0 specification.
+ *
+ * OrbisWPS is part of the OrbisGIS platform
+ *
+ * OrbisGIS is a java GIS application dedicated to research in GIScience.
+ * OrbisGIS is developed by the GIS group of the DECIDE team of the
+ * Lab-STICC CNRS laboratory, see <http://www.lab-sticc.fr/>.
+ *
+ * The GIS group of the DECIDE team is located at :
+ *
+ * Laboratoire Lab-STICC – CNRS UMR 6285
+ * Equipe DECIDE
+ * UNIVERSITÉ DE BRETAGNE-SUD
+ * Institut Universitaire de Technologie de Vannes
+ * 8, Rue Montaigne - BP 561 56017 Vannes Cedex
+ *
+ * OrbisWPS is distributed under GPL 3 license.
+ *
+ * Copyright (C) 2015-2017 CNRS (Lab-STICC UMR CNRS 6285)
+ *
+ *
+ * OrbisWPS is free software: you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License as published by the Free Software
+ * Foundation, either version 3 of the License, or (at your option) any later
+ * version.
+ *
+ * OrbisWPS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * OrbisWPS. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * For more information, please consult: <http://www.orbisgis.org/>
+ * or contact directly:
+ * info_at_ orbisgis.org
+ */
+package org.orbisgis.orbiswps.service.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test class for the transaction, batch and partitioned execution methods of the WpsSql.
+ *
+ * @author Sylvain PALOMINOS
+ */
+public class WpsSqlTest {
+
+    /** Partitioned query used by the tests. */
+    private static final String PARTITIONED_QUERY = "SELECT id FROM input WHERE " + WpsSql.PARTITION_FILTER;
+
+    /** DataSource counting the calls done by the WpsSql. */
+    private final CountingDataSource countingDataSource = new CountingDataSource();
+
+    /**
+     * Returns the partition queries executed, sorted.
+     * @return The sorted list of the partition queries.
+     */
+    private List<String> getPartitionQueries(){
+        List<String> partitions = new ArrayList<>();
+        for(String query : countingDataSource.queries){
+            if(query.startsWith("INSERT INTO")){
+                partitions.add(query);
+            }
+        }
+        Collections.sort(partitions);
+        return partitions;
+    }
+
+    @Test
+    public void testJobTransaction() throws SQLException {
+        WpsSql sql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        sql.setJobTransaction(true);
+        Connection handle = sql.getDataSource().getConnection();
+        Assert.assertFalse("The job connection should not be in auto commit mode.", handle.getAutoCommit());
+        sql.commitJob();
+        Assert.assertEquals(1, countingDataSource.commitCount.get());
+        sql.rollbackJob();
+        Assert.assertEquals(1, countingDataSource.rollbackCount.get());
+        sql.close();
+
+        WpsSql autoCommitSql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        Assert.assertTrue(autoCommitSql.getDataSource().getConnection().getAutoCommit());
+        autoCommitSql.commitJob();
+        Assert.assertEquals("Without job transaction, nothing should be committed.", 1,
+                countingDataSource.commitCount.get());
+        autoCommitSql.close();
+    }
+
+    @Test
+    public void testBatch() throws SQLException {
+        WpsSql sql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        sql.setBatchSize(2);
+        int[] counts = sql.executeBatch(Arrays.asList("query1", "query2", "query3"));
+        Assert.assertEquals(3, counts.length);
+        Assert.assertEquals("The queries should be sent in two batches.", 2, countingDataSource.batchCount.get());
+        Assert.assertEquals("The batch should be committed as a whole.", 1, countingDataSource.commitCount.get());
+        Assert.assertTrue("The auto commit mode should be restored.",
+                sql.getDataSource().getConnection().getAutoCommit());
+        sql.close();
+    }
+
+    @Test
+    public void testPartitionedExecution() throws SQLException {
+        WpsSql sql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        sql.setPartitionCount(4);
+        sql.executePartitioned("output", PARTITIONED_QUERY, "input", "id");
+        List<String> queries = countingDataSource.queries;
+        Assert.assertEquals("SELECT MIN(id), MAX(id) FROM input", queries.get(0));
+        Assert.assertEquals("CREATE TABLE output AS SELECT id FROM input WHERE 1=0", queries.get(1));
+        Assert.assertEquals(Arrays.asList(
+                "INSERT INTO output SELECT id FROM input WHERE (id < 26 OR id IS NULL)",
+                "INSERT INTO output SELECT id FROM input WHERE id >= 26 AND id < 51",
+                "INSERT INTO output SELECT id FROM input WHERE id >= 51 AND id < 76",
+                "INSERT INTO output SELECT id FROM input WHERE id >= 76"), getPartitionQueries());
+        Assert.assertEquals("Each partition should run on its own connection.", 5,
+                countingDataSource.openedCount.get());
+        Assert.assertEquals("The partition connections should be closed.", 4, countingDataSource.closedCount.get());
+        sql.close();
+
+        countingDataSource.queries.clear();
+        WpsSql transactionalSql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        transactionalSql.setJobTransaction(true);
+        transactionalSql.setPartitionCount(4);
+        transactionalSql.executePartitioned("output", PARTITIONED_QUERY, "input", "id");
+        Assert.assertEquals("The job transaction should not be partitioned.",
+                Collections.singletonList("CREATE TABLE output AS SELECT id FROM input WHERE 1=1"),
+                countingDataSource.queries);
+        transactionalSql.close();
+    }
+
+    @Test
+    public void testPartitionedExecutionOnPool() throws SQLException {
+        //The job connection and two partitions fill the pool
+        WpsConnectionPool pool = new WpsConnectionPool(countingDataSource.getDataSource(), 3, 100);
+        WpsSql sql = WpsSql.createJobSql(pool);
+        sql.setPartitionCount(4);
+        sql.executePartitioned("output", PARTITIONED_QUERY, "input", "id");
+        Assert.assertEquals("The partitions should be limited to the free connections.", Arrays.asList(
+                "INSERT INTO output SELECT id FROM input WHERE (id < 51 OR id IS NULL)",
+                "INSERT INTO output SELECT id FROM input WHERE id >= 51"), getPartitionQueries());
+        Assert.assertEquals("The partition connections should be given back to the pool.", 2, pool.getIdleCount());
+        sql.close();
+
+        //The job connection is the only one of the pool
+        countingDataSource.queries.clear();
+        WpsConnectionPool singlePool = new WpsConnectionPool(countingDataSource.getDataSource(), 1, 100);
+        WpsSql singleSql = WpsSql.createJobSql(singlePool);
+        singleSql.setPartitionCount(4);
+        singleSql.executePartitioned("output", PARTITIONED_QUERY, "input", "id");
+        Assert.assertEquals("Without free connection, the query should not be partitioned.",
+                "CREATE TABLE output AS SELECT id FROM input WHERE 1=1",
+                countingDataSource.queries.get(countingDataSource.queries.size() - 1));
+        Assert.assertTrue(getPartitionQueries().isEmpty());
+        singleSql.close();
+        pool.close();
+        singlePool.close();
+    }
+
+    @Test
+    public void testPartitionedExecutionOnH2() throws SQLException {
+        //Without MULTI_THREADED, H2 runs the statements one at a time
+        countingDataSource.setH2MultiThreaded("0");
+        WpsSql sql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        sql.setPartitionCount(4);
+        sql.executePartitioned("output", PARTITIONED_QUERY, "input", "id");
+        Assert.assertEquals("The query should not be partitioned on a single threaded H2 database.",
+                "CREATE TABLE output AS SELECT id FROM input WHERE 1=1",
+                countingDataSource.queries.get(countingDataSource.queries.size() - 1));
+        Assert.assertTrue(getPartitionQueries().isEmpty());
+        sql.close();
+
+        countingDataSource.queries.clear();
+        countingDataSource.setH2MultiThreaded("1");
+        WpsSql multiThreadedSql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        multiThreadedSql.setPartitionCount(4);
+        multiThreadedSql.executePartitioned("output", PARTITIONED_QUERY, "input", "id");
+        Assert.assertEquals("The query should be partitioned on a multi threaded H2 database.", 4,
+                getPartitionQueries().size());
+        multiThreadedSql.close();
+    }
+
+    @Test
+    public void testOpenParallelConnections() throws SQLException {
+        WpsConnectionPool pool = new WpsConnectionPool(countingDataSource.getDataSource(), 2, 100);
+        WpsSql sql = WpsSql.createJobSql(pool);
+        sql.execute("SELECT 1");
+        //The job holds a connection of the pool, so only one is free
+        long start = System.currentTimeMillis();
+        List<Connection> connections = sql.openParallelConnections(4);
+        Assert.assertEquals("Only the free connections of the pool should be taken.", 1, connections.size());
+        Assert.assertTrue("The busy connections of the pool should not be waited for.",
+                System.currentTimeMillis() - start < 100);
+        for(Connection connection : connections){
+            connection.close();
+        }
+        Assert.assertEquals("The parallel connections should be given back to the pool.", 1, pool.getIdleCount());
+        sql.close();
+        pool.close();
+
+        WpsSql plainSql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        connections = plainSql.openParallelConnections(3);
+        Assert.assertEquals("A plain DataSource should give all the connections.", 3, connections.size());
+        for(Connection connection : connections){
+            connection.close();
+        }
+        plainSql.close();
+    }
+
+    @Test
+    public void testPartitionFailure() {
+        countingDataSource.setFailingQuery("id >= 76");
+        WpsSql sql = WpsSql.createJobSql(countingDataSource.getDataSource());
+        sql.setPartitionCount(4);
+        try {
+            sql.executePartitioned("output", PARTITIONED_QUERY, "input", "id");
+            Assert.fail("The failure of a partition should be thrown.");
+        } catch (SQLException e) {
+            Assert.assertTrue(e.getMessage().contains("id >= 76"));
+        }
+        Assert.assertEquals("The statements of the partitions should be cancelled.", 4,
+                countingDataSource.cancelCount.get());
+        Assert.assertTrue("The output table should be dropped.",
+                countingDataSource.queries.contains("DROP TABLE IF EXISTS output"));
+        Assert.assertEquals("The partition connections should be closed.", 4, countingDataSource.closedCount.get());
+        sql.close();
+    }
+}